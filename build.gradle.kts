@@ -727,6 +727,7 @@ tasks {
 
   test {
     useJUnitPlatform()
+    systemProperty("java.awt.headless", "true")
 //    testLogging {
 //      events("passed", "skipped", "failed")
 //    }
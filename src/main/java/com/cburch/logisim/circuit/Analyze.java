@@ -25,15 +25,20 @@ import com.cburch.logisim.instance.Instance;
 import com.cburch.logisim.instance.StdAttr;
 import com.cburch.logisim.proj.Project;
 import com.cburch.logisim.std.wiring.Pin;
+import com.cburch.logisim.std.wiring.Tunnel;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 
 public class Analyze {
   public static class LocationBit {
@@ -110,11 +115,80 @@ public class Analyze {
    * difficulties arise.
    */
   public static void computeExpression(AnalyzerModel model, Circuit circuit, Map<Instance, String> pinNames) throws AnalyzeException {
-    final var expressionMap = new ExpressionMap(circuit);
+    final var expressionMap = computeExpressionMap(circuit, pinNames);
 
     final var inputVars = new ArrayList<Var>();
     final var outputVars = new ArrayList<Var>();
     final var outputPins = new ArrayList<Instance>();
+    for (final var entry : pinNames.entrySet()) {
+      final var pin = entry.getKey();
+      final var width = pin.getAttributeValue(StdAttr.WIDTH).getWidth();
+      if (Pin.FACTORY.isInputPin(pin)) {
+        inputVars.add(new Var(entry.getValue(), width));
+      } else {
+        outputPins.add(pin);
+        outputVars.add(new Var(entry.getValue(), width));
+      }
+    }
+
+    model.setVariables(inputVars, outputVars);
+    for (final var pin : outputPins) {
+      final var label = pinNames.get(pin);
+      final var width = pin.getAttributeValue(StdAttr.WIDTH).getWidth();
+      for (var b = 0; b < width; b++) {
+        final var loc = new LocationBit(pin.getLocation(), b);
+        final var name = (width > 1 ? label + "[" + b + "]" : label);
+        model.getOutputExpressions().setExpression(name, expressionMap.get(loc));
+      }
+    }
+  }
+
+  /**
+   * Computes the expression of each bit of each output pin, indexed by bit number. The variables
+   * are named after the input pins as in {@link #computeExpression}. An entry is null if nothing
+   * drives that bit.
+   *
+   * <p>Unlike {@link #computeExpression}, this fails unless the expressions give exactly the
+   * values the simulator settles on whenever all input pins are 0 or 1: each bit of each input of
+   * each component must be driven, the widths on each wire must agree, and no component may
+   * have three-state outputs. The simulator would come up with unknown or error values otherwise,
+   * which the expressions cannot express.
+   */
+  static Map<Instance, Expression[]> computeOutputExpressions(Circuit circuit, Map<Instance, String> pinNames) throws AnalyzeException {
+    final var expressionMap = computeExpressionMap(circuit, pinNames);
+    for (final var comp : circuit.getNonWires()) {
+      final var factory = comp.getFactory();
+      if (factory instanceof Tunnel) continue;
+      if (!(factory instanceof Pin) && factory.hasThreeStateDrivers(comp.getAttributeSet())) {
+        throw new AnalyzeException.CannotHandle(factory.getDisplayName());
+      }
+      for (final var end : comp.getEnds()) {
+        final var bundle = circuit.wires.getWireBundle(end.getLocation());
+        if (bundle != null && !bundle.isValid()) {
+          throw new AnalyzeException.CannotHandle("incompatible widths");
+        }
+        if (!end.isInput() || factory instanceof Pin || factory instanceof SplitterFactory) continue;
+        for (var b = 0; b < end.getWidth().getWidth(); b++) {
+          if (!expressionMap.containsKey(new LocationBit(end.getLocation(), b))) {
+            throw new AnalyzeException.CannotHandle("floating input");
+          }
+        }
+      }
+    }
+    final var ret = new HashMap<Instance, Expression[]>();
+    for (final var pin : pinNames.keySet()) {
+      if (Pin.FACTORY.isInputPin(pin)) continue;
+      final var exprs = new Expression[pin.getAttributeValue(StdAttr.WIDTH).getWidth()];
+      for (var b = 0; b < exprs.length; b++) {
+        exprs[b] = expressionMap.get(new LocationBit(pin.getLocation(), b));
+      }
+      ret.put(pin, exprs);
+    }
+    return ret;
+  }
+
+  private static ExpressionMap computeExpressionMap(Circuit circuit, Map<Instance, String> pinNames) throws AnalyzeException {
+    final var expressionMap = new ExpressionMap(circuit);
     for (final var entry : pinNames.entrySet()) {
       final var pin = entry.getKey();
       final var label = entry.getValue();
@@ -125,10 +199,6 @@ public class Analyze {
           final var e = Expressions.variable(width > 1 ? label + "[" + b + "]" : label);
           expressionMap.put(new LocationBit(pin.getLocation(), b), e);
         }
-        inputVars.add(new Var(label, width));
-      } else {
-        outputPins.add(pin);
-        outputVars.add(new Var(label, width));
       }
     }
 
@@ -149,17 +219,7 @@ public class Analyze {
       final var expr = checkForCircularExpressions(expressionMap);
       if (expr != null) throw new AnalyzeException.Circular();
     }
-
-    model.setVariables(inputVars, outputVars);
-    for (final var pin : outputPins) {
-      final var label = pinNames.get(pin);
-      final var width = pin.getAttributeValue(StdAttr.WIDTH).getWidth();
-      for (var b = 0; b < width; b++) {
-        final var loc = new LocationBit(pin.getLocation(), b);
-        final var name = (width > 1 ? label + "[" + b + "]" : label);
-        model.getOutputExpressions().setExpression(name, expressionMap.get(loc));
-      }
-    }
+    return expressionMap;
   }
 
   //
@@ -191,59 +251,298 @@ public class Analyze {
     final var inputCount = inputNames.size();
     final var rowCount = 1 << inputCount;
     final var columns = new Entry[outputNames.size()][rowCount];
+    final var table = new TableRows(proj, circuit, inputPins, outputPins, inputCount, columns);
+
+    // Circuits made of gates only are evaluated for 64 rows at once. Otherwise rows are visited
+    // in Gray code order, so that going from one row to the next changes a single input bit and
+    // the settled state of the previous row can be reused. That is only valid if the circuit is
+    // combinational: none of its components keeps any data, and no output feeds back into the
+    // inputs, as in a latch built from gates, whose value depends on the previous row.
+    final var sliced = rowCount >= 64 ? BitSliceEvaluator.compile(circuit) : null;
+    if (sliced == null && !hasFeedback(circuit)) {
+      final var probe = table.newState(0);
+      probe.getPropagator().propagate();
+      table.incremental = !hasComponentData(probe);
+    }
 
-    for (var i = 0; i < rowCount; i++) {
-      final var circuitState = new CircuitState(proj, circuit);
+    final var units = sliced != null ? rowCount / 64 : rowCount;
+    final var numTasks =
+        Math.max(1, Math.min(4 * Runtime.getRuntime().availableProcessors(), rowCount / 256));
+    final var tasks = new ArrayList<Callable<Void>>(numTasks);
+    for (var t = 0; t < numTasks; t++) {
+      final var first = (int) ((long) units * t / numTasks);
+      final var last = (int) ((long) units * (t + 1) / numTasks);
+      tasks.add(() -> {
+        if (sliced != null) table.computeSlicedRows(sliced, first, last);
+        else table.computeRows(first, last);
+        return null;
+      });
+    }
+    if (numTasks == 1) {
+      if (sliced != null) table.computeSlicedRows(sliced, 0, units);
+      else table.computeRows(0, rowCount);
+    } else {
+      for (final var result : Propagator.Workers.POOL.invokeAll(tasks)) {
+        try {
+          result.get();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return;
+        } catch (ExecutionException e) {
+          if (e.getCause() instanceof RuntimeException re) throw re;
+          throw new IllegalStateException(e.getCause());
+        }
+      }
+    }
+
+    model.setVariables(inputVars, outputVars);
+    for (var i = 0; i < columns.length; i++) {
+      model.getTruthTable().setOutputColumn(i, columns[i]);
+    }
+  }
+
+  /** Computes the rows of a truth table for {@link #computeTable}; see there. */
+  private static class TableRows {
+    final Project proj;
+    final Circuit circuit;
+    final Instance[] inputPins;
+    final Instance[] outputPins;
+    final int[] inputShift; // position of the lowest bit of each input pin in a row number
+    final int[] inputWidth;
+    final Entry[][] columns;
+    boolean incremental;
+
+    TableRows(
+        Project proj,
+        Circuit circuit,
+        List<Instance> inputPins,
+        List<Instance> outputPins,
+        int inputCount,
+        Entry[][] columns) {
+      this.proj = proj;
+      this.circuit = circuit;
+      this.inputPins = inputPins.toArray(new Instance[0]);
+      this.outputPins = outputPins.toArray(new Instance[0]);
+      this.columns = columns;
+      inputShift = new int[this.inputPins.length];
+      inputWidth = new int[this.inputPins.length];
       var incol = 0;
-      for (final var pin : inputPins) {
+      for (var p = 0; p < this.inputPins.length; p++) {
+        inputWidth[p] = this.inputPins[p].getAttributeValue(StdAttr.WIDTH).getWidth();
+        incol += inputWidth[p];
+        inputShift[p] = inputCount - incol; // the first column is the highest bit
+      }
+    }
+
+    long inputValue(int row, int pin) {
+      final var mask = (1L << inputWidth[pin]) - 1;
+      return (row >>> inputShift[pin]) & mask;
+    }
+
+    CircuitState newState(int row) {
+      final var state = new CircuitState(proj, circuit);
+      for (var p = 0; p < inputPins.length; p++) {
+        final var pinState = state.getInstanceState(inputPins[p]);
+        Pin.FACTORY.setValue(pinState, Value.createKnown(inputWidth[p], inputValue(row, p)));
+      }
+      return state;
+    }
+
+    /**
+     * Computes the rows 64 * first (inclusive) to 64 * last (exclusive) with the given evaluator,
+     * which must have been compiled from the same circuit.
+     */
+    void computeSlicedRows(BitSliceEvaluator evaluator, int first, int last) {
+      // the rows of one word differ in their lowest 6 bits only
+      final long[] lowBits = {
+        0xAAAAAAAAAAAAAAAAL, 0xCCCCCCCCCCCCCCCCL, 0xF0F0F0F0F0F0F0F0L,
+        0xFF00FF00FF00FF00L, 0xFFFF0000FFFF0000L, 0xFFFFFFFF00000000L
+      };
+      final var inputRowBit = new int[evaluator.getInputBits()];
+      for (var k = 0; k < evaluator.getInputPinCount(); k++) {
+        final var p = indexOf(inputPins, evaluator.getInputPin(k));
+        for (var b = 0; b < inputWidth[p]; b++) {
+          inputRowBit[evaluator.getInputOffset(k) + b] = inputShift[p] + b;
+        }
+      }
+      final var outputColumn = new int[evaluator.getOutputBits()];
+      for (var k = 0; k < evaluator.getOutputPinCount(); k++) {
+        final var pin = evaluator.getOutputPin(k);
+        var col = 0;
+        for (final var other : outputPins) {
+          if (other == pin) break;
+          col += other.getAttributeValue(StdAttr.WIDTH).getWidth();
+        }
         final var width = pin.getAttributeValue(StdAttr.WIDTH).getWidth();
-        final var v = new Value[width];
-        for (var b = width - 1; b >= 0; b--) {
-          var value = TruthTable.isInputSet(i, incol++, inputCount);
-          v[b] = value ? Value.TRUE : Value.FALSE;
+        for (var b = 0; b < width; b++) {
+          outputColumn[evaluator.getOutputOffset(k) + b] = col + width - 1 - b;
         }
-        final var pinState = circuitState.getInstanceState(pin);
-        Pin.FACTORY.setValue(pinState, Value.create(v));
       }
 
-      final var prop = circuitState.getPropagator();
-      prop.propagate();
-      /*
-       * TODO for the SimulatorPrototype class do { prop.step(); } while
-       * (prop.isPending());
-       */
-      // TODO: Search for circuit state
-
-      if (prop.isOscillating()) {
-        for (var j = 0; j < columns.length; j++) {
-          columns[j][i] = Entry.OSCILLATE_ERROR;
+      final var words = evaluator.newWords();
+      final var outputs = new long[outputColumn.length];
+      for (var w = first; w < last; w++) {
+        final var base = w << 6;
+        for (var i = 0; i < inputRowBit.length; i++) {
+          final var bit = inputRowBit[i];
+          words[i] = bit < 6 ? lowBits[bit] : ((base >>> bit) & 1) != 0 ? -1L : 0L;
         }
-      } else {
-        var outcol = 0;
-        for (final var pin : outputPins) {
-          int width = pin.getAttributeValue(StdAttr.WIDTH).getWidth();
-          final var pinState = circuitState.getInstanceState(pin);
-          Entry out;
-          for (int b = width - 1; b >= 0; b--) {
-            final var outValue = Pin.FACTORY.getValue(pinState).get(b);
-            if (outValue == Value.TRUE)
-              out = Entry.ONE;
-            else if (outValue == Value.FALSE)
-              out = Entry.ZERO;
-            else if (outValue == Value.ERROR)
-              out = Entry.BUS_ERROR;
-            else
-              out = Entry.DONT_CARE;
-            columns[outcol++][i] = out;
+        evaluator.evaluate(words, outputs);
+        for (var i = 0; i < outputs.length; i++) {
+          final var column = columns[outputColumn[i]];
+          for (var j = 0; j < 64; j++) {
+            column[base + j] = ((outputs[i] >>> j) & 1) != 0 ? Entry.ONE : Entry.ZERO;
           }
         }
       }
     }
 
-    model.setVariables(inputVars, outputVars);
-    for (var i = 0; i < columns.length; i++) {
-      model.getTruthTable().setOutputColumn(i, columns[i]);
+    private static int indexOf(Instance[] pins, Instance pin) {
+      for (var i = 0; i < pins.length; i++) {
+        if (pins[i] == pin) return i;
+      }
+      throw new IllegalArgumentException("pin is not part of the table");
     }
+
+    /** Computes the rows with Gray code indices first (inclusive) to last (exclusive). */
+    void computeRows(int first, int last) {
+      CircuitState state = null;
+      var prevRow = 0;
+      for (var gray = first; gray < last; gray++) {
+        final var row = gray ^ (gray >>> 1);
+        if (state == null || !incremental) {
+          state = newState(row);
+        } else {
+          for (var p = 0; p < inputPins.length; p++) {
+            final var value = inputValue(row, p);
+            if (value == inputValue(prevRow, p)) continue;
+            final var pinState = state.getInstanceState(inputPins[p]);
+            Pin.FACTORY.setValue(pinState, Value.createKnown(inputWidth[p], value));
+            state.markComponentAsDirty(inputPins[p].getComponent());
+          }
+        }
+        prevRow = row;
+
+        final var prop = state.getPropagator();
+        prop.propagate();
+
+        if (prop.isOscillating()) {
+          for (var j = 0; j < columns.length; j++) {
+            columns[j][row] = Entry.OSCILLATE_ERROR;
+          }
+          state = null; // the next row starts from scratch
+        } else {
+          var outcol = 0;
+          for (final var pin : outputPins) {
+            int width = pin.getAttributeValue(StdAttr.WIDTH).getWidth();
+            final var pinState = state.getInstanceState(pin);
+            Entry out;
+            for (int b = width - 1; b >= 0; b--) {
+              final var outValue = Pin.FACTORY.getValue(pinState).get(b);
+              if (outValue == Value.TRUE)
+                out = Entry.ONE;
+              else if (outValue == Value.FALSE)
+                out = Entry.ZERO;
+              else if (outValue == Value.ERROR)
+                out = Entry.BUS_ERROR;
+              else
+                out = Entry.DONT_CARE;
+              columns[outcol++][row] = out;
+            }
+          }
+        }
+      }
+    }
+  }
+
+  // Returns true if a component other than a pin or subcircuit keeps data in the state tree.
+  private static boolean hasComponentData(CircuitState state) {
+    for (final var comp : state.getCircuit().getNonWires()) {
+      final var data = state.getData(comp);
+      if (data != null && !(data instanceof CircuitState) && !(comp.getFactory() instanceof Pin)) {
+        return true;
+      }
+    }
+    for (final var sub : state.getSubStates()) {
+      if (hasComponentData(sub)) return true;
+    }
+    return false;
+  }
+
+  /**
+   * Returns true if an output of a component can reach one of its inputs, directly or through other
+   * components. Each subcircuit is taken as a component whose inputs all reach all its outputs,
+   * and is checked itself as well.
+   */
+  static boolean hasFeedback(Circuit circuit) {
+    return hasFeedback(circuit, new HashSet<>());
+  }
+
+  private static boolean hasFeedback(Circuit circuit, Set<Circuit> checked) {
+    if (!checked.add(circuit)) return false;
+    // the components driven by each component; splitters and tunnels only join wires
+    final var driven = new HashMap<Component, Set<Component>>();
+    for (final var comp : circuit.getNonWires()) {
+      final var factory = comp.getFactory();
+      if (comp instanceof Splitter || factory instanceof Tunnel) continue;
+      if (factory instanceof SubcircuitFactory sub && hasFeedback(sub.getSubcircuit(), checked)) {
+        return true;
+      }
+      final var targets = new HashSet<Component>();
+      for (final var end : comp.getEnds()) {
+        if (!end.isOutput()) continue;
+        for (final var loc : getConnectedPoints(circuit, end.getLocation())) {
+          for (final var other : circuit.getNonWires(loc)) {
+            if (other == comp && loc.equals(end.getLocation())) continue; // same end
+            for (final var otherEnd : other.getEnds()) {
+              if (otherEnd.isInput() && otherEnd.getLocation().equals(loc)) targets.add(other);
+            }
+          }
+        }
+      }
+      driven.put(comp, targets);
+    }
+    // depth-first search for a cycle; a component is on the stack while in visiting
+    final var visiting = new HashSet<Component>();
+    final var done = new HashSet<Component>();
+    for (final var start : driven.keySet()) {
+      if (done.contains(start)) continue;
+      final var stack = new ArrayList<Iterator<Component>>();
+      final var path = new ArrayList<Component>();
+      visiting.add(start);
+      path.add(start);
+      stack.add(driven.get(start).iterator());
+      while (!stack.isEmpty()) {
+        final var it = stack.get(stack.size() - 1);
+        if (!it.hasNext()) {
+          final var comp = path.remove(path.size() - 1);
+          stack.remove(stack.size() - 1);
+          visiting.remove(comp);
+          done.add(comp);
+          continue;
+        }
+        final var next = it.next();
+        if (visiting.contains(next)) return true;
+        if (done.contains(next) || !driven.containsKey(next)) continue;
+        visiting.add(next);
+        path.add(next);
+        stack.add(driven.get(next).iterator());
+      }
+    }
+    return false;
+  }
+
+  // Returns the points that carry any bit of the value at the given point, across splitters.
+  private static Set<Location> getConnectedPoints(Circuit circuit, Location loc) {
+    final var bundle = circuit.wires.getWireBundle(loc);
+    if (bundle == null) return Set.of(loc);
+    final var ret = new HashSet<Location>(bundle.points);
+    if (bundle.threads != null) {
+      for (final var thread : bundle.threads) {
+        for (final var threadBundle : thread.getBundles()) ret.addAll(threadBundle.b.points);
+      }
+    }
+    return ret;
   }
 
   // computes outputs of affected components
@@ -341,6 +640,7 @@ public class Analyze {
         }
       } else if (comp.getFactory() instanceof Pin) { // pins are handled elsewhere
       } else if (comp.getFactory() instanceof SplitterFactory) { // splitters are handled elsewhere
+      } else if (comp.getFactory() instanceof Tunnel) { // tunnels are part of the wire bundles
       } else {
         throw new AnalyzeException.CannotHandle(comp.getFactory().getDisplayName());
       }
@@ -0,0 +1,269 @@
+/*
+ * Logisim-evolution - digital logic design tool and simulator
+ * Copyright by the Logisim-evolution developers
+ *
+ * https://github.com/logisim-evolution/
+ *
+ * This is free software released under GNU GPLv3 license
+ */
+
+package com.cburch.logisim.circuit;
+
+import com.cburch.logisim.analyze.model.Expression;
+import com.cburch.logisim.instance.Instance;
+import com.cburch.logisim.instance.StdAttr;
+import com.cburch.logisim.std.wiring.Pin;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Evaluates a combinational circuit for 64 input combinations at once. The circuit is compiled
+ * from the expressions {@link Analyze} computes for its outputs into a list of AND, OR, XOR and
+ * NOT operations on 64-bit words, where bit j of each word belongs to the j-th combination. That
+ * only works for circuits built from gates, constants, splitters and tunnels without feedback;
+ * for anything else {@link #compile} returns null and the caller has to simulate.
+ *
+ * <p>Every input and output bit is 0 or 1; there is no encoding for unknown or error values. So
+ * a circuit is only compiled if the simulator is certain to settle on the same values whenever
+ * all its input pins are 0 or 1: circuits with a floating gate input, wires of conflicting
+ * widths or three-state outputs are rejected. Combinations with unknown input values have to be
+ * left to the simulator by the caller.
+ *
+ * <p>An instance does not change after compilation and can be used by several threads, each with
+ * its own array from {@link #newWords}.
+ */
+public final class BitSliceEvaluator {
+  private static final byte CONST = 0;
+  private static final byte NOT = 1;
+  private static final byte AND = 2;
+  private static final byte OR = 3;
+  private static final byte XOR = 4;
+  private static final byte XNOR = 5;
+
+  private final Instance[] inputPins;
+  private final Instance[] outputPins;
+  private final int[] inputOffset;
+  private final int[] outputOffset;
+  private final int inputBits;
+  private final int outputBits;
+  // operation k writes word inputBits + k; its operands are indices of earlier words
+  private final byte[] op;
+  private final int[] argA;
+  private final int[] argB;
+  private final int[] outputWord;
+
+  /**
+   * Compiles the given circuit, or returns null if it contains components other than gates,
+   * constants, splitters and tunnels, has feedback, has an input or output bit that nothing
+   * drives, has wires of conflicting widths, or has three-state outputs.
+   */
+  public static BitSliceEvaluator compile(Circuit circuit) {
+    final var pinNames = Analyze.getPinLabels(circuit);
+    final Map<Instance, Expression[]> exprs;
+    try {
+      exprs = Analyze.computeOutputExpressions(circuit, pinNames);
+    } catch (AnalyzeException e) {
+      return null;
+    }
+    final var inputs = new ArrayList<Instance>();
+    final var outputs = new ArrayList<Instance>();
+    for (final var pin : pinNames.keySet()) {
+      (Pin.FACTORY.isInputPin(pin) ? inputs : outputs).add(pin);
+    }
+    final var compiler = new Compiler(pinNames, inputs);
+    final var outputWords = new ArrayList<Integer>();
+    for (final var pin : outputs) {
+      for (final var expr : exprs.get(pin)) {
+        if (expr == null) return null;
+        final var word = compiler.compile(expr);
+        if (word < 0) return null;
+        outputWords.add(word);
+      }
+    }
+    return new BitSliceEvaluator(inputs, outputs, compiler, outputWords);
+  }
+
+  private BitSliceEvaluator(
+      ArrayList<Instance> inputs,
+      ArrayList<Instance> outputs,
+      Compiler compiler,
+      ArrayList<Integer> outputWords) {
+    inputPins = inputs.toArray(new Instance[0]);
+    outputPins = outputs.toArray(new Instance[0]);
+    inputOffset = new int[inputPins.length];
+    outputOffset = new int[outputPins.length];
+    var bits = 0;
+    for (var p = 0; p < inputPins.length; p++) {
+      inputOffset[p] = bits;
+      bits += width(inputPins[p]);
+    }
+    inputBits = bits;
+    bits = 0;
+    for (var p = 0; p < outputPins.length; p++) {
+      outputOffset[p] = bits;
+      bits += width(outputPins[p]);
+    }
+    outputBits = bits;
+    final var count = compiler.op.size();
+    op = new byte[count];
+    argA = new int[count];
+    argB = new int[count];
+    for (var k = 0; k < count; k++) {
+      op[k] = compiler.op.get(k);
+      argA[k] = compiler.argA.get(k);
+      argB[k] = compiler.argB.get(k);
+    }
+    outputWord = new int[outputWords.size()];
+    for (var i = 0; i < outputWord.length; i++) outputWord[i] = outputWords.get(i);
+  }
+
+  private static int width(Instance pin) {
+    return pin.getAttributeValue(StdAttr.WIDTH).getWidth();
+  }
+
+  public int getInputPinCount() {
+    return inputPins.length;
+  }
+
+  public Instance getInputPin(int pin) {
+    return inputPins[pin];
+  }
+
+  /** Returns the index of the word that holds bit 0 of the given input pin. */
+  public int getInputOffset(int pin) {
+    return inputOffset[pin];
+  }
+
+  public int getOutputPinCount() {
+    return outputPins.length;
+  }
+
+  public Instance getOutputPin(int pin) {
+    return outputPins[pin];
+  }
+
+  /** Returns the index of the output word that holds bit 0 of the given output pin. */
+  public int getOutputOffset(int pin) {
+    return outputOffset[pin];
+  }
+
+  public int getInputBits() {
+    return inputBits;
+  }
+
+  public int getOutputBits() {
+    return outputBits;
+  }
+
+  /** Allocates the scratch words for {@link #evaluate}; the input bits come first. */
+  public long[] newWords() {
+    return new long[inputBits + op.length];
+  }
+
+  /**
+   * Evaluates the circuit. The first {@link #getInputBits} entries of words must hold the input
+   * bits, in the order of the input pins and from bit 0 up; the output bits are stored in outputs
+   * in the same way.
+   */
+  public void evaluate(long[] words, long[] outputs) {
+    for (int k = 0, w = inputBits; k < op.length; k++, w++) {
+      words[w] =
+          switch (op[k]) {
+            case CONST -> argA[k] == 0 ? 0L : -1L;
+            case NOT -> ~words[argA[k]];
+            case AND -> words[argA[k]] & words[argB[k]];
+            case OR -> words[argA[k]] | words[argB[k]];
+            case XOR -> words[argA[k]] ^ words[argB[k]];
+            default -> ~(words[argA[k]] ^ words[argB[k]]);
+          };
+    }
+    for (var i = 0; i < outputWord.length; i++) outputs[i] = words[outputWord[i]];
+  }
+
+  /** Turns expressions into operations, sharing the common subexpressions. */
+  private static class Compiler implements Expression.Visitor<Integer> {
+    final HashMap<String, Integer> variables = new HashMap<>();
+    final IdentityHashMap<Expression, Integer> done = new IdentityHashMap<>();
+    final ArrayList<Byte> op = new ArrayList<>();
+    final ArrayList<Integer> argA = new ArrayList<>();
+    final ArrayList<Integer> argB = new ArrayList<>();
+    final int inputBits;
+
+    Compiler(Map<Instance, String> pinNames, ArrayList<Instance> inputs) {
+      var bits = 0;
+      for (final var pin : inputs) {
+        final var label = pinNames.get(pin);
+        final var width = width(pin);
+        for (var b = 0; b < width; b++) {
+          variables.put(width > 1 ? label + "[" + b + "]" : label, bits++);
+        }
+      }
+      inputBits = bits;
+    }
+
+    // Returns the index of the word holding the value of the expression, or -1 if it contains
+    // something that cannot be evaluated.
+    int compile(Expression expr) {
+      final var known = done.get(expr);
+      if (known != null) return known;
+      final var ret = expr.visit(this);
+      done.put(expr, ret);
+      return ret;
+    }
+
+    private int emit(byte code, int a, int b) {
+      if (a < 0 || b < 0) return -1;
+      op.add(code);
+      argA.add(a);
+      argB.add(b);
+      return inputBits + op.size() - 1;
+    }
+
+    @Override
+    public Integer visitVariable(String name) {
+      return variables.getOrDefault(name, -1);
+    }
+
+    @Override
+    public Integer visitConstant(int value) {
+      return emit(CONST, value & 1, 0);
+    }
+
+    @Override
+    public Integer visitNot(Expression a) {
+      return emit(NOT, compile(a), 0);
+    }
+
+    @Override
+    public Integer visitBinary(Expression a, Expression b, Expression.Op op) {
+      return -1;
+    }
+
+    @Override
+    public Integer visitAnd(Expression a, Expression b) {
+      return emit(AND, compile(a), compile(b));
+    }
+
+    @Override
+    public Integer visitOr(Expression a, Expression b) {
+      return emit(OR, compile(a), compile(b));
+    }
+
+    @Override
+    public Integer visitXor(Expression a, Expression b) {
+      return emit(XOR, compile(a), compile(b));
+    }
+
+    @Override
+    public Integer visitXnor(Expression a, Expression b) {
+      return emit(XNOR, compile(a), compile(b));
+    }
+
+    @Override
+    public Integer visitEq(Expression a, Expression b) {
+      return emit(XNOR, compile(a), compile(b));
+    }
+  }
+}
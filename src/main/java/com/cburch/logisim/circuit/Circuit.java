@@ -228,6 +228,7 @@ public class Circuit {
   private final EventSourceWeakSupport<CircuitListener> listeners = new EventSourceWeakSupport<>();
   private LinkedHashSet<Component> comps = new LinkedHashSet<>(); // doesn't include wires
   CircuitWires wires = new CircuitWires();
+  final LocationIndex locations = new LocationIndex(); // numbers the points of the states
   private final List<Component> clocks = new ArrayList<>();
   private final CircuitLocker locker;
 
@@ -466,20 +467,50 @@ public class Circuit {
    * Code taken from Cornell's version of Logisim: http://www.cs.cornell.edu/courses/cs3410/2015sp/
    */
   public void doTestVector(Project project, Instance[] pin, Value[] val) throws TestException {
-    final var state = project.getCircuitState();
-    state.reset();
+    doTestVector(project.getCircuitState(), pin, val);
+  }
+
+  /**
+   * Resets the given state of this circuit, applies the inputs of one test vector row to it and
+   * checks the outputs. Separate states can be tested from different threads at the same time.
+   */
+  public void doTestVector(CircuitState state, Instance[] pin, Value[] val) throws TestException {
+    doTestVector(state, pin, val, true, 0);
+  }
+
+  /**
+   * Applies the inputs of one test vector row to the given state of this circuit, runs the given
+   * number of clock ticks and checks the outputs. If reset is false, the row starts from whatever
+   * state the previous row left behind. Entries of pin may be null for columns that are not pins.
+   */
+  public void doTestVector(CircuitState state, Instance[] pin, Value[] val, boolean reset, int ticks)
+      throws TestException {
+    final var prop = state.getPropagator();
+    if (reset) {
+      // resetting the propagator also restarts the clocks from their first tick
+      if (prop.getRootState() == state) prop.reset();
+      else state.reset();
+    }
 
     for (var i = 0; i < pin.length; ++i) {
-      if (Pin.FACTORY.isInputPin(pin[i])) {
+      if (pin[i] != null && Pin.FACTORY.isInputPin(pin[i])) {
         final var pinState = state.getInstanceState(pin[i]);
         Pin.FACTORY.setValue(pinState, val[i]);
+        // after a reset all components are dirty anyway, but not when continuing
+        if (!reset) state.markComponentAsDirty(pin[i].getComponent());
       }
     }
 
-    final var prop = state.getPropagator();
-
     try {
       prop.propagate();
+      if (prop.isOscillating()) throw new TestException("oscillation detected");
+      for (var i = 0; i < ticks; i++) {
+        if (!prop.toggleClocks()) throw new TestException("no clock to tick");
+        prop.propagate();
+        if (prop.isOscillating()) throw new TestException("oscillation detected");
+      }
+    } catch (TestException e) {
+      throw e;
     } catch (Throwable thr) {
       thr.printStackTrace();
     }
@@ -489,8 +520,8 @@ public class Circuit {
     FailException err = null;
 
     for (var i = 0; i < pin.length; i++) {
+      if (pin[i] == null || Pin.FACTORY.isInputPin(pin[i])) continue;
       final var pinState = state.getInstanceState(pin[i]);
-      if (Pin.FACTORY.isInputPin(pin[i])) continue;
 
       final var v = Pin.FACTORY.getValue(pinState);
       if (!val[i].compatible(v)) {
@@ -15,23 +15,23 @@ import com.cburch.logisim.comp.ComponentDrawContext;
 import com.cburch.logisim.comp.ComponentState;
 import com.cburch.logisim.data.Location;
 import com.cburch.logisim.data.Value;
+import com.cburch.logisim.file.Options;
 import com.cburch.logisim.instance.Instance;
 import com.cburch.logisim.instance.InstanceData;
+import com.cburch.logisim.instance.InstanceComponent;
 import com.cburch.logisim.instance.InstanceFactory;
 import com.cburch.logisim.instance.InstanceState;
+import com.cburch.logisim.instance.InstanceStateImpl;
 import com.cburch.logisim.proj.Project;
-import com.cburch.logisim.std.io.extra.Buzzer;
-import com.cburch.logisim.std.memory.Ram;
-import com.cburch.logisim.std.memory.RamState;
 import com.cburch.logisim.std.wiring.Clock;
 import com.cburch.logisim.std.wiring.Pin;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.ConcurrentModificationException;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class CircuitState implements InstanceData {
 
@@ -75,6 +75,7 @@ public class CircuitState implements InstanceData {
         } else {
           if (base != null) base.checkComponentEnds(CircuitState.this, comp);
           dirtyComponents.remove(comp);
+          instanceStates.remove(comp);
         }
       } else if (action == CircuitEvent.ACTION_CLEAR) {
         /* Whole circuit was cleared */
@@ -90,22 +91,24 @@ public class CircuitState implements InstanceData {
           }
         }
         componentData.clear();
-        values.clear();
+        instanceStates.clear();
+        Arrays.fill(values, null);
         dirtyComponents.clear();
         dirtyPoints.clear();
-        causes.clear();
+        Arrays.fill(causes, null);
       } else if (action == CircuitEvent.ACTION_INVALIDATE) {
         final var comp = (Component) event.getData();
         markComponentAsDirty(comp);
         // If simulator is in single step mode, we want to hilight the
         // invalidated components (which are likely Pins, Buttons, or other
         // inputs), so pass this component to the simulator for display.
-        proj.getSimulator().addPendingInput(CircuitState.this, comp);
+        if (proj != null) proj.getSimulator().addPendingInput(CircuitState.this, comp);
         // TODO detemine if this should really be missing if (base != null) base.checkComponentEnds(CircuitState.this, comp);
       } else if (action == CircuitEvent.TRANSACTION_DONE) {
         final var map = event.getResult().getReplacementMap(circuit);
         if (map == null) return;
         for (final var comp : map.getRemovals()) {
+          instanceStates.remove(comp);
           final var compState = componentData.remove(comp);
           if (compState != null) continue;
           Class<?> compFactory = comp.getFactory().getClass();
@@ -117,7 +120,9 @@ public class CircuitState implements InstanceData {
               break;
             }
           }
-          if (!found && compState instanceof RamState state) Ram.closeHexFrame(state);
+          if (!found && compState instanceof ComponentDataGuiProvider guiProvider) {
+            guiProvider.destroy();
+          }
           if (!found && compState instanceof CircuitState sub) {
             sub.parentState = null;
             subStates.remove(sub);
@@ -129,7 +134,8 @@ public class CircuitState implements InstanceData {
 
   private final MyCircuitListener myCircuitListener = new MyCircuitListener();
   private Propagator base = null; // base of tree of CircuitStates
-  private final Project proj; // project where circuit liespr
+  private final Project proj; // project where circuit lies, null when simulated without one
+  private final Options options; // options used when there is no project
   private final Circuit circuit; // circuit being simulated
 
   private CircuitState parentState = null; // parent in tree of CircuitStates
@@ -138,17 +144,37 @@ public class CircuitState implements InstanceData {
   private HashSet<CircuitState> subStates = new HashSet<>();
 
   private CircuitWires.State wireData = null;
+  private int wireMapVersion = -1; // version of the wiring seen by the last processDirtyPoints
   private final HashMap<Component, Object> componentData = new HashMap<>();
-  private final Map<Location, Value> values = new HashMap<>();
-  private CopyOnWriteArraySet<Component> dirtyComponents = new CopyOnWriteArraySet<>();
-  private final CopyOnWriteArraySet<Location> dirtyPoints = new CopyOnWriteArraySet<>();
-  final HashMap<Location, SetData> causes = new HashMap<>();
+  // One InstanceState per component, created on first use. They hold no data of their own (that
+  // lives in componentData), so the same object serves every evaluation of the component.
+  private final ConcurrentHashMap<Component, InstanceStateImpl> instanceStates =
+      new ConcurrentHashMap<>();
+  // The values of the wires and the causes of the values that components set, indexed by the
+  // number of their location in circuit.locations; they grow as locations get numbered.
+  private Value[] values = new Value[0];
+  private final DirtyQueue<Component> dirtyComponents = new DirtyQueue<>();
+  private final DirtyQueue<Location> dirtyPoints = new DirtyQueue<>();
+  private SetData[] causes = new SetData[0];
 
   private static int lastId = 0;
   private final int id = lastId++;
 
   public CircuitState(Project proj, Circuit circuit) {
+    this(proj, null, circuit);
+  }
+
+  /**
+   * Creates a state that is simulated without a project, and so without a simulator thread or any
+   * frame. The options are those of the file the circuit belongs to.
+   */
+  public CircuitState(Options options, Circuit circuit) {
+    this(null, options, circuit);
+  }
+
+  private CircuitState(Project proj, Options options, Circuit circuit) {
     this.proj = proj;
+    this.options = options;
     this.circuit = circuit;
     circuit.addCircuitListener(myCircuitListener);
   }
@@ -159,7 +185,7 @@ public class CircuitState implements InstanceData {
   }
 
   public CircuitState cloneState() {
-    final var ret = new CircuitState(proj, circuit);
+    final var ret = new CircuitState(proj, options, circuit);
     ret.copyFrom(this, new Propagator(ret));
     ret.parentComp = null;
     ret.parentState = null;
@@ -167,7 +193,7 @@ public class CircuitState implements InstanceData {
   }
 
   public boolean containsKey(Location pt) {
-    return values.containsKey(pt);
+    return getValueByWire(pt) != null;
   }
 
   private void copyFrom(CircuitState src, Propagator base) {
@@ -177,7 +203,7 @@ public class CircuitState implements InstanceData {
     final var substateData = new HashMap<CircuitState, CircuitState>();
     this.subStates = new HashSet<>();
     for (final var oldSub : src.subStates) {
-      final var newSub = new CircuitState(src.proj, oldSub.circuit);
+      final var newSub = new CircuitState(src.proj, src.options, oldSub.circuit);
       newSub.copyFrom(oldSub, base);
       newSub.parentState = this;
       this.subStates.add(newSub);
@@ -194,17 +220,16 @@ public class CircuitState implements InstanceData {
         this.componentData.put(key, newValue);
       }
     }
-    for (final var key : src.causes.keySet()) {
-      final var oldValue = src.causes.get(key);
-      final var newValue = oldValue.cloneFor(this);
-      this.causes.put(key, newValue);
+    this.causes = new SetData[src.causes.length];
+    for (var i = 0; i < causes.length; i++) {
+      if (src.causes[i] != null) this.causes[i] = src.causes[i].cloneFor(this);
     }
     if (src.wireData != null) {
       this.wireData = (CircuitWires.State) src.wireData.clone();
     }
-    this.values.putAll(src.values);
-    this.dirtyComponents.addAll(src.dirtyComponents);
-    this.dirtyPoints.addAll(src.dirtyPoints);
+    this.values = src.values.clone();
+    this.dirtyComponents.addAll(src.dirtyComponents.snapshot());
+    this.dirtyPoints.addAll(src.dirtyPoints.snapshot());
   }
 
   public void drawOscillatingPoints(ComponentDrawContext context) {
@@ -220,8 +245,25 @@ public class CircuitState implements InstanceData {
 
   Value getComponentOutputAt(Location p) {
     // for CircuitWires - to get values, ignoring wires' contributions
-    final var causeList = causes.get(p);
-    return Propagator.computeValue(causeList);
+    return Propagator.computeValue(getCause(circuit.locations.get(p)));
+  }
+
+  /** Returns the first cause of the value at the numbered location, or null if there is none. */
+  SetData getCause(int point) {
+    return point >= 0 && point < causes.length ? causes[point] : null;
+  }
+
+  /** Sets the first cause of the value at the numbered location; null removes all causes. */
+  void setCause(int point, SetData head) {
+    if (point >= causes.length) {
+      if (head == null) return;
+      causes = Arrays.copyOf(causes, capacityFor(point, causes.length));
+    }
+    causes[point] = head;
+  }
+
+  private int capacityFor(int point, int length) {
+    return Math.max(Math.max(point + 1, circuit.locations.size()), length + (length >> 1));
   }
 
   public Object getData(Component comp) {
@@ -229,9 +271,8 @@ public class CircuitState implements InstanceData {
   }
 
   public InstanceState getInstanceState(Component comp) {
-    final var factory = comp.getFactory();
-    if (factory instanceof InstanceFactory instanceFactory) {
-      return instanceFactory.createInstanceState(this, comp);
+    if (comp instanceof InstanceComponent instComp) {
+      return getInstanceState(instComp);
     }
     throw new RuntimeException("getInstanceState requires instance component");
   }
@@ -239,15 +280,30 @@ public class CircuitState implements InstanceData {
   public InstanceState getInstanceState(Instance instance) {
     final var factory = instance.getFactory();
     if (factory instanceof InstanceFactory) {
-      return factory.createInstanceState(this, instance);
+      return getInstanceState(instance.getComponent());
     }
     throw new RuntimeException("getInstanceState() requires instance component");
   }
 
+  private InstanceState getInstanceState(InstanceComponent comp) {
+    var ret = instanceStates.get(comp);
+    if (ret == null) {
+      ret = instanceStates.computeIfAbsent(comp, c -> new InstanceStateImpl(this, c));
+    }
+    // the component remembers the state it was last evaluated in (see e.g. Button)
+    if (comp.getInstanceStateImpl() != ret) comp.setInstanceStateImpl(ret);
+    return ret;
+  }
+
   public CircuitState getParentState() {
     return parentState;
   }
 
+  public Options getOptions() {
+    return proj != null ? proj.getOptions() : options;
+  }
+
+  /** Returns the project of the state, or null when it is simulated without one. */
   public Project getProject() {
     return proj;
   }
@@ -269,7 +325,7 @@ public class CircuitState implements InstanceData {
   }
 
   public Value getValue(Location pt) {
-    final var ret = values.get(pt);
+    final var ret = getValueByWire(pt);
     if (ret != null) return ret;
 
     final var wid = circuit.getWidth(pt);
@@ -277,7 +333,8 @@ public class CircuitState implements InstanceData {
   }
 
   Value getValueByWire(Location p) {
-    return values.get(p);
+    final var point = circuit.locations.get(p);
+    return point >= 0 && point < values.length ? values[point] : null;
   }
 
   CircuitWires.State getWireData() {
@@ -299,13 +356,7 @@ public class CircuitState implements InstanceData {
   }
 
   public void markComponentAsDirty(Component comp) {
-    try {
-      dirtyComponents.add(comp);
-    } catch (RuntimeException e) {
-      final var set = new CopyOnWriteArraySet<Component>();
-      set.add(comp);
-      dirtyComponents = set;
-    }
+    dirtyComponents.add(comp);
   }
 
   public void markComponentsDirty(Collection<Component> comps) {
@@ -318,67 +369,51 @@ public class CircuitState implements InstanceData {
 
   void processDirtyComponents() {
     if (!dirtyComponents.isEmpty()) {
-      // This seeming wasted copy is to avoid ConcurrentModifications
-      // if we used an iterator instead.
-      Object[] toProcess;
-      RuntimeException firstException = null;
-      for (var tries = 4; true; tries--) {
-        try {
-          toProcess = dirtyComponents.toArray();
-          break;
-        } catch (RuntimeException e) {
-          if (firstException == null) firstException = e;
-          if (tries == 0) {
-            toProcess = new Object[0];
-            dirtyComponents = new CopyOnWriteArraySet<>();
-            throw firstException;
-          }
-        }
-      }
-      dirtyComponents.clear();
-      for (final var compObj : toProcess) {
-        if (compObj instanceof Component comp) {
-          comp.propagate(this);
-          if (comp.getFactory() instanceof Pin && parentState != null) {
-            // should be propagated in superstate
+      // components marked dirty while these are propagated are handled in the next round
+      final var toProcess = dirtyComponents.drain();
+      for (var i = 0; i < toProcess.size(); i++) {
+        final var comp = toProcess.get(i);
+        comp.propagate(this);
+        if (comp.getFactory() instanceof Pin && parentState != null) {
+          // should be propagated in superstate, which the sibling states share and may be
+          // propagating into at the same time (see Propagator.forEachSubstate)
+          synchronized (parentState) {
             parentComp.propagate(parentState);
           }
         }
       }
     }
 
-    final var subs = new CircuitState[subStates.size()];
-    for (final var substate : subStates.toArray(subs)) {
-      substate.processDirtyComponents();
+    final var subs = subStates.toArray(new CircuitState[subStates.size()]);
+    if (base != null) {
+      base.forEachSubstate(subs, CircuitState::processDirtyComponents);
+    } else {
+      for (final var substate : subs) substate.processDirtyComponents();
     }
   }
 
   void processDirtyPoints() {
-    final var dirty = new HashSet<>(dirtyPoints);
-    dirtyPoints.clear();
-    if (circuit.wires.isMapVoided()) {
-      for (var i = 3; i >= 0; i--) {
-        try {
-          dirty.addAll(circuit.wires.points.getSplitLocations());
-          break;
-        } catch (ConcurrentModificationException e) {
-          // try again...
-          try {
-            Thread.sleep(1);
-          } catch (InterruptedException ignored) {
-          }
-          if (i == 0) e.printStackTrace();
-        }
-      }
+    final var mapVersion = circuit.wires.getMapVersion();
+    if (mapVersion != wireMapVersion) {
+      // the wiring changed since the last time, so every connection point may have changed
+      final var splitLocations = new ArrayList<Location>();
+      circuit.wires.addSplitLocations(splitLocations);
+      dirtyPoints.addAll(splitLocations);
+      wireMapVersion = mapVersion;
     }
+    final var dirty = dirtyPoints.drain();
     if (!dirty.isEmpty()) {
       circuit.wires.propagate(this, dirty);
     }
 
-    final var subs = new CircuitState[subStates.size()];
-    for (final var substate : subStates.toArray(subs)) {
-      /* TODO: Analyze why this bug happens, e.g. a substate that is null! */
-      if (substate != null) substate.processDirtyPoints();
+    final var subs = subStates.toArray(new CircuitState[subStates.size()]);
+    /* TODO: Analyze why this bug happens, e.g. a substate that is null! */
+    if (base != null) {
+      base.forEachSubstate(subs, CircuitState::processDirtyPoints);
+    } else {
+      for (final var substate : subs) {
+        if (substate != null) substate.processDirtyPoints();
+      }
     }
   }
 
@@ -386,11 +421,9 @@ public class CircuitState implements InstanceData {
     temporaryClock = null;
     wireData = null;
     for (final var comp : componentData.keySet()) {
-      if (comp.getFactory() instanceof Ram ram) {
-        final var remove = ram.reset(this, Instance.getInstanceFor(comp));
+      if (comp.getFactory() instanceof ComponentResetHandler handler) {
+        final var remove = handler.reset(this, Instance.getInstanceFor(comp));
         if (remove) componentData.put(comp, null);
-      } else if (comp.getFactory() instanceof Buzzer) {
-        Buzzer.stopBuzzerSound(comp, this);
       } else if (!(comp.getFactory() instanceof SubcircuitFactory)) {
         if (componentData.get(comp) instanceof ComponentDataGuiProvider guiProvider)
           guiProvider.destroy();
@@ -399,10 +432,10 @@ public class CircuitState implements InstanceData {
         componentData.put(comp, null);
       }
     }
-    values.clear();
+    Arrays.fill(values, null);
     dirtyComponents.clear();
     dirtyPoints.clear();
-    causes.clear();
+    Arrays.fill(causes, null);
     markAllComponentsDirty();
 
     for (CircuitState sub : subStates) {
@@ -449,10 +482,16 @@ public class CircuitState implements InstanceData {
     // for CircuitWires - to set value at point
     boolean changed;
     if (v == Value.NIL) {
-      final var old = values.remove(p);
+      final var point = circuit.locations.get(p);
+      if (point < 0 || point >= values.length) return;
+      final var old = values[point];
+      values[point] = null;
       changed = (old != null && old != Value.NIL);
     } else {
-      final var old = values.put(p, v);
+      final var point = circuit.locations.add(p);
+      if (point >= values.length) values = Arrays.copyOf(values, capacityFor(point, values.length));
+      final var old = values[point];
+      values[point] = v;
       changed = !v.equals(old);
     }
     if (changed) {
@@ -27,21 +27,29 @@ import com.cburch.logisim.util.GraphicsUtil;
 import com.cburch.logisim.util.IteratorUtil;
 import java.awt.Color;
 import java.awt.Graphics2D;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
-import java.util.concurrent.CopyOnWriteArraySet;
-import javax.swing.SwingUtilities;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 class CircuitWires {
 
+  /**
+   * How the wires, splitters and tunnels of a circuit connect its points. A map is built in one
+   * go by {@link #getBundleMap} and is not changed once it has been published, so it can be used
+   * by any thread without locking. Each change to the wiring voids the current map and bumps the
+   * version, and the next map is built by whichever thread needs it first.
+   */
   static class BundleMap {
+    final int version;
     final HashMap<Location, WireBundle> pointBundles = new HashMap<>();
     final HashSet<WireBundle> bundles = new HashSet<>();
     boolean isValid = true;
@@ -49,6 +57,10 @@ class CircuitWires {
     // a set of just the first bundle in each tree.
     HashSet<WidthIncompatibilityData> incompatibilityData = null;
 
+    BundleMap(int version) {
+      this.version = version;
+    }
+
     void addWidthIncompatibilityData(WidthIncompatibilityData e) {
       if (incompatibilityData == null) {
         incompatibilityData = new HashSet<>();
@@ -94,29 +106,125 @@ class CircuitWires {
     void setBundleAt(Location p, WireBundle b) {
       pointBundles.put(p, b);
     }
-  }
 
-  static class SplitterData {
-    final WireBundle[] endBundle; // PointData associated with each end
+    // Dense numbering of the bundles and of the threads of all valid bundles, so that the
+    // simulation state of the wires can be kept in flat arrays indexed by id (see State).
+    WireBundle[] bundleList = new WireBundle[0];
+    WireThread[] threadList = new WireThread[0];
+
+    void compile() {
+      final var bundleIds = new ArrayList<WireBundle>(bundles.size());
+      final var threadIds = new ArrayList<WireThread>();
+      for (final var bundle : bundles) {
+        bundle.id = bundleIds.size();
+        bundleIds.add(bundle);
+        if (bundle.isValid() && bundle.threads != null) {
+          for (final var thread : bundle.threads) {
+            if (thread.id < 0) {
+              thread.id = threadIds.size();
+              threadIds.add(thread);
+            }
+          }
+        }
+      }
+      bundleList = bundleIds.toArray(new WireBundle[0]);
+      threadList = threadIds.toArray(new WireThread[0]);
+    }
 
-    SplitterData(int fanOut) {
-      endBundle = new WireBundle[fanOut + 1];
+    /**
+     * Numbers the bundles of a map that was derived from the given one by replacing the bundles in
+     * {@code removed}. Bundles and threads that are shared with the old map keep their id, which
+     * is why the lists may contain null entries. Returns false if the lists became so sparse that
+     * a fresh map should be built instead.
+     */
+    boolean compileFrom(BundleMap old, Set<WireBundle> removed, Collection<WireBundle> added) {
+      final var newBundles = new ArrayList<>(Arrays.asList(old.bundleList));
+      final var newThreads = new ArrayList<>(Arrays.asList(old.threadList));
+      for (final var bundle : removed) {
+        newBundles.set(bundle.id, null);
+        if (bundle.isValid() && bundle.threads != null) {
+          for (final var thread : bundle.threads) newThreads.set(thread.id, null);
+        }
+      }
+      var freeBundle = 0;
+      var freeThread = 0;
+      for (final var bundle : added) {
+        while (freeBundle < newBundles.size() && newBundles.get(freeBundle) != null) freeBundle++;
+        bundle.id = freeBundle;
+        if (freeBundle < newBundles.size()) newBundles.set(freeBundle, bundle);
+        else newBundles.add(bundle);
+        if (bundle.isValid() && bundle.threads != null) {
+          for (final var thread : bundle.threads) {
+            if (thread.id >= 0) continue;
+            while (freeThread < newThreads.size() && newThreads.get(freeThread) != null) freeThread++;
+            thread.id = freeThread;
+            if (freeThread < newThreads.size()) newThreads.set(freeThread, thread);
+            else newThreads.add(thread);
+          }
+        }
+      }
+      bundleList = newBundles.toArray(new WireBundle[0]);
+      threadList = newThreads.toArray(new WireThread[0]);
+      return 2 * bundles.size() >= bundleList.length;
     }
   }
 
   static class State {
     final BundleMap bundleMap;
-    final HashMap<WireThread, Value> thrValues = new HashMap<>();
+    final Value[] thrValues; // indexed by WireThread.id, null if not yet computed
+
+    // Scratch space for propagate(), allocated on first use. The marks hold the number of the
+    // propagation in which a thread or bundle was last queued, so they never need clearing.
+    private int[] dirtyThreads;
+    private int[] threadMarks;
+    private int dirtyThreadCount;
+    private int[] dirtyBundles;
+    private int[] bundleMarks;
+    private int dirtyBundleCount;
+    private int mark;
 
     State(BundleMap bundleMap) {
+      this(bundleMap, new Value[bundleMap.threadList.length]);
+    }
+
+    private State(BundleMap bundleMap, Value[] thrValues) {
       this.bundleMap = bundleMap;
+      this.thrValues = thrValues;
+    }
+
+    private void startPropagation() {
+      if (dirtyThreads == null) {
+        dirtyThreads = new int[bundleMap.threadList.length];
+        threadMarks = new int[bundleMap.threadList.length];
+        dirtyBundles = new int[bundleMap.bundleList.length];
+        bundleMarks = new int[bundleMap.bundleList.length];
+      }
+      if (++mark == 0) {
+        Arrays.fill(threadMarks, 0);
+        Arrays.fill(bundleMarks, 0);
+        mark = 1;
+      }
+      dirtyThreadCount = 0;
+      dirtyBundleCount = 0;
+    }
+
+    private void addDirtyThread(WireThread thread) {
+      if (threadMarks[thread.id] != mark) {
+        threadMarks[thread.id] = mark;
+        dirtyThreads[dirtyThreadCount++] = thread.id;
+      }
+    }
+
+    private void addDirtyBundle(WireBundle bundle) {
+      if (bundleMarks[bundle.id] != mark) {
+        bundleMarks[bundle.id] = mark;
+        dirtyBundles[dirtyBundleCount++] = bundle.id;
+      }
     }
 
     @Override
     public Object clone() {
-      final var ret = new State(this.bundleMap);
-      ret.thrValues.putAll(this.thrValues);
-      return ret;
+      return new State(this.bundleMap, this.thrValues.clone());
     }
   }
 
@@ -181,16 +289,20 @@ class CircuitWires {
   // derived data
   private Bounds bounds = Bounds.EMPTY_BOUNDS;
 
-  private BundleMap masterBundleMap = null;
+  private volatile BundleMap masterBundleMap = null;
+  private volatile int mapVersion = 0; // only changed while holding the lock on this
+  // The following are guarded by the lock on this. The last map that was built is kept as the
+  // base for an incremental update, together with the locations touched by edits since then.
+  private BundleMap lastBundleMap = null;
+  private final HashSet<Location> changedPoints = new HashSet<>();
+  private boolean needFullRebuild = true;
 
   CircuitWires() {}
 
   //
   // action methods
   //
-  // NOTE: this could be made much more efficient in most cases to
-  // avoid voiding the bundle map.
-  /*synchronized*/ boolean add(Component comp) {
+  synchronized boolean add(Component comp) {
     var added = true;
     if (comp instanceof Wire wire) {
       added = addWire(wire);
@@ -208,14 +320,14 @@ class CircuitWires {
     }
     if (added) {
       points.add(comp);
-      voidBundleMap();
+      voidBundleMap(comp, comp.getEnds());
     }
     return added;
   }
 
-  /*synchronized*/ void add(Component comp, EndData end) {
+  synchronized void add(Component comp, EndData end) {
     points.add(comp, end);
-    voidBundleMap();
+    voidBundleMap(comp, List.of(end));
   }
 
   private boolean addWire(Wire w) {
@@ -230,10 +342,22 @@ class CircuitWires {
 
   // To be called by getBundleMap only
   private void computeBundleMap(BundleMap ret) {
+    connectBundles(ret, wires, tunnels, pulls, splitters.toArray(new Splitter[0]));
+    addWidthIncompatibilityData(ret);
+    ret.compile();
+  }
+
+  // Builds the bundles and threads for the given wires, tunnels, pull resistors and splitters.
+  private void connectBundles(
+      BundleMap ret,
+      Collection<Wire> wires,
+      Collection<Component> tunnels,
+      Collection<Component> pulls,
+      Splitter[] spls) {
     // create bundles corresponding to wires and tunnels
-    connectWires(ret);
-    connectTunnels(ret);
-    connectPullResistors(ret);
+    connectWires(ret, wires);
+    connectTunnels(ret, tunnels);
+    connectPullResistors(ret, pulls);
 
     // merge any WireBundle objects united by previous steps
     for (final var it = ret.getBundles().iterator(); it.hasNext(); ) {
@@ -250,7 +374,8 @@ class CircuitWires {
     }
 
     // make a WireBundle object for each end of a splitter
-    for (final var spl : splitters) {
+    final var endBundles = new WireBundle[spls.length][];
+    for (final var spl : spls) {
       final var ends = new ArrayList<>(spl.getEnds());
       for (final var end : ends) {
         final var p = end.getLocation();
@@ -270,8 +395,9 @@ class CircuitWires {
     }
 
     // determine the bundles at the end of each splitter
-    for (final var spl : splitters) {
-      final var ends = new ArrayList<>(spl.getEnds());
+    for (var s = 0; s < spls.length; s++) {
+      final var ends = new ArrayList<>(spls[s].getEnds());
+      endBundles[s] = new WireBundle[ends.size()];
       int index = -1;
       for (final var end : ends) {
         index++;
@@ -279,36 +405,36 @@ class CircuitWires {
         final var pb = ret.getBundleAt(p);
         if (pb != null) {
           pb.setWidth(end.getWidth(), p);
-          spl.wireData.endBundle[index] = pb;
+          endBundles[s][index] = pb;
         }
       }
     }
 
-    // unite threads going through splitters
-    for (final var spl : splitters) {
-      synchronized (spl) {
-        final var splAttrs = (SplitterAttributes) spl.getAttributeSet();
-        final var bitEnd = splAttrs.bitEnd;
-        final var splData = spl.wireData;
-        final var fromBundle = splData.endBundle[0];
-        if (fromBundle == null || !fromBundle.isValid()) continue;
-
-        for (var i = 0; i < bitEnd.length; i++) {
-          var j = bitEnd[i];
-          if (j > 0) {
-            var thr = spl.bitThread[i];
-            final var toBundle = splData.endBundle[j];
-            final var toThreads = toBundle.threads;
-            if (toThreads != null && toBundle.isValid()) {
-              final var fromThreads = fromBundle.threads;
-              if (i >= fromThreads.length) {
-                throw new ArrayIndexOutOfBoundsException("from " + i + " of " + fromThreads.length);
-              }
-              if (thr >= toThreads.length) {
-                throw new ArrayIndexOutOfBoundsException("to " + thr + " of " + toThreads.length);
-              }
-              fromThreads[i].unite(toThreads[thr]);
+    // unite threads going through splitters; the splitter is not locked here, as the AWT thread
+    // may hold its lock while waiting for ours. If it is being reconfigured, the map is voided
+    // again as soon as its new ends are known.
+    for (var s = 0; s < spls.length; s++) {
+      final var splAttrs = (SplitterAttributes) spls[s].getAttributeSet();
+      final var bitEnd = splAttrs.bitEnd;
+      final var bitThread = spls[s].bitThread;
+      final var fromBundle = endBundles[s].length > 0 ? endBundles[s][0] : null;
+      if (fromBundle == null || !fromBundle.isValid()) continue;
+
+      for (var i = 0; i < bitEnd.length; i++) {
+        var j = bitEnd[i];
+        if (j > 0) {
+          var thr = bitThread[i];
+          final var toBundle = endBundles[s][j];
+          final var toThreads = toBundle.threads;
+          if (toThreads != null && toBundle.isValid()) {
+            final var fromThreads = fromBundle.threads;
+            if (i >= fromThreads.length) {
+              throw new ArrayIndexOutOfBoundsException("from " + i + " of " + fromThreads.length);
             }
+            if (thr >= toThreads.length) {
+              throw new ArrayIndexOutOfBoundsException("to " + thr + " of " + toThreads.length);
+            }
+            fromThreads[i].unite(toThreads[thr]);
           }
         }
       }
@@ -325,8 +451,10 @@ class CircuitWires {
       }
     }
 
-    // All threads are sewn together! Compute the exception set before
-    // leaving
+    // All threads are sewn together!
+  }
+
+  private void addWidthIncompatibilityData(BundleMap ret) {
     final var exceptions = points.getWidthIncompatibilityData();
     if (CollectionUtil.isNotEmpty(exceptions)) {
       for (final var wid : exceptions) {
@@ -339,7 +467,7 @@ class CircuitWires {
     }
   }
 
-  private void connectPullResistors(BundleMap ret) {
+  private void connectPullResistors(BundleMap ret, Collection<Component> pulls) {
     for (final var comp : pulls) {
       final var loc = comp.getEnd(0).getLocation();
       var b = ret.getBundleAt(loc);
@@ -353,7 +481,7 @@ class CircuitWires {
     }
   }
 
-  private void connectTunnels(BundleMap ret) {
+  private void connectTunnels(BundleMap ret, Collection<Component> tunnels) {
     // determine the sets of tunnels
     final var tunnelSets = new HashMap<String, ArrayList<Location>>();
     for (final var comp : tunnels) {
@@ -394,7 +522,7 @@ class CircuitWires {
     }
   }
 
-  private void connectWires(BundleMap ret) {
+  private void connectWires(BundleMap ret, Collection<Wire> wires) {
     // make a WireBundle object for each tree of connected wires
     for (final var wire : wires) {
       final var bundleA = ret.getBundleAt(wire.e0);
@@ -549,41 +677,117 @@ class CircuitWires {
     }
   }
 
-  // There are only two threads that need to use the bundle map, I think:
-  // the AWT event thread, and the simulation worker thread.
-  // AWT does modifications to the components and wires, then voids the
-  // masterBundleMap, and eventually recomputes a new map (if needed) during
-  // painting. AWT sometimes locks a splitter, then changes components and
-  // wires.
-  // Computing a new bundle map requires both locking splitters and touching
-  // the components and wires, so to avoid deadlock, only the AWT should
-  // create the new bundle map.
+  // The AWT event thread modifies the components and wires and voids the
+  // master bundle map; the new map is built by the first thread that needs it,
+  // whether that is the AWT thread painting or a simulation thread. Both the
+  // changes and the building hold the lock on this object, so a map is always
+  // built from a consistent view of the wiring. Once published, the map is
+  // handed out without locking.
+
+  private BundleMap getBundleMap() {
+    final var current = masterBundleMap;
+    if (current != null) return current;
+    return computeMasterBundleMap();
+  }
 
-  /*synchronized*/ private BundleMap getBundleMap() {
-    if (SwingUtilities.isEventDispatchThread()) {
-      // AWT event thread.
-      if (masterBundleMap != null) return masterBundleMap;
-      final var ret = new BundleMap();
+  private synchronized BundleMap computeMasterBundleMap() {
+    if (masterBundleMap != null) return masterBundleMap;
+    var ret = (needFullRebuild || lastBundleMap == null) ? null : updateBundleMap(lastBundleMap);
+    if (ret == null) {
+      ret = new BundleMap(mapVersion);
       try {
         computeBundleMap(ret);
-        masterBundleMap = ret;
       } catch (Exception t) {
         ret.invalidate();
+        ret.compile(); // number whatever was built before the failure
         logger.error(t.getLocalizedMessage());
-      }
-      return ret;
-    } else {
-      // Simulation thread.
-      try {
-        final var ret = new BundleMap[1];
-        SwingUtilities.invokeAndWait(() -> ret[0] = getBundleMap());
-        return ret[0];
-      } catch (Exception e) {
-        final var ret = new BundleMap();
-        ret.invalidate();
+        lastBundleMap = null;
         return ret;
       }
     }
+    masterBundleMap = ret;
+    lastBundleMap = ret;
+    needFullRebuild = false;
+    changedPoints.clear();
+    return ret;
+  }
+
+  /**
+   * Derives a new bundle map from the given one by recomputing only the bundles around the
+   * changed points. The bundles at those points are extended to everything they are tied to
+   * through splitters and tunnels; the wires, splitters, tunnels and pull resistors at the points of these
+   * bundles are then connected again as in a full rebuild, while all other bundles and threads
+   * are shared with the old map. Returns null if a full rebuild is the better choice.
+   */
+  private BundleMap updateBundleMap(BundleMap old) {
+    if (!old.isValid()) return null;
+    final var maxRegion = old.bundles.size() / 2;
+    final var region = new HashSet<WireBundle>();
+    final var seeds = new LinkedHashSet<Location>();
+    final var queue = new ArrayDeque<>(changedPoints);
+    while (!queue.isEmpty()) {
+      final var loc = queue.poll();
+      if (!seeds.add(loc)) continue;
+      final var bundle = old.getBundleAt(loc);
+      if (bundle != null && region.add(bundle)) {
+        if (region.size() > maxRegion) return null;
+        queue.addAll(bundle.points);
+      }
+      for (final var comp : points.getComponents(loc)) {
+        if (comp instanceof Splitter) {
+          for (final var end : comp.getEnds()) queue.add(end.getLocation());
+        } else if (tunnels.contains(comp)) {
+          final var label = comp.getAttributeSet().getValue(StdAttr.LABEL).trim();
+          if (label.equals("")) continue;
+          for (final var tunnel : tunnels) {
+            if (label.equals(tunnel.getAttributeSet().getValue(StdAttr.LABEL).trim())) {
+              queue.add(tunnel.getLocation());
+            }
+          }
+        }
+      }
+    }
+
+    // collect what lies in the region; ordered sets keep the rebuild deterministic
+    final var regionWires = new LinkedHashSet<Wire>();
+    final var regionSplitters = new LinkedHashSet<Splitter>();
+    final var regionTunnels = new LinkedHashSet<Component>();
+    final var regionPulls = new LinkedHashSet<Component>();
+    for (final var loc : seeds) {
+      for (final var comp : points.getComponents(loc)) {
+        if (comp instanceof Wire wire) {
+          regionWires.add(wire);
+        } else if (comp instanceof Splitter spl) {
+          regionSplitters.add(spl);
+        } else if (tunnels.contains(comp)) {
+          regionTunnels.add(comp);
+        } else if (pulls.contains(comp)) {
+          regionPulls.add(comp);
+        }
+      }
+    }
+
+    final var local = new BundleMap(mapVersion);
+    try {
+      connectBundles(
+          local,
+          regionWires,
+          regionTunnels,
+          regionPulls,
+          regionSplitters.toArray(new Splitter[0]));
+    } catch (Exception e) {
+      return null;
+    }
+
+    final var ret = new BundleMap(mapVersion);
+    ret.pointBundles.putAll(old.pointBundles);
+    for (final var loc : seeds) ret.pointBundles.remove(loc);
+    ret.pointBundles.putAll(local.pointBundles);
+    ret.bundles.addAll(old.bundles);
+    ret.bundles.removeAll(region);
+    ret.bundles.addAll(local.bundles);
+    addWidthIncompatibilityData(ret);
+    return ret.compileFrom(old, region, local.bundles) ? ret : null;
   }
 
   Iterator<? extends Component> getComponents() {
@@ -665,30 +869,36 @@ class CircuitWires {
   //
   // query methods
   //
-  boolean isMapVoided() {
-    return masterBundleMap == null;
+  /** Returns a number that changes whenever the wiring of the circuit changes. */
+  int getMapVersion() {
+    return mapVersion;
+  }
+
+  /** Adds all locations where components or wires meet to the given collection. */
+  synchronized void addSplitLocations(Collection<Location> dest) {
+    dest.addAll(points.getSplitLocations());
   }
 
   //
   // utility methods
   //
-  void propagate(CircuitState circState, Set<Location> points) {
+  void propagate(CircuitState circState, Collection<Location> points) {
     final var map = getBundleMap();
-    final var dirtyThreads = new CopyOnWriteArraySet<WireThread>(); // affected threads
 
     // get state, or create a new one if current state is outdated
     var state = circState.getWireData();
-    if (state == null || state.bundleMap != map) {
-      // if it is outdated, we need to compute for all threads
+    final var outdated = state == null || state.bundleMap != map;
+    if (outdated) {
       state = new State(map);
-      for (final var bundle : map.getBundles()) {
-        final var wireThreads = bundle.threads;
-        if (bundle.isValid() && wireThreads != null) {
-          dirtyThreads.addAll(Arrays.asList(wireThreads));
-        }
-      }
       circState.setWireData(state);
     }
+    state.startPropagation();
+    if (outdated) {
+      // if it is outdated, we need to compute for all threads
+      for (final var thread : map.threadList) {
+        if (thread != null) state.addDirtyThread(thread);
+      }
+    }
 
     // determine affected threads, and set values for unwired points
     for (final var point : points) {
@@ -708,40 +918,40 @@ class CircuitWires {
             }
           }
         } else {
-          dirtyThreads.addAll(Arrays.asList(th));
+          for (final var thread : th) state.addDirtyThread(thread);
         }
       }
     }
 
-    if (dirtyThreads.isEmpty()) return;
+    if (state.dirtyThreadCount == 0) return;
 
     // determine values of affected threads
-    final var bundles = new HashSet<ThreadBundle>();
-    for (final var t : dirtyThreads) {
-      final var v = getThreadValue(circState, t);
-      state.thrValues.put(t, v);
-      bundles.addAll(t.getBundles());
+    final var thrValues = state.thrValues;
+    for (var i = 0; i < state.dirtyThreadCount; i++) {
+      final var t = map.threadList[state.dirtyThreads[i]];
+      thrValues[t.id] = getThreadValue(circState, t);
+      for (final var tb : t.getBundles()) state.addDirtyBundle(tb.b);
     }
 
     // now propagate values through circuit
-    for (final var tb : bundles) {
-      final var b = tb.b;
+    for (var i = 0; i < state.dirtyBundleCount; i++) {
+      final var b = map.bundleList[state.dirtyBundles[i]];
 
       Value bv = null;
       if (!b.isValid() || b.threads == null) {
         // do nothing
       } else if (b.threads.length == 1) {
-        bv = state.thrValues.get(b.threads[0]);
+        bv = thrValues[b.threads[0].id];
       } else {
         final var tvs = new Value[b.threads.length];
         var tvsValid = true;
-        for (var i = 0; i < tvs.length; i++) {
-          final var tv = state.thrValues.get(b.threads[i]);
+        for (var j = 0; j < tvs.length; j++) {
+          final var tv = thrValues[b.threads[j].id];
           if (tv == null) {
             tvsValid = false;
             break;
           }
-          tvs[i] = tv;
+          tvs[j] = tv;
         }
         if (tvsValid) bv = Value.create(tvs);
       }
@@ -781,7 +991,7 @@ class CircuitWires {
     return bounds;
   }
 
-  /*synchronized*/ void remove(Component comp) {
+  synchronized void remove(Component comp) {
     if (comp instanceof Wire wire) {
       removeWire(wire);
     } else if (comp instanceof Splitter) {
@@ -797,12 +1007,12 @@ class CircuitWires {
       }
     }
     points.remove(comp);
-    voidBundleMap();
+    voidBundleMap(comp, comp.getEnds());
   }
 
-  /*synchronized*/ void remove(Component comp, EndData end) {
+  synchronized void remove(Component comp, EndData end) {
     points.remove(comp, end);
-    voidBundleMap();
+    voidBundleMap(comp, List.of(end));
   }
 
   private void removeWire(Wire w) {
@@ -817,19 +1027,38 @@ class CircuitWires {
     }
   }
 
-  /*synchronized*/ void replace(Component comp, EndData oldEnd, EndData newEnd) {
+  synchronized void replace(Component comp, EndData oldEnd, EndData newEnd) {
     points.remove(comp, oldEnd);
     points.add(comp, newEnd);
-    voidBundleMap();
+    voidBundleMap(comp, List.of(oldEnd, newEnd));
   }
 
   //
   // helper methods
   //
-  private void voidBundleMap() {
+  private synchronized void voidBundleMap() {
     // This should really only be called by AWT thread, but main() also
     // calls it during startup. It should not be called by the simulation
     // thread.
     masterBundleMap = null;
+    mapVersion++;
+    needFullRebuild = true;
+    changedPoints.clear();
+  }
+
+  // Voids the bundle map after an edit of the given component ends. Changes to splitters, tunnels
+  // and pull resistors can connect far-away parts of the circuit, so these need a full rebuild;
+  // for anything else only the bundles at the given ends have to be recomputed.
+  private void voidBundleMap(Component comp, Collection<EndData> ends) {
+    final var factory = comp.getFactory();
+    if (comp instanceof Splitter || factory instanceof Tunnel || factory instanceof PullResistor) {
+      voidBundleMap();
+      return;
+    }
+    masterBundleMap = null;
+    mapVersion++;
+    if (!needFullRebuild) {
+      for (final var end : ends) changedPoints.add(end.getLocation());
+    }
   }
 }
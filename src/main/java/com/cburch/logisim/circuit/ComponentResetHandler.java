@@ -0,0 +1,25 @@
+/*
+ * Logisim-evolution - digital logic design tool and simulator
+ * Copyright by the Logisim-evolution developers
+ *
+ * https://github.com/logisim-evolution/
+ *
+ * This is free software released under GNU GPLv3 license
+ */
+
+package com.cburch.logisim.circuit;
+
+import com.cburch.logisim.instance.Instance;
+
+/**
+ * Implemented by the factories of components whose data is not simply discarded when the
+ * simulation is reset, such as memories that keep their contents.
+ */
+public interface ComponentResetHandler {
+  /**
+   * Resets the data of the instance in the given state.
+   *
+   * @return true if the data should be discarded anyway.
+   */
+  boolean reset(CircuitState state, Instance instance);
+}
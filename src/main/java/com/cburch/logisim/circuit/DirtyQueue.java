@@ -0,0 +1,72 @@
+/*
+ * Logisim-evolution - digital logic design tool and simulator
+ * Copyright by the Logisim-evolution developers
+ *
+ * https://github.com/logisim-evolution/
+ *
+ * This is free software released under GNU GPLv3 license
+ */
+
+package com.cburch.logisim.circuit;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Work list of the components or points of a {@link CircuitState} that need to be looked at
+ * again. Adding is O(1) and ignores elements that are already pending. Any thread may add, e.g.
+ * the GUI thread when the user pokes a pin while the simulator runs, but only the thread that
+ * propagates the state takes the pending elements out with {@link #drain}.
+ *
+ * <p>Draining swaps two buffers, so in steady state neither adding nor draining allocates.
+ */
+final class DirtyQueue<E> {
+  private final HashSet<E> pending = new HashSet<>();
+  private ArrayList<E> items = new ArrayList<>();
+  private ArrayList<E> drained = new ArrayList<>();
+
+  synchronized void add(E elt) {
+    if (pending.add(elt)) items.add(elt);
+  }
+
+  synchronized void addAll(Collection<? extends E> elts) {
+    for (final var elt : elts) {
+      if (pending.add(elt)) items.add(elt);
+    }
+  }
+
+  synchronized void clear() {
+    pending.clear();
+    items.clear();
+  }
+
+  synchronized boolean isEmpty() {
+    return items.isEmpty();
+  }
+
+  // Only used when a component is deleted, so the linear removal from the list does not matter.
+  synchronized void remove(E elt) {
+    if (pending.remove(elt)) items.remove(elt);
+  }
+
+  /** Returns a copy of the pending elements, leaving them pending. */
+  synchronized List<E> snapshot() {
+    return new ArrayList<>(items);
+  }
+
+  /**
+   * Removes all pending elements and returns them in the order they were added. Elements added
+   * while the caller works through the list are pending again for the next call. The returned
+   * list is reused by the next call to drain, so it must not be kept beyond that.
+   */
+  synchronized List<E> drain() {
+    final var ret = items;
+    drained.clear();
+    items = drained;
+    drained = ret;
+    pending.clear();
+    return ret;
+  }
+}
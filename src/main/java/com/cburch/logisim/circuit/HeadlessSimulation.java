@@ -0,0 +1,155 @@
+/*
+ * Logisim-evolution - digital logic design tool and simulator
+ * Copyright by the Logisim-evolution developers
+ *
+ * https://github.com/logisim-evolution/
+ *
+ * This is free software released under GNU GPLv3 license
+ */
+
+package com.cburch.logisim.circuit;
+
+import com.cburch.logisim.data.Value;
+import com.cburch.logisim.file.LogisimFile;
+import com.cburch.logisim.instance.Instance;
+import com.cburch.logisim.std.wiring.Pin;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Simulation of one circuit of a {@link LogisimFile} that is driven directly from the calling
+ * thread, without a {@link com.cburch.logisim.proj.Project}, a {@link Simulator} thread or a
+ * frame. Input pins are poked by their label, the circuit is propagated or clocked, and the
+ * resulting pin values are read back. When running without a GUI, no work is handed to the AWT
+ * event thread.
+ *
+ * <p>Components that need a project to run, such as VHDL entities simulated by an external tool,
+ * are not supported.
+ *
+ * <p>The circuit must not be edited while it is simulated this way. An instance is not thread
+ * safe, but separate instances (even of the same file) can be used from different threads.
+ */
+public class HeadlessSimulation {
+  private final Circuit circuit;
+  private final CircuitState circState;
+  private final Propagator prop;
+  private final Map<String, Instance> pins = new LinkedHashMap<>();
+  private final List<String> inputs = new ArrayList<>();
+  private final List<String> outputs = new ArrayList<>();
+
+  /**
+   * Creates a simulation of the named circuit, or of the main circuit if the name is null or
+   * empty.
+   *
+   * @throws IllegalArgumentException if the file has no circuit by that name.
+   */
+  public HeadlessSimulation(LogisimFile file, String circuitName) {
+    circuit =
+        (circuitName == null || circuitName.isEmpty())
+            ? file.getMainCircuit()
+            : file.getCircuit(circuitName);
+    if (circuit == null) throw new IllegalArgumentException("no circuit named " + circuitName);
+    circState = new CircuitState(file.getOptions(), circuit);
+    prop = circState.getPropagator();
+    for (final var entry : Analyze.getPinLabels(circuit).entrySet()) {
+      final var pin = entry.getKey();
+      final var name = entry.getValue();
+      pins.put(name, pin);
+      if (Pin.FACTORY.isInputPin(pin)) inputs.add(name);
+      else outputs.add(name);
+    }
+    prop.propagate();
+  }
+
+  public Circuit getCircuit() {
+    return circuit;
+  }
+
+  public CircuitState getCircuitState() {
+    return circState;
+  }
+
+  /** Returns the labels of the input pins, in the same order as the tty interface uses. */
+  public List<String> getInputNames() {
+    return Collections.unmodifiableList(inputs);
+  }
+
+  /** Returns the labels of the output pins, in the same order as the tty interface uses. */
+  public List<String> getOutputNames() {
+    return Collections.unmodifiableList(outputs);
+  }
+
+  public int getWidth(String pinName) {
+    return Pin.FACTORY.getWidth(getPin(pinName)).getWidth();
+  }
+
+  /** Returns the number of half clock cycles simulated since creation or the last reset. */
+  public int getTickCount() {
+    return prop.getTickCount();
+  }
+
+  public Value getValue(String pinName) {
+    return Pin.FACTORY.getValue(circState.getInstanceState(getPin(pinName)));
+  }
+
+  public boolean isOscillating() {
+    return prop.isOscillating();
+  }
+
+  /**
+   * Propagates all pending changes until the circuit is stable.
+   *
+   * @return false if the circuit oscillates.
+   */
+  public boolean propagate() {
+    prop.propagate();
+    return !prop.isOscillating();
+  }
+
+  /** Resets all signals and memory to their initial state and propagates. */
+  public void reset() {
+    prop.reset();
+    prop.propagate();
+  }
+
+  /**
+   * Sets the value of an input pin. The change takes effect at the next {@link #propagate} or
+   * {@link #tick}.
+   */
+  public void setValue(String pinName, Value value) {
+    final var pin = getPin(pinName);
+    if (!Pin.FACTORY.isInputPin(pin)) {
+      throw new IllegalArgumentException(pinName + " is not an input pin");
+    }
+    Pin.FACTORY.setValue(circState.getInstanceState(pin), value);
+    circState.markComponentAsDirty(pin.getComponent());
+  }
+
+  public void setValue(String pinName, long value) {
+    setValue(pinName, Value.createKnown(getWidth(pinName), value));
+  }
+
+  /**
+   * Toggles the clocks and propagates, the given number of times.
+   *
+   * @return the number of half cycles done, which is less than requested when the circuit started
+   *     to oscillate or has no clocks.
+   */
+  public int tick(int halfCycles) {
+    prop.propagate();
+    for (var i = 0; i < halfCycles; i++) {
+      if (prop.isOscillating() || !prop.toggleClocks()) return i;
+      prop.propagate();
+    }
+    return halfCycles;
+  }
+
+  private Instance getPin(String pinName) {
+    final var pin = pins.get(pinName);
+    if (pin == null) throw new IllegalArgumentException("no pin named " + pinName);
+    return pin;
+  }
+}
@@ -0,0 +1,44 @@
+/*
+ * Logisim-evolution - digital logic design tool and simulator
+ * Copyright by the Logisim-evolution developers
+ *
+ * https://github.com/logisim-evolution/
+ *
+ * This is free software released under GNU GPLv3 license
+ */
+
+package com.cburch.logisim.circuit;
+
+import com.cburch.logisim.data.Location;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Dense numbering of the locations of a circuit at which values are set, so that each {@link
+ * CircuitState} of the circuit can keep its values and their causes in arrays indexed by these
+ * numbers. The numbers are shared by all the states of the circuit. A location keeps its number
+ * for as long as the circuit exists, even after the components there are removed, so the arrays
+ * of the states never need to be renumbered. Any thread may number a location.
+ */
+final class LocationIndex {
+  private final ConcurrentHashMap<Location, Integer> ids = new ConcurrentHashMap<>();
+  private final AtomicInteger size = new AtomicInteger();
+
+  /** Returns the number of the location, numbering it if it has none yet. */
+  int add(Location loc) {
+    final var id = ids.get(loc);
+    if (id != null) return id;
+    return ids.computeIfAbsent(loc, l -> size.getAndIncrement());
+  }
+
+  /** Returns the number of the location, or -1 if it has none. */
+  int get(Location loc) {
+    final var id = ids.get(loc);
+    return id == null ? -1 : id;
+  }
+
+  /** Returns the number of locations numbered so far, which is above all their numbers. */
+  int size() {
+    return size.get();
+  }
+}
@@ -16,32 +16,77 @@ import com.cburch.logisim.data.AttributeListener;
 import com.cburch.logisim.data.Location;
 import com.cburch.logisim.data.Value;
 import com.cburch.logisim.file.Options;
+import com.cburch.logisim.prefs.AppPreferences;
 import java.lang.ref.WeakReference;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.PriorityQueue;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
 
 public class Propagator {
-  private static class ComponentPoint {
-    final Component cause;
-    final Location loc;
+  /**
+   * Set of (state, cause, location) triples that were already handled in the current time step.
+   * This is an open-addressing hash table that lives as long as the Propagator; the slots used in
+   * a step are remembered and cleared when the step ends, even if it fails, so no objects are
+   * allocated per event.
+   */
+  private static class HandledPoints {
+    private CircuitState[] states = new CircuitState[256];
+    private Component[] causes = new Component[256];
+    private Location[] locs = new Location[256];
+    private int[] used = new int[128];
+    private int size = 0;
+
+    private static int hash(CircuitState state, Component cause, Location loc) {
+      var h = 31 * (31 * System.identityHashCode(state) + System.identityHashCode(cause));
+      h += loc.hashCode();
+      return h ^ (h >>> 16);
+    }
 
-    public ComponentPoint(Component cause, Location loc) {
-      this.cause = cause;
-      this.loc = loc;
+    /** Returns false if the triple was already handled in this step. */
+    boolean add(CircuitState state, Component cause, Location loc) {
+      if (2 * (size + 1) > states.length) grow();
+      final var mask = states.length - 1;
+      var slot = hash(state, cause, loc) & mask;
+      while (states[slot] != null) {
+        if (states[slot] == state && causes[slot] == cause && locs[slot].equals(loc)) return false;
+        slot = (slot + 1) & mask;
+      }
+      states[slot] = state;
+      causes[slot] = cause;
+      locs[slot] = loc;
+      used[size++] = slot;
+      return true;
     }
 
-    @Override
-    public boolean equals(Object other) {
-      return (other instanceof ComponentPoint o)
-             ? this.cause.equals(o.cause) && this.loc.equals(o.loc)
-             : false;
+    void clear() {
+      for (var i = 0; i < size; i++) {
+        final var slot = used[i];
+        states[slot] = null;
+        causes[slot] = null;
+        locs[slot] = null;
+      }
+      size = 0;
     }
 
-    @Override
-    public int hashCode() {
-      return 31 * cause.hashCode() + loc.hashCode();
+    private void grow() {
+      final var oldStates = states;
+      final var oldCauses = causes;
+      final var oldLocs = locs;
+      final var oldUsed = used;
+      final var oldSize = size;
+      final var capacity = 2 * oldStates.length;
+      states = new CircuitState[capacity];
+      causes = new Component[capacity];
+      locs = new Location[capacity];
+      used = new int[capacity / 2];
+      size = 0;
+      for (var i = 0; i < oldSize; i++) {
+        final var slot = oldUsed[i];
+        add(oldStates[slot], oldCauses[slot], oldLocs[slot]);
+      }
     }
   }
 
@@ -71,21 +116,30 @@ public class Propagator {
   }
 
   static class SetData implements Comparable<SetData> {
-    final int time;
-    final int serialNumber;
-    final CircuitState state; // state of circuit containing component
-    final Component cause; // component emitting the value
-    final Location loc; // the location at which value is emitted
+    // These are not final so that TimingWheel can recycle instances.
+    int time;
+    int serialNumber;
+    CircuitState state; // state of circuit containing component
+    Component cause; // component emitting the value
+    Location loc; // the location at which value is emitted
+    int point; // the number of loc in the circuit of state, -1 while recycled
     Value val; // value being emitted
-    SetData next = null;
+    SetData next = null; // next cause at the same location
+    SetData queueNext = null; // next event in the same TimingWheel slot
+
+    SetData(
+        int time, int serialNumber, CircuitState state, Location loc, Component cause, Value val) {
+      init(time, serialNumber, state, loc, cause, val);
+    }
 
-    private SetData(
+    void init(
         int time, int serialNumber, CircuitState state, Location loc, Component cause, Value val) {
       this.time = time;
       this.serialNumber = serialNumber;
       this.state = state;
       this.cause = cause;
       this.loc = loc;
+      this.point = state == null ? -1 : state.getCircuit().locations.add(loc);
       this.val = val;
     }
 
@@ -126,6 +180,14 @@ public class Propagator {
     return ret;
   }
 
+  /** Workers for parallel simulation work; only created once they are used for the first time. */
+  static class Workers {
+    static final ForkJoinPool POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+  }
+
+  /** Minimum number of sibling substates before their propagation is spread over the workers. */
+  static final int PARALLEL_MIN_SUBSTATES = 2;
+
   private final CircuitState root; // root of state tree
 
   /** The number of clock cycles to let pass before deciding that the circuit is oscillating. */
@@ -138,7 +200,8 @@ public class Propagator {
    */
   private volatile int simRandomShift;
 
-  private final PriorityQueue<SetData> toProcess = new PriorityQueue<>();
+  private final TimingWheel toProcess = new TimingWheel();
+  private final HandledPoints handled = new HandledPoints();
   private int clock = 0;
   private boolean isOscillating = false;
   private boolean oscAdding = false;
@@ -148,6 +211,20 @@ public class Propagator {
   private int noiseCount = 0;
 
   private int setDataSerialNumber = 0;
+  private long eventCount = 0;
+
+  /*
+   * While sibling substates are propagated in parallel, setValue does not touch the queue but
+   * records the change in the buffer of the subtree that caused it. The buffers are merged in the
+   * serial traversal order afterwards, so the serial numbers (and the noise) are the same as if the
+   * subtrees had been processed one after another.
+   */
+  private boolean parallel = false;
+  /** Whether to propagate sibling substates in parallel, or null to follow the preference. */
+  Boolean parallelSetting = null;
+  private boolean deferring = false;
+  private final ThreadLocal<ArrayList<SetData>> deferred = new ThreadLocal<>();
+
   static int lastId = 0;
 
   final int id = lastId++;
@@ -155,18 +232,18 @@ public class Propagator {
   public Propagator(CircuitState root) {
     this.root = root;
     final var l = new Listener(this);
-    root.getProject().getOptions().getAttributeSet().addAttributeListener(l);
+    root.getOptions().getAttributeSet().addAttributeListener(l);
     updateRandomness();
     updateOscillationLimit();
   }
 
   private SetData addCause(CircuitState state, SetData head, SetData data) {
     if (data.val == null) { // actually, it should be removed
-      return removeCause(state, head, data.loc, data.cause);
+      final var ret = removeCause(state, head, data.point, data.cause);
+      toProcess.recycle(data);
+      return ret;
     }
 
-    final var causes = state.causes;
-
     // first check whether this is change of previous info.
     var replaced = false;
     for (var n = head; n != null; n = n.next) {
@@ -176,11 +253,12 @@ public class Propagator {
         break;
       }
     }
+    if (replaced) toProcess.recycle(data);
 
     // otherwise, insert to list of causes
     if (!replaced) {
       if (head == null) {
-        causes.put(data.loc, data);
+        state.setCause(data.point, data);
         head = data;
       } else {
         data.next = head.next;
@@ -197,9 +275,10 @@ public class Propagator {
   void checkComponentEnds(CircuitState state, Component comp) {
     for (final var end : comp.getEnds()) {
       final var loc = end.getLocation();
-      final var oldHead = state.causes.get(loc);
+      final var point = state.getCircuit().locations.get(loc);
+      final var oldHead = state.getCause(point);
       final var oldVal = computeValue(oldHead);
-      final var newHead = removeCause(state, oldHead, loc, comp);
+      final var newHead = removeCause(state, oldHead, point, comp);
       final var newVal = computeValue(newHead);
       final var wireVal = state.getValueByWire(loc);
 
@@ -225,6 +304,11 @@ public class Propagator {
     return halfClockCycles;
   }
 
+  /** Returns the number of signal changes that were applied since this propagator was created. */
+  public long getEventCount() {
+    return eventCount;
+  }
+
   public boolean isOscillating() {
     return isOscillating;
   }
@@ -270,6 +354,7 @@ public class Propagator {
   }
 
   public boolean propagate(Simulator.ProgressListener propListener, Simulator.Event propEvent) {
+    parallel = parallelSetting != null ? parallelSetting : AppPreferences.SIM_PARALLEL.getBoolean();
     oscPoints.clear();
     root.processDirtyPoints();
     root.processDirtyComponents();
@@ -299,13 +384,11 @@ public class Propagator {
     return iters > 0;
   }
 
-  private SetData removeCause(CircuitState state, SetData head, Location loc, Component cause) {
-    final var causes = state.causes;
+  private SetData removeCause(CircuitState state, SetData head, int point, Component cause) {
     if (head == null) {
     } else if (head.cause == cause) {
       head = head.next;
-      if (head == null) causes.remove(loc);
-      else causes.put(loc, head);
+      state.setCause(point, head);
     } else {
       var prev = head;
       var cur = head.next;
@@ -333,6 +416,13 @@ public class Propagator {
   //
   void setValue(CircuitState state, Location pt, Value val, Component cause, int delay) {
     if (cause instanceof Wire || cause instanceof Splitter) return;
+    if (deferring) {
+      final var buffer = deferred.get();
+      if (buffer != null) {
+        buffer.add(new SetData(delay, 0, state, pt, cause, val));
+        return;
+      }
+    }
     if (delay <= 0) {
       delay = 1;
     }
@@ -350,7 +440,7 @@ public class Propagator {
         }
       }
     }
-    toProcess.add(new SetData(clock + delay, setDataSerialNumber, state, pt, cause, val));
+    toProcess.add(toProcess.obtain(clock + delay, setDataSerialNumber, state, pt, cause, val));
     /*
      * DEBUGGING - comment out Simulator.log(clock + ": set " + pt + " in "
      * + state + " to " + val + " by " + cause + " after " + delay); //
@@ -360,6 +450,7 @@ public class Propagator {
   }
 
   boolean step(PropagationPoints changedPoints) {
+    parallel = parallelSetting != null ? parallelSetting : AppPreferences.SIM_PARALLEL.getBoolean();
     oscPoints.clear();
     root.processDirtyPoints();
     root.processDirtyComponents();
@@ -379,50 +470,107 @@ public class Propagator {
     if (toProcess.isEmpty()) return;
 
     // update clock
-    clock = toProcess.peek().time;
+    clock = toProcess.advance();
 
     // propagate all values for this clock tick
-    final var visited = new HashMap<CircuitState, HashSet<ComponentPoint>>();
-    while (true) {
-      final var data = toProcess.peek();
-      if (data == null || data.time != clock) break;
-      toProcess.remove();
-      final var state = data.state;
-
-      // if it's already handled for this clock tick, continue
-      var handled = visited.get(state);
-      if (handled != null) {
-        if (!handled.add(new ComponentPoint(data.cause, data.loc))) continue;
-      } else {
-        handled = new HashSet<>();
-        visited.put(state, handled);
-        handled.add(new ComponentPoint(data.cause, data.loc));
-      }
+    try {
+      for (var data = toProcess.poll(clock); data != null; data = toProcess.poll(clock)) {
+        final var state = data.state;
+        final var loc = data.loc;
+
+        // if it's already handled for this clock tick, continue
+        if (!handled.add(state, data.cause, loc)) {
+          toProcess.recycle(data);
+          continue;
+        }
 
-      /*
-       * DEBUGGING - comment out Simulator.log(data.time + ": proc " +
-       * data.loc + " in " + data.state + " to " + data.val + " by " +
-       * data.cause); //
-       */
+        /*
+         * DEBUGGING - comment out Simulator.log(data.time + ": proc " +
+         * data.loc + " in " + data.state + " to " + data.val + " by " +
+         * data.cause); //
+         */
 
-      if (changedPoints != null) changedPoints.add(state, data.loc);
+        if (changedPoints != null) changedPoints.add(state, loc);
 
-      // change the information about value
-      final var oldHead = state.causes.get(data.loc);
-      final var oldVal = computeValue(oldHead);
-      final var newHead = addCause(state, oldHead, data);
-      final var newVal = computeValue(newHead);
+        // change the information about value; note that data may be recycled by addCause
+        final var oldHead = state.getCause(data.point);
+        final var oldVal = computeValue(oldHead);
+        final var newHead = addCause(state, oldHead, data);
+        final var newVal = computeValue(newHead);
 
-      // if the value at point has changed, propagate it
-      if (!newVal.equals(oldVal)) {
-        state.markPointAsDirty(data.loc);
+        // if the value at point has changed, propagate it
+        if (!newVal.equals(oldVal)) {
+          eventCount++;
+          state.markPointAsDirty(loc);
+        }
       }
+    } finally {
+      handled.clear();
     }
 
     root.processDirtyPoints();
     root.processDirtyComponents();
   }
 
+  /**
+   * Applies the given action to each of the substates, in order. When parallel propagation is
+   * enabled, the substates are independent subtrees of the state tree and the action is run for
+   * them concurrently. Values only cross subtree boundaries through the ports of their {@link
+   * SubcircuitFactory} components, which go through {@link #setValue}; those changes are buffered
+   * per subtree and queued in the same order as the serial walk would have queued them. The
+   * substates share their parent state, so a substate that propagates its pins into the parent
+   * does so holding the parent's lock; the values of the parent do not change until all are done.
+   */
+  void forEachSubstate(CircuitState[] subs, Consumer<CircuitState> action) {
+    // While oscillating the touched points are collected in a shared set, so stay serial then.
+    if (!parallel || deferring || oscAdding || subs.length < PARALLEL_MIN_SUBSTATES) {
+      for (final var sub : subs) {
+        if (sub != null) action.accept(sub);
+      }
+      return;
+    }
+    final var buffers = new ArrayList<List<SetData>>(subs.length);
+    final var tasks = new ForkJoinTask<?>[subs.length];
+    deferring = true;
+    try {
+      for (var i = 0; i < subs.length; i++) {
+        final var sub = subs[i];
+        if (sub == null) {
+          buffers.add(null);
+          continue;
+        }
+        final var buffer = new ArrayList<SetData>();
+        buffers.add(buffer);
+        tasks[i] =
+            Workers.POOL.submit(
+                () -> {
+                  deferred.set(buffer);
+                  try {
+                    action.accept(sub);
+                  } finally {
+                    deferred.remove();
+                  }
+                });
+      }
+    } finally {
+      RuntimeException error = null;
+      for (final var task : tasks) {
+        if (task == null) continue;
+        try {
+          task.join();
+        } catch (RuntimeException e) {
+          if (error == null) error = e;
+        }
+      }
+      deferring = false;
+      for (final var buffer : buffers) {
+        if (buffer == null) continue;
+        for (final var data : buffer) setValue(data.state, data.loc, data.val, data.cause, data.time);
+      }
+      if (error != null) throw error;
+    }
+  }
+
   public boolean toggleClocks() {
     halfClockCycles++;
     return root.toggleClocks(halfClockCycles);
@@ -434,7 +582,7 @@ public class Propagator {
   }
 
   private void updateRandomness() {
-    final var opts = root.getProject().getOptions();
+    final var opts = root.getOptions();
     final var rand = opts.getAttributeSet().getValue(Options.ATTR_SIM_RAND);
     final var val = rand;
     var logVal = 0;
@@ -443,7 +591,7 @@ public class Propagator {
   }
 
   private void updateOscillationLimit() {
-    final var opts = root.getProject().getOptions();
+    final var opts = root.getOptions();
     final var lim = opts.getAttributeSet().getValue(Options.ATTR_SIM_LIMIT);
     simLimit = lim;
   }
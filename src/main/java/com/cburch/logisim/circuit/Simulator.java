@@ -84,6 +84,14 @@ public class Simulator {
   //               periodically wakes up and invokes toggleClocks() then
   //               propagate().
   //
+  // [turbo]       As auto-tick, but when the tick batch is larger than one, the
+  //               thread runs all ticks that are due (up to the batch size) in
+  //               one wake-up. Like every propagation, the batch runs without
+  //               simStateLock, so requests made meanwhile are handled once it
+  //               ends, at most FRAME_NANOS later. The logger still sees every
+  //               tick, the other listeners are only notified at FRAME_NANOS
+  //               intervals.
+  //
   // [manual-tick] If the User/GUI requests a tick happen and autoPropagation is
   //               on, the thread wakes up and invokes toggleClocks() then
   //               propagate(). If autoPropagation is off, thread will wake up
@@ -101,6 +109,9 @@ public class Simulator {
   //               stable, then toggleClocks() is also called before step().
   private static class SimThread extends UniquelyNamedThread {
 
+    // Listeners are notified at most this often when running a tick batch (50 Hz).
+    private static final long FRAME_NANOS = 20_000_000L;
+
     private final Simulator sim;
 
     private ReentrantLock simStateLock = new ReentrantLock();
@@ -112,6 +123,7 @@ public class Simulator {
     private double autoTickFreq = 1.0; // Hz
     private int smoothingFactor = 1; // for WEMA
     private long autoTickNanos = Math.round(1.0e9 / autoTickFreq);
+    private int tickBatch = 1; // half-cycles per wake-up, 1 means no batching
     private int manualTicksRequested = 0;
     private int manualStepsRequested = 0;
     private boolean nudgeRequested = false;
@@ -138,6 +150,8 @@ public class Simulator {
     // lastTick is used only within loop() by a single thread.
     // No synchronization needed.
     private long lastTick = System.nanoTime(); // time of last propagation start
+    private long lastFrame = 0L; // time listeners were last notified of a tick batch
+    private boolean framePending = false; // a tick batch was not reported to all listeners
 
     SimThread(Simulator s) {
       super("SimThread");
@@ -185,7 +199,7 @@ public class Simulator {
     boolean setPropagator(Propagator prop) {
       var smoothFactor = 1;
       if (prop != null) {
-        final var opts = prop.getRootState().getProject().getOptions();
+        final var opts = prop.getRootState().getOptions();
         //smoothFactor = opts.getAttributeSet().getValue(Options.ATTR_SIM_SMOOTH); #TODO: implement smooth factor
         if (smoothFactor < 1) {
           smoothFactor = 1;
@@ -268,6 +282,23 @@ public class Simulator {
       }
     }
 
+    boolean setTickBatch(int batch) {
+      simStateLock.lock();
+      try {
+        batch = Math.max(1, batch);
+        if (tickBatch == batch) {
+          return false;
+        }
+        tickBatch = batch;
+        if (Thread.currentThread() != this) {
+          simStateUpdated.signalAll();
+        }
+        return true;
+      } finally {
+        simStateLock.unlock();
+      }
+    }
+
     void requestStep() {
       simStateLock.lock();
       try {
@@ -345,6 +376,8 @@ public class Simulator {
       var doTickIfStable = false;
       var doStep = false;
       var doProp = false;
+      var doFrame = false;
+      var batchTicks = 0;
       var now = 0L;
       
       simStateLock.lock();
@@ -380,7 +413,21 @@ public class Simulator {
             doStep = !autoPropagating;
             ready = true;
           } else {
-            if (autoTicking && autoPropagating && autoTickNanos > 0) {
+            if (autoTicking && autoPropagating && autoTickNanos > 0 && tickBatch > 1) {
+              // turbo: run all ticks that are due in one go, up to a batch
+              final var due = avgTickNanos <= 0 ? 1 : (now - lastTick) / autoTickNanos;
+              if (due >= 1) {
+                avgTickNanos = autoTickNanos;
+                batchTicks = (int) Math.min(tickBatch, due);
+                ready = true;
+              } else {
+                try {
+                  simStateUpdated.awaitNanos(lastTick + autoTickNanos - now);
+                } catch (InterruptedException e) {
+                  // Do Nothing
+                }
+              }
+            } else if (autoTicking && autoPropagating && autoTickNanos > 0) {
               // see if it is time to do an auto-tick
               final var smooth = smoothingFactor;
               final var lastNanos = now - lastTick;
@@ -416,6 +463,10 @@ public class Simulator {
                   }
                 }
               }
+            } else if (framePending) {
+              // report the outcome of the last tick batch before going idle
+              doFrame = true;
+              ready = true;
             } else {
               avgTickNanos = -1.0;
               try {
@@ -456,6 +507,24 @@ public class Simulator {
         }
       }
 
+      if (batchTicks > 0 && prop != null) {
+        try {
+          final var logger = sim.progressListener;
+          final var evt = new Event(sim, true, false, true);
+          final var start = lastTick;
+          final var done = runTicks(prop, batchTicks, logger, evt, FRAME_NANOS);
+          hasClocks = done >= 0;
+          ticked = true;
+          propagated = true;
+          // Keep the tick rate; if we could not keep up, do not try to catch up later.
+          lastTick = start + Math.max(done, 0) * autoTickNanos;
+          if (now - lastTick > batchTicks * autoTickNanos) lastTick = now;
+        } catch (Exception err) {
+          oops = true;
+          err.printStackTrace();
+        }
+      }
+
       if (doTick || (doTickIfStable && prop != null && !prop.isPending())) {
         lastTick = now;
         ticked = true;
@@ -522,8 +591,20 @@ public class Simulator {
       // We report nudges, but we report them as no-ops, unless they were
       // accompanied by a tick, step, or propagate. That allows for a repaint in
       // some components.
-      if (ticked || stepped || propagated || doNudge) {
-        sim.firePropagationCompleted(ticked, stepped && !propagated, propagated); // FIXME: ack, wrong thread!
+      if (batchTicks > 0) {
+        // The logger has seen each tick already, the others get a frame now and then.
+        final var time = System.nanoTime();
+        framePending = time - lastFrame < FRAME_NANOS;
+        if (!framePending) {
+          lastFrame = time;
+          sim.firePropagationCompleted(true, false, true, sim.progressListener);
+        }
+      } else if (doFrame) {
+        framePending = false;
+        sim.firePropagationCompleted(true, false, true, sim.progressListener);
+      } else if (ticked || stepped || propagated || doNudge) {
+        framePending = false;
+        sim.firePropagationCompleted(ticked, stepped && !propagated, propagated, null); // FIXME: ack, wrong thread!
       }
       if (clockDied) {
         sim.fireSimulatorStateChanged(); // FIXME: ack, wrong thread!
@@ -564,6 +645,28 @@ public class Simulator {
     }
   }
 
+  /**
+   * Runs the given number of half-cycles back to back, as the simulator thread does for a tick
+   * batch, and notifies the logger after each of them. Stops early after a half-cycle that found
+   * no clocks or left the circuit oscillating, or once the given time has passed.
+   *
+   * @return the number of half-cycles run, or -1 if the circuit has no clocks.
+   */
+  static int runTicks(
+      Propagator prop, int count, ProgressListener logger, Event evt, long maxNanos) {
+    final var start = System.nanoTime();
+    var done = 0;
+    while (done < count) {
+      final var hasClocks = prop.toggleClocks();
+      prop.propagate(logger, evt);
+      if (logger != null) logger.propagationCompleted(evt);
+      if (!hasClocks) return -1;
+      done++;
+      if (prop.isOscillating() || System.nanoTime() - start >= maxNanos) break;
+    }
+    return done;
+  }
+
   //
   // Everything below here is invoked and accessed only by the User/GUI thread.
   //
@@ -593,6 +696,7 @@ public class Simulator {
     simThread.start();
 
     setTickFrequency(AppPreferences.TICK_FREQUENCY.get());
+    setTickBatch(AppPreferences.SIM_TICK_BATCH.get());
   }
 
   public void addSimulatorListener(StatusListener listener) {
@@ -675,7 +779,7 @@ public class Simulator {
   }
 
   // called from simThread, but probably should not be
-  private void firePropagationCompleted(boolean t, boolean s, boolean p) {
+  private void firePropagationCompleted(boolean t, boolean s, boolean p, Listener skip) {
     final var event = new Event(this, t, s, p);
     var nrListeners = numListeners;
     if (nrListeners < 0) {
@@ -697,7 +801,7 @@ public class Simulator {
       return;
     }
     for (var idx = 0; idx < nrListeners; idx++) {
-      listeners[idx].propagationCompleted(event);
+      if (listeners[idx] != skip) listeners[idx].propagationCompleted(event);
     }
   }
 
@@ -753,6 +857,15 @@ public class Simulator {
     if (simThread.setTickFrequency(freq)) fireSimulatorStateChanged();
   }
 
+  /**
+   * Sets how many half-cycles the simulator may run per wake-up while auto-ticking. With a batch
+   * larger than one, all ticks that are due are run back to back, and listeners other than the
+   * logger are only notified a few dozen times per second.
+   */
+  public void setTickBatch(int batch) {
+    if (simThread.setTickBatch(batch)) fireSimulatorStateChanged();
+  }
+
   public void step() {
     simThread.requestStep();
   }
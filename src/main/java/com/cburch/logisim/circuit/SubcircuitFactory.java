@@ -309,7 +309,11 @@ public class SubcircuitFactory extends InstanceFactory {
   private CircuitState getSubstate(InstanceState instanceState) {
     var subState = (CircuitState) instanceState.getData();
     if (subState == null) {
-      subState = new CircuitState(instanceState.getProject(), source);
+      final var proj = instanceState.getProject();
+      subState =
+          proj != null
+              ? new CircuitState(proj, source)
+              : new CircuitState(instanceState.getOptions(), source);
       instanceState.setData(subState);
       instanceState.fireInvalidated();
     }
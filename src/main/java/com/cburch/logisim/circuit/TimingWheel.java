@@ -0,0 +1,171 @@
+/*
+ * Logisim-evolution - digital logic design tool and simulator
+ * Copyright by the Logisim-evolution developers
+ *
+ * https://github.com/logisim-evolution/
+ *
+ * This is free software released under GNU GPLv3 license
+ */
+
+package com.cburch.logisim.circuit;
+
+import com.cburch.logisim.circuit.Propagator.SetData;
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.data.Location;
+import com.cburch.logisim.data.Value;
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * Event queue used by the {@link Propagator}. Pending signal changes are kept in a calendar of
+ * {@link #SLOTS} time buckets, each one a FIFO list, so that adding and removing an event is O(1)
+ * for the common case of small delays. Events scheduled further in the future than the calendar
+ * covers are parked in an overflow heap.
+ *
+ * <p>The order in which events are handed out is the same as the order given by {@link
+ * SetData#compareTo}: by time, and for equal times by serial number. Within a bucket this holds
+ * because events are appended in serial number order; events of the same time that went to the
+ * overflow heap were necessarily added before any of them could land in the bucket, so they are
+ * drained first.
+ *
+ * <p>The queue also keeps a small pool of {@link SetData} nodes so the simulator does not need to
+ * allocate one per event. A node may only be recycled once nothing references it anymore, i.e.
+ * when it did not end up in the list of causes of a {@link CircuitState}.
+ */
+final class TimingWheel {
+  private static final int SLOT_BITS = 10;
+  private static final int SLOTS = 1 << SLOT_BITS;
+  private static final int SLOT_MASK = SLOTS - 1;
+  private static final int MAX_POOLED = 1 << 14;
+
+  private final SetData[] heads = new SetData[SLOTS];
+  private final SetData[] tails = new SetData[SLOTS];
+  private final long[] occupied = new long[SLOTS >> 6];
+  private final PriorityQueue<SetData> overflow = new PriorityQueue<>();
+  private int base = 0; // earliest time that can be in the calendar
+  private int wheelSize = 0;
+
+  private SetData pool = null;
+  private int poolSize = 0;
+
+  boolean isEmpty() {
+    return wheelSize == 0 && overflow.isEmpty();
+  }
+
+  int size() {
+    return wheelSize + overflow.size();
+  }
+
+  void add(SetData data) {
+    final var delta = data.time - base;
+    if (delta < 0 || delta >= SLOTS) {
+      overflow.add(data);
+      return;
+    }
+    final var slot = data.time & SLOT_MASK;
+    data.queueNext = null;
+    if (heads[slot] == null) {
+      heads[slot] = data;
+      occupied[slot >>> 6] |= 1L << (slot & 63);
+    } else {
+      tails[slot].queueNext = data;
+    }
+    tails[slot] = data;
+    wheelSize++;
+  }
+
+  /**
+   * Moves the calendar forward to the earliest pending event and returns its time. Must not be
+   * called on an empty queue.
+   */
+  int advance() {
+    var next = 0;
+    var found = false;
+    if (wheelSize > 0) {
+      next = base + nextOccupiedDelta();
+      found = true;
+    }
+    if (!overflow.isEmpty()) {
+      final var overflowTime = overflow.peek().time;
+      // Subtraction keeps the comparison correct when the clock wraps around.
+      if (!found || overflowTime - next < 0) next = overflowTime;
+    }
+    if (next - base > 0) base = next;
+    return next;
+  }
+
+  /**
+   * Removes and returns the next event scheduled at exactly the given time, or null if there is
+   * none left.
+   */
+  SetData poll(int time) {
+    final var first = overflow.peek();
+    if (first != null && first.time == time) return overflow.poll();
+    final var delta = time - base;
+    if (delta < 0 || delta >= SLOTS) return null;
+    final var slot = time & SLOT_MASK;
+    final var ret = heads[slot];
+    if (ret == null) return null;
+    heads[slot] = ret.queueNext;
+    if (ret.queueNext == null) {
+      tails[slot] = null;
+      occupied[slot >>> 6] &= ~(1L << (slot & 63));
+    }
+    ret.queueNext = null;
+    wheelSize--;
+    return ret;
+  }
+
+  void clear() {
+    if (wheelSize > 0) {
+      for (var slot = 0; slot < SLOTS; slot++) {
+        var cur = heads[slot];
+        while (cur != null) {
+          final var next = cur.queueNext;
+          recycle(cur);
+          cur = next;
+        }
+        heads[slot] = null;
+        tails[slot] = null;
+      }
+      Arrays.fill(occupied, 0L);
+      wheelSize = 0;
+    }
+    for (final var data : overflow) recycle(data);
+    overflow.clear();
+  }
+
+  SetData obtain(
+      int time, int serialNumber, CircuitState state, Location loc, Component cause, Value val) {
+    final var ret = pool;
+    if (ret == null) return new SetData(time, serialNumber, state, loc, cause, val);
+    pool = ret.queueNext;
+    poolSize--;
+    ret.init(time, serialNumber, state, loc, cause, val);
+    return ret;
+  }
+
+  void recycle(SetData data) {
+    data.init(0, 0, null, null, null, null);
+    data.next = null;
+    if (poolSize >= MAX_POOLED) {
+      data.queueNext = null;
+      return;
+    }
+    data.queueNext = pool;
+    pool = data;
+    poolSize++;
+  }
+
+  private int nextOccupiedDelta() {
+    final var start = base & SLOT_MASK;
+    var delta = 0;
+    while (delta < SLOTS) {
+      final var slot = (start + delta) & SLOT_MASK;
+      final var bits = occupied[slot >>> 6] >>> (slot & 63);
+      if (bits != 0) return delta + Long.numberOfTrailingZeros(bits);
+      delta += 64 - (slot & 63);
+    }
+    throw new IllegalStateException("timing wheel bookkeeping is inconsistent");
+  }
+}
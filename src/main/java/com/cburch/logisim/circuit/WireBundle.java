@@ -12,7 +12,7 @@ package com.cburch.logisim.circuit;
 import com.cburch.logisim.data.BitWidth;
 import com.cburch.logisim.data.Location;
 import com.cburch.logisim.data.Value;
-import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.LinkedHashSet;
 
 class WireBundle {
   private BitWidth width = BitWidth.UNKNOWN;
@@ -21,7 +21,8 @@ class WireBundle {
   private Location widthDeterminant = null;
   private boolean isBus_ = false;
   WireThread[] threads = null;
-  final CopyOnWriteArraySet<Location> points = new CopyOnWriteArraySet<>(); // points
+  int id = -1; // index into the bundle map's bundle list, see BundleMap.compile()
+  final LinkedHashSet<Location> points = new LinkedHashSet<>(); // points
   // bundle
   // hits
   private WidthIncompatibilityData incompatibilityData = null;
@@ -9,12 +9,13 @@
 
 package com.cburch.logisim.circuit;
 
-import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.ArrayList;
 
 class WireThread {
   private WireThread parent;
-  private final CopyOnWriteArraySet<CircuitWires.ThreadBundle> bundles =
-      new CopyOnWriteArraySet<>();
+  // Only filled while the bundle map is computed; read-only afterwards.
+  private final ArrayList<CircuitWires.ThreadBundle> bundles = new ArrayList<>();
+  int id = -1; // index into the bundle map's thread list, see BundleMap.compile()
 
   WireThread() {
     parent = this;
@@ -30,7 +31,7 @@ class WireThread {
     return ret;
   }
 
-  CopyOnWriteArraySet<CircuitWires.ThreadBundle> getBundles() {
+  ArrayList<CircuitWires.ThreadBundle> getBundles() {
     return bundles;
   }
 
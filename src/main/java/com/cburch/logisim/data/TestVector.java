@@ -79,6 +79,8 @@ public class TestVector {
     private void parseData() throws IOException {
       final var vals = new Value[columnName.length];
       for (var i = 0; i < columnName.length; i++) {
+        if (!curLine.hasMoreTokens())
+          throw new IOException("Test Vector data format error: no value for " + columnName[i]);
         final var t = curLine.nextToken();
 
         try {
@@ -86,6 +88,11 @@ public class TestVector {
         } catch (Exception e) {
           throw new IOException("Test Vector data format error: " + e.getMessage());
         }
+        // the top bit of a tick count would make it negative, or too large to ever finish
+        if (i == ticksColumn && (!vals[i].isFullyDefined() || vals[i].get(31) != Value.FALSE))
+          throw new IOException("Test Vector data format error: bad tick count: " + t);
+        if (i == noResetColumn && !vals[i].isFullyDefined())
+          throw new IOException("Test Vector data format error: bad reset flag: " + t);
         if (data.isEmpty()) columnRadix[i] = Value.radixOfLogString(columnWidth[i], t);
       }
       if (curLine.hasMoreTokens())
@@ -102,6 +109,15 @@ public class TestVector {
       for (var i = 0; i < n; i++) {
         columnRadix[i] = 2;
         final var t = (String) curLine.nextElement();
+        if (t.equals(TICKS_COLUMN) || t.equals(NO_RESET_COLUMN)) {
+          if (t.equals(TICKS_COLUMN) ? ticksColumn >= 0 : noResetColumn >= 0)
+            throw new IOException("Test Vector header format error: duplicate column: " + t);
+          if (t.equals(TICKS_COLUMN)) ticksColumn = i;
+          else noResetColumn = i;
+          columnName[i] = t;
+          columnWidth[i] = t.equals(TICKS_COLUMN) ? BitWidth.create(32) : BitWidth.ONE;
+          continue;
+        }
         int s = t.indexOf('[');
 
         if (s < 0) {
@@ -129,9 +145,25 @@ public class TestVector {
   }
 
   public static final FileFilter FILE_FILTER = new TestVectorFilter();
+
+  /**
+   * Name of the optional column that gives the number of clock ticks to run after the inputs of a
+   * row are set and before its outputs are checked. A tick is half a clock cycle, as for the tick
+   * commands of the simulator.
+   */
+  public static final String TICKS_COLUMN = "<ticks>";
+
+  /**
+   * Name of the optional column that, when 1, lets a row continue from the state the previous row
+   * left behind instead of starting from a reset circuit.
+   */
+  public static final String NO_RESET_COLUMN = "<noreset>";
+
   public String[] columnName;
   public BitWidth[] columnWidth;
   public int[] columnRadix;
+  private int ticksColumn = -1;
+  private int noResetColumn = -1;
 
   public List<Value[]> data;
 
@@ -145,4 +177,25 @@ public class TestVector {
   public TestVector(String filename) throws IOException {
     this(new File(filename));
   }
+
+  /** Returns false for the {@code <ticks>} and {@code <noreset>} columns, true for pin columns. */
+  public boolean isPinColumn(int column) {
+    return column != ticksColumn && column != noResetColumn;
+  }
+
+  /** Returns true if some rows depend on the rows before them, because they are not reset. */
+  public boolean isSequential() {
+    return noResetColumn >= 0;
+  }
+
+  /** Returns true if the circuit is to be reset before the given row is applied. */
+  public boolean isReset(int row) {
+    return row == 0 || noResetColumn < 0 || data.get(row)[noResetColumn] != Value.TRUE;
+  }
+
+  /** Returns the number of clock ticks to run for the given row. */
+  public int getTicks(int row) {
+    // the parser only accepts counts that fit in an int
+    return ticksColumn < 0 ? 0 : (int) data.get(row)[ticksColumn].toLongValue();
+  }
 }
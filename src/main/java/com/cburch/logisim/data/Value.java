@@ -10,7 +10,6 @@
 package com.cburch.logisim.data;
 
 import com.cburch.logisim.prefs.AppPreferences;
-import com.cburch.logisim.util.Cache;
 import java.awt.Color;
 import java.util.Arrays;
 
@@ -29,25 +28,44 @@ public class Value {
       error = error & mask;
       unknown = unknown & mask & ~error;
       value = value & mask & ~unknown & ~error;
-
-      var hashCode = width;
-      hashCode = 31 * hashCode + (int) (error ^ (error >>> 32));
-      hashCode = 31 * hashCode + (int) (unknown ^ (unknown >>> 32));
-      hashCode = 31 * hashCode + (int) (value ^ (value >>> 32));
-      Object cached = cache.get(hashCode);
-      if (cached != null) {
-        Value val = (Value) cached;
-        if (val.value == value
-            && val.width == width
-            && val.error == error
-            && val.unknown == unknown) return val;
-      }
-      final var ret = new Value(width, error, unknown, value);
-      cache.put(hashCode, ret);
-      return ret;
+      if (error == 0 && unknown == 0) return createKnownMasked(width, value);
+      if (error == mask) return allErrors[width];
+      if (unknown == mask) return allUnknowns[width];
+      return intern(width, error, unknown, value);
     }
   }
 
+  // Same as create(width, 0, 0, value) for a value that has no bits set beyond the width.
+  private static Value createKnownMasked(int width, long value) {
+    if (width <= SMALL_WIDTH) return smallKnowns[width][(int) value];
+    return intern(width, 0, 0, value);
+  }
+
+  /*
+   * Multi-bit values that are not preallocated are looked up in a fixed-size table, so that the
+   * common values of a simulation are shared instead of allocated over and over. The table is
+   * lossy: each hash selects a pair of slots, and a new value evicts the older entry of the pair.
+   * It is read and written without locking; since all fields of a Value are final, any thread
+   * that sees an entry also sees it fully constructed, and a lost update only costs an extra
+   * allocation.
+   */
+  private static Value intern(int width, long error, long unknown, long value) {
+    var hash = width;
+    hash = 31 * hash + (int) (error ^ (error >>> 32));
+    hash = 31 * hash + (int) (unknown ^ (unknown >>> 32));
+    hash = 31 * hash + (int) (value ^ (value >>> 32));
+    hash *= 0x9E3779B9; // spread the bits; the top ones select the pair of slots
+    final var slot = (hash >>> (32 - INTERN_BITS)) & ~1;
+    final var first = internTable[slot];
+    if (first != null && first.is(width, error, unknown, value)) return first;
+    final var second = internTable[slot + 1];
+    if (second != null && second.is(width, error, unknown, value)) return second;
+    final var ret = new Value(width, error, unknown, value);
+    internTable[slot + 1] = first;
+    internTable[slot] = ret;
+    return ret;
+  }
+
   public static Value create(Value[] values) {
     if (values.length == 0) return NIL;
     if (values.length == 1) return values[0];
@@ -97,6 +115,14 @@ public class Value {
     return Value.create(bits, 0, 0, value);
   }
 
+  /**
+   * Returns the value of the given width whose bits are described by masks as returned by {@link
+   * #getErrorMask}, {@link #getUnknownMask} and {@link #getValueMask}.
+   */
+  public static Value createFromMasks(int width, long error, long unknown, long value) {
+    return Value.create(width, error, unknown, value);
+  }
+
   /**
    * Code taken from Cornell's version of Logisim: http://www.cs.cornell.edu/courses/cs3410/2015sp/
    */
@@ -201,7 +227,32 @@ public class Value {
   public static Color widthErrorCaptionBgcolor = new Color(AppPreferences.WIDTH_ERROR_BACKGROUND_COLOR.get());
   public static Color clockFrequencyColor = new Color(AppPreferences.CLOCK_FREQUENCY_COLOR.get());
 
-  private static final Cache cache = new Cache();
+  // Values up to this width that have no error and no unknown bits are all preallocated.
+  private static final int SMALL_WIDTH = 8;
+  private static final Value[][] smallKnowns = new Value[SMALL_WIDTH + 1][];
+  private static final Value[] allErrors = new Value[MAX_WIDTH + 1];
+  private static final Value[] allUnknowns = new Value[MAX_WIDTH + 1];
+  private static final int INTERN_BITS = 16;
+  private static final Value[] internTable = new Value[1 << INTERN_BITS];
+
+  static {
+    smallKnowns[0] = new Value[] {NIL};
+    smallKnowns[1] = new Value[] {FALSE, TRUE};
+    for (var width = 2; width <= SMALL_WIDTH; width++) {
+      smallKnowns[width] = new Value[1 << width];
+      for (var value = 0; value < (1 << width); value++) {
+        smallKnowns[width][value] = new Value(width, 0, 0, value);
+      }
+    }
+    allErrors[0] = allUnknowns[0] = NIL;
+    allErrors[1] = ERROR;
+    allUnknowns[1] = UNKNOWN;
+    for (var width = 2; width <= MAX_WIDTH; width++) {
+      final var mask = (width == 64 ? -1L : ~(-1L << width));
+      allErrors[width] = new Value(width, mask, 0, 0);
+      allUnknowns[width] = new Value(width, 0, mask, 0);
+    }
+  }
 
   private final int width;
 
@@ -219,12 +270,31 @@ public class Value {
     this.value = value;
   }
 
+  private boolean is(int width, long error, long unknown, long value) {
+    return this.value == value
+        && this.width == width
+        && this.error == error
+        && this.unknown == unknown;
+  }
+
+  // True if both values have the same width and neither has error or unknown bits, in which case
+  // the bitwise operations reduce to plain long arithmetic on the value bits.
+  private boolean bothKnown(Value other) {
+    return this.width == other.width
+        && (this.error | this.unknown | other.error | other.unknown) == 0;
+  }
+
   public Value and(Value other) {
     if (other == null) return this;
     if (this.width == 1 && other.width == 1) {
       if (this == FALSE || other == FALSE) return FALSE;
       if (this == TRUE && other == TRUE) return TRUE;
       return ERROR;
+    } else if (bothKnown(other)) {
+      final var result = this.value & other.value;
+      if (result == this.value) return this;
+      if (result == other.value) return other;
+      return createKnownMasked(width, result);
     } else {
       long false0 = ~this.value & ~this.error & ~this.unknown;
       long false1 = ~other.value & ~other.error & ~other.unknown;
@@ -267,6 +337,8 @@ public class Value {
       if (this == UNKNOWN) return other;
       if (other == UNKNOWN) return this;
       return ERROR;
+    } else if (this == other || (bothKnown(other) && this.value == other.value)) {
+      return this;
     } else {
       long disagree = (this.value ^ other.value) & ~(this.unknown | other.unknown);
       return Value.create(
@@ -353,6 +425,21 @@ public class Value {
     return width;
   }
 
+  /** Returns a mask with bit i set if bit i of this value is an error. */
+  public long getErrorMask() {
+    return error;
+  }
+
+  /** Returns a mask with bit i set if bit i of this value is unknown. */
+  public long getUnknownMask() {
+    return unknown;
+  }
+
+  /** Returns a mask with bit i set if bit i of this value is 1. */
+  public long getValueMask() {
+    return value;
+  }
+
   @Override
   public int hashCode() {
     var ret = width;
@@ -383,6 +470,9 @@ public class Value {
       if (this == TRUE) return FALSE;
       if (this == FALSE) return TRUE;
       return ERROR;
+    } else if ((this.error | this.unknown) == 0) {
+      final var mask = (width == 64 ? -1L : ~(-1L << width));
+      return createKnownMasked(width, ~this.value & mask);
     } else {
       return Value.create(this.width, this.error | this.unknown, 0, ~this.value);
     }
@@ -394,6 +484,11 @@ public class Value {
       if (this == TRUE || other == TRUE) return TRUE;
       if (this == FALSE && other == FALSE) return FALSE;
       return ERROR;
+    } else if (bothKnown(other)) {
+      final var result = this.value | other.value;
+      if (result == this.value) return this;
+      if (result == other.value) return other;
+      return createKnownMasked(width, result);
     } else {
       long true0 = this.value & ~this.error & ~this.unknown;
       long true1 = other.value & ~other.error & ~other.unknown;
@@ -697,6 +792,8 @@ public class Value {
       if (this == NIL || other == NIL) return ERROR;
       if ((this == TRUE) == (other == TRUE)) return FALSE;
       return TRUE;
+    } else if (bothKnown(other)) {
+      return createKnownMasked(width, this.value ^ other.value);
     } else {
       return Value.create(
           Math.max(this.width, other.width),
@@ -13,6 +13,7 @@ import static com.cburch.logisim.file.Strings.S;
 
 import com.cburch.logisim.gui.generic.OptionPane;
 import com.cburch.logisim.std.Builtin;
+import com.cburch.logisim.std.memory.MemContentsImage;
 import com.cburch.logisim.tools.Library;
 import com.cburch.logisim.util.JFileChoosers;
 import com.cburch.logisim.util.LineBuffer;
@@ -391,10 +392,11 @@ public class Loader implements LibraryLoader {
 
     FileOutputStream fwrite = null;
     final var oldFile = getMainFile();
+    String image = null;
     try {
       setMainFile(dest);
       fwrite = new FileOutputStream(dest);
-      file.write(fwrite, this, dest, null);
+      image = file.save(fwrite, this, dest);
       file.setName(toProjectName(dest));
       LibraryManager.instance.fileSaved(this, dest, oldFile, file);
     } catch (IOException e) {
@@ -449,6 +451,8 @@ public class Loader implements LibraryLoader {
       // FIXME: delete can fail. Ensure we will not have snowball effect here!
       backup.delete();
     }
+    // the memory images of earlier saves are kept until the backup is no longer needed
+    MemContentsImage.deleteOthers(dest, image);
     if (autosaveFile != null && autosaveFile.exists()) {
       deleteAutosave();
     }
@@ -45,8 +45,6 @@ import java.util.LinkedList;
 import java.util.List;
 import javax.swing.JOptionPane;
 import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.TransformerConfigurationException;
-import javax.xml.transform.TransformerException;
 import org.xml.sax.SAXException;
 
 public class LogisimFile extends Library implements LibraryEventSource, CircuitListener {
@@ -119,6 +117,7 @@ public class LogisimFile extends Library implements LibraryEventSource, CircuitL
   private final Options options = new Options();
   private final List<AddTool> tools = new LinkedList<>();
   private final List<Library> libraries = new LinkedList<>();
+  private final XmlWriter.Cache writerCache = new XmlWriter.Cache();
   private Loader loader;
   private Circuit main = null;
   private String name;
@@ -680,19 +679,33 @@ public class LogisimFile extends Library implements LibraryEventSource, CircuitL
     write(out, loader, null, libraryHome);
   }
 
-  void write(OutputStream out, LibraryLoader loader, File dest, String libraryHome) {
+  /** Returns the name of the memory image written next to dest, or null if there is none. */
+  String write(OutputStream out, LibraryLoader loader, File dest, String libraryHome) {
     try {
-      XmlWriter.write(this, out, loader, dest, libraryHome);
-    } catch (TransformerConfigurationException e) {
-      loader.showError("internal error configuring transformer");
+      return XmlWriter.write(this, writerCache, out, loader, dest, libraryHome);
     } catch (ParserConfigurationException e) {
       loader.showError("internal error configuring parser");
-    } catch (TransformerException e) {
+    } catch (IOException e) {
       final var msg = e.getMessage();
       var err = S.get("xmlConversionError");
       if (msg == null) err += ": " + msg;
       loader.showError(err);
     }
+    return null;
+  }
+
+  /**
+   * Writes the file that is saved as dest. Unlike {@link #write}, errors are thrown rather than
+   * shown, so that the caller knows the save failed.
+   *
+   * @return the name of the memory image written next to dest, or null if there is none
+   */
+  String save(OutputStream out, LibraryLoader loader, File dest) throws IOException {
+    try {
+      return XmlWriter.write(this, writerCache, out, loader, dest, null);
+    } catch (ParserConfigurationException e) {
+      throw new IOException("internal error configuring parser", e);
+    }
   }
 
   void interruptAutosaveThread() {
@@ -16,11 +16,11 @@ import com.cburch.logisim.circuit.Circuit;
 import com.cburch.logisim.circuit.CircuitAttributes;
 import com.cburch.logisim.circuit.CircuitMutator;
 import com.cburch.logisim.circuit.CircuitTransaction;
+import com.cburch.logisim.circuit.SubcircuitFactory;
 import com.cburch.logisim.circuit.Wire;
 import com.cburch.logisim.circuit.appear.AppearanceSvgReader;
 import com.cburch.logisim.comp.Component;
 import com.cburch.logisim.data.AttributeSet;
-import com.cburch.logisim.data.Bounds;
 import com.cburch.logisim.data.Location;
 import com.cburch.logisim.std.base.Text;
 import com.cburch.logisim.std.memory.Mem;
@@ -29,13 +29,20 @@ import com.cburch.logisim.std.memory.RamAttributes;
 import com.cburch.logisim.tools.AddTool;
 import com.cburch.logisim.util.CollectionUtil;
 import com.cburch.logisim.util.StringUtil;
+import com.cburch.logisim.vhdl.base.VhdlEntity;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import org.w3c.dom.Element;
 
+/**
+ * Builds the circuits read from a file. This is done in two steps: first each circuit gets its
+ * static attributes, its wires and the components from libraries, then the subcircuits and VHDL
+ * entities used by the circuits, whether from this file or from libraries, are added and the
+ * dynamic parts of their appearances are created. The first step only changes the circuit being
+ * built, so the circuits can be built in parallel; the second step also changes the circuits and
+ * entities that are used, so it is done in a single transaction for all circuits.
+ */
 public class XmlCircuitReader extends CircuitTransaction {
 
   private static final String contextFmt = "%s.%s";
@@ -43,37 +50,54 @@ public class XmlCircuitReader extends CircuitTransaction {
   private final XmlReader.ReadContext reader;
 
   private final List<XmlReader.CircuitData> circuitsData;
+  private final boolean linking;
   private boolean isHolyCross = false;
   private boolean isEvolution = false;
 
+  /**
+   * @param linking false for the first step, true for the second
+   */
   public XmlCircuitReader(
       XmlReader.ReadContext reader,
       List<XmlReader.CircuitData> circDatas,
       boolean isThisHolyCrossFile,
-      boolean isThisEvolutionFile) {
+      boolean isThisEvolutionFile,
+      boolean linking) {
     this.reader = reader;
     this.circuitsData = circDatas;
     this.isHolyCross = isThisHolyCrossFile;
     this.isEvolution = isThisEvolutionFile;
+    this.linking = linking;
+    if (!linking) {
+      // A document must not be read by several threads, so the circuit's own attributes are
+      // read here rather than in the transaction.
+      for (final var circData : circDatas) {
+        circData.attrs = new HashMap<>();
+        circData.messages = reader.readAttributes(circData.circuitElement, circData.attrs);
+      }
+    }
   }
 
   /**
-   * @param elt XML element to parse
+   * @param data component description read from the file
    * @param reader XML file reader
-   * @return the component built from its XML description
+   * @return the component built from its description
    * @throws XmlReaderException
    */
   static Component getComponent(
-      Element elt, XmlReader.ReadContext reader, boolean isHolyCross, boolean isEvolution)
+      XmlReader.ComponentData data,
+      XmlReader.ReadContext reader,
+      boolean isHolyCross,
+      boolean isEvolution)
       throws XmlReaderException {
 
     // Determine the factory that creates this element
-    final var name = elt.getAttribute("name");
+    final var name = data.name;
     if (StringUtil.isNullOrEmpty(name)) {
       throw new XmlReaderException(S.get("compNameMissingError"));
     }
 
-    final var libName = elt.getAttribute("lib");
+    final var libName = data.lib;
     final var lib = reader.findLibrary(libName);
     if (lib == null) {
       // FIXME: the "no-lib" thing may not be clear enough
@@ -91,7 +115,7 @@ public class XmlCircuitReader extends CircuitTransaction {
     final var source = ((AddTool) tool).getFactory();
 
     // Determine attributes
-    final var locStr = elt.getAttribute("loc");
+    final var locStr = data.loc;
     final var attrs = source.createAttributeSet();
     var defaults = source;
     if (isHolyCross && source instanceof Ram) {
@@ -100,7 +124,7 @@ public class XmlCircuitReader extends CircuitTransaction {
       ramAttrs.updateAttributes();
       defaults = null;
     }
-    reader.initAttributeSet(elt, attrs, defaults, isHolyCross, isEvolution);
+    reader.initAttributeSet(data.attrs, data.messages, attrs, defaults, isHolyCross, isEvolution);
 
     // Create component if location known
     if (StringUtil.isNullOrEmpty(locStr)) {
@@ -113,56 +137,50 @@ public class XmlCircuitReader extends CircuitTransaction {
     }
   }
 
-  void addWire(Circuit dest, CircuitMutator mutator, Element elt) throws XmlReaderException {
+  /**
+   * @return the wire between the given locations, or null if they are the same
+   * @throws XmlReaderException
+   */
+  static Wire getWire(String from, String to) throws XmlReaderException {
     Location pt0;
     try {
-      final var str = elt.getAttribute("from");
-      if (str == null || "".equals(str)) {
+      if (from == null || "".equals(from)) {
         throw new XmlReaderException(S.get("wireStartMissingError"));
       }
-      pt0 = Location.parse(str);
+      pt0 = Location.parse(from);
     } catch (NumberFormatException e) {
       throw new XmlReaderException(S.get("wireStartInvalidError"));
     }
 
     Location pt1;
     try {
-      final var str = elt.getAttribute("to");
-      if (str == null || "".equals(str)) {
+      if (to == null || "".equals(to)) {
         throw new XmlReaderException(S.get("wireEndMissingError"));
       }
-      pt1 = Location.parse(str);
+      pt1 = Location.parse(to);
     } catch (NumberFormatException e) {
       throw new XmlReaderException(S.get("wireEndInvalidError"));
     }
 
-    if (!pt0.equals(pt1)) {
-      // Avoid zero length wires
-      mutator.add(dest, Wire.create(pt0, pt1));
-    }
+    // Avoid zero length wires
+    return pt0.equals(pt1) ? null : Wire.create(pt0, pt1);
   }
 
-  private void buildCircuit(XmlReader.CircuitData circData, CircuitMutator mutator) {
-    final var element = circData.circuitElement;
+  private void buildStaticAttributes(XmlReader.CircuitData circData) {
     final var dest = circData.circuit;
-    var knownComponents = circData.knownComponents;
-    if (knownComponents == null) knownComponents = Collections.emptyMap();
     try {
       /* Here we check the attribute circuitnamedbox for backwards compatibility */
-      var hasNamedBox = false;
-      var hasNamedBoxFixedSize = false;
-      var hasAppearAttr = false;
-      for (final var attrElt : XmlIterator.forChildElements(circData.circuitElement, "a")) {
-        if (attrElt.hasAttribute("name")) {
-          final var name = attrElt.getAttribute("name");
-          hasNamedBox |= "circuitnamedbox".equals(name);
-          hasAppearAttr |= "appearance".equals(name);
-          hasNamedBoxFixedSize |= "circuitnamedboxfixedsize".equals(name);
-        }
-      }
+      final var hasNamedBox = circData.attrs.containsKey("circuitnamedbox");
+      final var hasNamedBoxFixedSize = circData.attrs.containsKey("circuitnamedboxfixedsize");
+      final var hasAppearAttr = circData.attrs.containsKey("appearance");
       reader.initAttributeSet(
-          circData.circuitElement, dest.getStaticAttributes(), null, isHolyCross, isEvolution);
-      if (circData.circuitElement.hasChildNodes()) {
+          circData.attrs,
+          circData.messages,
+          dest.getStaticAttributes(),
+          null,
+          isHolyCross,
+          isEvolution);
+      if (circData.hasContents) {
         if (hasNamedBox) {
           // This situation is clear, it is an older logisim-evolution file
           final var appear =
@@ -189,52 +207,57 @@ public class XmlCircuitReader extends CircuitTransaction {
         }
       }
     } catch (XmlReaderException e) {
-      reader.addErrors(e, circData.circuit.getName() + ".static");
+      reader.addErrors(circData, e, circData.circuit.getName() + ".static");
     }
+    circData.attrs = null;
+    circData.messages = null;
+  }
 
-    final var componentsAt = new HashMap<Bounds, Component>();
+  /**
+   * Adds the components of the circuit: those from libraries in the first step, the subcircuits
+   * and VHDL entities in the second. In the first step, the wires are added as well.
+   */
+  private void buildCircuit(XmlReader.CircuitData circData, CircuitMutator mutator) {
+    final var dest = circData.circuit;
+    if (circData.componentsAt == null) circData.componentsAt = new HashMap<>();
+    final var componentsAt = circData.componentsAt;
     final var overlapComponents = new ArrayList<Component>();
-    for (final var subElement : XmlIterator.forChildElements(element)) {
-      final var subEltName = subElement.getTagName();
-      if ("comp".equals(subEltName)) {
-        try {
-          var comp = knownComponents.get(subElement);
-          if (comp == null) comp = getComponent(subElement, reader, isHolyCross, isEvolution);
-          if (comp != null) {
-            /* filter out empty text boxes */
-            if (comp.getFactory() instanceof Text) {
-              if (comp.getAttributeSet().getValue(Text.ATTR_TEXT).isEmpty()) {
-                continue;
-              }
-            }
-            final var bds = comp.getBounds();
-            final var conflict = componentsAt.get(bds);
-            if (conflict != null) {
-              final var msg =
-                  S.get(
-                      "fileComponentOverlapError",
-                      conflict.getFactory().getName() + conflict.getLocation(),
-                      comp.getFactory().getName() + conflict.getLocation());
-              reader.addError(msg, circData.circuit.getName());
-              overlapComponents.add(comp);
-            } else {
-              mutator.add(dest, comp);
-              componentsAt.put(bds, comp);
+    for (final var data : circData.components) {
+      if (isLinked(data) != linking) continue;
+      try {
+        var comp = data.component;
+        if (comp == null) comp = getComponent(data, reader, isHolyCross, isEvolution);
+        if (comp != null) {
+          /* filter out empty text boxes */
+          if (comp.getFactory() instanceof Text) {
+            if (comp.getAttributeSet().getValue(Text.ATTR_TEXT).isEmpty()) {
+              continue;
             }
           }
-        } catch (XmlReaderException e) {
-          final var context =
-              String.format(contextFmt, circData.circuit.getName(), toComponentString(subElement));
-          reader.addErrors(e, context);
-        }
-      } else if ("wire".equals(subEltName)) {
-        try {
-          addWire(dest, mutator, subElement);
-        } catch (XmlReaderException e) {
-          final var context =
-              String.format(contextFmt, circData.circuit.getName(), toWireString(subElement));
-          reader.addErrors(e, context);
+          final var bds = comp.getBounds();
+          final var conflict = componentsAt.get(bds);
+          if (conflict != null) {
+            final var msg =
+                S.get(
+                    "fileComponentOverlapError",
+                    conflict.getFactory().getName() + conflict.getLocation(),
+                    comp.getFactory().getName() + conflict.getLocation());
+            reader.addError(circData, msg, circData.circuit.getName());
+            overlapComponents.add(comp);
+          } else {
+            mutator.add(dest, comp);
+            componentsAt.put(bds, comp);
+          }
         }
+      } catch (XmlReaderException e) {
+        final var context =
+            String.format(contextFmt, circData.circuit.getName(), toComponentString(data));
+        reader.addErrors(circData, e, context);
+      }
+    }
+    if (!linking) {
+      for (final var wire : circData.wires) {
+        mutator.add(dest, wire);
       }
     }
     for (var comp : overlapComponents) {
@@ -253,6 +276,19 @@ public class XmlCircuitReader extends CircuitTransaction {
       componentsAt.put(comp.getBounds(), comp);
       mutator.add(dest, comp);
     }
+    if (linking) circData.componentsAt = null;
+  }
+
+  /**
+   * Returns whether the component is added in the second step: adding a subcircuit or VHDL entity
+   * registers it with the circuit or entity it uses, which other circuits may use as well. The
+   * components from this file are all added then, as their tools may only be known by then.
+   */
+  private static boolean isLinked(XmlReader.ComponentData data) {
+    if (StringUtil.isNullOrEmpty(data.lib)) return true;
+    if (data.component == null) return false; // reported in the first step
+    final var factory = data.component.getFactory();
+    return factory instanceof SubcircuitFactory || factory instanceof VhdlEntity;
   }
 
   private void buildDynamicAppearance(XmlReader.CircuitData circData) {
@@ -270,7 +306,8 @@ public class XmlCircuitReader extends CircuitTransaction {
           if (m == null) {
             final var context =
                 String.format(contextFmt, circData.circuit.getName(), sub.getTagName());
-            reader.addError(S.get("fileAppearanceNotFound", sub.getTagName()), context);
+            reader.addError(
+                circData, S.get("fileAppearanceNotFound", sub.getTagName()), context);
           } else {
             shapes.add(m);
             layers.add(layer);
@@ -278,7 +315,7 @@ public class XmlCircuitReader extends CircuitTransaction {
         } catch (RuntimeException e) {
           final var context =
               String.format(contextFmt, circData.circuit.getName(), sub.getTagName());
-          reader.addError(S.get("fileAppearanceError", sub.getTagName()), context);
+          reader.addError(circData, S.get("fileAppearanceError", sub.getTagName()), context);
         }
       }
     }
@@ -308,22 +345,21 @@ public class XmlCircuitReader extends CircuitTransaction {
   @Override
   protected void run(CircuitMutator mutator) {
     for (final var circuitData : circuitsData) {
+      if (!linking) buildStaticAttributes(circuitData);
       buildCircuit(circuitData, mutator);
     }
-    for (final var circuitData : circuitsData) {
-      buildDynamicAppearance(circuitData);
+    if (linking) {
+      for (final var circuitData : circuitsData) {
+        buildDynamicAppearance(circuitData);
+      }
     }
   }
 
-  private String toComponentString(Element elt) {
-    final var name = elt.getAttribute("name");
-    final var loc = elt.getAttribute("loc");
-    return String.format("%s(%s)", name, loc);
+  private String toComponentString(XmlReader.ComponentData data) {
+    return String.format("%s(%s)", data.name, data.loc);
   }
 
-  private String toWireString(Element elt) {
-    final var from = elt.getAttribute("from");
-    final var to = elt.getAttribute("to");
+  static String toWireString(String from, String to) {
     return String.format("w%s-%s", from, to);
   }
 }
@@ -16,11 +16,13 @@ import com.cburch.logisim.LogisimVersion;
 import com.cburch.logisim.circuit.Circuit;
 import com.cburch.logisim.circuit.CircuitMapInfo;
 import com.cburch.logisim.circuit.Splitter;
+import com.cburch.logisim.circuit.Wire;
 import com.cburch.logisim.circuit.appear.AppearanceSvgReader;
 import com.cburch.logisim.comp.Component;
 import com.cburch.logisim.data.Attribute;
 import com.cburch.logisim.data.AttributeDefaultProvider;
 import com.cburch.logisim.data.AttributeSet;
+import com.cburch.logisim.data.Bounds;
 import com.cburch.logisim.fpga.data.BoardRectangle;
 import com.cburch.logisim.fpga.data.MapComponent;
 import com.cburch.logisim.generated.BuildInfo;
@@ -30,6 +32,8 @@ import com.cburch.logisim.instance.StdAttr;
 import com.cburch.logisim.prefs.AppPreferences;
 import com.cburch.logisim.proj.Project;
 import com.cburch.logisim.std.base.Text;
+import com.cburch.logisim.std.memory.MemContentsImage;
+import com.cburch.logisim.std.memory.Rom;
 import com.cburch.logisim.std.wiring.BitExtender;
 import com.cburch.logisim.std.wiring.Clock;
 import com.cburch.logisim.std.wiring.Pin;
@@ -48,8 +52,11 @@ import com.cburch.logisim.tools.WiringTool;
 import com.cburch.logisim.util.InputEventUtil;
 import com.cburch.logisim.util.LineBuffer;
 import com.cburch.logisim.util.StringUtil;
+import com.cburch.logisim.util.UniquelyNamedThread;
 import com.cburch.logisim.util.XmlUtil;
 import com.cburch.logisim.vhdl.base.VhdlContent;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -61,9 +68,15 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import javax.xml.XMLConstants;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.w3c.dom.Document;
@@ -72,11 +85,23 @@ import org.xml.sax.SAXException;
 
 class XmlReader {
 
+  // the number of threads that build the circuits of a file, at most
+  static int buildThreads = Runtime.getRuntime().availableProcessors();
+
   static class CircuitData {
     final Element circuitElement;
     final Circuit circuit;
-    Map<Element, Component> knownComponents;
+    final List<ComponentData> components = new ArrayList<>();
+    final List<Wire> wires = new ArrayList<>();
+    boolean hasContents;
     List<AbstractCanvasObject> appearance;
+    // the attributes of the circuit, with the errors found in them, until it is built
+    Map<String, String> attrs;
+    List<String> messages;
+    // the errors found while building the circuit, which may happen on another thread
+    final List<String> errors = new ArrayList<>();
+    // the components added so far, by their bounds, until the circuit is built
+    Map<Bounds, Component> componentsAt;
 
     public CircuitData(Element circuitElement, Circuit circuit) {
       this.circuitElement = circuitElement;
@@ -84,11 +109,34 @@ class XmlReader {
     }
   }
 
+  /**
+   * A component as described in the file: the tool that creates it, its location and the values
+   * of its attributes. The component itself is created as soon as that tool is known.
+   */
+  static class ComponentData {
+    String name;
+    final String lib;
+    final String loc;
+    Map<String, String> attrs = new HashMap<>();
+    List<String> messages;
+    Component component;
+
+    ComponentData(String name, String lib, String loc) {
+      this.name = name;
+      this.lib = lib;
+      this.loc = loc;
+    }
+  }
+
   class ReadContext {
     final LogisimFile file;
     LogisimVersion sourceVersion;
     final HashMap<String, Library> libs = new HashMap<>();
     private final ArrayList<String> messages;
+    // labels that are not valid VHDL, with their replacements, when reading from a stream
+    private final HashMap<String, String> circuitNames = new HashMap<>();
+    private final HashMap<String, String> circuitLabels = new HashMap<>();
+    private final HashMap<String, String> componentLabels = new HashMap<>();
 
     ReadContext(LogisimFile file) {
       this.file = file;
@@ -96,10 +144,26 @@ class XmlReader {
     }
 
     void addError(String message, String context) {
-      messages.add(message + " [" + context + "]");
+      addError(messages, message, context);
     }
 
     void addErrors(XmlReaderException exception, String context) {
+      addErrors(messages, exception, context);
+    }
+
+    void addError(CircuitData circData, String message, String context) {
+      addError(circData.errors, message, context);
+    }
+
+    void addErrors(CircuitData circData, XmlReaderException exception, String context) {
+      addErrors(circData.errors, exception, context);
+    }
+
+    private void addError(List<String> messages, String message, String context) {
+      messages.add(message + " [" + context + "]");
+    }
+
+    private void addErrors(List<String> messages, XmlReaderException exception, String context) {
       for (final var msg : exception.getMessages()) {
         messages.add(msg + " [" + context + "]");
       }
@@ -119,35 +183,66 @@ class XmlReader {
         boolean isHolyCross,
         boolean isEvolution)
         throws XmlReaderException {
-      List<String> messages = null;
-
       final var attrsDefined = new HashMap<String, String>();
+      final var messages = readAttributes(parent, attrsDefined);
+      initAttributeSet(attrsDefined, messages, attrs, defaults, isHolyCross, isEvolution);
+    }
+
+    /**
+     * Collects the values given by the {@code <a>} children of the element.
+     *
+     * @return the errors found, or null if there are none
+     */
+    List<String> readAttributes(Element parent, Map<String, String> attrsDefined) {
+      List<String> messages = null;
       for (final var attrElt : XmlIterator.forChildElements(parent, "a")) {
         if (!attrElt.hasAttribute("name")) {
           if (messages == null) messages = new ArrayList<>();
           messages.add(S.get("attrNameMissingError"));
         } else {
           final var attrName = attrElt.getAttribute("name");
-          String attrVal;
-          if (attrElt.hasAttribute("val")) {
-            attrVal = attrElt.getAttribute("val");
-            if ("filePath".equals(attrName)) {
-              /* De-relativize the path */
-              var dirPath = "";
-              if (srcFilePath != null)
-                dirPath = srcFilePath.substring(0, srcFilePath.lastIndexOf(File.separator));
-              final var tmp = Paths.get(dirPath, attrVal);
-              attrVal = tmp.toString();
-            }
-          } else {
-            attrVal = attrElt.getTextContent();
-          }
-          attrsDefined.put(attrName, attrVal);
+          final var attrVal =
+              attrElt.hasAttribute("val") ? attrElt.getAttribute("val") : attrElt.getTextContent();
+          attrsDefined.put(attrName, toAttributeValue(attrName, attrVal));
         }
       }
+      return messages;
+    }
 
+    private String toAttributeValue(String attrName, String attrVal) {
+      if ("filePath".equals(attrName)) {
+        /* De-relativize the path */
+        var dirPath = "";
+        if (srcFilePath != null)
+          dirPath = srcFilePath.substring(0, srcFilePath.lastIndexOf(File.separator));
+        final var tmp = Paths.get(dirPath, attrVal);
+        return tmp.toString();
+      }
+      if (Rom.CONTENTS_ATTR.getName().equals(attrName) && srcFilePath != null) {
+        /* Memory images are stored next to the file */
+        try {
+          return MemContentsImage.resolve(attrVal, Paths.get(srcFilePath).getParent());
+        } catch (IOException e) {
+          // keep the memory, with empty contents
+          addError(S.get("memImageError", e.getMessage()), attrName);
+          return attrVal.substring(0, attrVal.indexOf('\n') + 1);
+        }
+      }
+      return attrVal;
+    }
+
+    void initAttributeSet(
+        Map<String, String> attrsDefined,
+        List<String> readErrors,
+        AttributeSet attrs,
+        AttributeDefaultProvider defaults,
+        boolean isHolyCross,
+        boolean isEvolution)
+        throws XmlReaderException {
       if (attrs == null) return;
 
+      List<String> messages = readErrors == null ? null : new ArrayList<>(readErrors);
+
       LogisimVersion ver = sourceVersion;
       boolean setDefaults = defaults != null && !defaults.isAllDefaultValues(attrs, ver);
       // We need to process this in order, and we have to refetch the
@@ -264,16 +359,48 @@ class XmlReader {
       }
     }
 
-    private Map<Element, Component> loadKnownComponents(Element elt, boolean isHolyCross, boolean isEvolution) {
-      final var known = new HashMap<Element, Component>();
-      for (final var sub : XmlIterator.forChildElements(elt, "comp")) {
-        try {
-          final var comp = XmlCircuitReader.getComponent(sub, this, isHolyCross, isEvolution);
-          if (comp != null) known.put(sub, comp);
-        } catch (XmlReaderException ignored) {
+    /**
+     * Reads the components and wires of a circuit. The components are created right away if their
+     * tools are known by then, otherwise when the circuit is built.
+     */
+    private void loadContents(
+        Element elt, CircuitData circData, boolean isHolyCross, boolean isEvolution) {
+      for (final var sub : XmlIterator.forChildElements(elt)) {
+        switch (sub.getTagName()) {
+          case "comp" -> {
+            final var data =
+                new ComponentData(
+                    sub.getAttribute("name"),
+                    sub.hasAttribute("lib") ? sub.getAttribute("lib") : null,
+                    sub.getAttribute("loc"));
+            data.messages = readAttributes(sub, data.attrs);
+            circData.components.add(data);
+            loadComponent(data, isHolyCross, isEvolution);
+          }
+          case "wire" -> addWire(circData, sub.getAttribute("from"), sub.getAttribute("to"));
+          default -> {
+            // do nothing
+          }
         }
       }
-      return known;
+    }
+
+    private void loadComponent(ComponentData data, boolean isHolyCross, boolean isEvolution) {
+      try {
+        data.component = XmlCircuitReader.getComponent(data, this, isHolyCross, isEvolution);
+      } catch (XmlReaderException ignored) {
+        // reported when the circuit is built
+      }
+      if (data.component != null) data.attrs = null;
+    }
+
+    private void addWire(CircuitData circData, String from, String to) {
+      try {
+        final var wire = XmlCircuitReader.getWire(from, to);
+        if (wire != null) circData.wires.add(wire);
+      } catch (XmlReaderException e) {
+        addErrors(e, circData.circuit.getName() + "." + XmlCircuitReader.toWireString(from, to));
+      }
     }
 
     void loadMap(Element board, String boardName, Circuit circ) {
@@ -318,8 +445,9 @@ class XmlReader {
 
     void loadAppearance(Element appearElt, XmlReader.CircuitData circData, String context) {
       final var pins = new ArrayList<AppearanceSvgReader.PinInfo>();
-      for (final var comp : circData.knownComponents.values()) {
-        if (comp.getFactory() == Pin.FACTORY) {
+      for (final var data : circData.components) {
+        final var comp = data.component;
+        if (comp != null && comp.getFactory() == Pin.FACTORY) {
           pins.add(AppearanceSvgReader.getPinInfo(comp.getLocation(), Instance.getInstanceFor(comp)));
         }
       }
@@ -383,10 +511,230 @@ class XmlReader {
     }
 
     private void toLogisimFile(Element elt, Project proj) {
-      // determine the version producing this file
-      final var versionString = elt.getAttribute("source");
+      final var isHolyCrossFile = readSourceVersion(elt.getAttribute("source"));
+      final var isEvolutionFile = true;
+
+      // first, load the sublibraries
+      loadLibraries(XmlIterator.forChildElements(elt, "lib"), isHolyCrossFile, isEvolutionFile);
+
+      // second, create the circuits - empty for now - and the vhdl entities
+      final var circuitsData = new ArrayList<CircuitData>();
+      for (final var circElt : XmlIterator.forChildElements(elt)) {
+        switch (circElt.getTagName()) {
+          case "vhdl" -> loadVhdl(circElt);
+          case "circuit" -> {
+            final var circData = addCircuit(circElt, circElt.getAttribute("name"), proj);
+            circData.hasContents = circElt.hasChildNodes();
+            loadContents(circElt, circData, isHolyCrossFile, isEvolutionFile);
+            loadExtras(circData);
+            circuitsData.add(circData);
+          }
+          default -> {
+            // do nothing
+          }
+        }
+      }
+
+      // third, process the other child elements
+      for (final var subElt : XmlIterator.forChildElements(elt)) {
+        loadElement(subElt, isHolyCrossFile, isEvolutionFile);
+      }
+
+      // fourth, build all the circuits
+      buildCircuits(circuitsData, isHolyCrossFile, isEvolutionFile);
+    }
+
+    /**
+     * Builds the circuits: each one in its own transaction, in parallel as they do not depend on
+     * each other, and then their subcircuits and VHDL entities in a single transaction. The errors
+     * found are reported by circuit, in the order of the file.
+     */
+    private void buildCircuits(
+        List<CircuitData> circuitsData, boolean isHolyCross, boolean isEvolution) {
+      final var builders = new ArrayList<XmlCircuitReader>(circuitsData.size());
+      for (final var circData : circuitsData) {
+        builders.add(
+            new XmlCircuitReader(this, List.of(circData), isHolyCross, isEvolution, false));
+      }
+      final var numThreads = Math.min(buildThreads, builders.size());
+      if (numThreads <= 1) {
+        for (final var builder : builders) builder.execute();
+      } else {
+        final var executor =
+            Executors.newFixedThreadPool(
+                numThreads,
+                r -> {
+                  final var thread = new UniquelyNamedThread(r, "XmlReader-Worker");
+                  thread.setDaemon(true);
+                  return thread;
+                });
+        try {
+          final var tasks = new ArrayList<Future<?>>(builders.size());
+          for (final var builder : builders) tasks.add(executor.submit(builder::execute));
+          for (final var task : tasks) task.get();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+          if (e.getCause() instanceof RuntimeException re) throw re;
+          throw new IllegalStateException(e.getCause());
+        } finally {
+          executor.shutdownNow();
+        }
+      }
+      new XmlCircuitReader(this, circuitsData, isHolyCross, isEvolution, true).execute();
+      for (final var circData : circuitsData) messages.addAll(circData.errors);
+    }
+
+    /**
+     * Reads the file in a single pass, without building a document for it, which takes far less
+     * memory for large files. The stream must be positioned at the root element. It does the same
+     * as {@link #toLogisimFile(Element, Project)} after {@link #ensureLogisimCompatibility}, for
+     * files that need no repairs: the elements that are not circuits are small, so they are still
+     * built as elements and handled in the same order; the components and wires of the circuits
+     * are read directly, and invalid labels are replaced as they are met.
+     */
+    private void toLogisimFile(XMLStreamReader in, Document doc, Project proj)
+        throws XMLStreamException {
+      final var isHolyCrossFile = readSourceVersion(attribute(in, "source"));
+      final var isEvolutionFile = true;
+
+      final var libElts = new ArrayList<Element>();
+      final var otherElts = new ArrayList<Element>();
+      final var circuitsData = new ArrayList<CircuitData>();
+      var libsLoaded = false;
+      while (in.hasNext()) {
+        if (in.next() != XMLStreamConstants.START_ELEMENT) continue;
+        final var name = in.getLocalName();
+        if ("lib".equals(name)) {
+          final var libElt = readElement(in, doc);
+          cleanupToolsLabel(libElt);
+          if (libsLoaded) {
+            loadLibraries(List.of(libElt), isHolyCrossFile, isEvolutionFile);
+          } else {
+            libElts.add(libElt);
+          }
+          continue;
+        }
+        // the libraries come first, we need them to create the components
+        if (!libsLoaded) {
+          loadLibraries(libElts, isHolyCrossFile, isEvolutionFile);
+          libsLoaded = true;
+        }
+        switch (name) {
+          case "vhdl" -> loadVhdl(readElement(in, doc));
+          case "circuit" -> circuitsData.add(
+              readCircuit(in, doc, proj, isHolyCrossFile, isEvolutionFile));
+          default -> {
+            final var elt = readElement(in, doc);
+            if ("toolbar".equals(name)) cleanupToolsLabel(elt);
+            otherElts.add(elt);
+          }
+        }
+      }
+      if (!libsLoaded) loadLibraries(libElts, isHolyCrossFile, isEvolutionFile);
+
+      // subcircuits used before their circuit was renamed
+      if (!circuitNames.isEmpty()) {
+        for (final var circData : circuitsData) {
+          for (final var data : circData.components) {
+            if (data.component == null && data.lib == null) {
+              data.name = circuitNames.getOrDefault(data.name, data.name);
+            }
+          }
+        }
+      }
+
+      for (final var elt : otherElts) {
+        loadElement(elt, isHolyCrossFile, isEvolutionFile);
+      }
+
+      buildCircuits(circuitsData, isHolyCrossFile, isEvolutionFile);
+    }
+
+    /**
+     * Reads a circuit element from the stream. The {@code <a>}, {@code <appear>} and {@code
+     * <boardmap>} children are kept in the circuit element of the returned data.
+     */
+    private CircuitData readCircuit(
+        XMLStreamReader in,
+        Document doc,
+        Project proj,
+        boolean isHolyCross,
+        boolean isEvolution)
+        throws XMLStreamException {
+      final var fileName = attribute(in, "name");
+      final var name = toValidLabel(circuitNames, fileName);
+      final var circElt = doc.createElement("circuit");
+      circElt.setAttribute("name", name);
+      final var circData = addCircuit(circElt, name, proj);
+      while (in.next() != XMLStreamConstants.END_ELEMENT) {
+        circData.hasContents = true;
+        if (in.getEventType() != XMLStreamConstants.START_ELEMENT) continue;
+        switch (in.getLocalName()) {
+          case "comp" -> {
+            final var data = readComponent(in);
+            circData.components.add(data);
+            loadComponent(data, isHolyCross, isEvolution);
+          }
+          case "wire" -> {
+            addWire(circData, attribute(in, "from"), attribute(in, "to"));
+            skipElement(in);
+          }
+          default -> {
+            final var elt = readElement(in, doc);
+            if ("a".equals(elt.getTagName()) && elt.hasAttribute("name")) {
+              final var attrName = elt.getAttribute("name");
+              if ("circuit".equals(attrName) && !name.equals(fileName)) {
+                elt.setAttribute("val", name);
+              } else if ("label".equals(attrName) && !elt.getAttribute("val").isEmpty()) {
+                elt.setAttribute("val", toValidLabel(circuitLabels, elt.getAttribute("val")));
+              }
+            }
+            circElt.appendChild(elt);
+          }
+        }
+      }
+      loadExtras(circData);
+      return circData;
+    }
+
+    private ComponentData readComponent(XMLStreamReader in) throws XMLStreamException {
+      final var lib = in.getAttributeValue(null, "lib");
+      var name = attribute(in, "name");
+      if (lib == null) name = circuitNames.getOrDefault(name, name);
+      final var data = new ComponentData(name, lib, attribute(in, "loc"));
+      while (in.next() != XMLStreamConstants.END_ELEMENT) {
+        if (in.getEventType() != XMLStreamConstants.START_ELEMENT) continue;
+        if (!"a".equals(in.getLocalName())) {
+          skipElement(in);
+          continue;
+        }
+        final var attrName = in.getAttributeValue(null, "name");
+        var attrVal = in.getAttributeValue(null, "val");
+        final var text = readText(in);
+        if (attrName == null) {
+          if (data.messages == null) data.messages = new ArrayList<>();
+          data.messages.add(S.get("attrNameMissingError"));
+        } else if (attrVal == null) {
+          data.attrs.put(attrName, toAttributeValue(attrName, text));
+        } else {
+          if (lib != null && "label".equals(attrName) && !attrVal.isEmpty()) {
+            attrVal = toValidLabel(componentLabels, attrVal);
+          }
+          data.attrs.put(attrName, toAttributeValue(attrName, attrVal));
+        }
+      }
+      return data;
+    }
+
+    /**
+     * Determines the version that produced the file, and warns the user if it is an old one.
+     *
+     * @return whether the file comes from Logisim Holy Cross
+     */
+    private boolean readSourceVersion(String versionString) {
       var isHolyCrossFile = false;
-      var isEvolutionFile = true;
       if ("".equals(versionString)) {
         sourceVersion = BuildInfo.version;
       } else {
@@ -402,7 +750,6 @@ class XmlReader {
       // strange in their
       // circuits...
       if (sourceVersion.compareTo(new LogisimVersion(2, 7, 2)) < 0) {
-        isEvolutionFile = true;
         OptionPane.showMessageDialog(
             null,
             // FIXME: hardcoded string
@@ -413,12 +760,15 @@ class XmlReader {
             "Old file format -- compatibility mode",
             OptionPane.WARNING_MESSAGE);
       }
+      return isHolyCrossFile;
+    }
 
-      // first, load the sublibraries
+    private void loadLibraries(
+        Iterable<Element> libElts, boolean isHolyCrossFile, boolean isEvolutionFile) {
       final var libsToAddAfter = new HashSet<Library>();
       final var baseLibsToEnable = new HashSet<String>();
       final var libsLoaded = new HashSet<String>();
-      for (final var o : XmlIterator.forChildElements(elt, "lib")) {
+      for (final var o : libElts) {
         final var lib = toLibrary(o, isHolyCrossFile, isEvolutionFile);
         if (lib instanceof LoadedLibrary loadedLib) {
           if (loadedLib.getBase() instanceof LogisimFile) {
@@ -451,96 +801,83 @@ class XmlReader {
         LibraryManager.removeBaseLibraries(newLib, baseLibsToEnable);
         file.addLibrary(newLib);
       }
+    }
 
-      // second, create the circuits - empty for now - and the vhdl entities
-      final var circuitsData = new ArrayList<CircuitData>();
-      for (final var circElt : XmlIterator.forChildElements(elt)) {
-        String name;
-        switch (circElt.getTagName()) {
-          case "vhdl" -> {
-            name = circElt.getAttribute("name");
-            if (name == null || "".equals(name)) {
-              addError(S.get("circNameMissingError"), "C??");
-            }
-            final var vhdl = circElt.getTextContent();
-            final var contents = VhdlContent.parse(name, vhdl, file);
-            if (contents != null) {
-              file.addVhdlContent(contents);
-            }
-          }
-          case "circuit" -> {
-            name = circElt.getAttribute("name");
-            if (name == null || "".equals(name)) {
-              addError(S.get("circNameMissingError"), "C??");
-            }
-            final var circData = new CircuitData(circElt, new Circuit(name, file, proj));
-            file.addCircuit(circData.circuit);
-            circData.knownComponents = loadKnownComponents(circElt, isHolyCrossFile,
-                isEvolutionFile);
-            for (Element appearElt : XmlIterator.forChildElements(circElt, "appear")) {
-              loadAppearance(appearElt, circData, name + ".appear");
-            }
-            for (final var boardMap : XmlIterator.forChildElements(circElt, "boardmap")) {
-              final var boardName = boardMap.getAttribute("boardname");
-              if (StringUtil.isNullOrEmpty(boardName))
-                continue;
-              loadMap(boardMap, boardName, circData.circuit);
-            }
-            circuitsData.add(circData);
-          }
-          default -> {
-            // do nothing
-          }
-        }
+    private void loadVhdl(Element vhdlElt) {
+      final var name = vhdlElt.getAttribute("name");
+      if (name == null || "".equals(name)) {
+        addError(S.get("circNameMissingError"), "C??");
+      }
+      final var vhdl = vhdlElt.getTextContent();
+      final var contents = VhdlContent.parse(name, vhdl, file);
+      if (contents != null) {
+        file.addVhdlContent(contents);
       }
+    }
 
-      // third, process the other child elements
-      for (Element sub_elt : XmlIterator.forChildElements(elt)) {
-        final var name = sub_elt.getTagName();
+    private CircuitData addCircuit(Element circElt, String name, Project proj) {
+      if (name == null || "".equals(name)) {
+        addError(S.get("circNameMissingError"), "C??");
+      }
+      final var circData = new CircuitData(circElt, new Circuit(name, file, proj));
+      file.addCircuit(circData.circuit);
+      return circData;
+    }
 
-        switch (name) {
-          case "circuit":
-          case "vhdl":
-          case "lib":
-            // Nothing to do: Done earlier.
-            break;
-          case "options":
-            try {
-              initAttributeSet(
-                  sub_elt,
-                  file.getOptions().getAttributeSet(),
-                  null,
-                  isHolyCrossFile,
-                  isEvolutionFile);
-            } catch (XmlReaderException e) {
-              addErrors(e, "options");
-            }
-            break;
-          case "mappings":
-            initMouseMappings(sub_elt, isHolyCrossFile, isEvolutionFile);
-            break;
-          case "toolbar":
-            initToolbarData(sub_elt, isHolyCrossFile, isEvolutionFile);
-            break;
-          case "main":
-            final var main = sub_elt.getAttribute("name");
-            final var circ = file.getCircuit(main);
-            if (circ != null) {
-              file.setMainCircuit(circ);
-            }
-            break;
-          case "message":
-            file.addMessage(sub_elt.getAttribute("value"));
-            break;
-          default:
-            throw new IllegalArgumentException("Invalid node in logisim file: " + name);
-        }
+    /** Loads the appearance and the board maps of a circuit, once its components are read. */
+    private void loadExtras(CircuitData circData) {
+      final var name = circData.circuitElement.getAttribute("name");
+      for (final var appearElt : XmlIterator.forChildElements(circData.circuitElement, "appear")) {
+        loadAppearance(appearElt, circData, name + ".appear");
       }
+      for (final var boardMap : XmlIterator.forChildElements(circData.circuitElement, "boardmap")) {
+        final var boardName = boardMap.getAttribute("boardname");
+        if (StringUtil.isNullOrEmpty(boardName))
+          continue;
+        loadMap(boardMap, boardName, circData.circuit);
+      }
+    }
+
+    private void loadElement(Element subElt, boolean isHolyCrossFile, boolean isEvolutionFile) {
+      final var name = subElt.getTagName();
 
-      // fourth, execute a transaction that initializes all the circuits
-      XmlCircuitReader builder;
-      builder = new XmlCircuitReader(this, circuitsData, isHolyCrossFile, isEvolutionFile);
-      builder.execute();
+      switch (name) {
+        case "circuit":
+        case "vhdl":
+        case "lib":
+          // Nothing to do: Done earlier.
+          break;
+        case "options":
+          try {
+            initAttributeSet(
+                subElt,
+                file.getOptions().getAttributeSet(),
+                null,
+                isHolyCrossFile,
+                isEvolutionFile);
+          } catch (XmlReaderException e) {
+            addErrors(e, "options");
+          }
+          break;
+        case "mappings":
+          initMouseMappings(subElt, isHolyCrossFile, isEvolutionFile);
+          break;
+        case "toolbar":
+          initToolbarData(subElt, isHolyCrossFile, isEvolutionFile);
+          break;
+        case "main":
+          final var main = subElt.getAttribute("name");
+          final var circ = file.getCircuit(main);
+          if (circ != null) {
+            file.setMainCircuit(circ);
+          }
+          break;
+        case "message":
+          file.addMessage(subElt.getAttribute("value"));
+          break;
+        default:
+          throw new IllegalArgumentException("Invalid node in logisim file: " + name);
+      }
     }
 
     Tool toTool(Element elt) throws XmlReaderException {
@@ -558,6 +895,8 @@ class XmlReader {
   }
 
   public static final Logger logger = LoggerFactory.getLogger(XmlReader.class);
+  // enough to reach the root element, which tells how the file is read
+  private static final int HEAD_SIZE = 1 << 16;
   private final LibraryLoader loader;
 
   /**
@@ -623,6 +962,72 @@ class XmlReader {
     }
   }
 
+  /** Returns the value of an attribute of the current element, or "" if it has none. */
+  private static String attribute(XMLStreamReader in, String name) {
+    final var value = in.getAttributeValue(null, name);
+    return value == null ? "" : value;
+  }
+
+  /** Builds the current element of the stream, and its contents, in the given document. */
+  private static Element readElement(XMLStreamReader in, Document doc) throws XMLStreamException {
+    final var elt = doc.createElement(in.getLocalName());
+    for (var i = 0; i < in.getAttributeCount(); i++) {
+      elt.setAttribute(in.getAttributeLocalName(i), in.getAttributeValue(i));
+    }
+    while (in.next() != XMLStreamConstants.END_ELEMENT) {
+      switch (in.getEventType()) {
+        case XMLStreamConstants.START_ELEMENT -> elt.appendChild(readElement(in, doc));
+        case XMLStreamConstants.CHARACTERS,
+            XMLStreamConstants.CDATA,
+            XMLStreamConstants.SPACE -> elt.appendChild(doc.createTextNode(in.getText()));
+        default -> {
+          // comments and processing instructions are not kept
+        }
+      }
+    }
+    return elt;
+  }
+
+  /** Returns the text content of the current element, moving the stream to its end. */
+  private static String readText(XMLStreamReader in) throws XMLStreamException {
+    final var text = new StringBuilder();
+    for (var depth = 1; depth > 0; ) {
+      switch (in.next()) {
+        case XMLStreamConstants.START_ELEMENT -> depth++;
+        case XMLStreamConstants.END_ELEMENT -> depth--;
+        case XMLStreamConstants.CHARACTERS,
+            XMLStreamConstants.CDATA,
+            XMLStreamConstants.SPACE -> text.append(in.getText());
+        default -> {
+          // nothing
+        }
+      }
+    }
+    return text.toString();
+  }
+
+  /** Moves the stream to the end of the current element. */
+  private static void skipElement(XMLStreamReader in) throws XMLStreamException {
+    for (var depth = 1; depth > 0; ) {
+      switch (in.next()) {
+        case XMLStreamConstants.START_ELEMENT -> depth++;
+        case XMLStreamConstants.END_ELEMENT -> depth--;
+        default -> {
+          // nothing
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the label itself if it is a valid VHDL label, otherwise the replacement that {@link
+   * #findValidLabels} would propose, which is the same for all occurrences of the label.
+   */
+  private static String toValidLabel(Map<String, String> validLabels, String label) {
+    if (!VhdlContent.labelVHDLInvalid(label)) return label;
+    return validLabels.computeIfAbsent(label, XmlReader::generateValidVHDLLabel);
+  }
+
   public static Element ensureLogisimCompatibility(Element elt) {
     var validLabels = findValidLabels(elt, "circuit", "name");
     applyValidLabels(elt, "circuit", "name", validLabels);
@@ -1034,7 +1439,7 @@ class XmlReader {
     }
   }
 
-  private Document loadXmlFrom(InputStream is) throws SAXException, IOException {
+  private DocumentBuilder newDocumentBuilder() {
     final var factory = XmlUtil.getHardenedBuilderFactory();
     factory.setNamespaceAware(true);
     try {
@@ -1047,19 +1452,69 @@ class XmlReader {
       builder = factory.newDocumentBuilder();
     } catch (ParserConfigurationException ignored) {
     }
-    return builder.parse(is);
+    return builder;
+  }
+
+  private Document loadXmlFrom(InputStream is) throws SAXException, IOException {
+    return newDocumentBuilder().parse(is);
+  }
+
+  /**
+   * Tells whether the file starting with the given bytes must be read as a document, because it
+   * comes from a version that needs {@link #considerRepairs}. This is also the case if the root
+   * element cannot be found, so that the errors are reported as before.
+   */
+  private static boolean needsRepairs(byte[] head) {
+    XMLStreamReader in = null;
+    try {
+      in = XmlUtil.getHardenedInputFactory().createXMLStreamReader(new ByteArrayInputStream(head));
+      in.nextTag();
+      final var version = LogisimVersion.fromString(attribute(in, "source"));
+      return version.compareTo(new LogisimVersion(2, 6, 3)) < 0;
+    } catch (XMLStreamException | IllegalArgumentException e) {
+      return true;
+    } finally {
+      if (in != null) {
+        try {
+          in.close();
+        } catch (XMLStreamException ignored) {
+        }
+      }
+    }
   }
 
   LogisimFile readLibrary(InputStream is, Project proj) throws IOException, SAXException {
-    final var doc = loadXmlFrom(is);
-    var elt = doc.getDocumentElement();
-    elt = ensureLogisimCompatibility(elt);
+    final var in = is.markSupported() ? is : new BufferedInputStream(is);
+    in.mark(HEAD_SIZE);
+    final var head = in.readNBytes(HEAD_SIZE);
+    in.reset();
 
-    considerRepairs(doc, elt);
     final var file = new LogisimFile((Loader) loader);
     final var context = new ReadContext(file);
+    if (needsRepairs(head)) {
+      final var doc = loadXmlFrom(in);
+      var elt = doc.getDocumentElement();
+      elt = ensureLogisimCompatibility(elt);
 
-    context.toLogisimFile(elt, proj);
+      considerRepairs(doc, elt);
+      context.toLogisimFile(elt, proj);
+    } else {
+      XMLStreamReader reader = null;
+      try {
+        reader = XmlUtil.getHardenedInputFactory().createXMLStreamReader(in);
+        reader.nextTag();
+        context.toLogisimFile(reader, newDocumentBuilder().newDocument(), proj);
+      } catch (XMLStreamException e) {
+        throw new SAXException(e);
+      } finally {
+        if (reader != null) {
+          try {
+            reader.close();
+          } catch (XMLStreamException ignored) {
+          }
+        }
+      }
+    }
 
     if (file.getCircuitCount() == 0) {
       file.addCircuit(new Circuit("main", file, proj));
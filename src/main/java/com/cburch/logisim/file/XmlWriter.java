@@ -17,12 +17,19 @@ import com.cburch.logisim.comp.Component;
 import com.cburch.logisim.comp.ComponentFactory;
 import com.cburch.logisim.data.Attribute;
 import com.cburch.logisim.data.AttributeDefaultProvider;
+import com.cburch.logisim.data.AttributeOption;
 import com.cburch.logisim.data.AttributeSet;
+import com.cburch.logisim.data.BitWidth;
+import com.cburch.logisim.data.Direction;
+import com.cburch.logisim.data.Location;
 import com.cburch.logisim.fpga.data.MapComponent;
 import com.cburch.logisim.generated.BuildInfo;
 import com.cburch.logisim.instance.StdAttr;
 import com.cburch.logisim.prefs.AppPreferences;
 import com.cburch.logisim.std.base.Text;
+import com.cburch.logisim.std.memory.MemContents;
+import com.cburch.logisim.std.memory.MemContentsImage;
+import com.cburch.logisim.std.memory.Rom;
 import com.cburch.logisim.std.wiring.ProbeAttributes;
 import com.cburch.logisim.tools.Library;
 import com.cburch.logisim.tools.Tool;
@@ -31,9 +38,15 @@ import com.cburch.logisim.util.LineBuffer;
 import com.cburch.logisim.util.StringUtil;
 import com.cburch.logisim.util.XmlUtil;
 import com.cburch.logisim.vhdl.base.VhdlContent;
+import java.awt.Color;
+import java.awt.Font;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
@@ -42,25 +55,72 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Objects;
 import java.util.regex.Pattern;
 import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.OutputKeys;
-import javax.xml.transform.Result;
-import javax.xml.transform.Source;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
-import org.w3c.dom.Attr;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.NamedNodeMap;
-import org.w3c.dom.Node;
 
 final class XmlWriter {
+  private static final Logger logger = LoggerFactory.getLogger(XmlWriter.class);
+
+  /**
+   * The text written for the components and wires of the circuits of a file at its last save. On
+   * the next save, the text of a component is reused if its attributes still have the same values,
+   * and that of a whole circuit if none of its components and wires changed. Only values known to
+   * be immutable are compared, components with other values are written anew each time.
+   */
+  static final class Cache {
+    private String outFilePath;
+    private Map<Circuit, CircuitText> circuits = new HashMap<>();
+  }
+
+  private static final class CircuitText {
+    String body = "";
+    Wire[] wires = new Wire[0];
+    final IdentityHashMap<Component, ComponentText> components = new IdentityHashMap<>();
+  }
+
+  private static final class ComponentText {
+    final Component component;
+    final String key; // its attributes, by which it is sorted
+    final String lib;
+    final Object[] values; // the attributes and their values, or null if not to be cached
+    String text; // until it is added to the body of its circuit
+    int start;
+    int end;
+
+    ComponentText(Component component, String key, String lib, Object[] values, String text) {
+      this.component = component;
+      this.key = key;
+      this.lib = lib;
+      this.values = values;
+      this.text = text;
+    }
+
+    boolean isUnchanged(AttributeSet attrs, String libName) {
+      if (values == null || !Objects.equals(lib, libName)) return false;
+      final var attributes = attrs.getAttributes();
+      if (attributes.size() * 2 != values.length) return false;
+      for (var i = 0; i < attributes.size(); i++) {
+        final var attr = attributes.get(i);
+        if (values[2 * i] != attr || values[2 * i + 1] != attrs.getValue(attr)) return false;
+      }
+      return true;
+    }
+  }
+
+  private static final String INDENT = "  ";
 
   private final LogisimFile file;
   private final Document doc;
+  private final Writer out;
+  private final Cache cache;
   /**
    * Path of the file which is being written on disk -- used to relativize components stored in it.
    */
@@ -69,156 +129,265 @@ final class XmlWriter {
   private final boolean isProjectExport;
   private final LibraryLoader loader;
   private final HashMap<Library, String> libs = new HashMap<>();
-
-  private XmlWriter(LogisimFile file, Document doc, LibraryLoader loader) {
-    this(file, doc, loader, null, null);
-  }
-
-  private XmlWriter(LogisimFile file, Document doc, LibraryLoader loader, String outFilePath) {
-    this(file, doc, loader, outFilePath, null);
-  }
-
-  private XmlWriter(LogisimFile file, Document doc, LibraryLoader loader, String outFilePath, String librariesPath) {
+  private final IdentityHashMap<ComponentFactory, Library> factoryLibs = new IdentityHashMap<>();
+  // the references written in place of the memory contents stored in an image
+  private final Map<MemContents, String> images;
+
+  private XmlWriter(
+      LogisimFile file,
+      Document doc,
+      Writer out,
+      Cache cache,
+      Map<MemContents, String> images,
+      LibraryLoader loader,
+      String outFilePath,
+      String librariesPath) {
     this.file = file;
     this.doc = doc;
+    this.out = out;
+    this.cache = cache;
+    this.images = images;
     this.loader = loader;
     this.outFilePath = outFilePath;
     this.librariesPath = librariesPath;
     isProjectExport = StringUtil.isNotEmpty(librariesPath);
   }
 
-
   /* We sort some parts of the xml tree, to help with reproducibility and to
-   * ease testing (e.g. diff a circuit file). Attribute name=value pairs seem
-   * to be sorted already, so we don't worry about those. The code below sorts
-   * the nodes, but only in best-effort fashion (some nodes are identical
-   * except for their child contents, which seems overkill to bother sorting).
-   * Parts of the tree where node order matters (top-level "project", the
-   * libraries, and the toolbar, for example) are not sorted.
+   * ease testing (e.g. diff a circuit file). The attributes of an element are
+   * written in the order of their names. The elements are sorted by name, then
+   * by their attributes, but only in best-effort fashion (some elements are
+   * identical except for their child contents, which seems overkill to bother
+   * sorting). Parts of the tree where element order matters (top-level
+   * "project", the libraries, and the toolbar, for example) are not sorted:
+   *
+   * project (contains ordered elements, do not sort)
+   * - main
+   * - toolbar (contains ordered elements, do not sort)
+   *   - tool(s)
+   *     - a(s)
+   * - lib(s) (contains orderd elements, do not sort)
+   *   - tool(s)
+   *     - a(s)
+   * - options
+   *   - a(s)
+   * - circuit(s)
+   *   - a(s)
+   *   - comp(s)
+   *   - wire(s)
+   *
+   * Each element is written on its own line, indented by its depth, unless it
+   * only contains text.
    */
 
-  static String attrToString(Attr a) {
-    String n = a.getName();
-    String v = a.getValue().replaceAll("&", "&amp;").replaceAll("\"", "&quot;");
-    return n + "=\"" + v + "\"";
+  static String attrToString(String name, String value) {
+    return name + "=\"" + value.replace("&", "&amp;").replace("\"", "&quot;") + "\"";
   }
 
   static String attrsToString(NamedNodeMap a) {
     final var n = a.getLength();
     if (n == 0) return "";
-    else if (n == 1) return attrToString((Attr) a.item(0));
+    else if (n == 1) return attrToString(a.item(0).getNodeName(), a.item(0).getNodeValue());
     final var lst = new ArrayList<String>();
     for (var i = 0; i < n; i++) {
-      lst.add(attrToString((Attr) a.item(i)));
+      lst.add(attrToString(a.item(i).getNodeName(), a.item(i).getNodeValue()));
     }
     Collections.sort(lst);
     return String.join(" ", lst);
   }
 
+  /** Returns the key by which an element with the given attributes, in order of names, is sorted. */
+  private static String sortKey(String... namesAndValues) {
+    final var ret = new StringBuilder();
+    for (var i = 0; i < namesAndValues.length; i += 2) {
+      if (namesAndValues[i + 1] == null) continue;
+      if (ret.length() > 0) ret.append(' ');
+      ret.append(attrToString(namesAndValues[i], namesAndValues[i + 1]));
+    }
+    return ret.toString();
+  }
+
   private static int stringCompare(String stringA, String stringB) {
     if (stringA == null) return -1;
     if (stringB == null) return 1;
     return stringA.compareTo(stringB);
   }
 
-  private static final Comparator<Node> nodeComparator =
-      (nodeA, nodeB) -> {
-        var compareResult = stringCompare(nodeA.getNodeName(), nodeB.getNodeName());
+  private static final Comparator<Element> elementComparator =
+      (eltA, eltB) -> {
+        final var compareResult = stringCompare(eltA.getTagName(), eltB.getTagName());
         if (compareResult != 0) return compareResult;
-        compareResult = stringCompare(attrsToString(nodeA.getAttributes()), attrsToString(nodeB.getAttributes()));
-        if (compareResult != 0) return compareResult;
-        return stringCompare(nodeA.getNodeValue(), nodeB.getNodeValue());
+        return stringCompare(attrsToString(eltA.getAttributes()), attrsToString(eltB.getAttributes()));
       };
 
-  static void sort(Node top) {
-    final var children = top.getChildNodes();
-    final var childrenCount = children.getLength();
-    final var name = top.getNodeName();
-    // project (contains ordered elements, do not sort)
-    // - main
-    // - toolbar (contains ordered elements, do not sort)
-    //   - tool(s)
-    //     - a(s)
-    // - lib(s) (contains orderd elements, do not sort)
-    //   - tool(s)
-    //     - a(s)
-    // - options
-    //   - a(s)
-    // - circuit(s)
-    //   - a(s)
-    //   - comp(s)
-    //   - wire(s)
-    if ("appear".equals(name)) {
-      // the appearance section only has to sort the circuit ports, the rest is static.
-      final var circuitPortIndexes = new ArrayList<Integer>();
-      for (var nodeIndex = 0; nodeIndex < childrenCount; nodeIndex++)
-        if ("circ-port".equals(children.item(nodeIndex).getNodeName())) circuitPortIndexes.add(nodeIndex);
-      if (circuitPortIndexes.isEmpty()) return;
-      final var numberOfPorts = circuitPortIndexes.size();
-      final var nodeSet = new Node[numberOfPorts];
-      for (var portIndex = 0; portIndex < numberOfPorts; portIndex++)
-        nodeSet[portIndex] = children.item(circuitPortIndexes.get(portIndex));
-      Arrays.sort(nodeSet, nodeComparator);
-      for (var portIndex = 0; portIndex < numberOfPorts; portIndex++) top.insertBefore(nodeSet[portIndex], null);
-      return;
+  private static void appendEscaped(StringBuilder sb, String s, boolean isAttribute) {
+    for (var i = 0; i < s.length(); i++) {
+      final var c = s.charAt(i);
+      switch (c) {
+        case '&' -> sb.append("&amp;");
+        case '<' -> sb.append("&lt;");
+        case '>' -> sb.append("&gt;");
+        case '"' -> sb.append(isAttribute ? "&quot;" : "\"");
+        case '\n', '\t' -> {
+          if (isAttribute) sb.append("&#").append((int) c).append(';');
+          else sb.append(c);
+        }
+        default -> {
+          if (c < ' ') sb.append("&#").append((int) c).append(';');
+          else sb.append(c);
+        }
+      }
     }
-    if (childrenCount > 1 && !name.equals("project") && !name.equals("lib") && !name.equals("toolbar")
-          && !name.equals("appear")) {
-      final var nodeSet = new Node[childrenCount];
-      for (var nodeIndex = 0; nodeIndex < childrenCount; nodeIndex++) nodeSet[nodeIndex] = children.item(nodeIndex);
-      Arrays.sort(nodeSet, nodeComparator);
-      for (var nodeIndex = 0; nodeIndex < childrenCount; nodeIndex++) top.insertBefore(nodeSet[nodeIndex], null);
+  }
+
+  private static void appendIndent(StringBuilder sb, int depth) {
+    sb.append('\n');
+    for (var i = 0; i < depth; i++) sb.append(INDENT);
+  }
+
+  /** Starts an element on a new line; its attributes must be given in order of names. */
+  private static void appendStart(StringBuilder sb, int depth, String name, String... namesAndValues) {
+    appendIndent(sb, depth);
+    sb.append('<').append(name);
+    for (var i = 0; i < namesAndValues.length; i += 2) {
+      if (namesAndValues[i + 1] == null) continue;
+      sb.append(' ').append(namesAndValues[i]).append("=\"");
+      appendEscaped(sb, namesAndValues[i + 1], true);
+      sb.append('"');
+    }
+  }
+
+  /** Ends an element started by {@link #appendStart} with the given children, if any. */
+  private static void appendEnd(StringBuilder sb, int depth, String name, CharSequence children) {
+    if (children == null || children.length() == 0) {
+      sb.append("/>");
+    } else {
+      sb.append('>').append(children);
+      appendIndent(sb, depth);
+      sb.append("</").append(name).append('>');
+    }
+  }
+
+  /** Ends an element started by {@link #appendStart} with the given text, if any. */
+  private static void appendText(StringBuilder sb, String name, String text) {
+    if (text == null || text.isEmpty()) {
+      sb.append("/>");
+    } else {
+      sb.append('>');
+      appendEscaped(sb, text, false);
+      sb.append("</").append(name).append('>');
     }
-    for (var childId = 0; childId < childrenCount; childId++) {
-      sort(children.item(childId));
+  }
+
+  /** Writes an element built as a document node, sorting its children if asked to. */
+  private static void appendElement(StringBuilder sb, int depth, Element elt, boolean sortChildren) {
+    final var attrs = elt.getAttributes();
+    final var names = new String[attrs.getLength()];
+    for (var i = 0; i < names.length; i++) names[i] = attrs.item(i).getNodeName();
+    Arrays.sort(names);
+    final var namesAndValues = new String[2 * names.length];
+    for (var i = 0; i < names.length; i++) {
+      namesAndValues[2 * i] = names[i];
+      namesAndValues[2 * i + 1] = elt.getAttribute(names[i]);
+    }
+    appendStart(sb, depth, elt.getTagName(), namesAndValues);
+    final var children = new ArrayList<Element>();
+    for (final var child : XmlIterator.forChildElements(elt)) children.add(child);
+    if (children.isEmpty()) {
+      appendText(sb, elt.getTagName(), elt.getTextContent());
+      return;
     }
+    if (sortChildren) children.sort(elementComparator);
+    final var content = new StringBuilder();
+    for (final var child : children) appendElement(content, depth + 1, child, sortChildren);
+    appendEnd(sb, depth, elt.getTagName(), content);
   }
 
-  static void write(LogisimFile file, OutputStream out, LibraryLoader loader, File destFile, String libraryHome)
-      throws ParserConfigurationException, TransformerException {
+  /**
+   * Writes the file, and the large memory contents of a project to an image next to it.
+   *
+   * @return the name of the memory image the file refers to, or null if there is none
+   */
+  static String write(
+      LogisimFile file,
+      Cache cache,
+      OutputStream out,
+      LibraryLoader loader,
+      File destFile,
+      String libraryHome)
+      throws ParserConfigurationException, IOException {
 
     final var docFactory = XmlUtil.getHardenedBuilderFactory();
     final var docBuilder = docFactory.newDocumentBuilder();
 
     final var doc = docBuilder.newDocument();
-    XmlWriter context;
+    String dstFilePath = null;
+    var librariesPath = libraryHome;
     if (destFile != null) {
-      var dstFilePath = destFile.getAbsolutePath();
+      dstFilePath = destFile.getAbsolutePath();
       dstFilePath = dstFilePath.substring(0, dstFilePath.lastIndexOf(File.separator));
-      context = new XmlWriter(file, doc, loader, dstFilePath);
-    } else if (libraryHome != null) {
-      context = new XmlWriter(file, doc, loader, null, libraryHome);
-    } else {
-      context = new XmlWriter(file, doc, loader);
+      librariesPath = null;
     }
+    final var writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    final MemContentsImage.Image image;
+    synchronized (cache) {
+      image = writeMemoryImage(file, destFile);
+      final var images = image != null ? image.getReferences() : Map.<MemContents, String>of();
+      new XmlWriter(file, doc, writer, cache, images, loader, dstFilePath, librariesPath)
+          .fromLogisimFile();
+    }
+    writer.flush();
+    return image != null ? image.getName() : null;
+  }
 
-    context.fromLogisimFile();
-
-    final var tfFactory = TransformerFactory.newInstance();
-    try {
-      tfFactory.setAttribute("indent-number", 2);
-    } catch (IllegalArgumentException ignored) {
-      // Do nothing
+  /**
+   * Writes the large memory contents of the circuits to an image next to the file, if enabled and
+   * the file is a project, not an autosave.
+   *
+   * @return the image written, or null if the contents are written inline
+   */
+  private static MemContentsImage.Image writeMemoryImage(LogisimFile file, File destFile) {
+    if (destFile == null
+        || !AppPreferences.MEMORY_IMAGE_FILE.getBoolean()
+        || !destFile.getName().endsWith(Loader.LOGISIM_EXTENSION)) {
+      return null;
+    }
+    final var contents = new ArrayList<MemContents>();
+    for (final var circ : file.getCircuits()) {
+      final var roms = new ArrayList<Component>();
+      for (final var comp : circ.getNonWires()) {
+        final var attrs = comp.getAttributeSet();
+        if (attrs.containsAttribute(Rom.CONTENTS_ATTR)
+            && MemContentsImage.isLarge(attrs.getValue(Rom.CONTENTS_ATTR))) {
+          roms.add(comp);
+        }
+      }
+      // in a stable order, so that saving again gives the same offsets
+      roms.sort(Comparator.comparing(Component::getLocation));
+      for (final var rom : roms) contents.add(rom.getAttributeSet().getValue(Rom.CONTENTS_ATTR));
     }
-    final var tf = tfFactory.newTransformer();
-    tf.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
-    tf.setOutputProperty(OutputKeys.INDENT, "yes");
+    if (contents.isEmpty()) return null;
     try {
-      tf.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2");
-    } catch (IllegalArgumentException ignored) {
-      // Do nothing
+      return MemContentsImage.write(destFile, contents);
+    } catch (IOException e) {
+      logger.warn(
+          "Could not write the memory image of {}, saving memory contents inline: {}",
+          destFile,
+          e.getMessage());
+      return null;
     }
-
-    doc.normalize();
-    sort(doc);
-    Source src = new DOMSource(doc);
-    Result dest = new StreamResult(out);
-    tf.transform(src, dest);
   }
 
-  void addAttributeSetContent(Element elt, AttributeSet attrs, AttributeDefaultProvider source, boolean userModifiedOnly) {
-    if (attrs == null) return;
-    if (source != null && source.isAllDefaultValues(attrs, BuildInfo.version)) return;
+  /**
+   * Adds the attributes to save to the element, as {@code <a>} elements in order of names.
+   *
+   * @return whether an attribute was added
+   */
+  boolean addAttributeSetContent(
+      StringBuilder elt, int depth, AttributeSet attrs, AttributeDefaultProvider source, boolean userModifiedOnly) {
+    if (attrs == null) return false;
+    if (source != null && source.isAllDefaultValues(attrs, BuildInfo.version)) return false;
+    final var children = new ArrayList<String[]>();
     for (final var attrBase : attrs.getAttributes()) {
       @SuppressWarnings("unchecked")
       final var attr = (Attribute<Object>) attrBase;
@@ -227,36 +396,51 @@ final class XmlWriter {
       if (attrs.isToSave(attr) && val != null) {
         final var dflt = source == null ? null : source.getDefaultAttributeValue(attr, BuildInfo.version);
         final var defaultValue = dflt == null ? "" : attr.toStandardString(dflt);
-        var newValue = attr.toStandardString(val);
+        final var image = images.get(val);
+        var newValue = image != null ? image : attr.toStandardString(val);
         if (dflt == null || (!dflt.equals(val) && !defaultValue.equals(newValue))
             || (attr.equals(StdAttr.APPEARANCE) && !userModifiedOnly)
             || (attr.equals(ProbeAttributes.PROBEAPPEARANCE) && !userModifiedOnly && val.equals(ProbeAttributes.APPEAR_EVOLUTION_NEW))) {
-          final var a = doc.createElement("a");
-          a.setAttribute("name", attr.getName());
+          final var a = new StringBuilder();
           if ("filePath".equals(attr.getName()) && outFilePath != null) {
             final var outFP = Paths.get(outFilePath);
             final var attrValP = Paths.get(newValue);
             newValue = (outFP.relativize(attrValP)).toString();
-            a.setAttribute("val", newValue);
+            appendStart(a, depth + 1, "a", "name", attr.getName(), "val", newValue);
+            a.append("/>");
           } else {
             if (newValue.contains("\n")) {
-              a.appendChild(doc.createTextNode(newValue));
+              appendStart(a, depth + 1, "a", "name", attr.getName());
+              appendText(a, "a", newValue);
             } else {
-              a.setAttribute("val", attr.toStandardString(val));
+              appendStart(a, depth + 1, "a", "name", attr.getName(), "val", attr.toStandardString(val));
+              a.append("/>");
             }
           }
-          elt.appendChild(a);
+          children.add(new String[] {attr.getName(), a.toString()});
         }
       }
     }
+    if (children.size() > 1) children.sort((a, b) -> a[0].compareTo(b[0]));
+    for (final var child : children) elt.append(child[1]);
+    return !children.isEmpty();
   }
 
   Library findLibrary(ComponentFactory source) {
-    if (file.contains(source)) return file;
-    for (final var lib : file.getLibraries()) {
-      if (lib.contains(source)) return lib;
+    if (factoryLibs.containsKey(source)) return factoryLibs.get(source);
+    Library ret = null;
+    if (file.contains(source)) {
+      ret = file;
+    } else {
+      for (final var lib : file.getLibraries()) {
+        if (lib.contains(source)) {
+          ret = lib;
+          break;
+        }
+      }
     }
-    return null;
+    factoryLibs.put(source, ret);
+    return ret;
   }
 
   Library findLibrary(Tool tool) {
@@ -267,44 +451,145 @@ final class XmlWriter {
     return null;
   }
 
-  Element fromCircuit(Circuit circuit) {
-    final var ret = doc.createElement("circuit");
-    ret.setAttribute("name", circuit.getName());
-    addAttributeSetContent(ret, circuit.getStaticAttributes(), CircuitAttributes.DEFAULT_STATIC_ATTRIBUTES, false);
+  void fromCircuit(StringBuilder ret, Circuit circuit, CircuitText text) {
+    appendStart(ret, 1, "circuit", "name", circuit.getName());
+    final var content = new StringBuilder();
+    addAttributeSetContent(content, 1, circuit.getStaticAttributes(), CircuitAttributes.DEFAULT_STATIC_ATTRIBUTES, false);
     if (circuit.getAppearance().hasCustomAppearance()) {
+      // the appearance only has its circuit ports sorted, the rest is in drawing order
       final var appear = doc.createElement("appear");
+      final var ports = new ArrayList<Element>();
       for (Object obj : circuit.getAppearance().getCustomObjectsFromBottom()) {
         if (obj instanceof AbstractCanvasObject canvasObject) {
           final var elt = canvasObject.toSvgElement(doc);
-          if (elt != null) {
-            appear.appendChild(elt);
-          }
+          if (elt == null) continue;
+          if ("circ-port".equals(elt.getTagName())) ports.add(elt);
+          else appear.appendChild(elt);
         }
       }
-      ret.appendChild(appear);
+      ports.sort(elementComparator);
+      for (final var port : ports) appear.appendChild(port);
+      appendElement(content, 2, appear, false);
     }
-    for (final var wire : circuit.getWires()) {
-      ret.appendChild(fromWire(wire));
+    final var maps = new ArrayList<Element>();
+    for (final var board : circuit.getBoardMapNamestoSave()) {
+      final var elt = fromMap(circuit, board);
+      if (elt != null) maps.add(elt);
     }
+    maps.sort(elementComparator);
+    for (final var map : maps) appendElement(content, 2, map, true);
+    content.append(text.body);
+    appendEnd(ret, 1, "circuit", content);
+  }
+
+  /**
+   * Returns the text of the components and the wires of the circuit, sorted. The text of the
+   * components that did not change since the last save is reused.
+   */
+  private CircuitText circuitBody(Circuit circuit) {
+    final var old = cache.circuits.get(circuit);
+    final var comps = new ArrayList<ComponentText>();
+    var unchanged = 0;
     for (final var comp : circuit.getNonWires()) {
-      final var elt = fromComponent(comp);
-      if (elt != null) ret.appendChild(elt);
+      final var source = comp.getFactory();
+      final var lib = findLibrary(source);
+      String libName;
+      if (lib == null) {
+        loader.showError(source.getName() + " component not found");
+        continue;
+      } else if (lib == file) {
+        libName = null;
+      } else {
+        libName = libs.get(lib);
+        if (libName == null) {
+          loader.showError("unknown library within file");
+          continue;
+        }
+      }
+      var compText = old == null ? null : old.components.get(comp);
+      if (compText != null && compText.isUnchanged(comp.getAttributeSet(), libName)) {
+        unchanged++;
+      } else {
+        compText = fromComponent(comp, lib, libName);
+        if (compText == null) continue;
+      }
+      comps.add(compText);
     }
-    for (final var board : circuit.getBoardMapNamestoSave()) {
-      final var elt = fromMap(circuit, board);
-      if (elt != null) ret.appendChild(elt);
+    final var wires = circuit.getWires().toArray(new Wire[0]);
+    if (old != null
+        && unchanged == comps.size()
+        && unchanged == old.components.size()
+        && Arrays.equals(wires, old.wires)) {
+      return old;
+    }
+
+    comps.sort((a, b) -> a.key.compareTo(b.key));
+    final var wireKeys = new String[wires.length];
+    for (var i = 0; i < wires.length; i++) {
+      wireKeys[i] = sortKey("from", wires[i].getEnd0().toString(), "to", wires[i].getEnd1().toString());
+    }
+    Arrays.sort(wireKeys);
+
+    final var ret = new CircuitText();
+    final var body = new StringBuilder();
+    for (final var compText : comps) {
+      final var start = body.length();
+      if (compText.text != null) body.append(compText.text);
+      else body.append(old.body, compText.start, compText.end);
+      if (compText.values != null) {
+        compText.text = null;
+        compText.start = start;
+        compText.end = body.length();
+        ret.components.put(compText.component, compText);
+      }
     }
+    for (final var key : wireKeys) {
+      appendIndent(body, 2);
+      body.append("<wire ").append(key).append("/>");
+    }
+    ret.body = body.toString();
+    ret.wires = wires;
     return ret;
   }
 
-  Element fromVhdl(VhdlContent vhdl) {
-    vhdl.aboutToSave();
-    final var ret = doc.createElement("vhdl");
-    ret.setAttribute("name", vhdl.getName());
-    ret.setTextContent(vhdl.getContent());
+  /** Returns the attributes and their values, or null if a value may change without notice. */
+  private static Object[] toValues(AttributeSet attrs) {
+    final var attributes = attrs.getAttributes();
+    final var ret = new Object[2 * attributes.size()];
+    for (var i = 0; i < attributes.size(); i++) {
+      final var attr = attributes.get(i);
+      final var value = attrs.getValue(attr);
+      if (!isImmutable(value)) return null;
+      ret[2 * i] = attr;
+      ret[2 * i + 1] = value;
+    }
     return ret;
   }
 
+  private static boolean isImmutable(Object value) {
+    return value == null
+        || value instanceof String
+        || value instanceof Integer
+        || value instanceof Long
+        || value instanceof Double
+        || value instanceof Boolean
+        || value instanceof Enum
+        || value instanceof AttributeOption
+        || value instanceof BitWidth
+        || value instanceof Direction
+        || value instanceof Location
+        || value instanceof Font
+        || value instanceof Color;
+  }
+
+  String fromVhdl(VhdlContent vhdl) {
+    vhdl.aboutToSave();
+    final var ret = new StringBuilder();
+    appendStart(ret, 1, "vhdl", "name", vhdl.getName());
+    appendText(ret, "vhdl", vhdl.getContent());
+    return ret.toString();
+  }
+
   Element fromMap(Circuit circ, String boardName) {
     final var ret = doc.createElement("boardmap");
     ret.setAttribute("boardname", boardName);
@@ -338,38 +623,27 @@ final class XmlWriter {
     return ret;
   }
 
-  Element fromComponent(Component comp) {
+  ComponentText fromComponent(Component comp, Library lib, String libName) {
     final var source = comp.getFactory();
-    final var lib = findLibrary(source);
-    String libName;
-    if (lib == null) {
-      loader.showError(source.getName() + " component not found");
-      return null;
-    } else if (lib == file) {
-      libName = null;
-    } else {
-      libName = libs.get(lib);
-      if (libName == null) {
-        loader.showError("unknown library within file");
-        return null;
-      }
-    }
     if ("Text".equals(source.getName())) {
       /* check if the text element is empty, in this case we do not save */
       final var value = comp.getAttributeSet().getValue(Text.ATTR_TEXT);
       if (value.isEmpty()) return null;
     }
 
-    final var ret = doc.createElement("comp");
-    if (libName != null) ret.setAttribute("lib", libName);
-    ret.setAttribute("name", source.getName());
-    ret.setAttribute("loc", comp.getLocation().toString());
-    addAttributeSetContent(ret, comp.getAttributeSet(), comp.getFactory(), false);
-    return ret;
+    final var loc = comp.getLocation().toString();
+    final var ret = new StringBuilder();
+    appendStart(ret, 2, "comp", "lib", libName, "loc", loc, "name", source.getName());
+    final var content = new StringBuilder();
+    addAttributeSetContent(content, 2, comp.getAttributeSet(), comp.getFactory(), false);
+    appendEnd(ret, 2, "comp", content);
+    // the names of circuits and VHDL entities may change, they are not cached
+    final var values = lib == file ? null : toValues(comp.getAttributeSet());
+    final var key = sortKey("lib", libName, "loc", loc, "name", source.getName());
+    return new ComponentText(comp, key, libName, values, ret.toString());
   }
 
-  Element fromLibrary(Library lib) {
-    final var ret = doc.createElement("lib");
+  String fromLibrary(Library lib) {
     if (libs.containsKey(lib)) return null;
     final var name = Integer.toString(libs.size());
     var desc = loader.getDescriptor(lib);
@@ -415,81 +689,107 @@ final class XmlWriter {
         }
       }
     }
-    ret.setAttribute("name", name);
-    ret.setAttribute("desc", desc);
+    final var ret = new StringBuilder();
+    appendStart(ret, 1, "lib", "desc", desc, "name", name);
+    final var content = new StringBuilder();
     for (Tool t : lib.getTools()) {
       final var attrs = t.getAttributeSet();
       if (attrs != null) {
-        final var toAdd = doc.createElement("tool");
-        toAdd.setAttribute("name", t.getName());
-        addAttributeSetContent(toAdd, attrs, t, true);
-        if (toAdd.getChildNodes().getLength() > 0) {
-          ret.appendChild(toAdd);
+        final var toolContent = new StringBuilder();
+        if (addAttributeSetContent(toolContent, 2, attrs, t, true)) {
+          appendStart(content, 2, "tool", "name", t.getName());
+          appendEnd(content, 2, "tool", toolContent);
         }
       }
     }
-    return ret;
+    appendEnd(ret, 1, "lib", content);
+    return ret.toString();
   }
 
-  Element fromLogisimFile() {
-    final var ret = doc.createElement("project");
-    doc.appendChild(ret);
-    ret.appendChild(
-        doc.createTextNode(
-            "\nThis file is intended to be "
-                + "loaded by "
-                + BuildInfo.displayName
-                + "("
-                + BuildInfo.url
-                + ").\n"));
-    ret.setAttribute("version", "1.0");
-    ret.setAttribute("source", BuildInfo.version.toString());
+  void fromLogisimFile() throws IOException {
+    if (!Objects.equals(cache.outFilePath, outFilePath)) {
+      // the paths of files in attributes are relative to it
+      cache.circuits.clear();
+      cache.outFilePath = outFilePath;
+    }
+
+    out.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>");
+    final var ret = new StringBuilder();
+    appendStart(ret, 0, "project", "source", BuildInfo.version.toString(), "version", "1.0");
+    ret.append('>');
+    appendIndent(ret, 1);
+    appendEscaped(
+        ret,
+        "This file is intended to be "
+            + "loaded by "
+            + BuildInfo.displayName
+            + "("
+            + BuildInfo.url
+            + ").\n",
+        false);
+    out.append(ret);
 
     for (final var lib : file.getLibraries()) {
       final var elt = fromLibrary(lib);
-      if (elt != null) ret.appendChild(elt);
+      if (elt != null) out.write(elt);
     }
 
     if (file.getMainCircuit() != null) {
-      final var mainElt = doc.createElement("main");
-      mainElt.setAttribute("name", file.getMainCircuit().getName());
-      ret.appendChild(mainElt);
+      final var mainElt = new StringBuilder();
+      appendStart(mainElt, 1, "main", "name", file.getMainCircuit().getName());
+      mainElt.append("/>");
+      out.append(mainElt);
     }
 
-    ret.appendChild(fromOptions());
-    ret.appendChild(fromMouseMappings());
-    ret.appendChild(fromToolbarData());
+    out.write(fromOptions());
+    out.write(fromMouseMappings());
+    out.write(fromToolbarData());
 
+    final var circuits = new HashMap<Circuit, CircuitText>();
     for (final var circ : file.getCircuits()) {
-      ret.appendChild(fromCircuit(circ));
+      final var text = circuitBody(circ);
+      circuits.put(circ, text);
+      final var elt = new StringBuilder();
+      fromCircuit(elt, circ, text);
+      out.append(elt);
     }
+    cache.circuits = circuits;
     for (final var vhdl : file.getVhdlContents()) {
-      ret.appendChild(fromVhdl(vhdl));
+      out.write(fromVhdl(vhdl));
     }
-    return ret;
+    out.write("\n</project>\n");
   }
 
-  Element fromMouseMappings() {
-    final var elt = doc.createElement("mappings");
+  String fromMouseMappings() {
+    final var tools = new ArrayList<String[]>();
     final var map = file.getOptions().getMouseMappings();
     for (final var entry : map.getMappings().entrySet()) {
       final var mods = entry.getKey();
       final var tool = entry.getValue();
-      final var toolElt = fromTool(tool);
       final var mapValue = InputEventUtil.toString(mods);
-      toolElt.setAttribute("map", mapValue);
-      elt.appendChild(toolElt);
+      final var toolElt = fromTool(tool, 2, mapValue);
+      if (toolElt != null) tools.add(toolElt);
     }
-    return elt;
+    tools.sort((a, b) -> a[0].compareTo(b[0]));
+    final var ret = new StringBuilder();
+    appendStart(ret, 1, "mappings");
+    final var content = new StringBuilder();
+    for (final var tool : tools) content.append(tool[1]);
+    appendEnd(ret, 1, "mappings", content);
+    return ret.toString();
   }
 
-  Element fromOptions() {
-    final var elt = doc.createElement("options");
-    addAttributeSetContent(elt, file.getOptions().getAttributeSet(), null, false);
-    return elt;
+  String fromOptions() {
+    final var ret = new StringBuilder();
+    appendStart(ret, 1, "options");
+    final var content = new StringBuilder();
+    addAttributeSetContent(content, 1, file.getOptions().getAttributeSet(), null, false);
+    appendEnd(ret, 1, "options", content);
+    return ret.toString();
   }
 
-  Element fromTool(Tool tool) {
+  /** Returns the key by which the tool is sorted and its text, or null if it is not found. */
+  String[] fromTool(Tool tool, int depth, String map) {
     final var lib = findLibrary(tool);
     String libName;
     if (lib == null) {
@@ -505,31 +805,30 @@ final class XmlWriter {
       }
     }
 
-    final var elt = doc.createElement("tool");
-    if (libName != null) elt.setAttribute("lib", libName);
-    elt.setAttribute("name", tool.getName());
-    addAttributeSetContent(elt, tool.getAttributeSet(), tool, true);
-    return elt;
+    final var elt = new StringBuilder();
+    appendStart(elt, depth, "tool", "lib", libName, "map", map, "name", tool.getName());
+    final var content = new StringBuilder();
+    addAttributeSetContent(content, depth, tool.getAttributeSet(), tool, true);
+    appendEnd(elt, depth, "tool", content);
+    return new String[] {sortKey("lib", libName, "map", map, "name", tool.getName()), elt.toString()};
   }
 
-  Element fromToolbarData() {
-    final var elt = doc.createElement("toolbar");
+  String fromToolbarData() {
+    final var ret = new StringBuilder();
+    appendStart(ret, 1, "toolbar");
+    final var content = new StringBuilder();
     final var toolbar = file.getOptions().getToolbarData();
     for (final var tool : toolbar.getContents()) {
       if (tool == null) {
-        elt.appendChild(doc.createElement("sep"));
+        appendStart(content, 2, "sep");
+        content.append("/>");
       } else {
-        elt.appendChild(fromTool(tool));
+        final var toolElt = fromTool(tool, 2, null);
+        if (toolElt != null) content.append(toolElt[1]);
       }
     }
-    return elt;
-  }
-
-  Element fromWire(Wire w) {
-    final var ret = doc.createElement("wire");
-    ret.setAttribute("from", w.getEnd0().toString());
-    ret.setAttribute("to", w.getEnd1().toString());
-    return ret;
+    appendEnd(ret, 1, "toolbar", content);
+    return ret.toString();
   }
 
   boolean libraryContains(Library lib, Tool query) {
@@ -24,7 +24,6 @@ import java.awt.Rectangle;
 import java.awt.RenderingHints;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 import javax.swing.DefaultListSelectionModel;
 import javax.swing.JPanel;
@@ -43,6 +42,9 @@ public class RightPanel extends JPanel {
   private static final int EXTRA_SPACE = 40;
   private static final int CURSOR_GAP = 20;
   private static final int TIMELINE_SPACING = 80;
+  // Waveforms are drawn straight into the visible part of the panel, so its width is only limited
+  // by what the scroll pane can handle.
+  private static final int MAX_WIDTH = 1 << 24;
   private final ChronoPanel chronoPanel;
   final DefaultListSelectionModel selectionModel;
   private Model model;
@@ -141,7 +143,6 @@ public class RightPanel extends JPanel {
     timeStartDraw = t0;
     timeNextDraw = t1;
     updateSize(true);
-    flushWaveforms();
     header.repaint();
     repaint();
   }
@@ -233,16 +234,8 @@ public class RightPanel extends JPanel {
   }
 
   public void changeSpotlight(Signal oldSignal, Signal newSignal) {
-    if (oldSignal != null) {
-      final var waveform = rows.get(oldSignal.idx);
-      waveform.flush();
-      repaint(waveform.getBounds());
-    }
-    if (newSignal != null) {
-      final var waveform = rows.get(newSignal.idx);
-      waveform.flush();
-      repaint(waveform.getBounds());
-    }
+    if (oldSignal != null) repaint(rows.get(oldSignal.idx).getBounds());
+    if (newSignal != null) repaint(rows.get(newSignal.idx).getBounds());
   }
 
   public void updateSelected(int firstIdx, int lastIdx) {
@@ -251,16 +244,11 @@ public class RightPanel extends JPanel {
       final var selected = selectionModel.isSelectedIndex(i);
       if (selected != waveform.selected) {
         waveform.selected = selected;
-        waveform.flush();
         repaint(waveform.getBounds());
       }
     }
   }
 
-  private void flushWaveforms() {
-    for (final var w : rows) w.flush();
-  }
-
   @Override
   public void paintComponent(Graphics graphics) {
     final var gfx = (Graphics2D) graphics;
@@ -284,13 +272,20 @@ public class RightPanel extends JPanel {
       gfx.setFont(f);
       return;
     }
-    if (width > 32000) {
+    if (width > MAX_WIDTH) {
       gfx.setColor(Color.BLACK);
       gfx.setFont(MSG_FONT);
       gfx.drawString("Oops! Chronogram is too large to display.", 15, 15);
       gfx.drawString("Try zooming out, or reset the simulation.", 15, 29);
     } else {
-      for (final var w : rows) w.paintWaveform(gfx);
+      // Only the rows and the part of them within the clip are drawn, usually just what is visible
+      // in the scroll pane.
+      var clip = gfx.getClipBounds();
+      if (clip == null) clip = new Rectangle(0, 0, getWidth(), getHeight());
+      final var xMax = Math.min(clip.x + clip.width, width);
+      final var first = Math.max(0, clip.y / WAVE_HEIGHT);
+      final var last = Math.min(rows.size() - 1, (clip.y + clip.height - 1) / WAVE_HEIGHT);
+      for (var i = first; i <= last; i++) rows.get(i).paintWaveform(gfx, clip.x, xMax);
       paintCursor(gfx);
     }
   }
@@ -405,7 +400,6 @@ public class RightPanel extends JPanel {
     private static final int MID = WAVE_HEIGHT / 2;
 
     final Signal signal;
-    private BufferedImage buf;
     boolean selected;
 
     public Waveform(Signal s) {
@@ -417,11 +411,24 @@ public class RightPanel extends JPanel {
       return new Rectangle(0, y, width, WAVE_HEIGHT);
     }
 
-    private void drawSignal(Graphics2D g, boolean bold, Color[] colors) {
+    // Draws the part of the signal between pixel columns xMin and xMax. Where several values fall
+    // into the same column, that column is drawn as a vertical line and the iterator skips straight
+    // to the value at the next column, so the cost depends on the number of columns drawn rather
+    // than on the number of values recorded.
+    private void drawSignal(Graphics2D g, boolean bold, Color[] colors, int xMin, int xMax) {
       g.setStroke(new BasicStroke(bold ? 2 : 1));
 
       final var t0 = model.getStartTime();
-      Signal.Iterator cur = signal.new Iterator(t0);
+      final var z = tickWidth / model.getTimeScale();
+      // Start a bit to the left, so that a transition sloping into view is drawn whole, and one
+      // value earlier still, so that the first value in view is drawn just as in a full repaint.
+      final var xStart = Math.max(0, xMin - 2 * slope - 2);
+      Signal.Iterator cur = signal.new Iterator(t0 + (long) (xStart / z));
+      cur.rewind();
+      if (cur.time > t0) {
+        cur = signal.new Iterator(cur.time - 1);
+        cur.rewind();
+      }
 
       final var fm = g.getFontMetrics();
 
@@ -429,14 +436,24 @@ public class RightPanel extends JPanel {
       final var min = signal.getFormattedMinValue();
       final var labelWidth = Math.max(fm.stringWidth(max), fm.stringWidth(min));
 
-      final var z = tickWidth / model.getTimeScale();
       var prevHi = false;
       var prevLo = false;
       Color prevFill = null;
       while (cur.value != null) {
-        final var v = cur.getFormattedValue();
         final var x0 = (int) (z * (cur.time - t0));
         final var x1 = (int) (z * (cur.time + cur.duration - t0));
+        if (x0 > xMax) break;
+        if (x1 == x0) {
+          g.setColor(colors[2]);
+          g.drawLine(x0, HIGH, x0, LOW);
+          prevHi = true;
+          prevLo = true;
+          prevFill = colors[1];
+          final var next = t0 + (long) Math.ceil((x0 + 1) / z);
+          if (!cur.advance(next - cur.time)) break;
+          continue;
+        }
+        final var v = cur.getFormattedValue();
 
         var hi = true;
         var lo = true;
@@ -575,51 +592,33 @@ public class RightPanel extends JPanel {
       }
     }
 
-    private void createOffscreen() {
-      buf = (BufferedImage) createImage(width, WAVE_HEIGHT);
-      final var g = buf.createGraphics();
-      g.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_DEFAULT);
-      g.setRenderingHint(
-          RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
-      g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+    public void paintWaveform(Graphics2D g, int xMin, int xMax) {
+      final var y = WAVE_HEIGHT * signal.idx;
       final var isBold = (model.getSpotlight() == signal);
       final var colors = chronoPanel.rowColors(signal.info, selected);
+      final var w = xMax - xMin;
+      g.translate(0, y);
       g.setColor(Color.WHITE);
-      g.fillRect(0, 0, width, ChronoPanel.GAP - 1);
-      g.fillRect(0, LOW, width, ChronoPanel.GAP - 1);
+      g.fillRect(xMin, 0, w, ChronoPanel.GAP - 1);
+      g.fillRect(xMin, LOW, w, ChronoPanel.GAP - 1);
       g.setColor(colors[0]);
-      g.fillRect(0, HIGH, width, LOW - HIGH);
+      g.fillRect(xMin, HIGH, w, LOW - HIGH);
       g.setColor(Color.BLACK);
-      drawSignal(g, isBold, colors);
-      g.dispose();
-    }
-
-    public void paintWaveform(Graphics2D g) {
-      if (buf == null) {
-        // TODO: reallocating image each time seems silly
-        createOffscreen();
-      }
-      final var y = WAVE_HEIGHT * signal.idx;
-      g.drawImage(buf, null, 0, y);
-    }
-
-    public void flush() {
-      buf = null;
+      drawSignal(g, isBold, colors, xMin, xMax);
+      g.translate(0, -y);
     }
   }
 
   public void zoom(int sens, int posX) {
     if (zoom + sens < 1 || zoom + sens > 40) return;
 
-    // fixme: Offscreen image can be max 32k pixels wide. We should not be
-    // making such huge offscreen images anyway.
     final var timeScale = model.getTimeScale();
     final var t0 = model.getStartTime();
     final var t1 = model.getEndTime();
     final var numTicks = (t1 - t0 + timeScale - 1) / timeScale;
     final var newTickWidth = 20 * Math.pow(1.15, zoom + sens - 20);
     final var newWidth = (int) (newTickWidth * numTicks + EXTRA_SPACE + 0.5);
-    if (newWidth > 32000) return;
+    if (newWidth > MAX_WIDTH) return;
     final var f = timeScale / tickWidth;
     final var mouseT = t0 + posX * f;
     final var sb = chronoPanel.getHorizontalScrollBar();
@@ -645,7 +644,6 @@ public class RightPanel extends JPanel {
         });
 
     // repaint
-    flushWaveforms();
     header.repaint();
     repaint();
   }
@@ -171,13 +171,17 @@ public class ComponentSelector extends JTable {
 
     @Override
     public String toString() {
-      final var log = (LoggableContract) comp.getFeature(LoggableContract.class);
-      if (log != null) {
-        final var ret = log.getLogName(null);
-        if (ret != null && !ret.equals("")) return ret;
-      }
-      return comp.getFactory().getDisplayName() + " " + comp.getLocation();
+      return nameOf(comp);
+    }
+  }
+
+  private static String nameOf(Component comp) {
+    final var log = (LoggableContract) comp.getFeature(LoggableContract.class);
+    if (log != null) {
+      final var ret = log.getLogName(null);
+      if (ret != null && !ret.equals("")) return ret;
     }
+    return comp.getFactory().getDisplayName() + " " + comp.getLocation();
   }
 
   private class CircuitNode extends TreeNode<CircuitNode> implements CircuitListener {
@@ -498,26 +502,50 @@ public class ComponentSelector extends JTable {
     }
   }
 
-  private void enumerate(ArrayList<SignalInfo> result, TreeNode<?> node) {
-    for (final var child : node.children) {
-      final var item = makeSignalInfo(child);
-      if (item != null) result.add(item);
-      enumerate(result, child);
-    }
-  }
-
   // Returns empty list if there are no clocks, but there are other suitable
   // observable clocks. Returns null if there are no clocks and nothing suitable
-  // as an observable clock.
+  // as an observable clock. This walks the circuits directly, in the order the
+  // selector would list them, so that it also works without a display.
   public static ArrayList<SignalInfo> findClocks(Circuit circ) {
-    var sel = new ComponentSelector(circ, ACTUAL_CLOCKS);
-    var clocks = new ArrayList<SignalInfo>();
-    sel.enumerate(clocks, sel.tableModel.root);
+    final var clocks = new ArrayList<SignalInfo>();
+    final var observable = findClocks(circ, circ, new ArrayList<>(), clocks);
     if (clocks.size() > 0) return clocks;
-    sel = new ComponentSelector(circ, OBSERVEABLE_CLOCKS);
-    sel.enumerate(clocks, sel.tableModel.root);
-    if (clocks.size() > 0) clocks.clear();
-    else clocks = null;
-    return clocks;
+    return observable ? clocks : null;
+  }
+
+  // Adds the clocks of circ, which is reached from root via path, and returns
+  // whether there is anything 1-bit wide that could be observed as a clock.
+  private static boolean findClocks(
+      Circuit root, Circuit circ, ArrayList<Component> path, ArrayList<SignalInfo> clocks) {
+    var observable = false;
+    final var found = new ArrayList<Component>();
+    final var subcircs = new ArrayList<Component>();
+    for (final var c : circ.getNonWires()) {
+      if (c.getFactory() instanceof SubcircuitFactory) {
+        subcircs.add(c);
+        continue;
+      }
+      final var log = (LoggableContract) c.getFeature(LoggableContract.class);
+      if (log == null) continue;
+      var bitWidth = log.getBitWidth(null);
+      if (bitWidth == null) bitWidth = c.getAttributeSet().getValue(StdAttr.WIDTH);
+      if (bitWidth.getWidth() != 1) continue;
+      observable = true;
+      if (c.getFactory() instanceof Clock && log.getLogOptions() == null) found.add(c);
+    }
+    found.sort((a, b) -> compareNames.compare(nameOf(a), nameOf(b)));
+    for (final var c : found) {
+      path.add(c);
+      clocks.add(new SignalInfo(root, path.toArray(new Component[0]), null));
+      path.remove(path.size() - 1);
+    }
+    subcircs.sort(compareComponents);
+    for (final var c : subcircs) {
+      path.add(c);
+      final var sub = ((SubcircuitFactory) c.getFactory()).getSubcircuit();
+      observable |= findClocks(root, sub, path, clocks);
+      path.remove(path.size() - 1);
+    }
+    return observable;
   }
 }
@@ -11,6 +11,7 @@ package com.cburch.logisim.gui.log;
 
 import static com.cburch.logisim.gui.Strings.S;
 
+import com.cburch.logisim.Main;
 import com.cburch.logisim.circuit.Circuit;
 import com.cburch.logisim.circuit.CircuitEvent;
 import com.cburch.logisim.circuit.CircuitListener;
@@ -23,6 +24,7 @@ import com.cburch.logisim.data.Value;
 import com.cburch.logisim.std.wiring.Pin;
 import com.cburch.logisim.util.EventSourceWeakSupport;
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -76,7 +78,25 @@ public class Model implements CircuitListener, SignalInfo.Listener {
   final CircuitState circuitState;
   private final ArrayList<SignalInfo> info = new ArrayList<>();
   private final ArrayList<Signal> signals = new ArrayList<>();
-  private long timeEnd = -1; // signals go from 0 <= t < tEnd
+  // Samples are taken on the thread that reports propagation, and added to the signals by the
+  // capture thread of this queue. The signals they are taken of are kept in an array, so that
+  // sampling does not need to copy the list.
+  private final SampleQueue samples =
+      new SampleQueue(
+          new SampleQueue.Consumer() {
+            @Override
+            public void apply(SampleQueue.Sample sample) {
+              applySample(sample);
+            }
+
+            @Override
+            public void batchApplied() {
+              fireSignalsExtended(null);
+            }
+          });
+  private volatile Signal[] sampled;
+  private volatile long timeEnd = -1; // signals go from 0 <= t < tEnd
+  private long timeSample = 0; // start of the most recent sample
   private Signal spotlight;
   private SignalInfo clockSource;
   private Value curClockVal;
@@ -86,6 +106,7 @@ public class Model implements CircuitListener, SignalInfo.Listener {
   private boolean fileHeader = true;
   private boolean selected = false;
   private LogThread logger = null;
+  private volatile VcdWriter waveform = null;
   private int mode = STEP;
   private int granularity = COARSE;
   private long timeScale = 5000;
@@ -120,7 +141,7 @@ public class Model implements CircuitListener, SignalInfo.Listener {
     if (clocks != null && clocks.size() == 1) {
       // If one clock is present, we use CLOCK mode with that as the source.
       clockSource = clocks.get(0);
-    } else if (clocks != null && clocks.size() > 1) {
+    } else if (clocks != null && clocks.size() > 1 && !Main.headless) {
       // If multiple are present, ask user to select, with STEP as fallback.
       clockSource = ClockSource.doClockMultipleObserverDialog(circ);
       if (clockSource != null
@@ -146,6 +167,7 @@ public class Model implements CircuitListener, SignalInfo.Listener {
       signals.add(new Signal(i, item, item.fetchValue(circuitState), duration, 0, historyLimit));
     }
     timeEnd = duration;
+    sampled = signals.toArray(new Signal[0]);
 
     // Listen for new pins, clocks, etc., and changes to Signals
     for (final var item : info) item.setListener(this); // includes clock source
@@ -154,6 +176,7 @@ public class Model implements CircuitListener, SignalInfo.Listener {
 
   private void renumberSignals() {
     for (int i = 0; i < signals.size(); i++) signals.get(i).idx = i;
+    sampled = signals.toArray(new Signal[0]);
   }
 
   public void addOrMove(List<SignalInfo> items, int idx) {
@@ -185,42 +208,46 @@ public class Model implements CircuitListener, SignalInfo.Listener {
   }
 
   public boolean addOrMoveSignals(List<Signal> items, int idx) {
-    int changed = items.size();
-    long newEnd = timeEnd;
-    for (final var item : items) {
-      if (item.info.getTopLevelCircuit() != getCircuit()) {
-        changed--; // attempt to paste component from wrong circuit
-        continue;
-      }
-      int i = info.indexOf(item.info);
-      if (i < 0) {
-        info.add(idx, item.info); // put new item at idx
-        // bring signal into sync with others
-        item.resize(historyLimit);
-        long d = item.getEndTime();
-        if (d < newEnd) {
-          item.extend(newEnd - d);
-        } else if (d > newEnd) {
-          for (Signal s : signals) s.extend(d - newEnd);
-          newEnd = d;
+    synchronized (this) {
+      // existing signals are extended below, so the capture thread has to be idle
+      awaitSamples();
+      int changed = items.size();
+      long newEnd = timeEnd;
+      for (final var item : items) {
+        if (item.info.getTopLevelCircuit() != getCircuit()) {
+          changed--; // attempt to paste component from wrong circuit
+          continue;
+        }
+        int i = info.indexOf(item.info);
+        if (i < 0) {
+          info.add(idx, item.info); // put new item at idx
+          // bring signal into sync with others
+          item.resize(historyLimit);
+          long d = item.getEndTime();
+          if (d < newEnd) {
+            item.extend(newEnd - d);
+          } else if (d > newEnd) {
+            for (Signal s : signals) s.extend(d - newEnd);
+            newEnd = d;
+          }
+          signals.add(idx, item);
+          idx++;
+          item.info.setListener(this);
+        } else if (i > idx) {
+          info.add(idx, info.remove(i)); // move later item up
+          signals.add(idx, signals.remove(i));
+          idx++;
+        } else if (i < idx - 1) {
+          info.add(idx - 1, info.remove(i)); // move earlier item down
+          signals.add(idx - 1, signals.remove(i));
+        } else {
+          changed--; // no change to existing item
         }
-        signals.add(idx, item);
-        idx++;
-        item.info.setListener(this);
-      } else if (i > idx) {
-        info.add(idx, info.remove(i)); // move later item up
-        signals.add(idx, signals.remove(i));
-        idx++;
-      } else if (i < idx - 1) {
-        info.add(idx - 1, info.remove(i)); // move earlier item down
-        signals.add(idx - 1, signals.remove(i));
-      } else {
-        changed--; // no change to existing item
       }
+      if (changed == 0 && newEnd == timeEnd) return false;
+      timeEnd = newEnd;
+      renumberSignals();
     }
-    if (changed == 0 && newEnd == timeEnd) return false;
-    timeEnd = newEnd;
-    renumberSignals();
     fireSelectionChanged(null);
     return true;
   }
@@ -340,9 +367,12 @@ public class Model implements CircuitListener, SignalInfo.Listener {
   }
 
   public void setHistoryLimit(int limit) {
-    if (historyLimit == limit) return;
-    historyLimit = limit;
-    for (final var s : signals) s.resize(historyLimit);
+    synchronized (this) {
+      if (historyLimit == limit) return;
+      awaitSamples();
+      historyLimit = limit;
+      for (final var s : signals) s.resize(historyLimit);
+    }
     fireHistoryLimitChanged(null);
   }
 
@@ -405,6 +435,7 @@ public class Model implements CircuitListener, SignalInfo.Listener {
                 1,
                 timeEnd - 1,
                 historyLimit));
+        renumberSignals();
         clockSource.setListener(this);
         fireSelectionChanged(null);
       }
@@ -456,6 +487,7 @@ public class Model implements CircuitListener, SignalInfo.Listener {
     info.add(item);
     final var s = new Signal(idx, item, item.fetchValue(circuitState), 1, timeEnd - 1, historyLimit);
     signals.add(idx, s);
+    renumberSignals();
     item.setListener(this);
     if (fireUpdate) fireSelectionChanged(null);
     return s;
@@ -553,35 +585,94 @@ public class Model implements CircuitListener, SignalInfo.Listener {
     return selected;
   }
 
-  private void extendWithOldValues(long duration) {
-    for (final var s : signals) {
-      final var v = s.info.fetchValue(circuitState);
-      s.extend(duration);
+  // Takes a sample of all signals, unless the kind of sample does not need their values.
+  private void sample(byte kind, long duration) {
+    final var sigs = sampled;
+    final var sample = samples.claim(sigs.length);
+    sample.kind = kind;
+    sample.duration = duration;
+    sample.signals = sigs;
+    if (kind != SampleQueue.EXTEND_OLD) {
+      for (var i = 0; i < sigs.length; i++) sample.values[i] = sigs[i].info.fetchValue(circuitState);
     }
+    samples.publish();
+  }
+
+  private void extendWithOldValues(long duration) {
+    sample(SampleQueue.EXTEND_OLD, duration);
     elapsedSinceTrigger += duration;
-    timeEnd += duration;
-    fireSignalsExtended(null);
   }
 
   private void extendWithNewValues(long duration) {
-    for (final var s : signals) {
-      final var v = s.info.fetchValue(circuitState);
-      s.extend(v, duration);
-    }
+    sample(SampleQueue.EXTEND, duration);
     elapsedSinceTrigger += duration;
-    timeEnd += duration;
-    fireSignalsExtended(null);
   }
 
   private void replaceWithNewValues(long duration) {
-    for (final var s : signals) {
-      final var v = s.info.fetchValue(circuitState);
-      s.replaceRecent(v, duration);
+    sample(SampleQueue.REPLACE, duration);
+  }
+
+  // Adds a sample to the signals; called on the capture thread, in the order of sampling.
+  private void applySample(SampleQueue.Sample sample) {
+    final var sigs = sample.signals;
+    final var values = sample.values;
+    final var duration = sample.duration;
+    final var w = waveform;
+    switch (sample.kind) {
+      case SampleQueue.EXTEND_OLD -> {
+        for (final var s : sigs) {
+          catchUp(s);
+          s.extend(duration);
+        }
+        timeEnd += duration;
+      }
+      case SampleQueue.EXTEND -> {
+        timeSample = timeEnd;
+        if (w != null) w.beginSample(timeEnd);
+        for (var i = 0; i < sigs.length; i++) {
+          catchUp(sigs[i]);
+          sigs[i].extend(values[i], duration);
+          if (w != null) w.setValue(sigs[i], values[i]);
+        }
+        timeEnd += duration;
+      }
+      case SampleQueue.REPLACE -> {
+        timeSample = Math.max(timeSample, timeEnd - duration);
+        if (w != null) w.beginSample(timeEnd - duration);
+        for (var i = 0; i < sigs.length; i++) {
+          catchUp(sigs[i]);
+          sigs[i].replaceRecent(values[i], duration);
+          if (w != null) w.setValue(sigs[i], values[i]);
+        }
+      }
+      default -> {
+        if (w != null) w.reset(timeEnd);
+        for (var i = 0; i < sigs.length; i++) {
+          sigs[i].reset(values[i], duration);
+          if (w != null) w.setValue(sigs[i], values[i]);
+        }
+        timeEnd = duration;
+        timeSample = 0;
+      }
     }
-    fireSignalsExtended(null); // changed, not extended, but works fine for now
   }
 
-  public void propagationCompleted(boolean ticked, boolean stepped, boolean propagated) {
+  // A signal added while samples were underway may end before the others.
+  private void catchUp(Signal s) {
+    final var end = s.getEndTime();
+    if (end < timeEnd) s.extend(timeEnd - end);
+  }
+
+  // Waits until the capture thread has applied all samples. The caller holds the lock of this
+  // model, so that no new samples are taken, and can then change the signals itself.
+  private void awaitSamples() {
+    samples.flush();
+  }
+
+  // Synchronized, like simulatorReset, because a mode change resets from the GUI thread while the
+  // simulator thread may be sampling, and the queue takes only one producer at a time.
+  public synchronized void propagationCompleted(
+      boolean ticked, boolean stepped, boolean propagated) {
     if (!stepped && !propagated) {
       // No signals have changed. This was a nudge that resulted in no signal
       // changes, or a tick in single-step mode that hasn't yet propagated
@@ -678,7 +769,7 @@ public class Model implements CircuitListener, SignalInfo.Listener {
     }
   }
 
-  public void simulatorReset() {
+  public synchronized void simulatorReset() {
     long duration;
     if (mode >= CLOCKED) {
       curClockVal = clockSource.fetchValue(circuitState);
@@ -701,13 +792,27 @@ public class Model implements CircuitListener, SignalInfo.Listener {
       duration = gateDelay;
     }
     if (mode == REAL) lastRealtimeUpdate = System.nanoTime();
-    elapsedSinceTrigger = 0;
-    for (final var s : signals) {
-      final var v = s.info.fetchValue(circuitState);
-      s.reset(v, duration);
-    }
-    elapsedSinceTrigger += duration;
-    timeEnd = duration;
+    sample(SampleQueue.RESET, duration);
+    elapsedSinceTrigger = duration;
+  }
+
+  /**
+   * Starts streaming all changes of the current signals to a VCD file, which is compressed if its
+   * name ends in ".gz". Any waveform file written so far is closed first.
+   */
+  public void startWaveform(File file) throws IOException {
+    stopWaveform();
+    samples.flush();
+    waveform = new VcdWriter(file, circuitState.getCircuit().getName(), signals, timeSample);
+  }
+
+  /** Finishes and closes the waveform file, if there is one. */
+  public void stopWaveform() throws IOException {
+    if (waveform == null) return;
+    samples.flush();
+    final var w = waveform;
+    waveform = null;
+    w.close(timeEnd);
   }
 
   public void setFile(File value) {
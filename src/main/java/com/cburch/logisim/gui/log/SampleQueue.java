@@ -0,0 +1,151 @@
+/*
+ * Logisim-evolution - digital logic design tool and simulator
+ * Copyright by the Logisim-evolution developers
+ *
+ * https://github.com/logisim-evolution/
+ *
+ * This is free software released under GNU GPLv3 license
+ */
+
+package com.cburch.logisim.gui.log;
+
+import com.cburch.logisim.data.Value;
+import com.cburch.logisim.util.UniquelyNamedThread;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Ring buffer that carries the samples of a {@link Model} from the thread that takes them,
+ * normally the simulator thread, to a capture thread that adds them to the signal histories, the
+ * waveform file and the listeners. The slots are allocated once and reused, and neither side takes
+ * a lock: the producer only writes the tail and the consumer only writes the head.
+ *
+ * <p>There must be only one producer at a time. When the consumer falls a whole ring behind, the
+ * producer waits rather than drop samples. The capture thread is started on demand and ends after
+ * it has been idle for a while, so a model that is no longer used does not keep a thread around.
+ */
+final class SampleQueue {
+  static final byte EXTEND = 0; // new values for the given duration
+  static final byte EXTEND_OLD = 1; // the previous values for the given duration, no values
+  static final byte REPLACE = 2; // new values for the most recent duration
+  static final byte RESET = 3; // new values starting at time zero
+
+  static final class Sample {
+    byte kind;
+    long duration;
+    Signal[] signals;
+    Value[] values = new Value[0];
+  }
+
+  interface Consumer {
+    void apply(Sample sample);
+
+    /** Called after each batch, i.e. after all samples published by the time it started. */
+    void batchApplied();
+  }
+
+  private static final Logger logger = LoggerFactory.getLogger(SampleQueue.class);
+  private static final int CAPACITY = 1024; // must be a power of two
+  private static final long IDLE_NANOS = TimeUnit.SECONDS.toNanos(2);
+  private static final long WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+  private final Sample[] slots = new Sample[CAPACITY];
+  private final Consumer consumer;
+  private final AtomicLong head = new AtomicLong(); // next sample to apply
+  private final AtomicLong tail = new AtomicLong(); // next sample to fill
+  private final AtomicBoolean running = new AtomicBoolean();
+  private volatile Thread thread;
+  private volatile boolean parked;
+  private long headSeen; // the producer's last look at head
+
+  SampleQueue(Consumer consumer) {
+    this.consumer = consumer;
+    for (var i = 0; i < CAPACITY; i++) slots[i] = new Sample();
+  }
+
+  /**
+   * Returns the slot for the next sample, with room for the given number of values. Waits while
+   * the ring is full. The sample is not seen by the consumer before {@link #publish}.
+   */
+  Sample claim(int size) {
+    final var t = tail.get();
+    while (t - headSeen >= CAPACITY) {
+      headSeen = head.get();
+      if (t - headSeen >= CAPACITY) {
+        wake();
+        LockSupport.parkNanos(WAIT_NANOS);
+      }
+    }
+    final var sample = slots[(int) t & (CAPACITY - 1)];
+    if (sample.values.length < size) sample.values = new Value[size];
+    return sample;
+  }
+
+  /** Hands the sample returned by the last {@link #claim} to the capture thread. */
+  void publish() {
+    tail.set(tail.get() + 1);
+    wake();
+  }
+
+  /** Waits until all published samples have been applied. */
+  void flush() {
+    final var t = tail.get();
+    while (head.get() < t) {
+      wake();
+      LockSupport.parkNanos(WAIT_NANOS);
+    }
+  }
+
+  private void wake() {
+    if (!running.get() && running.compareAndSet(false, true)) {
+      final var t = new UniquelyNamedThread(this::run, "LogCapture");
+      t.setDaemon(true);
+      thread = t;
+      t.start();
+    } else if (parked) {
+      LockSupport.unpark(thread);
+    }
+  }
+
+  private void run() {
+    var idleSince = System.nanoTime();
+    while (true) {
+      var h = head.get();
+      final var t = tail.get();
+      if (h < t) {
+        for (; h < t; h++) {
+          // a sample that cannot be applied is skipped, but the ones after it are not
+          try {
+            consumer.apply(slots[(int) h & (CAPACITY - 1)]);
+          } catch (RuntimeException e) {
+            logger.error("Skipped sample {} of the signal history", h, e);
+          }
+          head.set(h + 1);
+        }
+        try {
+          consumer.batchApplied();
+        } catch (RuntimeException e) {
+          logger.error("Failed to report new samples of the signal history", e);
+        }
+        idleSince = System.nanoTime();
+        continue;
+      }
+      if (System.nanoTime() - idleSince < IDLE_NANOS) {
+        parked = true;
+        if (tail.get() == h) LockSupport.parkNanos(this, IDLE_NANOS);
+        parked = false;
+        continue;
+      }
+      // Idle for long enough: stop, unless a sample arrived in the meantime and the producer
+      // did not see that this thread was stopping.
+      thread = null;
+      running.set(false);
+      if (tail.get() == h || !running.compareAndSet(false, true)) return;
+      thread = Thread.currentThread();
+    }
+  }
+}
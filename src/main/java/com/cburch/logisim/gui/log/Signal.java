@@ -15,57 +15,169 @@ import java.awt.datatransfer.DataFlavor;
 import java.awt.datatransfer.Transferable;
 import java.awt.datatransfer.UnsupportedFlavorException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 
+/**
+ * The recorded history of one logged signal: a list of samples, each a value together with the
+ * time at which it starts. A sample lasts until the next one starts, the last one until the end
+ * time. When the history is limited, the oldest samples are dropped to make room for new ones.
+ *
+ * <p>The samples are kept in primitive arrays, used as a ring buffer that doubles in size as
+ * needed. As long as the signal has taken no more than {@value #DICTIONARY_SIZE} distinct values,
+ * which is always the case for narrow signals, each sample stores a one-byte index into a table
+ * of those values. After that, the bit masks of the values are stored instead, with the masks
+ * for unknown and error bits only allocated once such bits occur. Start times are stored rather
+ * than durations, so that the end time is known and the sample at a given time can be found by
+ * binary search.
+ */
 public class Signal {
 
-  private static final int CHUNK = 512;
+  private static final int INITIAL_CAPACITY = 64;
+  private static final int DICTIONARY_SIZE = 256; // distinct values a byte can index
 
   // Signal position in list, name, etc.
   public int idx;
   public final SignalInfo info;
 
-  // Signal data
-  private long timeStart;
-  private Value[][] val; // values, in blocks no larger than CHUNK
-  private Value last;
-  private long[][] dur; // duration of each value
-  private int curSize;
+  // Signal data, in a ring buffer of samples that starts at index first
+  private int first;
+  private int size;
   private int maxSize; // limit, or zero for unlimited
-  private short firstIndex; // for wrapping, only when limited
+  private long[] start; // start time of each sample
+  private long timeEnd;
+  private Value last;
+
+  // Sample values are either indices into dictionary...
+  private byte[] code;
+  private ArrayList<Value> dictionary = new ArrayList<>();
+  private HashMap<Value, Integer> dictionaryIndex = new HashMap<>();
+  // ... or, once there are too many distinct values, bit masks.
+  private long[] valueBits;
+  private long[] unknownBits; // null as long as all are zero
+  private long[] errorBits; // null as long as all are zero
+  private byte[] widths; // null as long as all are packedWidth wide
+  private int packedWidth;
 
   public Signal(
       int idx, SignalInfo info, Value initialValue, long duration, long timeStart, int maxSize) {
     this.idx = idx;
     this.info = info;
-    this.timeStart = timeStart;
     this.maxSize = maxSize;
-    this.val = new Value[1][maxSize == 0 || maxSize > CHUNK ? CHUNK : maxSize];
-    this.dur = new long[1][maxSize == 0 || maxSize > CHUNK ? CHUNK : maxSize];
-    this.curSize = 0;
-    this.firstIndex = 0;
+    this.timeEnd = timeStart;
+    allocate(initialCapacity(maxSize));
     extend(initialValue, duration);
   }
 
+  private static int initialCapacity(int maxSize) {
+    return maxSize > 0 ? Math.min(maxSize, INITIAL_CAPACITY) : INITIAL_CAPACITY;
+  }
+
+  private void allocate(int capacity) {
+    start = new long[capacity];
+    if (code != null || valueBits == null) {
+      code = new byte[capacity];
+    } else {
+      valueBits = new long[capacity];
+      if (unknownBits != null) unknownBits = new long[capacity];
+      if (errorBits != null) errorBits = new long[capacity];
+      if (widths != null) widths = new byte[capacity];
+    }
+    first = 0;
+    size = 0;
+  }
+
+  // Returns the array index of the k-th sample.
+  private int slot(int k) {
+    final var i = first + k;
+    return i < start.length ? i : i - start.length;
+  }
+
+  private long startOf(int k) {
+    return start[slot(k)];
+  }
+
+  private long endOf(int k) {
+    return k + 1 < size ? startOf(k + 1) : timeEnd;
+  }
+
+  private Value valueOf(int k) {
+    final var i = slot(k);
+    if (code != null) return dictionary.get(code[i] & 0xff);
+    return Value.createFromMasks(
+        widths == null ? packedWidth : widths[i],
+        errorBits == null ? 0 : errorBits[i],
+        unknownBits == null ? 0 : unknownBits[i],
+        valueBits[i]);
+  }
+
+  private void store(int i, Value v) {
+    if (code != null) {
+      var c = dictionaryIndex.get(v);
+      if (c == null && dictionary.size() < DICTIONARY_SIZE) {
+        c = dictionary.size();
+        dictionary.add(v);
+        dictionaryIndex.put(v, c);
+      }
+      if (c != null) {
+        code[i] = (byte) (int) c;
+        return;
+      }
+      switchToMasks();
+    }
+    valueBits[i] = v.getValueMask();
+    if (v.getUnknownMask() != 0 && unknownBits == null) unknownBits = new long[start.length];
+    if (unknownBits != null) unknownBits[i] = v.getUnknownMask();
+    if (v.getErrorMask() != 0 && errorBits == null) errorBits = new long[start.length];
+    if (errorBits != null) errorBits[i] = v.getErrorMask();
+    if (v.getWidth() != packedWidth && widths == null) {
+      widths = new byte[start.length];
+      Arrays.fill(widths, (byte) packedWidth);
+    }
+    if (widths != null) widths[i] = (byte) v.getWidth();
+  }
+
+  private void switchToMasks() {
+    final var oldCode = code;
+    final var oldDictionary = dictionary;
+    code = null;
+    dictionary = null;
+    dictionaryIndex = null;
+    valueBits = new long[start.length];
+    packedWidth = oldDictionary.get(0).getWidth();
+    for (var k = 0; k < size; k++) {
+      final var i = slot(k);
+      store(i, oldDictionary.get(oldCode[i] & 0xff));
+    }
+  }
+
+  // Moves the samples into arrays of the given capacity, which must be at least the size.
+  private void reallocate(int capacity) {
+    final var n = size;
+    final var times = new long[n];
+    final var values = new Value[n];
+    for (var k = 0; k < n; k++) {
+      times[k] = startOf(k);
+      values[k] = valueOf(k);
+    }
+    allocate(capacity);
+    for (var k = 0; k < n; k++) {
+      start[k] = times[k];
+      store(k, values[k]);
+    }
+    size = n;
+  }
+
   public long omittedDataTime() {
-    return curSize == maxSize ? timeStart : 0;
+    return size == maxSize ? startOf(0) : 0;
   }
 
   public long getEndTime() {
-    var t = timeStart;
-    for (var p = 0; p < curSize; p++) {
-      var i = (firstIndex + p) % curSize;
-      t += dur[i / CHUNK][i % CHUNK];
-    }
-    return t;
+    return timeEnd;
   }
 
   public void extend(long duration) {
-    if (last == null) {
-      timeStart += duration;
-    } else {
-      final var i = (firstIndex + curSize - 1) % curSize;
-      dur[i / CHUNK][i % CHUNK] += duration;
-    }
+    timeEnd += duration;
   }
 
   public void extend(Value v, long duration) {
@@ -74,70 +186,41 @@ public class Signal {
           "*** notice: value width mismatch for %s: width=%d bits, newVal=%s (%d bits)\n",
           info, info.getWidth(), v, v.getWidth());
     if (last != null && last.equals(v)) {
-      final var i = (firstIndex + curSize - 1) % curSize;
-      dur[i / CHUNK][i % CHUNK] += duration;
+      timeEnd += duration;
       return;
     }
     last = v;
-    final var c = val.length;
-    final var cap = CHUNK * (c - 1) + val[c - 1].length;
-    if (curSize < cap) {
-      // fits in an existing chunk
-      val[curSize / CHUNK][curSize % CHUNK] = v;
-      dur[curSize / CHUNK][curSize % CHUNK] = duration;
-      curSize++;
-    } else if (curSize < maxSize || maxSize <= 0) {
-      // allocate another chunk
-      final var val2 = new Value[c + 1][];
-      final var dur2 = new long[c + 1][];
-      System.arraycopy(val, 0, val2, 0, c);
-      System.arraycopy(dur, 0, dur2, 0, c);
-      val2[c + 1] = new Value[maxSize == 0 || (maxSize - cap) > CHUNK ? CHUNK : (maxSize - cap)];
-      dur2[c + 1] = new long[maxSize == 0 || (maxSize - cap) > CHUNK ? CHUNK : (maxSize - cap)];
-      val = val2;
-      dur = dur2;
-      val[curSize / CHUNK][curSize % CHUNK] = v;
-      dur[curSize / CHUNK][curSize % CHUNK] = duration;
-      curSize++;
-    } else {
-      // limited size is filled, wrap around, and adjust start offset
-      timeStart += dur[firstIndex / CHUNK][firstIndex % CHUNK];
-      val[firstIndex / CHUNK][firstIndex % CHUNK] = v;
-      dur[firstIndex / CHUNK][firstIndex % CHUNK] = duration;
-      firstIndex++;
-      if (firstIndex >= maxSize) firstIndex = 0;
+    if (size == start.length && (maxSize <= 0 || size < maxSize)) {
+      final var capacity = start.length * 2;
+      reallocate(maxSize > 0 ? Math.min(capacity, maxSize) : capacity);
     }
+    if (size == start.length) {
+      // limited size is filled, drop the oldest sample
+      first = slot(1);
+      size--;
+    }
+    final var i = slot(size);
+    start[i] = timeEnd;
+    store(i, v);
+    size++;
+    timeEnd += duration;
   }
 
   public void replaceRecent(Value v, long duration) {
-    if (last == null || curSize == 0)
+    if (last == null || size == 0)
       throw new IllegalStateException("signal should have at least " + duration + " ns of data");
-    final var i = (firstIndex + curSize - 1) % curSize;
-    if (dur[i / CHUNK][i % CHUNK] == duration) {
-      val[i / CHUNK][i % CHUNK] = v;
+    final var i = slot(size - 1);
+    final var lastDuration = timeEnd - start[i];
+    if (lastDuration == duration) {
+      store(i, v);
       last = v;
-      final var j = (i + curSize - 1) % curSize;
-      if (curSize > 1 && val[j / CHUNK][j % CHUNK].equals(v)) {
-        dur[j / CHUNK][j % CHUNK] += duration;
-        curSize--;
-        // special case: last chunk is now entirely empty, must be removed
-        if (i % CHUNK == 0) {
-          int c = val.length - 1;
-          final var valueNew = new Value[c][];
-          final var durNew = new long[c][];
-          System.arraycopy(val, 0, valueNew, 0, c);
-          System.arraycopy(dur, 0, durNew, 0, c);
-          val = valueNew;
-          dur = durNew;
-        }
-      }
-    } else if (dur[i / CHUNK][i % CHUNK] > duration) {
-      dur[i / CHUNK][i % CHUNK] -= duration;
+      if (size > 1 && valueOf(size - 2).equals(v)) size--;
+    } else if (lastDuration > duration) {
+      timeEnd -= duration;
       extend(v, duration);
-    } else if (curSize == 1 && dur[i / CHUNK][i % CHUNK] + timeStart >= duration) {
-      timeStart -= (duration - dur[i / CHUNK][i % CHUNK]);
-      val[i / CHUNK][i % CHUNK] = v;
-      dur[i / CHUNK][i % CHUNK] = duration;
+    } else if (size == 1 && timeEnd >= duration) {
+      start[i] = timeEnd - duration;
+      store(i, v);
       last = v;
     } else {
       throw new IllegalStateException(
@@ -145,99 +228,44 @@ public class Signal {
               + duration
               + " ns in duration,"
               + " but only "
-              + dur[i / CHUNK][i % CHUNK]
+              + lastDuration
               + " in last signal");
     }
   }
 
-  private void retainOnly(int offset, int amt, int cap) {
-    // shift all values [from offset to offset+amt] left into new arrays
-    // of size appropriate for eventual capacity cap
-    final var c = (amt + CHUNK - 1) / CHUNK;
-    final var last = cap == 0 ? CHUNK : Math.min(CHUNK, cap - (c - 1) * CHUNK);
-    final var v = new Value[c][];
-    final var d = new long[c][];
-    for (var i = 0; i < c; i++) {
-      v[i] = new Value[i < c - 1 ? CHUNK : last];
-      d[i] = new long[i < c - 1 ? CHUNK : last];
-    }
-    for (var p = 0; p < amt; p++) {
-      int i = (firstIndex + offset + p) % curSize;
-      v[p / CHUNK][p % CHUNK] = val[i / CHUNK][i % CHUNK];
-      d[p / CHUNK][p % CHUNK] = dur[i / CHUNK][i % CHUNK];
-    }
-    val = v;
-    dur = d;
-    firstIndex = 0;
-    curSize = amt;
-  }
-
   public void resize(int newMaxSize) {
     if (newMaxSize == maxSize) return;
-    if (newMaxSize == 0 || newMaxSize > maxSize) {
-      // growing
-      if (firstIndex != 0) retainOnly(0, curSize, newMaxSize); // keeps all data, but shifts it left
-    } else {
-      // shrinking: newMaxSize < maxSize
-      if (curSize <= newMaxSize) {
-        // Mostly empty, keep all data, but maybe truncate last chunk if needed
-        // to get capacity below new max size.
-        // Note: firstIndex must be 0, since otherwize curSize==maxSize,
-        // and that would mean curSize > newMaxSize.
-        // There are two cases:
-        //  very unfull:
-        //    cap -----------------------------------------------|
-        //    curSize --------------------------|
-        //    [ 0+ full large-chunks ] [ partly full large-chunk ] [ not yet allocated... ]
-        //  nearly full:
-        //    cap ---------------------------------------------|
-        //    curSize -------------------------|
-        //    [ 0+ full large-chunks ] [ partly full end-chunk ]
-        // In the very unfull case, we may be able to do nothing at all
-        // (if cap <= newMaxSize), or we may have to shrink that last allocated
-        // chunk (if cap > newMaxSize).
-        // In the nearly full case, cap > newMaxSize and we need to shrink the
-        // last allocated chunk.
-        final var c = val.length;
-        final var cap = CHUNK * (c - 1) + val[c - 1].length;
-        if (cap > newMaxSize) {
-          // Note: # of existing chunks (c) must be equal to # of new chunks
-          final var last = Math.min(CHUNK, newMaxSize - (c - 1) * CHUNK);
-          final var v = new Value[last];
-          final var d = new long[last];
-          System.arraycopy(val[c - 1], 0, v, 0, last);
-          System.arraycopy(dur[c - 1], 0, d, 0, last);
-          val[c - 1] = v;
-          dur[c - 1] = d;
-        }
-      } else { // curSize > newMaxSize
-        // too much data, keep only most recent data and shift it left
-        final var discard = (maxSize - newMaxSize);
-        for (var p = 0; p < discard; p++) {
-          final var i = (firstIndex + p) % curSize;
-          timeStart += dur[i / CHUNK][i % CHUNK];
-        }
-        retainOnly(discard, newMaxSize, newMaxSize);
-      }
+    if (newMaxSize > 0 && size > newMaxSize) {
+      // too much data, keep only most recent data
+      first = slot(size - newMaxSize);
+      size = newMaxSize;
     }
     maxSize = newMaxSize;
+    final var capacity = Math.max(size, initialCapacity(newMaxSize));
+    if (capacity != start.length) reallocate(capacity);
   }
 
   public void reset(Value v, long duration) {
-    if (val.length > 1) {
-      final var val2 = new Value[1][];
-      final var dur2 = new long[1][];
-      val2[0] = val[0];
-      dur2[0] = dur[0];
-      val = val2;
-      dur = dur2;
-    }
+    if (start.length > initialCapacity(maxSize)) allocate(initialCapacity(maxSize));
+    first = 0;
+    size = 0;
+    timeEnd = 0;
     last = null;
-    curSize = 0;
-    firstIndex = 0;
     extend(v, duration);
   }
 
+  // Returns the index of the sample at time t, which must be within the recorded history.
+  private int indexAt(long t) {
+    var lo = 0;
+    var hi = size - 1;
+    while (lo < hi) {
+      final var mid = (lo + hi + 1) >>> 1;
+      if (startOf(mid) <= t) lo = mid;
+      else hi = mid - 1;
+    }
+    return lo;
+  }
+
   public class Iterator {
 
     public int position;
@@ -246,12 +274,7 @@ public class Signal {
     public Value value;
 
     public Iterator() {
-      position = 0;
-      time = timeStart;
-      final var i = firstIndex;
-      final var width = info.getWidth();
-      value = val[i / CHUNK][i % CHUNK].extendWidth(width, Value.FALSE);
-      duration = dur[i / CHUNK][i % CHUNK];
+      moveTo(0);
     }
 
     public Iterator(long t) {
@@ -259,22 +282,29 @@ public class Signal {
       if (t > time) advance(t - time);
     }
 
+    private void moveTo(int k) {
+      position = k;
+      time = startOf(k);
+      duration = endOf(k) - time;
+      value = valueOf(k).extendWidth(info.getWidth(), Value.FALSE);
+    }
+
+    /** Moves back to the time at which the current value started. */
+    public void rewind() {
+      if (value != null) moveTo(position);
+    }
+
     public String getFormattedValue() {
       return value == null ? "-" : info.format(value);
     }
 
     public boolean advance() {
-      if (position == curSize - 1) {
+      if (position == size - 1) {
         value = null;
         duration = 0;
         return false;
       }
-      position++;
-      time += duration;
-      final var i = (firstIndex + position) % curSize;
-      final var width = info.getWidth();
-      value = val[i / CHUNK][i % CHUNK].extendWidth(width, Value.FALSE);
-      duration = dur[i / CHUNK][i % CHUNK];
+      moveTo(position + 1);
       return true;
     }
 
@@ -282,29 +312,21 @@ public class Signal {
       if (value == null) return false;
       if (timeFwd <= 0) return true;
       final var t = time + timeFwd;
-      while (t >= time + duration) {
-        if (!advance()) return false;
+      if (t >= timeEnd) {
+        if (position != size - 1) moveTo(size - 1);
+        return advance();
       }
+      if (t >= time + duration) moveTo(indexAt(t));
       // postcondition: t < time + duration
-      //                t - time < duration
       duration -= (t - time);
       time = t;
       return true;
     }
   }
 
-  // TODO: easily optimized
   public Value getValue(long t) { // always current width, even when width changes
-    if (t < timeStart) return null;
-    final var width = info.getWidth();
-    var tt = timeStart;
-    for (int p = 0; p < curSize; p++) {
-      final var i = (firstIndex + p) % curSize;
-      final var d = dur[i / CHUNK][i % CHUNK];
-      if (t < tt + d) return val[i / CHUNK][i % CHUNK].extendWidth(width, Value.FALSE);
-      tt += d;
-    }
-    return null;
+    if (size == 0 || t < startOf(0) || t >= timeEnd) return null;
+    return valueOf(indexAt(t)).extendWidth(info.getWidth(), Value.FALSE);
   }
 
   public String getFormattedValue(long t) {
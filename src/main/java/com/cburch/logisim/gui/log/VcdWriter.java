@@ -0,0 +1,187 @@
+/*
+ * Logisim-evolution - digital logic design tool and simulator
+ * Copyright by the Logisim-evolution developers
+ *
+ * https://github.com/logisim-evolution/
+ *
+ * This is free software released under GNU GPLv3 license
+ */
+
+package com.cburch.logisim.gui.log;
+
+import com.cburch.logisim.data.Value;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams the signals of a {@link Model} into a Value Change Dump (IEEE 1364) file, as read by
+ * waveform viewers such as GTKWave. The model hands over each sample as it records it, and only
+ * the signals whose value differs from what was last written end up in the file, so its size
+ * grows with the activity of the circuit rather than with the number of signals. The output is
+ * buffered and, if the file name ends in ".gz", compressed.
+ *
+ * <p>A sample may still be revised by the model (see {@link Signal#replaceRecent}), so the values
+ * of the latest time stay pending until a sample for a later time arrives or the writer is
+ * closed. Signals added to the model after the writer was created are not written.
+ */
+public class VcdWriter {
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private final Writer out;
+  private final IdentityHashMap<Signal, Integer> columns = new IdentityHashMap<>();
+  private final String[] ids;
+  private final int[] widths;
+  private final Value[] written;
+  private final Value[] pending;
+  private long pendingTime;
+  private long timeOffset;
+  private boolean dumped = false;
+  private IOException error;
+
+  /**
+   * Creates the file and writes the declarations of the given signals. Their values at the given
+   * model time are pending, and the file starts at that time.
+   */
+  public VcdWriter(File file, String scope, List<Signal> signals, long time) throws IOException {
+    OutputStream stream = new FileOutputStream(file);
+    if (file.getName().toLowerCase().endsWith(".gz")) {
+      stream = new GZIPOutputStream(stream, BUFFER_SIZE);
+    }
+    out = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.US_ASCII), BUFFER_SIZE);
+    final var n = signals.size();
+    ids = new String[n];
+    widths = new int[n];
+    written = new Value[n];
+    pending = new Value[n];
+    out.write("$version Logisim-evolution $end\n");
+    out.write("$timescale 1ns $end\n");
+    out.write("$scope module " + identifier(scope) + " $end\n");
+    for (var i = 0; i < n; i++) {
+      final var s = signals.get(i);
+      columns.put(s, i);
+      ids[i] = code(i);
+      widths[i] = Math.max(s.getWidth(), 1);
+      pending[i] = s.getValue(time);
+      out.write("$var wire " + widths[i] + " " + ids[i] + " " + identifier(s.getName()) + " $end\n");
+    }
+    out.write("$upscope $end\n");
+    out.write("$enddefinitions $end\n");
+    pendingTime = time;
+    timeOffset = -time;
+  }
+
+  // Identifier codes are short strings of the printable characters '!' up to '~'.
+  private static String code(int index) {
+    final var ret = new StringBuilder();
+    do {
+      ret.append((char) ('!' + index % 94));
+      index = index / 94 - 1;
+    } while (index >= 0);
+    return ret.toString();
+  }
+
+  // Names must not contain white space.
+  private static String identifier(String name) {
+    return (name == null || name.isBlank()) ? "_" : name.strip().replaceAll("\\s+", "_");
+  }
+
+  /**
+   * Starts the sample for the given model time. If the time is not past the pending sample, the
+   * following values replace those of the pending sample.
+   */
+  public void beginSample(long time) {
+    if (time <= pendingTime) return;
+    flush();
+    pendingTime = time;
+  }
+
+  public void setValue(Signal s, Value v) {
+    final var i = columns.get(s);
+    if (i != null) pending[i] = v;
+  }
+
+  /**
+   * Notes that the model restarted its time at zero after it reached the given end time. The
+   * file continues from that end time, since VCD times cannot go back.
+   */
+  public void reset(long endTime) {
+    flush();
+    timeOffset += endTime;
+    pendingTime = 0;
+    write("$comment reset $end\n");
+  }
+
+  /** Writes the pending values and the given end time, and closes the file. */
+  public void close(long endTime) throws IOException {
+    flush();
+    write("#" + (timeOffset + Math.max(endTime, pendingTime)) + "\n");
+    try {
+      out.close();
+    } catch (IOException e) {
+      if (error == null) error = e;
+    }
+    if (error != null) throw error;
+  }
+
+  // Writes the changes of the pending sample; the first sample is written in full.
+  private void flush() {
+    if (error != null) return;
+    try {
+      var stamped = false;
+      for (var i = 0; i < pending.length; i++) {
+        final var v = pending[i];
+        if (dumped && v.equals(written[i])) continue;
+        if (!stamped) {
+          out.write('#');
+          out.write(Long.toString(timeOffset + pendingTime));
+          out.write('\n');
+          if (!dumped) out.write("$dumpvars\n");
+          stamped = true;
+        }
+        writeValue(v, widths[i], ids[i]);
+        written[i] = v;
+      }
+      if (!dumped && stamped) out.write("$end\n");
+      dumped = true;
+    } catch (IOException e) {
+      error = e;
+    }
+  }
+
+  private void writeValue(Value v, int width, String id) throws IOException {
+    if (width == 1) {
+      out.write(bitChar(v.get(0)));
+    } else {
+      out.write('b');
+      for (var b = width - 1; b >= 0; b--) out.write(bitChar(v.get(b)));
+      out.write(' ');
+    }
+    out.write(id);
+    out.write('\n');
+  }
+
+  private static char bitChar(Value bit) {
+    if (bit == Value.TRUE) return '1';
+    if (bit == Value.FALSE) return '0';
+    if (bit == Value.UNKNOWN) return 'z';
+    return 'x';
+  }
+
+  private void write(String s) {
+    if (error != null) return;
+    try {
+      out.write(s);
+    } catch (IOException e) {
+      error = e;
+    }
+  }
+}
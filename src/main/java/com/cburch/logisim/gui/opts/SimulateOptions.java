@@ -36,8 +36,19 @@ class SimulateOptions extends OptionsPanel {
             200, 500, 1000, 2000, 5000, 10000, 20000, 50000,
           });
 
+  private final JLabel tickBatchLabel = new JLabel();
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private final JComboBox tickBatch =
+      new JComboBox(
+          new Integer[] {
+            1, 16, 256, 4096, 65536,
+          });
+
   private final JCheckBox simRandomness = new JCheckBox();
   private final JCheckBox memUnknown = new JCheckBox();
+  private final JCheckBox memImage = new JCheckBox();
+  private final JCheckBox simParallel = new JCheckBox();
   private final JLabel gateUndefinedLabel = new JLabel();
 
   @SuppressWarnings({"rawtypes", "unchecked"})
@@ -61,16 +72,31 @@ class SimulateOptions extends OptionsPanel {
     gateUndefinedPanel.add(gateUndefined);
     gateUndefined.addActionListener(myListener);
 
+    final var tickBatchPanel = new JPanel();
+    tickBatchPanel.add(tickBatchLabel);
+    tickBatchPanel.add(tickBatch);
+    tickBatch.setSelectedItem(AppPreferences.SIM_TICK_BATCH.get());
+    tickBatch.addActionListener(myListener);
+
     simRandomness.addActionListener(myListener);
 
     memUnknown.addActionListener(myListener);
     memUnknown.setSelected(AppPreferences.Memory_Startup_Unknown.get());
 
+    memImage.addActionListener(myListener);
+    memImage.setSelected(AppPreferences.MEMORY_IMAGE_FILE.get());
+
+    simParallel.addActionListener(myListener);
+    simParallel.setSelected(AppPreferences.SIM_PARALLEL.get());
+
     setLayout(new TableLayout(1));
     add(memUnknown);
+    add(memImage);
     add(simLimitPanel);
     add(gateUndefinedPanel);
     add(simRandomness);
+    add(simParallel);
+    add(tickBatchPanel);
 
     window.getOptions().getAttributeSet().addAttributeListener(myListener);
     final var attrs = getOptions().getAttributeSet();
@@ -95,6 +121,9 @@ class SimulateOptions extends OptionsPanel {
     gateUndefinedLabel.setText(S.get("gateUndefined"));
     simRandomness.setText(S.get("simulateRandomness"));
     memUnknown.setText(S.get("MemoriesStartupUnknown"));
+    memImage.setText(S.get("MemoriesImageFile"));
+    simParallel.setText(S.get("simulateParallel"));
+    tickBatchLabel.setText(S.get("simulateTickBatch"));
   }
 
   private class MyListener implements ActionListener, AttributeListener {
@@ -123,6 +152,17 @@ class SimulateOptions extends OptionsPanel {
         AppPreferences.Memory_Startup_Unknown.set(memUnknown.isSelected());
         final var sim = getProject().getSimulator();
         if (sim != null) sim.reset();
+      } else if (source == memImage) {
+        AppPreferences.MEMORY_IMAGE_FILE.set(memImage.isSelected());
+      } else if (source == simParallel) {
+        AppPreferences.SIM_PARALLEL.set(simParallel.isSelected());
+      } else if (source == tickBatch) {
+        final var opt = (Integer) tickBatch.getSelectedItem();
+        if (opt != null) {
+          AppPreferences.SIM_TICK_BATCH.set(opt);
+          final var sim = getProject().getSimulator();
+          if (sim != null) sim.setTickBatch(opt);
+        }
       }
     }
 
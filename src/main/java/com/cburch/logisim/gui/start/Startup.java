@@ -94,6 +94,9 @@ public class Startup implements AWTEventListener {
   private boolean templEmpty = false;
   private boolean templPlain = false;
   private String testVector = null;
+  private int maxTicks = 0;
+  private int maxSeconds = 0;
+  private File vcdFile = null;
   private String circuitToTest = null;
   private boolean exitAfterStartup = false;
   private boolean showSplash;
@@ -168,6 +171,9 @@ public class Startup implements AWTEventListener {
   private static final String ARG_TEST_VECTOR_LONG = "test-vector";
   private static final String ARG_NO_SPLASH_LONG = "no-splash";
   private static final String ARG_MAIN_CIRCUIT = "toplevel-circuit";
+  private static final String ARG_MAX_TICKS_LONG = "max-ticks";
+  private static final String ARG_MAX_SECONDS_LONG = "max-seconds";
+  private static final String ARG_VCD_LONG = "vcd";
 
   /**
    * Parses provided string expecting it represent boolean option. Accepted values
@@ -325,6 +331,9 @@ public class Startup implements AWTEventListener {
     addOption(opts, "argTemplateOption", ARG_TEMPLATE_LONG, ARG_TEMPLATE_SHORT, 1);
     addOption(opts, "argNoSplashOption", ARG_NO_SPLASH_LONG);
     addOption(opts, "argMainCircuitOption", ARG_MAIN_CIRCUIT, 1);
+    addOption(opts, "argMaxTicksOption", ARG_MAX_TICKS_LONG, 1);
+    addOption(opts, "argMaxSecondsOption", ARG_MAX_SECONDS_LONG, 1);
+    addOption(opts, "argVcdOption", ARG_VCD_LONG, 1);
     addOption(opts, "argTestVectorOption", ARG_TEST_VECTOR_LONG, ARG_TEST_VECTOR_SHORT, 2);
     addOption(opts, "argTestCircuitOption", ARG_TEST_CIRCUIT_LONG, ARG_TEST_CIRCUIT_SHORT, 1);     // FIXME add "Option" suffix to key name
     addOption(opts, "argTestCircGenOption", ARG_TEST_CIRC_GEN_LONG, ARG_TEST_CIRC_GEN_SHORT, 2);   // FIXME add "Option" suffix to key name
@@ -395,6 +404,9 @@ public class Startup implements AWTEventListener {
         case ARG_TEST_CIRCUIT_LONG -> handleArgTestCircuit(startup, opt);
         case ARG_TEST_CIRC_GEN_LONG -> handleArgTestCircGen(startup, opt);
         case ARG_MAIN_CIRCUIT -> handleArgMainCircuit(startup, opt);
+        case ARG_MAX_TICKS_LONG -> handleArgMaxTicks(startup, opt);
+        case ARG_MAX_SECONDS_LONG -> handleArgMaxSeconds(startup, opt);
+        case ARG_VCD_LONG -> handleArgVcd(startup, opt);
         default -> RC.OK; // should not really happen IRL.
       };
       lastHandlerRc = optHandlerRc;
@@ -427,6 +439,10 @@ public class Startup implements AWTEventListener {
       logger.error(S.get("saveNeedsTtyError"));
       return null;
     }
+    if (startup.vcdFile != null && !startup.isTty) {
+      logger.error(S.get("vcdNeedsTtyError"));
+      return null;
+    }
 
     return startup;
   }
@@ -464,6 +480,7 @@ public class Startup implements AWTEventListener {
           case "tty" -> TtyInterface.FORMAT_TTY;
           case "halt" -> TtyInterface.FORMAT_HALT;
           case "stats" -> TtyInterface.FORMAT_STATISTICS;
+          case "throughput" -> TtyInterface.FORMAT_THROUGHPUT;
           case "binary" -> TtyInterface.FORMAT_TABLE_BIN;
           case "hex" -> TtyInterface.FORMAT_TABLE_HEX;
           case "csv" -> TtyInterface.FORMAT_TABLE_CSV;
@@ -476,8 +493,8 @@ public class Startup implements AWTEventListener {
           return RC.QUIT;
         }
         startup.ttyFormat |= val;
-        return RC.OK;
       }
+      return RC.OK;
     }
     logger.error(S.get("ttyFormatError"));
     return RC.QUIT;
@@ -636,6 +653,37 @@ public class Startup implements AWTEventListener {
     return RC.OK;
   }
 
+  private static RC handleArgMaxTicks(Startup startup, Option opt) {
+    try {
+      startup.maxTicks = Integer.parseInt(opt.getValue());
+    } catch (NumberFormatException e) {
+      startup.maxTicks = 0;
+    }
+    if (startup.maxTicks <= 0) {
+      logger.error(S.get("argMaxTicksError"));
+      return RC.QUIT;
+    }
+    return RC.OK;
+  }
+
+  private static RC handleArgMaxSeconds(Startup startup, Option opt) {
+    try {
+      startup.maxSeconds = Integer.parseInt(opt.getValue());
+    } catch (NumberFormatException e) {
+      startup.maxSeconds = 0;
+    }
+    if (startup.maxSeconds <= 0) {
+      logger.error(S.get("argMaxSecondsError"));
+      return RC.QUIT;
+    }
+    return RC.OK;
+  }
+
+  private static RC handleArgVcd(Startup startup, Option opt) {
+    startup.vcdFile = new File(opt.getValue());
+    return RC.OK;
+  }
+
 
   /**
    * Handles 4th argument of `--test-fpga` argument which can be either string literal
@@ -801,6 +849,21 @@ public class Startup implements AWTEventListener {
     return ttyFormat;
   }
 
+  /** Returns the maximum number of clock ticks to simulate, or 0 if there is no limit. */
+  int getMaxTicks() {
+    return maxTicks;
+  }
+
+  /** Returns the maximum number of seconds to simulate, or 0 if there is no limit. */
+  int getMaxSeconds() {
+    return maxSeconds;
+  }
+
+  /** Returns the file to write the waveform of a --tty simulation to, or null. */
+  File getVcdFile() {
+    return vcdFile;
+  }
+
   boolean isFpgaDownload() {
     return doFpgaDownload;
   }
@@ -1008,7 +1071,7 @@ public class Startup implements AWTEventListener {
         try {
           if (testVector != null) {
             proj = ProjectActions.doOpenNoWindow(monitor, fileToOpen);
-            proj.doTestVector(testVector, circuitToTest);
+            proj.doTestVector(testVector, circuitToTest, maxTicks);
           } else if (testCircPathInput != null && testCircPathOutput != null) {
             /* This part of the function will create a new circuit file (
              * XML) which will be open and saved again using the  */
@@ -19,6 +19,7 @@ import com.cburch.logisim.file.FileStatistics;
 import com.cburch.logisim.file.LoadFailedException;
 import com.cburch.logisim.file.Loader;
 import com.cburch.logisim.file.LogisimFile;
+import com.cburch.logisim.gui.log.Model;
 import com.cburch.logisim.gui.hex.HexFile;
 import com.cburch.logisim.instance.Instance;
 import com.cburch.logisim.instance.InstanceState;
@@ -35,9 +36,11 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedList;
+import java.util.Locale;
 import java.util.Map;
 
 import static com.cburch.logisim.gui.Strings.S;
@@ -53,6 +56,8 @@ public class TtyInterface {
   public static final int FORMAT_TABLE_CSV = 64;
   public static final int FORMAT_TABLE_BIN = 128;
   public static final int FORMAT_TABLE_HEX = 256;
+  public static final int FORMAT_THROUGHPUT = 512;
+  private static final long THROUGHPUT_INTERVAL = 1_000_000_000L; // nanoseconds
   static final Logger logger = LoggerFactory.getLogger(TtyInterface.class);
   private static boolean lastIsNewline = true;
 
@@ -118,29 +123,45 @@ public class TtyInterface {
         S.get("statsTotalWith"));
   }
 
-  private static void displayTableRow(ArrayList<Value> prevOutputs, ArrayList<Value> curOutputs) {
+  private static void displayTableRow(Value[] prevOutputs, Value[] curOutputs) {
     var shouldPrint = false;
     if (prevOutputs == null) {
       shouldPrint = true;
     } else {
-      for (var i = 0; i < curOutputs.size(); i++) {
-        final var a = prevOutputs.get(i);
-        final var b = curOutputs.get(i);
-        if (!a.equals(b)) {
+      for (var i = 0; i < curOutputs.length; i++) {
+        if (!prevOutputs[i].equals(curOutputs[i])) {
           shouldPrint = true;
           break;
         }
       }
     }
     if (shouldPrint) {
-      for (var i = 0; i < curOutputs.size(); i++) {
+      for (var i = 0; i < curOutputs.length; i++) {
         if (i != 0) System.out.print("\t");
-        System.out.print(curOutputs.get(i));
+        System.out.print(curOutputs[i]);
       }
       System.out.println();
     }
   }
 
+  // One line of key=value pairs on stderr, meant to be read by scripts rather than by people.
+  private static void displayThroughput(long tickCount, long eventCount, long nanos) {
+    final var seconds = Math.max(nanos, 1) / 1e9;
+    var gcMillis = 0L;
+    for (final var gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      gcMillis += Math.max(0, gc.getCollectionTime());
+    }
+    System.err.printf(
+        Locale.ROOT,
+        "throughput ticks=%d events=%d seconds=%.3f ticks_per_s=%.1f events_per_s=%.1f gc_ms=%d%n",
+        tickCount,
+        eventCount,
+        seconds,
+        tickCount / seconds,
+        eventCount / seconds,
+        gcMillis);
+  }
+
   private static boolean displayTableRow(boolean showHeader, ArrayList<Value> prevOutputs, ArrayList<Value> curOutputs,
                                          ArrayList<String> headers, ArrayList<String> formats, int format) {
     var shouldPrint = false;
@@ -339,8 +360,36 @@ public class TtyInterface {
     // it's necessary to populate the circuit with substates.
     circState.getPropagator().propagate();
 
+    Model waveform = null;
+    if (args.getVcdFile() != null) {
+      waveform = new Model(circState);
+      try {
+        waveform.startWaveform(args.getVcdFile());
+      } catch (IOException e) {
+        logger.error("{}", S.get("ttyVcdError", e.toString()));
+        System.exit(-1);
+      }
+    }
+
     final var ttyFormat = args.getTtyFormat();
-    final var simCode = runSimulation(circState, outputPins, haltPin, ttyFormat);
+    final var simCode =
+        runSimulation(
+            circState,
+            outputPins,
+            haltPin,
+            ttyFormat,
+            args.getMaxTicks(),
+            args.getMaxSeconds(),
+            waveform);
+
+    if (waveform != null) {
+      try {
+        waveform.stopWaveform();
+      } catch (IOException e) {
+        logger.error("{}", S.get("ttyVcdError", e.toString()));
+        System.exit(-1);
+      }
+    }
 
     if (args.getSaveFile() != null) {
       try {
@@ -453,11 +502,17 @@ public class TtyInterface {
     return 0;
   }
 
-  private static int runSimulation(CircuitState circState, ArrayList<Instance> outputPins, Instance haltPin, int format) {
+  /**
+   * Ticks the clocks until the halt pin goes high, the circuit oscillates, or one of the limits
+   * is reached; a limit of 0 means there is none. Returns the exit code: 0 for the halt pin, 1
+   * for oscillation, 2 for the tick limit and 3 for the time limit.
+   */
+  static int runSimulation(CircuitState circState, ArrayList<Instance> outputPins, Instance haltPin, int format, int maxTicks, int maxSeconds, Model waveform) {
     final var showTable = (format & FORMAT_TABLE) != 0;
     final var showSpeed = (format & FORMAT_SPEED) != 0;
     final var showTty = (format & FORMAT_TTY) != 0;
     final var showHalt = (format & FORMAT_HALT) != 0;
+    final var showThroughput = (format & FORMAT_THROUGHPUT) != 0;
 
     ArrayList<InstanceState> keyboardStates = null;
     StdinThread stdinThread = null;
@@ -476,28 +531,38 @@ public class TtyInterface {
       }
     }
 
+    // The pin states are looked up once, so that sampling the outputs on every tick does not
+    // allocate anything.
+    final var haltState = haltPin == null ? null : circState.getInstanceState(haltPin);
+    final var tableStates = new ArrayList<InstanceState>();
+    if (showTable) {
+      for (final var pin : outputPins) {
+        if (pin != haltPin) tableStates.add(circState.getInstanceState(pin));
+      }
+    }
+    var curOutputs = new Value[tableStates.size()];
+    var prevOutputs = new Value[tableStates.size()];
+    var firstRow = true;
+
     var retCode = 0;
     long tickCount = 0;
-    final var start = System.currentTimeMillis();
-    var halted = false;
-    ArrayList<Value> prevOutputs = null;
+    final var start = System.nanoTime();
+    final var deadline = start + maxSeconds * 1_000_000_000L;
+    var nextReport = start + THROUGHPUT_INTERVAL;
     final var prop = circState.getPropagator();
     while (true) {
-      final var curOutputs = new ArrayList<Value>();
-      for (final var pin : outputPins) {
-        final var pinState = circState.getInstanceState(pin);
-        final var val = Pin.FACTORY.getValue(pinState);
-        if (pin == haltPin) {
-          halted |= val.equals(Value.TRUE);
-        } else if (showTable) {
-          curOutputs.add(val);
-        }
-      }
       if (showTable) {
-        displayTableRow(prevOutputs, curOutputs);
+        for (var i = 0; i < curOutputs.length; i++) {
+          curOutputs[i] = Pin.FACTORY.getValue(tableStates.get(i));
+        }
+        displayTableRow(firstRow ? null : prevOutputs, curOutputs);
+        final var swap = prevOutputs;
+        prevOutputs = curOutputs;
+        curOutputs = swap;
+        firstRow = false;
       }
 
-      if (halted) {
+      if (haltState != null && Pin.FACTORY.getValue(haltState).equals(Value.TRUE)) {
         retCode = 0; // normal exit
         break;
       }
@@ -505,6 +570,19 @@ public class TtyInterface {
         retCode = 1; // abnormal exit
         break;
       }
+      if (maxTicks > 0 && tickCount >= maxTicks) {
+        retCode = 2;
+        break;
+      }
+      final var now = System.nanoTime();
+      if (maxSeconds > 0 && now - deadline >= 0) {
+        retCode = 3;
+        break;
+      }
+      if (showThroughput && now - nextReport >= 0) {
+        displayThroughput(tickCount, prop.getEventCount(), now - start);
+        nextReport += THROUGHPUT_INTERVAL;
+      }
       if (keyboardStates != null) {
         final var buffer = stdinThread.getBuffer();
         if (buffer != null) {
@@ -513,23 +591,31 @@ public class TtyInterface {
           }
         }
       }
-      prevOutputs = curOutputs;
       tickCount++;
       prop.toggleClocks();
       prop.propagate();
+      if (waveform != null) waveform.propagationCompleted(true, false, true);
     }
-    final var elapse = System.currentTimeMillis() - start;
+    final var elapsed = System.nanoTime() - start;
+    final var elapse = elapsed / 1_000_000;
     if (showTty) ensureLineTerminated();
     if (showHalt || retCode != 0) {
       if (retCode == 0) {
         logger.error("{}", S.get("ttyHaltReasonPin"));
       } else if (retCode == 1) {
         logger.error("{}", S.get("ttyHaltReasonOscillation"));
+      } else if (retCode == 2) {
+        logger.error("{}", S.get("ttyHaltReasonMaxTicks"));
+      } else if (retCode == 3) {
+        logger.error("{}", S.get("ttyHaltReasonTimeout"));
       }
     }
     if (showSpeed) {
       displaySpeed(tickCount, elapse);
     }
+    if (showThroughput) {
+      displayThroughput(tickCount, prop.getEventCount(), elapsed);
+    }
     return retCode;
   }
 
@@ -11,6 +11,7 @@ package com.cburch.logisim.gui.test;
 
 import static com.cburch.logisim.gui.Strings.S;
 
+import com.cburch.logisim.circuit.BitSliceEvaluator;
 import com.cburch.logisim.circuit.Circuit;
 import com.cburch.logisim.circuit.CircuitEvent;
 import com.cburch.logisim.circuit.CircuitListener;
@@ -19,22 +20,45 @@ import com.cburch.logisim.comp.Component;
 import com.cburch.logisim.data.FailException;
 import com.cburch.logisim.data.TestException;
 import com.cburch.logisim.data.TestVector;
+import com.cburch.logisim.data.Value;
 import com.cburch.logisim.instance.Instance;
 import com.cburch.logisim.instance.InstanceState;
 import com.cburch.logisim.instance.StdAttr;
 import com.cburch.logisim.proj.Project;
 import com.cburch.logisim.std.wiring.Pin;
 import com.cburch.logisim.util.UniquelyNamedThread;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class TestThread extends UniquelyNamedThread implements CircuitListener {
 
+  // The rows of a vector are handed to the workers in blocks of at least this many. A block
+  // always starts with a row that resets the circuit, so rows that continue from the state of
+  // the previous row stay in the same block.
+  private static final int BLOCK_SIZE = 32;
+
   private final Project project;
   private final Circuit circuit;
   private final TestVector vector;
   private Instance[] pin;
   private Model model;
-  private boolean canceled = false;
-  private boolean paused = false;
+  private int maxTicks = 0; // no limit if 0
+  int maxThreads = Runtime.getRuntime().availableProcessors(); // workers that run rows, at most
+  private volatile boolean canceled = false;
+  private volatile boolean paused = false;
+
+  /** Receives the outcome of each row of a vector, in row order. */
+  interface RowListener {
+    /**
+     * Called with the exception the row failed with, or null if it passed, and the time it took to
+     * run it. Returns false to stop the test.
+     */
+    boolean rowDone(int row, TestException err, long nanos);
+  }
 
   public TestThread(Model model) throws TestException {
     super("TestThread-Model");
@@ -50,7 +74,7 @@ public class TestThread extends UniquelyNamedThread implements CircuitListener {
   }
 
   // used only for automated testing via command line arguments
-  private TestThread(Project proj, Circuit circuit, TestVector vec) throws TestException {
+  TestThread(Project proj, Circuit circuit, TestVector vec) throws TestException {
     super("TestThread-Project");
     this.project = proj;
     this.circuit = circuit;
@@ -61,6 +85,14 @@ public class TestThread extends UniquelyNamedThread implements CircuitListener {
 
   // used only for automated testing via command line arguments
   public static int doTestVector(Project proj, Circuit circuit, String vectorname) {
+    return doTestVector(proj, circuit, vectorname, 0);
+  }
+
+  /**
+   * Runs a test vector from the command line. If maxTicks is positive, rows that ask for more
+   * clock ticks than that fail without being run.
+   */
+  public static int doTestVector(Project proj, Circuit circuit, String vectorname, int maxTicks) {
     System.out.println(S.get("testLoadingVector", vectorname));
     TestVector vec;
     try {
@@ -77,29 +109,48 @@ public class TestThread extends UniquelyNamedThread implements CircuitListener {
       System.err.println(S.get("testSetupFailed", e.getMessage()));
       return -1;
     }
+    tester.maxTicks = maxTicks;
 
     System.out.println(S.get("testRunning", Integer.toString(vec.data.size())));
 
-    int numPass = 0;
-    int numFail = 0;
-    for (int i = 0; i < vec.data.size(); i++) {
-      try {
-        System.out.print((i + 1) + " \r");
-        tester.test(i);
-        numPass++;
-      } catch (FailException e) {
-        System.out.println();
-        System.err.println(S.get("testFailed", Integer.toString(i + 1)));
-        for (FailException e1 : e.getAll()) System.out.println("  " + e1.getMessage());
-        numFail++;
-      } catch (TestException e) {
-        System.out.println();
-        System.err.println(S.get("testFailed", (i + 1) + " " + e.getMessage()));
-        numFail++;
-      }
-    }
+    final var counts = new int[2]; // passed, failed
+    final var slowest = new long[] {-1, -1}; // row, nanos
+    final var start = System.nanoTime();
+    final var threads =
+        tester.runVector(
+            (row, err, nanos) -> {
+              System.out.print((row + 1) + " \r");
+              if (nanos > slowest[1]) {
+                slowest[0] = row;
+                slowest[1] = nanos;
+              }
+              if (err == null) {
+                counts[0]++;
+              } else if (err instanceof FailException fail) {
+                System.out.println();
+                System.err.println(S.get("testFailed", Integer.toString(row + 1)));
+                for (FailException e1 : fail.getAll()) System.out.println("  " + e1.getMessage());
+                counts[1]++;
+              } else {
+                System.out.println();
+                System.err.println(S.get("testFailed", (row + 1) + " " + err.getMessage()));
+                counts[1]++;
+              }
+              return true;
+            });
+    final var millis = (System.nanoTime() - start) / 1_000_000;
     System.out.println();
-    System.out.println(S.get("testResults", Integer.toString(numPass), Integer.toString(numFail)));
+    System.out.println(
+        S.get("testResults", Integer.toString(counts[0]), Integer.toString(counts[1])));
+    if (slowest[0] >= 0) {
+      System.out.println(
+          S.get(
+              "testTiming",
+              Long.toString(millis),
+              Integer.toString(threads),
+              Long.toString(slowest[0] + 1),
+              String.format("%.3f", slowest[1] / 1e6)));
+    }
     return 0;
   }
 
@@ -120,6 +171,7 @@ public class TestThread extends UniquelyNamedThread implements CircuitListener {
     CircuitState state = new CircuitState(this.project, this.circuit);
 
     for (int i = 0; i < n; i++) {
+      if (!vector.isPinColumn(i)) continue;
       String columnName = vector.columnName[i];
       for (Component comp : circuit.getNonWires()) {
         if (!(comp.getFactory() instanceof Pin)) continue;
@@ -146,32 +198,193 @@ public class TestThread extends UniquelyNamedThread implements CircuitListener {
   @Override
   public void run() {
     try {
-      for (int i = 0; i < vector.data.size() && !canceled; i++) {
-        while (paused) {
-          if (canceled) return;
-          try {
-            Thread.sleep(1000);
-          } catch (InterruptedException ignored) {
-          }
-        }
+      runVector((row, err, nanos) -> !canceled && model.setResult(vector, row, err));
+    } finally {
+      model.stop();
+    }
+  }
+
+  /**
+   * Runs all rows of the vector and reports them to the listener in row order. Each sequence of
+   * rows that starts from a reset circuit is independent of the others, so the sequences are
+   * spread over as many clones of the circuit's state as there are processors; the clones leave
+   * the state shown in the project alone. Returns the number of worker threads used.
+   */
+  int runVector(RowListener listener) {
+    final var rows = vector.data.size();
+    final var blockStarts = new ArrayList<Integer>();
+    for (var row = 0; row < rows; row++) {
+      if (blockStarts.isEmpty()
+          || (vector.isReset(row) && row - blockStarts.get(blockStarts.size() - 1) >= BLOCK_SIZE)) {
+        blockStarts.add(row);
+      }
+    }
+    final var numBlocks = blockStarts.size();
+    blockStarts.add(rows);
+    final var numThreads =
+        Math.max(1, Math.min(maxThreads, numBlocks));
+    final var template = project.getCircuitState(circuit);
+    final var states = new ArrayBlockingQueue<CircuitState>(numThreads);
+    for (var i = 0; i < numThreads; i++) states.add(template.cloneState());
+    final var results = new TestException[rows];
+    final var times = new long[rows];
+    final var passed = screenRows(times);
+
+    final var executor =
+        Executors.newFixedThreadPool(
+            numThreads,
+            r -> {
+              final var thread = new UniquelyNamedThread(r, "TestThread-Worker");
+              thread.setDaemon(true);
+              return thread;
+            });
+    try {
+      final var blocks = new ArrayList<Future<?>>(numBlocks);
+      for (var b = 0; b < numBlocks; b++) {
+        final var first = blockStarts.get(b);
+        final var last = blockStarts.get(b + 1);
+        blocks.add(
+            executor.submit(
+                () -> {
+                  final var state = states.take();
+                  try {
+                    for (var row = first; row < last && !canceled; row++) {
+                      if (passed != null && passed[row]) continue;
+                      waitWhilePaused();
+                      final var start = System.nanoTime();
+                      final var ticks = vector.getTicks(row);
+                      try {
+                        if (maxTicks > 0 && ticks > maxTicks) {
+                          throw new TestException(
+                              "needs " + ticks + " ticks, more than the limit of " + maxTicks);
+                        }
+                        circuit.doTestVector(
+                            state, pin, vector.data.get(row), vector.isReset(row), ticks);
+                      } catch (TestException e) {
+                        results[row] = e;
+                      } catch (RuntimeException e) {
+                        // a bug in a component fails this row only
+                        results[row] = new TestException(e.toString());
+                      }
+                      times[row] = System.nanoTime() - start;
+                    }
+                  } finally {
+                    states.add(state);
+                  }
+                  return null;
+                }));
+      }
+      for (var b = 0; b < numBlocks && !canceled; b++) {
         try {
-          test(i);
-          canceled = canceled || !model.setResult(vector, i, null);
-        } catch (TestException e) {
-          canceled = canceled || !model.setResult(vector, i, e);
+          blocks.get(b).get();
+        } catch (InterruptedException e) {
+          canceled = true;
+          break;
+        } catch (ExecutionException e) {
+          // only an error or an interrupt gets here, the rows catch everything else
+          if (e.getCause() instanceof Error err) throw err;
+          canceled = true;
+          break;
+        }
+        final var last = blockStarts.get(b + 1);
+        for (var row = blockStarts.get(b); row < last && !canceled; row++) {
+          if (!listener.rowDone(row, results[row], times[row])) canceled = true;
         }
-        Thread.yield();
       }
     } finally {
-      model.stop();
+      executor.shutdownNow();
     }
+    return numThreads;
   }
 
-  public void setPaused(boolean paused) {
-    this.paused = paused;
+  /**
+   * Finds the rows that pass without simulating them. That works for vectors without clock ticks
+   * on circuits made of gates only, which a {@link BitSliceEvaluator} can evaluate for 64 rows at
+   * once exactly as the simulator would, and only for rows that drive all inputs with known
+   * values. The rows that fail, or that the evaluator cannot decide, are left to the simulator,
+   * which also produces the message for a failure. Stores the time spent per row in times, and
+   * returns which rows passed, or null if none were looked at.
+   */
+  private boolean[] screenRows(long[] times) {
+    if (vector.isSequential()) return null;
+    final var start = System.nanoTime();
+    final var evaluator = BitSliceEvaluator.compile(circuit);
+    if (evaluator == null) return null;
+    final var inputColumn = new int[evaluator.getInputPinCount()];
+    for (var k = 0; k < inputColumn.length; k++) {
+      inputColumn[k] = columnOf(evaluator.getInputPin(k));
+      if (inputColumn[k] < 0) return null; // the pin would keep whatever value it has
+    }
+    final var outputColumn = new int[evaluator.getOutputPinCount()];
+    for (var k = 0; k < outputColumn.length; k++) {
+      outputColumn[k] = columnOf(evaluator.getOutputPin(k));
+    }
+
+    final var rows = vector.data.size();
+    final var passed = new boolean[rows];
+    final var words = evaluator.newWords();
+    final var outputs = new long[evaluator.getOutputBits()];
+    final var care = new long[outputs.length];
+    final var expected = new long[outputs.length];
+    for (var base = 0; base < rows; base += 64) {
+      final var lanes = Math.min(64, rows - base);
+      var undecided = lanes == 64 ? 0L : -1L << lanes;
+      Arrays.fill(words, 0, evaluator.getInputBits(), 0L);
+      Arrays.fill(care, 0L);
+      Arrays.fill(expected, 0L);
+      for (var j = 0; j < lanes; j++) {
+        final var val = vector.data.get(base + j);
+        // a row that ticks the clock needs the simulator, if only to fail for want of a clock
+        if (vector.getTicks(base + j) > 0) undecided |= 1L << j;
+        for (var k = 0; k < inputColumn.length; k++) {
+          final var in = val[inputColumn[k]];
+          if (!in.isFullyDefined()) {
+            undecided |= 1L << j;
+            continue;
+          }
+          final var bits = in.toLongValue();
+          final var offset = evaluator.getInputOffset(k);
+          for (var b = 0; b < in.getWidth(); b++) words[offset + b] |= ((bits >>> b) & 1) << j;
+        }
+        for (var k = 0; k < outputColumn.length; k++) {
+          if (outputColumn[k] < 0) continue;
+          final var out = val[outputColumn[k]];
+          final var offset = evaluator.getOutputOffset(k);
+          for (var b = 0; b < out.getWidth(); b++) {
+            final var bit = out.get(b);
+            if (bit == Value.ERROR) undecided |= 1L << j;
+            else if (bit == Value.TRUE) expected[offset + b] |= 1L << j;
+            if (bit == Value.TRUE || bit == Value.FALSE) care[offset + b] |= 1L << j;
+          }
+        }
+      }
+      evaluator.evaluate(words, outputs);
+      var failed = undecided;
+      for (var i = 0; i < outputs.length; i++) failed |= care[i] & (outputs[i] ^ expected[i]);
+      for (var j = 0; j < lanes; j++) passed[base + j] = ((failed >>> j) & 1) == 0;
+    }
+    final var nanos = (System.nanoTime() - start) / rows;
+    for (var row = 0; row < rows; row++) {
+      if (passed[row]) times[row] = nanos;
+    }
+    return passed;
+  }
+
+  // Returns the column of the vector that belongs to the given pin, or -1 if there is none.
+  private int columnOf(Instance inst) {
+    for (var i = 0; i < pin.length; i++) {
+      if (pin[i] == inst) return i;
+    }
+    return -1;
   }
 
-  private void test(int idx) throws TestException {
-    circuit.doTestVector(project, pin, vector.data.get(idx));
+  private void waitWhilePaused() throws InterruptedException {
+    while (paused && !canceled) {
+      Thread.sleep(100);
+    }
+  }
+
+  public void setPaused(boolean paused) {
+    this.paused = paused;
   }
 }
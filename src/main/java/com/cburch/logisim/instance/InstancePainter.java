@@ -19,6 +19,7 @@ import com.cburch.logisim.data.Bounds;
 import com.cburch.logisim.data.Direction;
 import com.cburch.logisim.data.Location;
 import com.cburch.logisim.data.Value;
+import com.cburch.logisim.file.Options;
 import com.cburch.logisim.proj.Project;
 
 import java.awt.Color;
@@ -193,6 +194,11 @@ public class InstancePainter implements InstanceState {
   //
   // methods related to the circuit state
   //
+  @Override
+  public Options getOptions() {
+    return context.getCircuitState().getOptions();
+  }
+
   @Override
   public Project getProject() {
     return context.getCircuitState().getProject();
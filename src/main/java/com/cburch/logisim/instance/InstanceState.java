@@ -12,6 +12,7 @@ package com.cburch.logisim.instance;
 import com.cburch.logisim.data.Attribute;
 import com.cburch.logisim.data.AttributeSet;
 import com.cburch.logisim.data.Value;
+import com.cburch.logisim.file.Options;
 import com.cburch.logisim.proj.Project;
 
 public interface InstanceState {
@@ -31,6 +32,8 @@ public interface InstanceState {
 
   Value getPortValue(int portIndex);
 
+  Options getOptions();
+
   Project getProject();
 
   int getTickCount();
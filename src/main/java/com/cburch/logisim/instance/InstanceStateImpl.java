@@ -15,6 +15,7 @@ import com.cburch.logisim.comp.EndData;
 import com.cburch.logisim.data.Attribute;
 import com.cburch.logisim.data.AttributeSet;
 import com.cburch.logisim.data.Value;
+import com.cburch.logisim.file.Options;
 import com.cburch.logisim.proj.Project;
 
 public class InstanceStateImpl implements InstanceState {
@@ -82,6 +83,11 @@ public class InstanceStateImpl implements InstanceState {
     return circuitState.getValue(data.getLocation());
   }
 
+  @Override
+  public Options getOptions() {
+    return circuitState.getOptions();
+  }
+
   @Override
   public Project getProject() {
     return circuitState.getProject();
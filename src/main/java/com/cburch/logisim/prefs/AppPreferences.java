@@ -680,6 +680,15 @@ public class AppPreferences {
   public static final PrefMonitor<Boolean> Memory_Startup_Unknown =
       create(new PrefMonitorBoolean("MemStartUnknown", false));
 
+  public static final PrefMonitor<Boolean> MEMORY_IMAGE_FILE =
+      create(new PrefMonitorBoolean("MemImageFile", false));
+
+  public static final PrefMonitor<Boolean> SIM_PARALLEL =
+      create(new PrefMonitorBoolean("SimParallel", false));
+
+  public static final PrefMonitor<Integer> SIM_TICK_BATCH =
+      create(new PrefMonitorInt("SimTickBatch", 1));
+
   // Simulation preferences
   public static final PrefMonitor<Integer> TRUE_COLOR =
       create(new PrefMonitorInt("SimTrueColor", 0x0000D200));
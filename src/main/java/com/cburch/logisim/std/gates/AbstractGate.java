@@ -544,7 +544,7 @@ abstract class AbstractGate extends InstanceFactory {
     final var attrs = (GateAttributes) state.getAttributeSet();
     final var inputCount = attrs.inputs;
     final var negated = attrs.negated;
-    final var opts = state.getProject().getOptions().getAttributeSet();
+    final var opts = state.getOptions().getAttributeSet();
     final var errorIfUndefined =
         opts.getValue(Options.ATTR_GATE_UNDEFINED).equals(Options.GATE_UNDEFINED_ERROR);
 
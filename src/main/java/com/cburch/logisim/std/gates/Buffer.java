@@ -46,7 +46,7 @@ class Buffer extends InstanceFactory {
   // static methods - shared with other classes
   //
   static Value repair(InstanceState state, Value v) {
-    final var opts = state.getProject().getOptions().getAttributeSet();
+    final var opts = state.getOptions().getAttributeSet();
     Object onUndefined = opts.getValue(Options.ATTR_GATE_UNDEFINED);
     final var errorIfUndefined = onUndefined.equals(Options.GATE_UNDEFINED_ERROR);
     Value repaired;
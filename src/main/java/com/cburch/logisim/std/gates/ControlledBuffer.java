@@ -253,7 +253,7 @@ class ControlledBuffer extends InstanceFactory {
     } else {
       Value out;
       if (control == Value.UNKNOWN || control == Value.NIL) {
-        final var opts = state.getProject().getOptions().getAttributeSet();
+        final var opts = state.getOptions().getAttributeSet();
         if (opts.getValue(Options.ATTR_GATE_UNDEFINED).equals(Options.GATE_UNDEFINED_ERROR)) {
           out = Value.createError(width);
         } else {
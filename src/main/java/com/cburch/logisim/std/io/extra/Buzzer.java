@@ -13,6 +13,7 @@ import static com.cburch.logisim.std.Strings.S;
 
 import com.cburch.logisim.circuit.Circuit;
 import com.cburch.logisim.circuit.CircuitState;
+import com.cburch.logisim.circuit.ComponentResetHandler;
 import com.cburch.logisim.circuit.SubcircuitFactory;
 import com.cburch.logisim.comp.Component;
 import com.cburch.logisim.data.Attribute;
@@ -41,7 +42,7 @@ import javax.sound.sampled.AudioInputStream;
 import javax.sound.sampled.AudioSystem;
 import javax.sound.sampled.Clip;
 
-public class Buzzer extends InstanceFactory {
+public class Buzzer extends InstanceFactory implements ComponentResetHandler {
   /**
    * Unique identifier of the tool, used as reference in project files. Do NOT change as it will
    * prevent project files from loading.
@@ -122,6 +123,12 @@ public class Buzzer extends InstanceFactory {
     setIconName("buzzer.gif");
   }
 
+  @Override
+  public boolean reset(CircuitState state, Instance instance) {
+    stopBuzzerSound(instance.getComponent(), state);
+    return false;
+  }
+
   public static void stopBuzzerSound(Component comp, CircuitState circState) {
     // static method, have to check if the comp parameter is a Buzzer or contains it
     final var compFact = comp.getFactory();
@@ -109,6 +109,13 @@ public abstract class Mem extends InstanceFactory {
           new AttributeOption[] {USEBYTEENABLES, USELINEENABLES});
   static final Attribute<Boolean> ASYNC_READ =
       Attributes.forBoolean("asyncread", S.getter("memAsyncRead"));
+  static final AttributeOption STORAGE_HEAP =
+      new AttributeOption("heap", S.getter("memStorageHeap"));
+  static final AttributeOption STORAGE_OFF_HEAP =
+      new AttributeOption("offheap", S.getter("memStorageOffHeap"));
+  static final Attribute<AttributeOption> STORAGE_ATTR =
+      Attributes.forOption(
+          "storage", S.getter("memStorage"), new AttributeOption[] {STORAGE_HEAP, STORAGE_OFF_HEAP});
 
   // other constants
   public static final int DELAY = 10;
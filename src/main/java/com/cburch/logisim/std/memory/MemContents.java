@@ -32,6 +32,7 @@ public class MemContents implements Cloneable, HexModel {
   private long mask;
   private Page[] pages;
   private boolean randomize;
+  private boolean offHeap;
 
   private MemContents(int addrBits, int width, boolean randomize) {
     listeners = null;
@@ -59,16 +60,14 @@ public class MemContents implements Cloneable, HexModel {
   }
 
   public void condClear() {
-    if (!AppPreferences.Memory_Startup_Unknown.getBoolean()) clear();
+    if (!AppPreferences.Memory_Startup_Unknown.getBoolean() || !randomize) clear();
     else {
+      // the random values of each page are only stored once it is written to
+      final var pageLength = getPageLength();
       for (var i = 0; i < pages.length; i++) {
-        long[] oldValues = pages[i] != null ? pages[i].get(0, pages[i].getLength()) : null;
-        pages[i] = MemContentsSub.createPage(PAGE_SIZE, width, randomize);
-        if (oldValues != null) fireBytesChanged(i << PAGE_SIZE_BITS, oldValues.length, oldValues);
-        else
-          fireBytesChanged(
-              i << PAGE_SIZE_BITS, pages[i].getLength(), pages[i].get(0, pages[i].getLength()));
+        pages[i] = MemContentsSub.createRandomPage(pageLength, width, offHeap);
       }
+      fireBytesChanged(0, 1L << addrBits, null);
     }
   }
 
@@ -109,7 +108,7 @@ public class MemContents implements Cloneable, HexModel {
 
   private void ensurePage(int index) {
     if (pages[index] == null) {
-      pages[index] = MemContentsSub.createPage(PAGE_SIZE, width, randomize);
+      pages[index] = MemContentsSub.createPage(PAGE_SIZE, width, randomize, offHeap);
     }
   }
 
@@ -240,6 +239,22 @@ public class MemContents implements Cloneable, HexModel {
     return width;
   }
 
+  int getPageCount() {
+    return pages.length;
+  }
+
+  int getPageLength() {
+    return addrBits < PAGE_SIZE_BITS ? 1 << addrBits : PAGE_SIZE;
+  }
+
+  Page getPage(int index) {
+    return pages[index];
+  }
+
+  void setPage(int index, Page page) {
+    pages[index] = page;
+  }
+
   public boolean isClear() {
     for (final var page : pages) {
       if (page != null) {
@@ -267,7 +282,7 @@ public class MemContents implements Cloneable, HexModel {
     long val = value & mask;
     if (old != val) {
       if (pages[page] == null) {
-        pages[page] = MemContentsSub.createPage(PAGE_SIZE, width, randomize);
+        pages[page] = MemContentsSub.createPage(PAGE_SIZE, width, randomize, offHeap);
       }
       pages[page].set(offs, val);
       fireBytesChanged(addr, 1, new long[] {old});
@@ -323,7 +338,7 @@ public class MemContents implements Cloneable, HexModel {
             }
           }
           if (!allZeroes) {
-            page = MemContentsSub.createPage(PAGE_SIZE, width, randomize);
+            page = MemContentsSub.createPage(PAGE_SIZE, width, randomize, offHeap);
             pages[i] = page;
           }
         }
@@ -382,7 +397,9 @@ public class MemContents implements Cloneable, HexModel {
         // clearing locations di..di+n on this page
         fill(dp * PAGE_SIZE + di, n, 0);
       } else {
-        if (dstPage == null) dstPage = pages[dp] = MemContentsSub.createPage(PAGE_SIZE, width, randomize);
+        if (dstPage == null) {
+          dstPage = pages[dp] = MemContentsSub.createPage(PAGE_SIZE, width, randomize, offHeap);
+        }
         // copy locations di..di+n on this page
         final var vals = srcPage.get(si, n);
         dstPage.set(di, vals);
@@ -423,7 +440,7 @@ public class MemContents implements Cloneable, HexModel {
       final var n = Math.min(oldPages.length, pages.length);
       for (var i = 0; i < n; i++) {
         if (oldPages[i] != null) {
-          pages[i] = MemContentsSub.createPage(pageLength, width, randomize);
+          pages[i] = MemContentsSub.createPage(pageLength, width, randomize, offHeap);
           final var m = Math.min(oldPages[i].getLength(), pageLength);
           for (var j = 0; j < m; j++) {
             pages[i].set(j, oldPages[i].get(j));
@@ -432,17 +449,43 @@ public class MemContents implements Cloneable, HexModel {
       }
     }
     if (pageCount == 0 && pages[0] == null) {
-      pages[0] = MemContentsSub.createPage(pageLength, width, randomize);
+      pages[0] = MemContentsSub.createPage(pageLength, width, randomize, offHeap);
     }
 
     fireMetainfoChanged();
   }
 
   public void condFillRandom() {
-    if (AppPreferences.Memory_Startup_Unknown.get()) {
-      final var pageLength = (addrBits < PAGE_SIZE_BITS) ? 1 << addrBits : PAGE_SIZE;
+    if (AppPreferences.Memory_Startup_Unknown.get() && randomize) {
+      // the random values of each page are only stored once it is written to
+      final var pageLength = getPageLength();
       for (var i = 0; i < pages.length; i++)
-        if (pages[i] == null) pages[i] = MemContentsSub.createPage(pageLength, width, randomize);
+        if (pages[i] == null) pages[i] = MemContentsSub.createRandomPage(pageLength, width, offHeap);
+    }
+  }
+
+  public boolean isOffHeap() {
+    return offHeap;
+  }
+
+  /**
+   * Sets whether the pages are stored off the Java heap, in direct buffers, once written to. This
+   * suits very large memories, whose contents then do not slow down the garbage collector. Note
+   * that direct buffers are still limited by {@code -XX:MaxDirectMemorySize}, which defaults to the
+   * maximum heap size. The pages already stored are moved.
+   */
+  public void setOffHeap(boolean offHeap) {
+    if (offHeap == this.offHeap) return;
+    this.offHeap = offHeap;
+    for (var i = 0; i < pages.length; i++) {
+      final var page = pages[i];
+      if (page instanceof MemContentsSub.BufferPage bufferPage) {
+        bufferPage.setDirect(offHeap);
+      } else if (page != null && offHeap) {
+        final var moved = MemContentsSub.createPage(page.getLength(), width, false, true);
+        moved.load(0, page.get(0, page.getLength()), mask);
+        pages[i] = moved;
+      }
     }
   }
 
@@ -0,0 +1,302 @@
+/*
+ * Logisim-evolution - digital logic design tool and simulator
+ * Copyright by the Logisim-evolution developers
+ *
+ * https://github.com/logisim-evolution/
+ *
+ * This is free software released under GNU GPLv3 license
+ */
+
+package com.cburch.logisim.std.memory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * A binary file, stored next to a project, holding the contents of its large memories. In the
+ * project, the contents of such a memory are replaced by a reference to their place in the file:
+ *
+ * <pre>
+ * addr/data: 16 32
+ * image: 1f2e3d4c 16 project.circ.1f2e3d4c.mem
+ * </pre>
+ *
+ * <p>The reference gives the checksum of the file, which is also stored in its header, the offset
+ * of the contents in the file and the name of the file. The name includes the checksum, so an
+ * image is never replaced by one with other contents: a backup of the project still finds the
+ * image it was saved with, and an image that is mapped, which cannot be replaced on Windows, is
+ * simply kept when saving the same contents again. Images no longer used by the project are
+ * removed with {@link #deleteOthers} once it is saved. The file starts with a 16-byte header:
+ * the magic number {@code LSMEMIMG}, the version and the checksum. The contents of each memory
+ * follow as a block: the address and data widths, the length of the block, the offsets of its
+ * pages in the block (0 for a page of zeros) and the pages themselves, whose values take 1, 2, 4
+ * or 8 bytes depending on the data width. All numbers are little-endian.
+ *
+ * <p>The blocks are mapped into memory when read, so the pages are only loaded from the disk once
+ * used, and copied to the heap once written to.
+ */
+public final class MemContentsImage {
+  public static final String EXTENSION = ".mem";
+
+  private static final String REFERENCE = "image: ";
+  private static final byte[] MAGIC = "LSMEMIMG".getBytes(StandardCharsets.US_ASCII);
+  private static final int VERSION = 1;
+  private static final int HEADER_SIZE = 16;
+  private static final int BLOCK_HEADER_SIZE = 16;
+
+  /** The name of an image as written, and the reference to each memory in it. */
+  public record Image(String getName, Map<MemContents, String> getReferences) {}
+
+  private MemContentsImage() {}
+
+  /** Returns whether the contents of a memory are worth storing in an image. */
+  public static boolean isLarge(MemContents contents) {
+    return contents.getPageCount() > 1;
+  }
+
+  static boolean isReference(String contents) {
+    return contents.startsWith(REFERENCE);
+  }
+
+  /**
+   * Writes the contents of the memories to an image next to the given project file, named after
+   * the project and the checksum of the contents. An existing image with that name and the same
+   * contents is kept as it is.
+   *
+   * @return the name of the image, and the reference to write in place of the contents of each
+   *     memory, after its header line
+   */
+  public static Image write(File project, Collection<MemContents> contents)
+      throws IOException {
+    final var dir = project.toPath().toAbsolutePath().getParent();
+    final var temp = dir.resolve(project.getName() + EXTENSION + ".tmp");
+    final var offsets = new IdentityHashMap<MemContents, Long>();
+    final var crc = new CRC32();
+    final String name;
+    try {
+      try (final var out =
+          FileChannel.open(
+              temp,
+              StandardOpenOption.CREATE,
+              StandardOpenOption.TRUNCATE_EXISTING,
+              StandardOpenOption.WRITE)) {
+        var offset = (long) HEADER_SIZE;
+        for (final var mem : contents) {
+          if (offsets.containsKey(mem)) continue;
+          offsets.put(mem, offset);
+          offset += writeBlock(out, offset, mem, crc);
+        }
+        final var header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(MAGIC).putInt(VERSION).putInt((int) crc.getValue()).flip();
+        writeFully(out, header, 0);
+      }
+      name = getName(project, crc.getValue());
+      final var path = dir.resolve(name);
+      if (!Files.isRegularFile(path) || Files.mismatch(temp, path) != -1) {
+        try {
+          Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+          Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+      }
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+    final var ret = new IdentityHashMap<MemContents, String>();
+    final var checksum = String.format("%08x", crc.getValue());
+    for (final var entry : offsets.entrySet()) {
+      final var mem = entry.getKey();
+      ret.put(
+          mem,
+          "addr/data: " + mem.getLogLength() + " " + mem.getWidth() + "\n"
+              + REFERENCE + checksum + " " + entry.getValue() + " " + name);
+    }
+    return new Image(name, ret);
+  }
+
+  private static String getName(File project, long checksum) {
+    return String.format("%s.%08x%s", project.getName(), checksum, EXTENSION);
+  }
+
+  /**
+   * Deletes the images next to the given project file, except the one with the given name, which
+   * may be null. An image that cannot be deleted, e.g. because it is still mapped on Windows, is
+   * left for a later save.
+   */
+  public static void deleteOthers(File project, String keep) {
+    final var dir = project.getAbsoluteFile().getParentFile();
+    final var prefix = project.getName() + ".";
+    final var images =
+        dir.listFiles(
+            (d, name) ->
+                name.length() == prefix.length() + 8 + EXTENSION.length()
+                    && name.startsWith(prefix)
+                    && name.endsWith(EXTENSION)
+                    && name.substring(prefix.length(), prefix.length() + 8)
+                        .matches("[0-9a-f]{8}")
+                    && !name.equals(keep));
+    if (images == null) return;
+    for (final var image : images) {
+      try {
+        Files.deleteIfExists(image.toPath());
+      } catch (IOException e) {
+        // still in use, try again next time
+      }
+    }
+  }
+
+  /** Writes the contents of a memory at the given offset, and returns the length written. */
+  private static long writeBlock(FileChannel out, long offset, MemContents mem, CRC32 crc)
+      throws IOException {
+    final var width = mem.getWidth();
+    final var mask = width == 64 ? -1L : (1L << width) - 1;
+    final var bytes = MemContentsSub.bytesPerValue(width);
+    final var pageCount = mem.getPageCount();
+    final var pageOffsets = new long[pageCount];
+    var length = BLOCK_HEADER_SIZE + 8L * pageCount;
+    ByteBuffer buffer = null;
+    for (var i = 0; i < pageCount; i++) {
+      final var page = mem.getPage(i);
+      if (page == null || page.isClear()) continue;
+      final var values = page.get(0, page.getLength());
+      if (buffer == null) {
+        buffer = ByteBuffer.allocate(values.length * bytes).order(ByteOrder.LITTLE_ENDIAN);
+      }
+      buffer.clear();
+      for (final var value : values) {
+        switch (bytes) {
+          case 1 -> buffer.put((byte) (value & mask));
+          case 2 -> buffer.putShort((short) (value & mask));
+          case 4 -> buffer.putInt((int) (value & mask));
+          default -> buffer.putLong(value & mask);
+        }
+      }
+      buffer.flip();
+      pageOffsets[i] = length;
+      length += buffer.remaining();
+      crc.update(buffer.duplicate());
+      writeFully(out, buffer, offset + pageOffsets[i]);
+    }
+    final var header =
+        ByteBuffer.allocate(BLOCK_HEADER_SIZE + 8 * pageCount).order(ByteOrder.LITTLE_ENDIAN);
+    header.putInt(mem.getLogLength()).putInt(width).putLong(length);
+    for (final var pageOffset : pageOffsets) header.putLong(pageOffset);
+    header.flip();
+    crc.update(header.duplicate());
+    writeFully(out, header, offset);
+    return length;
+  }
+
+  private static void writeFully(FileChannel out, ByteBuffer buffer, long position)
+      throws IOException {
+    while (buffer.hasRemaining()) position += out.write(buffer, position);
+  }
+
+  /**
+   * Makes the file name in a reference absolute, so that it can be read independently of the
+   * project that contains it, and checks that the file is the one written with the project. Other
+   * contents are returned unchanged.
+   */
+  public static String resolve(String contents, Path dir) throws IOException {
+    final var lineBreak = contents.indexOf('\n');
+    if (dir == null || lineBreak < 0) return contents;
+    final var reference = contents.substring(lineBreak + 1);
+    if (!isReference(reference)) return contents;
+    final var fields = split(reference);
+    fields[3] = dir.resolve(fields[3]).toString();
+    open(fields).close();
+    return contents.substring(0, lineBreak + 1) + String.join(" ", fields);
+  }
+
+  /** Maps the contents of a memory given by a reference, without its header line. */
+  static MemContents map(String reference, int addrBits, int width) throws IOException {
+    final var fields = split(reference);
+    final long offset;
+    try {
+      offset = Long.parseLong(fields[2]);
+    } catch (NumberFormatException e) {
+      throw new IOException("invalid memory image reference: " + reference);
+    }
+    try (final var in = open(fields)) {
+      final var blockHeader = read(in, offset, BLOCK_HEADER_SIZE);
+      if (blockHeader.getInt() != addrBits || blockHeader.getInt() != width) {
+        throw new IOException("the memory in " + fields[3] + " has other dimensions");
+      }
+      final var block =
+          in.map(FileChannel.MapMode.READ_ONLY, offset, blockHeader.getLong())
+              .order(ByteOrder.LITTLE_ENDIAN);
+      final var ret = MemContents.create(addrBits, width, false);
+      final var pageLength = ret.getPageLength();
+      final var pageSize = pageLength * MemContentsSub.bytesPerValue(width);
+      for (var i = 0; i < ret.getPageCount(); i++) {
+        final var pageOffset = block.getLong(BLOCK_HEADER_SIZE + 8 * i);
+        if (pageOffset == 0) continue;
+        final var data = block.slice((int) pageOffset, pageSize);
+        ret.setPage(i, new MemContentsSub.BufferPage(data, pageLength, width));
+      }
+      return ret;
+    } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+      throw new IOException(fields[3] + " is damaged");
+    }
+  }
+
+  /** Returns the keyword, checksum, offset and file name of a reference. */
+  private static String[] split(String reference) throws IOException {
+    final var ret = reference.trim().split(" ", 4);
+    if (ret.length < 4) throw new IOException("invalid memory image reference: " + reference);
+    return ret;
+  }
+
+  /** Opens the file of a reference, after checking that it is the one the reference is to. */
+  private static FileChannel open(String[] reference) throws IOException {
+    final long checksum;
+    try {
+      checksum = Long.parseLong(reference[1], 16);
+    } catch (NumberFormatException e) {
+      throw new IOException("invalid memory image reference: " + String.join(" ", reference));
+    }
+    final var path = Paths.get(reference[3]);
+    if (!Files.isRegularFile(path)) throw new IOException(path + " not found");
+    final var ret = FileChannel.open(path, StandardOpenOption.READ);
+    try {
+      final var header = read(ret, 0, HEADER_SIZE);
+      final var magic = new byte[MAGIC.length];
+      header.get(magic);
+      if (!Arrays.equals(magic, MAGIC) || header.getInt() != VERSION) {
+        throw new IOException(path + " is not a memory image");
+      }
+      if ((header.getInt() & 0xffffffffL) != checksum) {
+        throw new IOException(path + " was saved with another version of the project");
+      }
+      return ret;
+    } catch (IOException e) {
+      ret.close();
+      throw e;
+    }
+  }
+
+  private static ByteBuffer read(FileChannel in, long position, int length) throws IOException {
+    final var ret = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+    while (ret.hasRemaining()) {
+      if (in.read(ret, position + ret.position()) < 0) {
+        throw new IOException("unexpected end of memory image");
+      }
+    }
+    return ret.flip();
+  }
+}
@@ -11,7 +11,10 @@ package com.cburch.logisim.std.memory;
 
 import com.cburch.logisim.prefs.AppPreferences;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 class MemContentsSub {
   private static class BytePage extends MemContents.Page {
@@ -224,7 +227,147 @@ class MemContentsSub {
     }
   }
 
-  static MemContents.Page createPage(int size, int bits, boolean randomize) {
+  /**
+   * A page whose values are stored little-endian in a buffer: a region of a mapped memory image,
+   * or a buffer on or off the heap. The buffer is only allocated when the page is first written to,
+   * until then the page holds zeros or values given by a random seed. A clone shares the buffer
+   * with its page, read-only, until either of them is written to.
+   */
+  static class BufferPage extends MemContents.Page {
+    private final int bytes; // per value
+    private final int length;
+    private final long mask;
+    private final long seed; // of the values before the buffer is allocated, 0 for zeros
+    private boolean direct; // whether to allocate the buffer off the heap
+    private ByteBuffer data; // null until written to, read-only while shared
+
+    BufferPage(ByteBuffer data, int length, int bits) {
+      this(length, bits, false, 0);
+      this.data = data.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    BufferPage(int length, int bits, boolean direct, long seed) {
+      this.bytes = bytesPerValue(bits);
+      this.length = length;
+      this.mask = bits == 64 ? -1L : (1L << bits) - 1;
+      this.direct = direct;
+      this.seed = seed;
+    }
+
+    @Override
+    public BufferPage clone() {
+      final var ret = (BufferPage) super.clone();
+      if (data != null && !data.isReadOnly()) {
+        data = data.asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN);
+        ret.data = data;
+      }
+      return ret;
+    }
+
+    /** Returns the buffer holding the values, or null while the page has not been written to. */
+    ByteBuffer getBuffer() {
+      return data;
+    }
+
+    void setDirect(boolean direct) {
+      this.direct = direct;
+      if (data != null && !data.isReadOnly() && data.isDirect() != direct) data = copy(data);
+    }
+
+    private ByteBuffer allocate() {
+      final var size = length * bytes;
+      final var ret = direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+      return ret.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private ByteBuffer copy(ByteBuffer src) {
+      final var ret = allocate();
+      ret.put(src.duplicate().clear()).clear();
+      return ret;
+    }
+
+    private void makeWritable() {
+      if (data == null) {
+        data = allocate();
+        if (seed != 0) {
+          for (var i = 0; i < length; i++) put(i, random(i));
+        }
+      } else if (data.isReadOnly()) {
+        data = copy(data);
+      }
+    }
+
+    private long random(int index) {
+      // the finalizer of SplitMix64
+      var z = seed + (index + 1) * 0x9e3779b97f4a7c15L;
+      z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+      z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+      return (z ^ (z >>> 31)) & mask;
+    }
+
+    @Override
+    long get(long addr) {
+      if (addr < 0 || addr >= length) return 0;
+      final var i = (int) addr;
+      if (data == null) return seed == 0 ? 0 : random(i);
+      return switch (bytes) {
+        case 1 -> data.get(i) & 0xffL;
+        case 2 -> data.getShort(2 * i) & 0xffffL;
+        case 4 -> data.getInt(4 * i) & 0xffffffffL;
+        default -> data.getLong(8 * i);
+      };
+    }
+
+    @Override
+    int getLength() {
+      return length;
+    }
+
+    @Override
+    boolean isClear() {
+      return data == null ? seed == 0 : super.isClear();
+    }
+
+    @Override
+    void load(long start, long[] values, long mask) {
+      final var n = Math.min(values.length, length - (int) start);
+      if (n <= 0) return;
+      makeWritable();
+      for (var i = 0; i < n; i++) put((int) start + i, values[i] & mask);
+    }
+
+    @Override
+    void set(long addr, long value) {
+      if (addr < 0 || addr >= length) return;
+      makeWritable();
+      put((int) addr, value);
+    }
+
+    private void put(int index, long value) {
+      switch (bytes) {
+        case 1 -> data.put(index, (byte) value);
+        case 2 -> data.putShort(2 * index, (short) value);
+        case 4 -> data.putInt(4 * index, (int) value);
+        default -> data.putLong(8 * index, value);
+      }
+    }
+  }
+
+  /** Returns the number of bytes in which the pages store a value of the given width. */
+  static int bytesPerValue(int bits) {
+    if (bits <= 8) return 1;
+    else if (bits <= 16) return 2;
+    else if (bits <= 32) return 4;
+    else return 8;
+  }
+
+  static MemContents.Page createPage(int size, int bits, boolean randomize, boolean offHeap) {
+    if (offHeap) {
+      if (AppPreferences.Memory_Startup_Unknown.get() && randomize) {
+        return createRandomPage(size, bits, true);
+      }
+      return new BufferPage(size, bits, true, 0);
+    }
     long mask = (bits == 64) ? 0xffffffffffffffffL : (1L << bits) - 1;
     if (bits <= 8) return new BytePage(size, mask, randomize);
     else if (bits <= 16) return new ShortPage(size, mask, randomize);
@@ -232,5 +375,10 @@ class MemContentsSub {
     else return new LongPage(size, mask, randomize);
   }
 
+  /** Creates a page of random values, which are only stored once it is written to. */
+  static MemContents.Page createRandomPage(int size, int bits, boolean offHeap) {
+    return new BufferPage(size, bits, offHeap, ThreadLocalRandom.current().nextLong() | 1);
+  }
+
   private MemContentsSub() {}
 }
@@ -13,6 +13,7 @@ import static com.cburch.logisim.std.Strings.S;
 
 import com.cburch.logisim.circuit.Circuit;
 import com.cburch.logisim.circuit.CircuitState;
+import com.cburch.logisim.circuit.ComponentResetHandler;
 import com.cburch.logisim.comp.Component;
 import com.cburch.logisim.data.Attribute;
 import com.cburch.logisim.data.AttributeSet;
@@ -32,7 +33,7 @@ import com.cburch.logisim.proj.Project;
 import java.util.WeakHashMap;
 import java.util.function.Consumer;
 
-public class Ram extends Mem {
+public class Ram extends Mem implements ComponentResetHandler {
   /**
    * Unique identifier of the tool, used as reference in project files.
    * Do NOT change as it will prevent project files from loading.
@@ -130,6 +131,7 @@ public class Ram extends Mem {
     final var contents =
         MemContents.create(
             attrs.getValue(Mem.ADDR_ATTR).getWidth(), attrs.getValue(Mem.DATA_ATTR).getWidth(), true);
+    contents.setOffHeap(attrs.getValue(Mem.STORAGE_ATTR) == Mem.STORAGE_OFF_HEAP);
     contents.condFillRandom();
     return contents;
   }
@@ -161,6 +163,7 @@ public class Ram extends Mem {
     return getHexFrame((ret == null) ? getNewContents(instance.getAttributeSet()) : ret.getContents(), proj, instance);
   }
 
+  @Override
   public boolean reset(CircuitState state, Instance instance) {
     final var ret = (RamState) instance.getData(state);
     if (ret == null) return true;
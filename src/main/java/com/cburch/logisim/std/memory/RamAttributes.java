@@ -68,6 +68,7 @@ public class RamAttributes extends AbstractAttributeSet {
   private Boolean allowMisaligned = false;
   private AttributeOption typeOfEnables = Mem.USEBYTEENABLES;
   private AttributeOption ramType = VOLATILE;
+  private AttributeOption storage = Mem.STORAGE_HEAP;
 
   RamAttributes() {
     updateAttributes();
@@ -80,6 +81,7 @@ public class RamAttributes extends AbstractAttributeSet {
     newList.add(Mem.DATA_ATTR);
     newList.add(Mem.ENABLES_ATTR);
     newList.add(ATTR_TYPE);
+    newList.add(Mem.STORAGE_ATTR);
     newList.add(CLEAR_PIN);
     if (typeOfEnables.equals(Mem.USEBYTEENABLES)) {
       newList.add(StdAttr.TRIGGER);
@@ -134,6 +136,7 @@ public class RamAttributes extends AbstractAttributeSet {
     d.allowMisaligned = allowMisaligned;
     d.typeOfEnables = typeOfEnables;
     d.ramType = ramType;
+    d.storage = storage;
   }
 
   @Override
@@ -153,6 +156,9 @@ public class RamAttributes extends AbstractAttributeSet {
     if (attr == ATTR_TYPE) {
       return (V) ramType;
     }
+    if (attr == Mem.STORAGE_ATTR) {
+      return (V) storage;
+    }
     if (attr == StdAttr.LABEL) {
       return (V) label;
     }
@@ -222,6 +228,12 @@ public class RamAttributes extends AbstractAttributeSet {
         ramType = val;
         fireAttributeValueChanged(attr, value, null);
       }
+    } else if (attr == Mem.STORAGE_ATTR) {
+      final var val = (AttributeOption) value;
+      if (!storage.equals(val)) {
+        storage = val;
+        fireAttributeValueChanged(attr, value, null);
+      }
     } else if (attr == StdAttr.LABEL) {
       final var newLabel = (String) value;
       if (label.equals(newLabel)) return;
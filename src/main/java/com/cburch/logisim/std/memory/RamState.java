@@ -9,6 +9,7 @@
 
 package com.cburch.logisim.std.memory;
 
+import com.cburch.logisim.circuit.ComponentDataGuiProvider;
 import com.cburch.logisim.data.AttributeEvent;
 import com.cburch.logisim.data.AttributeListener;
 import com.cburch.logisim.data.AttributeSet;
@@ -17,7 +18,7 @@ import com.cburch.logisim.data.Value;
 import com.cburch.logisim.instance.Instance;
 import com.cburch.logisim.std.memory.Mem.MemListener;
 
-public class RamState extends MemState implements AttributeListener {
+public class RamState extends MemState implements AttributeListener, ComponentDataGuiProvider {
 
   private Instance parent;
   private final MemListener listener;
@@ -40,6 +41,12 @@ public class RamState extends MemState implements AttributeListener {
     BitWidth addrBits = attrs.getValue(Mem.ADDR_ATTR);
     BitWidth dataBits = attrs.getValue(Mem.DATA_ATTR);
     getContents().setDimensions(addrBits.getWidth(), dataBits.getWidth());
+    getContents().setOffHeap(attrs.getValue(Mem.STORAGE_ATTR) == Mem.STORAGE_OFF_HEAP);
+  }
+
+  @Override
+  public void destroy() {
+    Ram.closeHexFrame(this);
   }
 
   @Override
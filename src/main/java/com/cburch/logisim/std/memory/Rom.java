@@ -68,15 +68,23 @@ public class Rom extends Mem {
       final var first = lineBreak < 0 ? value : value.substring(0, lineBreak);
       final var rest = lineBreak < 0 ? "" : value.substring(lineBreak + 1);
       final var toks = new StringTokenizer(first);
+      int addr;
+      int data;
       try {
         final var header = toks.nextToken();
         if (!header.equals("addr/data:")) return null;
-        final var addr = Integer.parseInt(toks.nextToken());
-        final var data = Integer.parseInt(toks.nextToken());
-        return HexFile.parseFromCircFile(rest, addr, data);
+        addr = Integer.parseInt(toks.nextToken());
+        data = Integer.parseInt(toks.nextToken());
+        if (!MemContentsImage.isReference(rest)) return HexFile.parseFromCircFile(rest, addr, data);
       } catch (IOException | NoSuchElementException | NumberFormatException e) {
         return null;
       }
+      try {
+        return MemContentsImage.map(rest, addr, data);
+      } catch (IOException e) {
+        // reported as an invalid value of the attribute
+        throw new NumberFormatException(e.getMessage());
+      }
     }
 
     @Override
@@ -59,6 +59,7 @@ class RomAttributes extends AbstractAttributeSet {
           Mem.DATA_ATTR,
           Mem.LINE_ATTR,
           Mem.ALLOW_MISALIGNED,
+          Mem.STORAGE_ATTR,
           Rom.CONTENTS_ATTR,
           StdAttr.LABEL,
           StdAttr.LABEL_FONT,
@@ -74,6 +75,7 @@ class RomAttributes extends AbstractAttributeSet {
   private MemContents contents;
   private AttributeOption lineSize = Mem.SINGLE;
   private Boolean allowMisaligned = false;
+  private AttributeOption storage = Mem.STORAGE_HEAP;
   private String label = "";
   private Font labelFont = StdAttr.DEFAULT_LABEL_FONT;
   private Boolean labelVisible = false;
@@ -90,6 +92,7 @@ class RomAttributes extends AbstractAttributeSet {
     d.dataBits = dataBits;
     d.lineSize = lineSize;
     d.allowMisaligned = allowMisaligned;
+    d.storage = storage;
     d.contents = contents.clone();
     d.labelFont = labelFont;
     d.labelVisible = labelVisible;
@@ -116,6 +119,9 @@ class RomAttributes extends AbstractAttributeSet {
     if (attr == Mem.ALLOW_MISALIGNED) {
       return (V) allowMisaligned;
     }
+    if (attr == Mem.STORAGE_ATTR) {
+      return (V) storage;
+    }
     if (attr == Rom.CONTENTS_ATTR) {
       return (V) contents;
     }
@@ -162,10 +168,17 @@ class RomAttributes extends AbstractAttributeSet {
       if (allowMisaligned.equals(val)) return;
       allowMisaligned = val;
       fireAttributeValueChanged(attr, value, null);
+    } else if (attr == Mem.STORAGE_ATTR) {
+      final var val = (AttributeOption) value;
+      if (storage.equals(val)) return;
+      storage = val;
+      contents.setOffHeap(storage == Mem.STORAGE_OFF_HEAP);
+      fireAttributeValueChanged(attr, value, null);
     } else if (attr == Rom.CONTENTS_ATTR) {
       final var newContents = (MemContents) value;
       if (contents.equals(newContents)) return;
       contents = newContents;
+      contents.setOffHeap(storage == Mem.STORAGE_OFF_HEAP);
       fireAttributeValueChanged(attr, value, null);
     } else if (attr == StdAttr.LABEL) {
       final var newLabel = (String) value;
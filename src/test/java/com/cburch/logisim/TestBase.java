@@ -9,6 +9,11 @@
 
 package com.cburch.logisim;
 
+import com.cburch.logisim.file.Loader;
+import com.cburch.logisim.file.LogisimFile;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Random;
 
@@ -62,6 +67,26 @@ public class TestBase {
     return (new Random()).nextInt((max - min) + 1) + min;
   }
 
+  /** Returns a loader that throws instead of showing an error to the user. */
+  protected static Loader createLoader() {
+    return new Loader(null) {
+      @Override
+      public void showError(String description) {
+        throw new IllegalStateException(description);
+      }
+    };
+  }
+
+  /** Loads a project from the text of a {@code .circ} file. */
+  protected static LogisimFile loadProject(String xml) throws IOException {
+    return loadProject(xml, createLoader());
+  }
+
+  protected static LogisimFile loadProject(String xml, Loader loader) throws IOException {
+    final var in = new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8));
+    return LogisimFile.load(in, loader);
+  }
+
   /** Dumps content of given list to stdout. */
   protected void printList(List<String> list) {
     for (final var line : list) {
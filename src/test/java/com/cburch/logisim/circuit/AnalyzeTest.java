@@ -0,0 +1,143 @@
+/*
+ * Logisim-evolution - digital logic design tool and simulator
+ * Copyright by the Logisim-evolution developers
+ *
+ * https://github.com/logisim-evolution/
+ *
+ * This is free software released under GNU GPLv3 license
+ */
+
+package com.cburch.logisim.circuit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.cburch.logisim.TestBase;
+import com.cburch.logisim.analyze.model.AnalyzerModel;
+import com.cburch.logisim.analyze.model.Entry;
+import com.cburch.logisim.data.Value;
+import com.cburch.logisim.file.LogisimFile;
+import com.cburch.logisim.proj.Project;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class AnalyzeTest extends TestBase {
+
+  static String tunnel(int x, int y, String label) {
+    return String.format(
+        "<comp lib=\"0\" loc=\"(%d,%d)\" name=\"Tunnel\"><a name=\"label\" val=\"%s\"/></comp>%n",
+        x, y, label);
+  }
+
+  // Places a gate from library "1" at the given point and ties its ends to tunnels; a null input
+  // stays unconnected.
+  static String gate(int x, int y, String name, String in0, String in1, String out) {
+    return gate(x, y, name, "", in0, in1, out);
+  }
+
+  static String gate(int x, int y, String name, String attrs, String in0, String in1, String out) {
+    // XOR gates have an extra curve, and negated gates an output bubble
+    var width = 50;
+    if (name.contains("XOR") || name.contains("XNOR")) width += 10;
+    if (name.startsWith("N") || name.startsWith("XN")) width += 10;
+    return String.format(
+            "<comp lib=\"1\" loc=\"(%d,%d)\" name=\"%s\">%s</comp>%n", x, y, name, attrs)
+        + (in0 != null ? tunnel(x - width, y - 20, in0) : "")
+        + (in1 != null ? tunnel(x - width, y + 20, in1) : "")
+        + tunnel(x, y, out);
+  }
+
+  static String input(int y, String label) {
+    return String.format(
+            "<comp lib=\"0\" loc=\"(50,%d)\" name=\"Pin\"><a name=\"label\" val=\"%s\"/></comp>%n",
+            y, label)
+        + tunnel(50, y, label);
+  }
+
+  static String output(int y, String label) {
+    return String.format(
+            "<comp lib=\"0\" loc=\"(600,%d)\" name=\"Pin\"><a name=\"facing\" val=\"west\"/>"
+                + "<a name=\"label\" val=\"%s\"/><a name=\"output\" val=\"true\"/></comp>%n",
+            y, label)
+        + tunnel(600, y, label);
+  }
+
+  static LogisimFile load(String components) throws Exception {
+    return loadProject(
+        """
+        <?xml version="1.0" encoding="UTF-8" standalone="no"?>
+        <project source="3.9.0" version="1.0">
+          <lib desc="#Wiring" name="0"/>
+          <lib desc="#Gates" name="1"/>
+          <lib desc="#Plexers" name="2"/>
+          <main name="main"/>
+          <circuit name="main">
+        """
+            + components
+            + """
+          </circuit>
+        </project>
+        """);
+  }
+
+  // Gated SR latch of NOR gates; its output depends on the state it starts from.
+  static final String LATCH =
+      input(400, "E")
+          + input(450, "S")
+          + input(500, "R")
+          + output(100, "Q")
+          + gate(200, 100, "AND Gate", "E", "S", "s")
+          + gate(200, 300, "AND Gate", "E", "R", "r")
+          + gate(400, 100, "NOR Gate", "r", "nq", "Q")
+          + gate(400, 300, "NOR Gate", "s", "Q", "nq");
+
+  private static final String COMBINATIONAL =
+      input(400, "A")
+          + input(450, "B")
+          + input(500, "C")
+          + output(100, "Y")
+          + gate(200, 100, "AND Gate", "A", "B", "ab")
+          + gate(200, 300, "NOR Gate", "B", "C", "bc")
+          + gate(400, 100, "OR Gate", "ab", "bc", "Y");
+
+  private static Entry toEntry(Value v) {
+    if (v == Value.TRUE) return Entry.ONE;
+    if (v == Value.FALSE) return Entry.ZERO;
+    if (v == Value.ERROR) return Entry.BUS_ERROR;
+    return Entry.DONT_CARE;
+  }
+
+  /** Checks each row of the computed table against a simulation that starts from scratch. */
+  private static void assertTableMatchesFreshSimulation(LogisimFile file) {
+    final var circuit = file.getMainCircuit();
+    final var model = new AnalyzerModel();
+    Analyze.computeTable(model, new Project(file), circuit, Analyze.getPinLabels(circuit));
+    final var table = model.getTruthTable();
+    assertTrue(List.of(table.getOutputColumn(0)).contains(Entry.ONE), "output never set");
+    for (var row = 0; row < 8; row++) {
+      final var sim = new HeadlessSimulation(file, null);
+      final var inputs = sim.getInputNames();
+      for (var i = 0; i < 3; i++) sim.setValue(inputs.get(i), (row >> (2 - i)) & 1);
+      final var expected =
+          sim.propagate()
+              ? toEntry(sim.getValue(sim.getOutputNames().get(0)))
+              : Entry.OSCILLATE_ERROR;
+      assertEquals(expected, table.getOutputEntry(row, 0), "row " + Integer.toBinaryString(row));
+    }
+  }
+
+  @Test
+  public void testLatchRowsStartFromScratch() throws Exception {
+    final var file = load(LATCH);
+    assertTrue(Analyze.hasFeedback(file.getMainCircuit()));
+    assertTableMatchesFreshSimulation(file);
+  }
+
+  @Test
+  public void testCombinationalTable() throws Exception {
+    final var file = load(COMBINATIONAL);
+    assertFalse(Analyze.hasFeedback(file.getMainCircuit()));
+    assertTableMatchesFreshSimulation(file);
+  }
+}
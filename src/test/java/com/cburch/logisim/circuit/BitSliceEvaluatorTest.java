@@ -0,0 +1,136 @@
+/*
+ * Logisim-evolution - digital logic design tool and simulator
+ * Copyright by the Logisim-evolution developers
+ *
+ * https://github.com/logisim-evolution/
+ *
+ * This is free software released under GNU GPLv3 license
+ */
+
+package com.cburch.logisim.circuit;
+
+import static com.cburch.logisim.circuit.AnalyzeTest.gate;
+import static com.cburch.logisim.circuit.AnalyzeTest.input;
+import static com.cburch.logisim.circuit.AnalyzeTest.load;
+import static com.cburch.logisim.circuit.AnalyzeTest.output;
+import static com.cburch.logisim.circuit.AnalyzeTest.tunnel;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import com.cburch.logisim.TestBase;
+import com.cburch.logisim.data.Value;
+import com.cburch.logisim.instance.StdAttr;
+import org.junit.jupiter.api.Test;
+
+public class BitSliceEvaluatorTest extends TestBase {
+
+  private static final String INPUTS =
+      input(400, "A")
+          + input(450, "B")
+          + input(500, "C")
+          + input(550, "D")
+          + input(600, "E")
+          + input(650, "F");
+
+  @Test
+  public void testMatchesSimulation() throws Exception {
+    final var file =
+        load(
+            INPUTS
+                + output(100, "Y")
+                + output(150, "Z")
+                + gate(200, 100, "AND Gate", "A", "B", "ab")
+                + gate(200, 200, "NOR Gate", "C", "D", "cd")
+                + gate(400, 100, "XOR Gate", "ab", "cd", "Y")
+                + gate(200, 300, "NAND Gate", "E", "F", "ef")
+                + gate(400, 300, "XNOR Gate", "ef", "A", "Z"));
+    final var evaluator = BitSliceEvaluator.compile(file.getMainCircuit());
+    assertNotNull(evaluator);
+    assertEquals(6, evaluator.getInputBits());
+    assertEquals(2, evaluator.getOutputBits());
+
+    // all 64 combinations at once: bit j of the word of input p is bit p of j
+    final var words = evaluator.newWords();
+    for (var j = 0; j < 64; j++) {
+      for (var p = 0; p < 6; p++) words[evaluator.getInputOffset(p)] |= (long) ((j >> p) & 1) << j;
+    }
+    final var outputs = new long[2];
+    evaluator.evaluate(words, outputs);
+
+    for (var j = 0; j < 64; j++) {
+      final var sim = new HeadlessSimulation(file, null);
+      for (var p = 0; p < 6; p++) {
+        sim.setValue(evaluator.getInputPin(p).getAttributeValue(StdAttr.LABEL), (j >> p) & 1);
+      }
+      sim.propagate();
+      for (var p = 0; p < 2; p++) {
+        final var label = evaluator.getOutputPin(p).getAttributeValue(StdAttr.LABEL);
+        final var bit = (outputs[evaluator.getOutputOffset(p)] >>> j) & 1;
+        assertEquals(bit != 0 ? Value.TRUE : Value.FALSE, sim.getValue(label), label + " " + j);
+      }
+    }
+  }
+
+  @Test
+  public void testRejectsFloatingInput() throws Exception {
+    // the simulator gives an error or ignores the input, depending on the project options
+    final var file =
+        load(
+            INPUTS
+                + output(100, "Y")
+                + gate(200, 100, "AND Gate", "A", null, "Y"));
+    assertNull(BitSliceEvaluator.compile(file.getMainCircuit()));
+  }
+
+  @Test
+  public void testRejectsUndrivenWire() throws Exception {
+    final var file =
+        load(
+            INPUTS
+                + output(100, "Y")
+                + gate(200, 100, "AND Gate", "A", "nobody", "Y")
+                + tunnel(300, 500, "nobody"));
+    assertNull(BitSliceEvaluator.compile(file.getMainCircuit()));
+  }
+
+  @Test
+  public void testRejectsThreeStateOutput() throws Exception {
+    final var file =
+        load(
+            INPUTS
+                + output(100, "Y")
+                + gate(200, 100, "AND Gate", "<a name=\"out\" val=\"0Z\"/>", "A", "B", "Y"));
+    assertNull(BitSliceEvaluator.compile(file.getMainCircuit()));
+  }
+
+  @Test
+  public void testRejectsConflictingWidths() throws Exception {
+    final var file =
+        load(
+            INPUTS
+                + output(100, "Y")
+                + "<comp lib=\"0\" loc=\"(50,700)\" name=\"Pin\"><a name=\"label\" val=\"W\"/>"
+                + "<a name=\"width\" val=\"2\"/></comp>\n"
+                + tunnel(50, 700, "W")
+                + gate(200, 100, "AND Gate", "A", "W", "Y"));
+    assertNull(BitSliceEvaluator.compile(file.getMainCircuit()));
+  }
+
+  @Test
+  public void testRejectsOtherComponents() throws Exception {
+    final var file =
+        load(
+            INPUTS
+                + output(100, "Y")
+                + gate(200, 100, "AND Gate", "A", "B", "Y")
+                + "<comp lib=\"2\" loc=\"(300,600)\" name=\"Multiplexer\"/>\n");
+    assertNull(BitSliceEvaluator.compile(file.getMainCircuit()));
+  }
+
+  @Test
+  public void testRejectsFeedback() throws Exception {
+    final var file = load(AnalyzeTest.LATCH + input(550, "D") + input(600, "F") + input(650, "G"));
+    assertNull(BitSliceEvaluator.compile(file.getMainCircuit()));
+  }
+}
@@ -0,0 +1,289 @@
+/*
+ * Logisim-evolution - digital logic design tool and simulator
+ * Copyright by the Logisim-evolution developers
+ *
+ * https://github.com/logisim-evolution/
+ *
+ * This is free software released under GNU GPLv3 license
+ */
+
+package com.cburch.logisim.circuit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.data.BitWidth;
+import com.cburch.logisim.data.Location;
+import com.cburch.logisim.instance.StdAttr;
+import com.cburch.logisim.std.wiring.Pin;
+import com.cburch.logisim.std.wiring.Tunnel;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+public class CircuitWiresTest {
+  private static final int GRID = 12; // random wires stay within this many grid points
+
+
+  private static Location loc(int x, int y) {
+    return Location.create(10 * x, 10 * y, false);
+  }
+
+  // Short wires on a small grid, so that random edits often join or split bundles.
+  private static Wire randomWire(Random random) {
+    final var x = random.nextInt(8);
+    final var y = random.nextInt(8);
+    final var length = 1 + random.nextInt(3);
+    return random.nextBoolean()
+        ? Wire.create(loc(x, y), loc(x + length, y))
+        : Wire.create(loc(x, y), loc(x, y + length));
+  }
+
+  private static CircuitWires build(Iterable<? extends Component> comps) {
+    final var ret = new CircuitWires();
+    for (final var comp : comps) ret.add(comp);
+    return ret;
+  }
+
+  // Names a thread by the bits it runs through, which do not depend on how the map was built.
+  private static Set<String> describe(WireThread thread) {
+    final var ret = new HashSet<String>();
+    for (final var tb : thread.getBundles()) {
+      for (final var point : tb.b.find().points) ret.add(point + ":" + tb.loc);
+    }
+    return ret;
+  }
+
+  /** Checks that both wirings split the grid into the same bundles, with consistent ids. */
+  private static void assertSameBundles(CircuitWires expected, CircuitWires actual) {
+    final var bundles = new IdentityHashMap<WireBundle, Boolean>();
+    final var bundleIds = new HashSet<Integer>();
+    final var threads = new IdentityHashMap<WireThread, Boolean>();
+    final var threadIds = new HashSet<Integer>();
+    for (var x = 0; x < GRID; x++) {
+      for (var y = 0; y < GRID; y++) {
+        final var want = expected.getWireBundle(loc(x, y));
+        final var got = actual.getWireBundle(loc(x, y));
+        if (want == null) {
+          assertNull(got, "bundle at " + loc(x, y));
+          continue;
+        }
+        assertEquals(Set.copyOf(want.points), Set.copyOf(got.points), "bundle at " + loc(x, y));
+        assertEquals(want.getWidth(), got.getWidth(), "width at " + loc(x, y));
+        assertEquals(
+            want.getWidthIncompatibilityData(),
+            got.getWidthIncompatibilityData(),
+            "width conflict at " + loc(x, y));
+        // the threads of a bundle with conflicting widths are not used
+        if (want.isValid() && want.threads != null) {
+          for (var bit = 0; bit < want.threads.length; bit++) {
+            assertEquals(
+                describe(want.threads[bit]),
+                describe(got.threads[bit]),
+                "thread " + bit + " at " + loc(x, y));
+          }
+        }
+        if (bundles.put(got, true) == null) {
+          assertTrue(got.id >= 0 && bundleIds.add(got.id), "bundle id " + got.id);
+          if (got.isValid() && got.threads != null) {
+            for (final var thread : got.threads) {
+              // a thread that runs through a splitter belongs to several bundles
+              if (threads.put(thread, true) != null) continue;
+              assertTrue(thread.id >= 0 && threadIds.add(thread.id), "thread id " + thread.id);
+            }
+          }
+        }
+      }
+    }
+  }
+
+  // Wires in rows 8 to 11 that each form a bundle of their own, so that an edit elsewhere touches
+  // few enough bundles to be handled incrementally.
+  private static List<Component> background() {
+    final var ret = new ArrayList<Component>();
+    for (var y = 8; y < GRID; y++) {
+      for (var x = 0; x < 10; x += 3) ret.add(Wire.create(loc(x, y), loc(x + 1, y)));
+    }
+    return ret;
+  }
+
+  /**
+   * Holds the components of a circuit and its incrementally updated wiring, and checks the latter
+   * against a full build after each edit.
+   */
+  private static class Edits {
+    final List<Component> comps = new ArrayList<>(background());
+    final CircuitWires wires = build(comps);
+
+    Edits(Component... comps) {
+      for (final var comp : comps) add(comp);
+    }
+
+    void add(Component comp) {
+      comps.add(comp);
+      wires.add(comp);
+      check();
+    }
+
+    void remove(Component comp) {
+      comps.remove(comp);
+      wires.remove(comp);
+      check();
+    }
+
+    // Edits a wire, which only recomputes the bundles near it and shares the others.
+    void addLocally(Component comp) {
+      final var far = wires.getWireBundle(loc(0, GRID - 1));
+      add(comp);
+      assertSame(far, wires.getWireBundle(loc(0, GRID - 1)), "rebuilt in full");
+    }
+
+    void removeLocally(Component comp) {
+      final var far = wires.getWireBundle(loc(0, GRID - 1));
+      remove(comp);
+      assertSame(far, wires.getWireBundle(loc(0, GRID - 1)), "rebuilt in full");
+    }
+
+    void check() {
+      assertSameBundles(build(comps), wires);
+    }
+  }
+
+  private static Component tunnel(int x, int y, String label) {
+    final var attrs = Tunnel.FACTORY.createAttributeSet();
+    attrs.setValue(StdAttr.LABEL, label);
+    return Tunnel.FACTORY.createComponent(loc(x, y), attrs);
+  }
+
+  /** Applies random local edits and compares each incrementally updated map with a full build. */
+  @Test
+  public void testIncrementalMatchesFullRebuild() {
+    final var random = new Random(1234);
+    final var wires = new ArrayList<Wire>();
+    final var incremental = new CircuitWires();
+    for (var i = 0; i < 40; i++) {
+      final var wire = randomWire(random);
+      if (incremental.add(wire)) wires.add(wire);
+    }
+    for (var edit = 0; edit < 500; edit++) {
+      if (!wires.isEmpty() && random.nextInt(3) == 0) {
+        incremental.remove(wires.remove(random.nextInt(wires.size())));
+      } else {
+        final var wire = randomWire(random);
+        if (incremental.add(wire)) wires.add(wire);
+      }
+      assertSameBundles(build(wires), incremental);
+    }
+  }
+
+  /** An edit in one part of the circuit leaves the bundles of the other parts untouched. */
+  @Test
+  public void testDistantBundlesAreShared() {
+    final var wires = new CircuitWires();
+    for (var i = 0; i < 10; i++) wires.add(Wire.create(loc(0, 4 * i), loc(5, 4 * i)));
+    final var far = wires.getWireBundle(loc(0, 36));
+    final var near = wires.getWireBundle(loc(5, 0));
+
+    wires.add(Wire.create(loc(5, 0), loc(5, 4)));
+    assertSame(far, wires.getWireBundle(loc(0, 36)));
+    assertNotSame(near, wires.getWireBundle(loc(5, 0)));
+    assertSame(wires.getWireBundle(loc(0, 0)), wires.getWireBundle(loc(0, 4)));
+
+    wires.remove(Wire.create(loc(0, 36), loc(5, 36)));
+    assertNull(wires.getWireBundle(loc(0, 36)));
+    assertSame(wires.getWireBundle(loc(0, 0)), wires.getWireBundle(loc(0, 4)));
+  }
+
+  @Test
+  public void testSplitterEdits() {
+    // a splitter at (2,2) joins the 2-bit bundle there with 1-bit bundles at (4,0) and (4,1)
+    final var splitter =
+        SplitterFactory.instance.createComponent(
+            loc(2, 2), SplitterFactory.instance.createAttributeSet());
+    final var out0 = Wire.create(loc(4, 0), loc(7, 0));
+    final var edits =
+        new Edits(Wire.create(loc(0, 2), loc(2, 2)), out0, Wire.create(loc(4, 1), loc(7, 1)));
+    edits.add(splitter);
+    edits.removeLocally(out0);
+    edits.addLocally(out0);
+    edits.addLocally(Wire.create(loc(7, 1), loc(7, 4))); // the wires beyond the splitter follow
+    edits.addLocally(Wire.create(loc(0, 2), loc(0, 5)));
+    final var shortCircuit = Wire.create(loc(7, 0), loc(7, 1)); // both bits in one thread
+    edits.addLocally(shortCircuit);
+    edits.removeLocally(shortCircuit);
+    edits.remove(splitter);
+    edits.addLocally(Wire.create(loc(2, 2), loc(4, 2)));
+    edits.add(splitter);
+  }
+
+  @Test
+  public void testTunnelRename() {
+    final var first = tunnel(1, 1, "a");
+    final var second = tunnel(1, 4, "a");
+    final var wire = Wire.create(loc(1, 1), loc(4, 1));
+    final var edits =
+        new Edits(
+            first,
+            second,
+            tunnel(6, 4, "b"),
+            wire,
+            Wire.create(loc(1, 4), loc(4, 4)),
+            Wire.create(loc(6, 4), loc(9, 4)));
+    // edits at one tunnel reach the bundles at the others of the same name
+    edits.removeLocally(wire);
+    edits.addLocally(wire);
+    edits.addLocally(Wire.create(loc(4, 1), loc(4, 2)));
+
+    second.getAttributeSet().setValue(StdAttr.LABEL, "b");
+    edits.check();
+    edits.addLocally(Wire.create(loc(9, 4), loc(9, 6)));
+    edits.removeLocally(wire);
+    second.getAttributeSet().setValue(StdAttr.LABEL, "a");
+    edits.check();
+    edits.addLocally(wire);
+    first.getAttributeSet().setValue(StdAttr.LABEL, "");
+    edits.check();
+    edits.removeLocally(wire);
+  }
+
+  @Test
+  public void testPinWidthChange() {
+    // a pin at (1,5) drives a 2-bit splitter at (4,5), whose bits go to (6,3) and (6,4)
+    final var pin = Pin.FACTORY.createComponent(loc(1, 5), Pin.FACTORY.createAttributeSet());
+    final var splitter =
+        SplitterFactory.instance.createComponent(
+            loc(4, 5), SplitterFactory.instance.createAttributeSet());
+    final var edits =
+        new Edits(
+            pin,
+            splitter,
+            Wire.create(loc(1, 5), loc(4, 5)),
+            Wire.create(loc(6, 3), loc(8, 3)),
+            Wire.create(loc(6, 4), loc(8, 4)));
+    for (final var width : new int[] {2, 3, 1, 2, 8}) {
+      // as the circuit does when the ends of a component change
+      final var far = edits.wires.getWireBundle(loc(0, GRID - 1));
+      final var oldEnd = pin.getEnd(0);
+      pin.getAttributeSet().setValue(StdAttr.WIDTH, BitWidth.create(width));
+      assertEquals(width, pin.getEnd(0).getWidth().getWidth());
+      edits.wires.replace(pin, oldEnd, pin.getEnd(0));
+      edits.check();
+      assertSame(far, edits.wires.getWireBundle(loc(0, GRID - 1)), "rebuilt in full");
+      assertEquals(width == 2, edits.wires.getWidthIncompatibilityData() == null);
+    }
+    edits.remove(splitter);
+    final var oldEnd = pin.getEnd(0);
+    pin.getAttributeSet().setValue(StdAttr.WIDTH, BitWidth.create(4));
+    edits.wires.replace(pin, oldEnd, pin.getEnd(0));
+    edits.check();
+    assertEquals(BitWidth.create(4), edits.wires.getWireBundle(loc(4, 5)).getWidth());
+  }
+}
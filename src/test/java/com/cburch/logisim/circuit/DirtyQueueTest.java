@@ -0,0 +1,109 @@
+/*
+ * Logisim-evolution - digital logic design tool and simulator
+ * Copyright by the Logisim-evolution developers
+ *
+ * https://github.com/logisim-evolution/
+ *
+ * This is free software released under GNU GPLv3 license
+ */
+
+package com.cburch.logisim.circuit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import org.junit.jupiter.api.Test;
+
+public class DirtyQueueTest {
+
+  @Test
+  public void testAddIgnoresPendingElements() {
+    final var queue = new DirtyQueue<String>();
+    assertTrue(queue.isEmpty());
+    queue.add("a");
+    queue.add("b");
+    queue.add("a");
+    queue.addAll(List.of("c", "b", "d"));
+    assertFalse(queue.isEmpty());
+    assertEquals(List.of("a", "b", "c", "d"), queue.snapshot());
+    assertEquals(List.of("a", "b", "c", "d"), queue.drain());
+    assertTrue(queue.isEmpty());
+  }
+
+  @Test
+  public void testElementsAddedWhileDrainingArePendingAgain() {
+    final var queue = new DirtyQueue<Integer>();
+    queue.addAll(List.of(1, 2, 3));
+    final var seen = new ArrayList<Integer>();
+    for (final var elt : queue.drain()) {
+      seen.add(elt);
+      queue.add(elt); // marked dirty again while it is processed
+      if (elt == 1) queue.add(4);
+    }
+    assertEquals(List.of(1, 2, 3), seen);
+    assertEquals(List.of(1, 4, 2, 3), queue.drain());
+    assertEquals(List.of(), queue.drain());
+  }
+
+  @Test
+  public void testRemoveAndClear() {
+    final var queue = new DirtyQueue<String>();
+    queue.addAll(List.of("a", "b", "c"));
+    queue.remove("b");
+    queue.remove("x");
+    assertEquals(List.of("a", "c"), queue.snapshot());
+    queue.add("b");
+    assertEquals(List.of("a", "c", "b"), queue.drain());
+    queue.addAll(List.of("a", "b"));
+    queue.clear();
+    assertTrue(queue.isEmpty());
+    queue.add("a");
+    assertEquals(List.of("a"), queue.drain());
+  }
+
+  /** Elements added by other threads while one thread drains are each handed out exactly once. */
+  @Test
+  public void testConcurrentAdds() throws Exception {
+    final var queue = new DirtyQueue<Integer>();
+    final var threads = 4;
+    final var perThread = 20000;
+    final var start = new CountDownLatch(1);
+    final var adders = new ArrayList<Thread>();
+    for (var t = 0; t < threads; t++) {
+      final var base = t * perThread;
+      final var adder =
+          new Thread(
+              () -> {
+                try {
+                  start.await();
+                } catch (InterruptedException e) {
+                  return;
+                }
+                for (var i = 0; i < perThread; i++) queue.add(base + i);
+              });
+      adder.start();
+      adders.add(adder);
+    }
+    final var drained = new HashSet<Integer>();
+    var count = 0;
+    start.countDown();
+    while (adders.stream().anyMatch(Thread::isAlive) || !queue.isEmpty()) {
+      for (final var elt : queue.drain()) {
+        drained.add(elt);
+        count++;
+      }
+    }
+    for (final var adder : adders) adder.join();
+    for (final var elt : queue.drain()) {
+      drained.add(elt);
+      count++;
+    }
+    assertEquals(threads * perThread, count);
+    assertEquals(threads * perThread, drained.size());
+  }
+}
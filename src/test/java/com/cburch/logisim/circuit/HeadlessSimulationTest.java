@@ -0,0 +1,93 @@
+/*
+ * Logisim-evolution - digital logic design tool and simulator
+ * Copyright by the Logisim-evolution developers
+ *
+ * https://github.com/logisim-evolution/
+ *
+ * This is free software released under GNU GPLv3 license
+ */
+
+package com.cburch.logisim.circuit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.cburch.logisim.TestBase;
+import com.cburch.logisim.data.Value;
+import java.awt.GraphicsEnvironment;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class HeadlessSimulationTest extends TestBase {
+
+  /** An AND gate between the pins A, B and Y, and a clock that drives the pin Q. */
+  private static final String CIRCUIT =
+      """
+      <?xml version="1.0" encoding="UTF-8" standalone="no"?>
+      <project source="3.9.0" version="1.0">
+        <lib desc="#Wiring" name="0"/>
+        <lib desc="#Gates" name="1"/>
+        <main name="main"/>
+        <circuit name="main">
+          <comp lib="1" loc="(200,200)" name="AND Gate"/>
+          <comp lib="0" loc="(150,180)" name="Pin">
+            <a name="label" val="A"/>
+          </comp>
+          <comp lib="0" loc="(150,220)" name="Pin">
+            <a name="label" val="B"/>
+          </comp>
+          <comp lib="0" loc="(200,200)" name="Pin">
+            <a name="facing" val="west"/>
+            <a name="label" val="Y"/>
+            <a name="output" val="true"/>
+          </comp>
+          <comp lib="0" loc="(100,300)" name="Clock"/>
+          <comp lib="0" loc="(100,300)" name="Pin">
+            <a name="facing" val="west"/>
+            <a name="label" val="Q"/>
+            <a name="output" val="true"/>
+          </comp>
+        </circuit>
+      </project>
+      """;
+
+  @Test
+  public void testSimulatesWithoutProject() throws Exception {
+    assertTrue(GraphicsEnvironment.isHeadless());
+    final var sim = new HeadlessSimulation(loadProject(CIRCUIT), null);
+    assertNull(sim.getCircuitState().getProject());
+    assertEquals(List.of("A", "B"), sim.getInputNames());
+    assertEquals(List.of("Y", "Q"), sim.getOutputNames());
+
+    for (var a = 0; a < 2; a++) {
+      for (var b = 0; b < 2; b++) {
+        sim.setValue("A", a);
+        sim.setValue("B", b);
+        assertTrue(sim.propagate());
+        assertEquals(Value.createKnown(1, a & b), sim.getValue("Y"));
+      }
+    }
+  }
+
+  @Test
+  public void testTicksClocks() throws Exception {
+    final var sim = new HeadlessSimulation(loadProject(CIRCUIT), "main");
+    final var start = sim.getValue("Q");
+    assertEquals(3, sim.tick(3));
+    assertEquals(3, sim.getTickCount());
+    assertEquals(start.not(), sim.getValue("Q"));
+    assertEquals(1, sim.tick(1));
+    assertEquals(start, sim.getValue("Q"));
+  }
+
+  @Test
+  public void testUnknownNames() throws Exception {
+    final var file = loadProject(CIRCUIT);
+    assertThrows(IllegalArgumentException.class, () -> new HeadlessSimulation(file, "other"));
+    final var sim = new HeadlessSimulation(file, null);
+    assertThrows(IllegalArgumentException.class, () -> sim.setValue("C", 1));
+    assertThrows(IllegalArgumentException.class, () -> sim.setValue("Y", 1));
+  }
+}
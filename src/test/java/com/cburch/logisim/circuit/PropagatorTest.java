@@ -0,0 +1,190 @@
+/*
+ * Logisim-evolution - digital logic design tool and simulator
+ * Copyright by the Logisim-evolution developers
+ *
+ * https://github.com/logisim-evolution/
+ *
+ * This is free software released under GNU GPLv3 license
+ */
+
+package com.cburch.logisim.circuit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.cburch.logisim.TestBase;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class PropagatorTest extends TestBase {
+  private static final int CELLS = 24;
+
+  private static String tunnel(int x, int y, String label, int width) {
+    return String.format(
+        """
+            <comp lib="0" loc="(%d,%d)" name="Tunnel">
+              <a name="label" val="%s"/>
+              <a name="width" val="%d"/>
+            </comp>
+        """,
+        x, y, label, width);
+  }
+
+  private static String pin(int x, int y, String label, boolean output) {
+    return String.format(
+        """
+            <comp lib="0" loc="(%d,%d)" name="Pin">
+              <a name="label" val="%s"/>
+              <a name="width" val="8"/>
+              <a name="output" val="%b"/>
+              <a name="facing" val="%s"/>
+            </comp>
+        """,
+        x, y, label, output, output ? "west" : "east");
+  }
+
+  // Places an instance of a circuit with inputs a and b and output y; it is wired by tunnels.
+  private static String instance(String name, int x, int y, String a, String b, String out) {
+    return String.format("    <comp loc=\"(%d,%d)\" name=\"%s\"/>\n", x, y, name)
+        + tunnel(x - 30, y, a, 8)
+        + tunnel(x - 30, y + 10, b, 8)
+        + tunnel(x, y, out, 8);
+  }
+
+  // A chain of cells fed by a counter. Each cell holds a clock, a register and two leaf
+  // subcircuits: y = r + a, where r is clocked from leaf(leaf(a, b), r) and leaf(a, b) = a ^ b.
+  private static String circuitWithManyCells() {
+    final var xml =
+        new StringBuilder(
+            """
+            <?xml version="1.0" encoding="UTF-8" standalone="no"?>
+            <project source="3.9.0" version="1.0">
+              <lib desc="#Wiring" name="0"/>
+              <lib desc="#Gates" name="1"/>
+              <lib desc="#Arithmetic" name="2"/>
+              <lib desc="#Memory" name="3"/>
+              <main name="main"/>
+              <circuit name="leaf">
+            """);
+    xml.append(pin(100, 100, "a", false)).append(tunnel(100, 100, "a", 8));
+    xml.append(pin(100, 300, "b", false)).append(tunnel(100, 300, "b", 8));
+    xml.append("    <comp lib=\"1\" loc=\"(400,200)\" name=\"XOR Gate\">\n");
+    xml.append("      <a name=\"width\" val=\"8\"/>\n    </comp>\n");
+    xml.append(tunnel(340, 180, "a", 8)).append(tunnel(340, 220, "b", 8));
+    xml.append(tunnel(400, 200, "y", 8));
+    xml.append(pin(1000, 200, "y", true)).append(tunnel(1000, 200, "y", 8));
+    xml.append("  </circuit>\n  <circuit name=\"cell\">\n");
+    xml.append(pin(100, 100, "a", false)).append(tunnel(100, 100, "a", 8));
+    xml.append(pin(100, 300, "b", false)).append(tunnel(100, 300, "b", 8));
+    xml.append(instance("leaf", 600, 200, "a", "b", "t"));
+    xml.append(instance("leaf", 600, 400, "t", "r", "u"));
+    xml.append("    <comp lib=\"0\" loc=\"(100,500)\" name=\"Clock\"/>\n");
+    xml.append(tunnel(100, 500, "clk", 1));
+    xml.append("    <comp lib=\"3\" loc=\"(400,800)\" name=\"Register\">\n");
+    xml.append("      <a name=\"width\" val=\"8\"/>\n    </comp>\n");
+    xml.append(tunnel(400, 870, "clk", 1)).append(tunnel(400, 830, "u", 8));
+    xml.append(tunnel(460, 830, "r", 8));
+    xml.append("    <comp lib=\"2\" loc=\"(700,200)\" name=\"Adder\">\n");
+    xml.append("      <a name=\"width\" val=\"8\"/>\n    </comp>\n");
+    xml.append(tunnel(660, 190, "r", 8)).append(tunnel(660, 210, "a", 8));
+    xml.append(tunnel(700, 200, "y", 8));
+    xml.append(pin(1000, 200, "y", true)).append(tunnel(1000, 200, "y", 8));
+    xml.append("  </circuit>\n  <circuit name=\"main\">\n");
+    xml.append("    <comp lib=\"0\" loc=\"(100,100)\" name=\"Clock\"/>\n");
+    xml.append(tunnel(100, 100, "clk", 1));
+    xml.append("    <comp lib=\"3\" loc=\"(400,200)\" name=\"Counter\">\n");
+    xml.append("      <a name=\"width\" val=\"8\"/>\n      <a name=\"max\" val=\"0xff\"/>\n");
+    xml.append("    </comp>\n");
+    xml.append(tunnel(400, 280, "clk", 1)).append(tunnel(590, 310, "c", 8));
+    for (var i = 0; i < CELLS; i++) {
+      final var a = i == 0 ? "c" : "c" + (i - 1);
+      xml.append(instance("cell", 1200, 300 + 100 * i, a, "c", "c" + i));
+    }
+    xml.append(pin(2000, 200, "out", true)).append(tunnel(2000, 200, "c" + (CELLS - 1), 8));
+    xml.append("  </circuit>\n</project>\n");
+    return xml.toString();
+  }
+
+  // Describes the values at the ends of all components in the state tree, in circuit order.
+  private static void describe(CircuitState state, String path, List<String> out) {
+    for (final var comp : state.getCircuit().getNonWires()) {
+      final var where = path + comp.getFactory().getName() + comp.getLocation();
+      for (final var end : comp.getEnds()) {
+        out.add(where + " " + end.getLocation() + " " + state.getValue(end.getLocation()));
+      }
+      if (comp.getFactory() instanceof SubcircuitFactory sub) {
+        describe(sub.getSubstate(state, comp), where + "/", out);
+      }
+    }
+  }
+
+  private static List<String> run(boolean parallel) throws Exception {
+    final var sim = new HeadlessSimulation(loadProject(circuitWithManyCells()), null);
+    final var prop = sim.getCircuitState().getPropagator();
+    prop.parallelSetting = parallel;
+    final var ret = new ArrayList<String>();
+    for (var i = 0; i < 40; i++) {
+      assertEquals(1, sim.tick(1));
+      ret.add("tick " + i + " out " + sim.getValue("out"));
+      describe(sim.getCircuitState(), "", ret);
+    }
+    return ret;
+  }
+
+  @Test
+  public void testParallelMatchesSequential() throws Exception {
+    final var sequential = run(false);
+    final var outputs =
+        sequential.stream()
+            .filter(s -> s.startsWith("tick"))
+            .map(s -> s.substring(s.indexOf(" out ")))
+            .distinct()
+            .count();
+    assertTrue(outputs > 10, "the output hardly changes");
+    assertEquals(sequential, run(true));
+  }
+
+  @Test
+  public void testEventCountOnlyCountsChanges() throws Exception {
+    final var sim =
+        new HeadlessSimulation(
+            loadProject(
+                """
+                <?xml version="1.0" encoding="UTF-8" standalone="no"?>
+                <project source="3.9.0" version="1.0">
+                  <lib desc="#Wiring" name="0"/>
+                  <lib desc="#Gates" name="1"/>
+                  <main name="main"/>
+                  <circuit name="main">
+                    <comp lib="0" loc="(100,100)" name="Pin">
+                      <a name="label" val="A"/>
+                    </comp>
+                    <comp lib="0" loc="(300,100)" name="Pin">
+                      <a name="facing" val="west"/>
+                      <a name="label" val="Y"/>
+                      <a name="output" val="true"/>
+                    </comp>
+                    <comp lib="1" loc="(200,100)" name="NOT Gate"/>
+                    <wire from="(100,100)" to="(170,100)"/>
+                    <wire from="(200,100)" to="(300,100)"/>
+                  </circuit>
+                </project>
+                """),
+            null);
+    final var prop = sim.getCircuitState().getPropagator();
+    sim.setValue("A", 0);
+    sim.propagate();
+    final var events = prop.getEventCount();
+
+    // setting the same value again changes no signal
+    sim.setValue("A", 0);
+    sim.propagate();
+    assertEquals(events, prop.getEventCount());
+
+    // the pin and the gate output change
+    sim.setValue("A", 1);
+    sim.propagate();
+    assertEquals(events + 2, prop.getEventCount());
+  }
+}
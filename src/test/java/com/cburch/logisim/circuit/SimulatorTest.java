@@ -0,0 +1,102 @@
+/*
+ * Logisim-evolution - digital logic design tool and simulator
+ * Copyright by the Logisim-evolution developers
+ *
+ * https://github.com/logisim-evolution/
+ *
+ * This is free software released under GNU GPLv3 license
+ */
+
+package com.cburch.logisim.circuit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.cburch.logisim.TestBase;
+import org.junit.jupiter.api.Test;
+
+public class SimulatorTest extends TestBase {
+
+  /** An 8-bit counter driven by a clock. */
+  private static final String CIRCUIT =
+      """
+      <?xml version="1.0" encoding="UTF-8" standalone="no"?>
+      <project source="3.9.0" version="1.0">
+        <lib desc="#Wiring" name="0"/>
+        <lib desc="#Memory" name="4"/>
+        <main name="main"/>
+        <circuit name="main">
+          <comp lib="0" loc="(200,220)" name="Clock"/>
+          <comp lib="0" loc="(400,200)" name="Pin">
+            <a name="facing" val="west"/>
+            <a name="label" val="Q"/>
+            <a name="output" val="true"/>
+            <a name="width" val="8"/>
+          </comp>
+          <comp lib="4" loc="(300,200)" name="Counter">
+            <a name="appearance" val="classic"/>
+            <a name="max" val="0xff"/>
+            <a name="width" val="8"/>
+          </comp>
+          <wire from="(200,220)" to="(280,220)"/>
+          <wire from="(300,200)" to="(400,200)"/>
+        </circuit>
+      </project>
+      """;
+
+  /** Counts the half-cycles the logger is told about. */
+  private static class Logger implements Simulator.ProgressListener {
+    int completed;
+
+    @Override
+    public void simulatorReset(Simulator.Event e) {}
+
+    @Override
+    public void simulatorStateChanged(Simulator.Event e) {}
+
+    @Override
+    public void propagationCompleted(Simulator.Event e) {
+      completed++;
+    }
+
+    @Override
+    public boolean wantsProgressEvents() {
+      return false;
+    }
+
+    @Override
+    public void propagationInProgress(Simulator.Event e) {}
+  }
+
+  @Test
+  public void testBatchMatchesSingleTicks() throws Exception {
+    final var file = loadProject(CIRCUIT);
+    final var single = new HeadlessSimulation(file, null);
+    final var batched = new HeadlessSimulation(file, null);
+    final var prop = batched.getCircuitState().getPropagator();
+    final var evt = new Simulator.Event(null, true, false, true);
+    for (final var n : new int[] {1, 2, 7, 64, 300}) {
+      for (var i = 0; i < n; i++) assertEquals(1, single.tick(1));
+      final var logger = new Logger();
+      assertEquals(n, Simulator.runTicks(prop, n, logger, evt, Long.MAX_VALUE));
+      assertEquals(n, logger.completed);
+      assertEquals(single.getTickCount(), batched.getTickCount());
+      assertEquals(single.getValue("Q"), batched.getValue("Q"), "after " + n + " ticks");
+    }
+  }
+
+  @Test
+  public void testBatchStopsEarly() throws Exception {
+    final var sim = new HeadlessSimulation(loadProject(CIRCUIT), null);
+    final var prop = sim.getCircuitState().getPropagator();
+    final var logger = new Logger();
+    // a batch that is out of time still runs one half-cycle
+    assertEquals(1, Simulator.runTicks(prop, 10, logger, null, 0));
+    assertEquals(1, logger.completed);
+
+    // without a clock, the first half-cycle ends the batch
+    final var unclocked = loadProject(CIRCUIT.replace("Clock", "Pin"));
+    final var noClocks = new HeadlessSimulation(unclocked, null).getCircuitState().getPropagator();
+    assertEquals(-1, Simulator.runTicks(noClocks, 10, logger, null, Long.MAX_VALUE));
+    assertEquals(2, logger.completed);
+  }
+}
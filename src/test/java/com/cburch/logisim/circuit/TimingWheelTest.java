@@ -0,0 +1,65 @@
+/*
+ * Logisim-evolution - digital logic design tool and simulator
+ * Copyright by the Logisim-evolution developers
+ *
+ * https://github.com/logisim-evolution/
+ *
+ * This is free software released under GNU GPLv3 license
+ */
+
+package com.cburch.logisim.circuit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.cburch.logisim.circuit.Propagator.SetData;
+import java.util.PriorityQueue;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+public class TimingWheelTest {
+
+  /**
+   * Feeds the same events into a TimingWheel and a PriorityQueue, the way the Propagator does it,
+   * and checks that both hand them out in the same order.
+   */
+  @Test
+  public void testSameOrderAsPriorityQueue() {
+    final var random = new Random(42);
+    final var wheel = new TimingWheel();
+    final var reference = new PriorityQueue<SetData>();
+    var clock = Integer.MAX_VALUE - 5000; // also exercise wrap-around of the clock
+    var serial = 0;
+    for (var round = 0; round < 2000; round++) {
+      final var count = random.nextInt(20);
+      for (var i = 0; i < count; i++) {
+        // mostly small delays, sometimes beyond the size of the calendar
+        final var delay = random.nextInt(10) == 0 ? 1 + random.nextInt(5000) : 1 + random.nextInt(40);
+        final var data = wheel.obtain(clock + delay, serial++, null, null, null, null);
+        wheel.add(data);
+        reference.add(data);
+      }
+      if (wheel.isEmpty()) continue;
+      clock = wheel.advance();
+      assertEquals(reference.peek().time, clock);
+      for (var data = wheel.poll(clock); data != null; data = wheel.poll(clock)) {
+        assertSame(reference.poll(), data);
+        wheel.recycle(data);
+      }
+      assertTrue(reference.isEmpty() || reference.peek().time != clock);
+      assertEquals(reference.size(), wheel.size());
+    }
+  }
+
+  @Test
+  public void testClear() {
+    final var wheel = new TimingWheel();
+    wheel.add(wheel.obtain(3, 0, null, null, null, null));
+    wheel.add(wheel.obtain(5000, 1, null, null, null, null));
+    wheel.clear();
+    assertTrue(wheel.isEmpty());
+    assertNull(wheel.poll(3));
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * Logisim-evolution - digital logic design tool and simulator
+ * Copyright by the Logisim-evolution developers
+ *
+ * https://github.com/logisim-evolution/
+ *
+ * This is free software released under GNU GPLv3 license
+ */
+
+package com.cburch.logisim.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TestVectorTest {
+  @TempDir Path dir;
+
+  private TestVector parse(String text) throws IOException {
+    final var file = dir.resolve("vector.txt");
+    Files.writeString(file, text);
+    return new TestVector(file.toFile());
+  }
+
+  private void assertRejected(String text, String message) {
+    final var e = assertThrows(IOException.class, () -> parse(text));
+    assertTrue(e.getMessage().contains(message), e.getMessage());
+  }
+
+  @Test
+  public void testTicksAndNoReset() throws IOException {
+    final var vector = parse("A <ticks> Q[4] <noreset>\n0 0 0000 0\n1 2 0001 1\n0 0x10 0010 0\n");
+    assertEquals(3, vector.data.size());
+    assertTrue(vector.isPinColumn(0));
+    assertFalse(vector.isPinColumn(1));
+    assertTrue(vector.isPinColumn(2));
+    assertFalse(vector.isPinColumn(3));
+    assertTrue(vector.isSequential());
+    assertEquals(0, vector.getTicks(0));
+    assertEquals(2, vector.getTicks(1));
+    assertEquals(16, vector.getTicks(2));
+    assertTrue(vector.isReset(0));
+    assertFalse(vector.isReset(1));
+    assertTrue(vector.isReset(2));
+  }
+
+  @Test
+  public void testWithoutTicksOrNoReset() throws IOException {
+    final var vector = parse("A B[2]\n0 00\n1 11\n");
+    assertTrue(vector.isPinColumn(0));
+    assertTrue(vector.isPinColumn(1));
+    assertFalse(vector.isSequential());
+    for (var row = 0; row < 2; row++) {
+      assertEquals(0, vector.getTicks(row));
+      assertTrue(vector.isReset(row));
+    }
+    // a row that does not reset on its own is still reset when it comes first
+    assertTrue(parse("<noreset> A\n1 0\n").isReset(0));
+  }
+
+  @Test
+  public void testDuplicateColumn() {
+    assertRejected("<ticks> A <ticks>\n0 0 0\n", "duplicate column");
+    assertRejected("<noreset> A <noreset>\n0 0 0\n", "duplicate column");
+  }
+
+  @Test
+  public void testMissingValue() {
+    assertRejected("A <ticks> B\n0 1 0\n0 1\n", "no value for B");
+    assertRejected("A <ticks>\n0\n", "no value for <ticks>");
+  }
+
+  @Test
+  public void testBadTicks() throws IOException {
+    // the largest count that fits in an int is fine
+    assertEquals(Integer.MAX_VALUE, parse("<ticks> A\n0x7fffffff 0\n").getTicks(0));
+    assertRejected("<ticks> A\n-1 0\n", "format error");
+    assertRejected("<ticks> A\n4294967295 0\n", "bad tick count: 4294967295");
+    assertRejected("<ticks> A\n0xffffffff 0\n", "bad tick count");
+    assertRejected("<ticks> A\n0x80000000 0\n", "bad tick count");
+    assertRejected("<ticks> A\nxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx 0\n", "bad tick count");
+    assertRejected("<ticks> A\nzz 0\n", "format error");
+  }
+
+  @Test
+  public void testBadNoReset() {
+    assertRejected("<noreset> A\n0 0\nx 0\n", "bad reset flag: x");
+    assertRejected("<noreset> A\n2 0\n", "format error");
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Logisim-evolution - digital logic design tool and simulator
+ * Copyright by the Logisim-evolution developers
+ *
+ * https://github.com/logisim-evolution/
+ *
+ * This is free software released under GNU GPLv3 license
+ */
+
+package com.cburch.logisim.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.Random;
+import java.util.function.BinaryOperator;
+import org.junit.jupiter.api.Test;
+
+public class ValueTest {
+
+  // Half of the values are fully defined, so that both the fast and the general paths are taken.
+  private static Value randomValue(Random random, int width) {
+    final var value = random.nextLong();
+    if (random.nextBoolean()) return Value.createKnown(width, value);
+    final var error = random.nextInt(4) == 0 ? random.nextLong() & random.nextLong() : 0;
+    final var unknown = random.nextLong() & random.nextLong();
+    return Value.createFromMasks(width, error, unknown, value);
+  }
+
+  /** Checks a multi-bit operation bit by bit against the same operation on single bits. */
+  private static void assertBitwise(Value a, Value b, Value result, BinaryOperator<Value> op) {
+    assertEquals(a.getWidth(), result.getWidth());
+    for (var i = 0; i < a.getWidth(); i++) {
+      assertSame(op.apply(a.get(i), b.get(i)), result.get(i), a + " " + b + " bit " + i);
+    }
+  }
+
+  @Test
+  public void testOperationsAreBitwise() {
+    final var random = new Random(99);
+    for (var round = 0; round < 20000; round++) {
+      final var width = 2 + random.nextInt(63);
+      final var a = randomValue(random, width);
+      final var b = random.nextInt(8) == 0 ? a : randomValue(random, width);
+      assertBitwise(a, b, a.and(b), Value::and);
+      assertBitwise(a, b, a.or(b), Value::or);
+      assertBitwise(a, b, a.xor(b), Value::xor);
+      assertBitwise(a, b, a.combine(b), Value::combine);
+      assertBitwise(a, a, a.not(), (x, y) -> x.not());
+    }
+  }
+
+  @Test
+  public void testCommonValuesAreShared() {
+    for (var width = 1; width <= 8; width++) {
+      for (var value = 0; value < (1 << width); value++) {
+        assertSame(Value.createKnown(width, value), Value.createKnown(width, value));
+      }
+    }
+    for (var width = 1; width <= 64; width++) {
+      final var bits = BitWidth.create(width);
+      assertSame(Value.createUnknown(bits), Value.createUnknown(bits));
+      assertSame(Value.createError(bits), Value.createError(bits));
+    }
+    assertSame(Value.TRUE, Value.createKnown(1, 1));
+    assertSame(Value.UNKNOWN, Value.createUnknown(BitWidth.ONE));
+  }
+
+  @Test
+  public void testOperandIsReturnedWhenResultEqualsIt() {
+    final var a = Value.createKnown(32, 0xff00ff00L);
+    final var b = Value.createKnown(32, 0xf000f000L);
+    assertSame(b, a.and(b));
+    assertSame(a, a.or(b));
+    assertSame(a, a.combine(Value.createKnown(32, 0xff00ff00L)));
+  }
+
+  /** Values that were evicted from the intern table are still equal to new ones. */
+  @Test
+  public void testEqualityDoesNotDependOnInterning() {
+    final var random = new Random(7);
+    final var first = Value.createKnown(48, 0x123456789abL);
+    for (var i = 0; i < 200000; i++) Value.createKnown(48, random.nextLong());
+    final var again = Value.createKnown(48, 0x123456789abL);
+    assertEquals(first, again);
+    assertEquals(first.hashCode(), again.hashCode());
+    assertEquals(
+        Value.createFromMasks(40, 0, 0xf0, 0x0f), Value.createFromMasks(40, 0, 0xf0, 0x0f));
+  }
+}
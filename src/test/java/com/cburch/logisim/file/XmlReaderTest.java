@@ -11,11 +11,99 @@ package com.cburch.logisim.file;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import com.cburch.logisim.TestBase;
+import com.cburch.logisim.circuit.Circuit;
+import com.cburch.logisim.circuit.SubcircuitFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
-public class XmlReaderTest {
+public class XmlReaderTest extends TestBase {
+
+  private static final String LIBRARY =
+      """
+      <?xml version="1.0" encoding="UTF-8" standalone="no"?>
+      <project source="3.8.0" version="1.0">
+        <lib desc="#Wiring" name="0"/>
+        <lib desc="#Gates" name="1"/>
+        <main name="shared"/>
+        <circuit name="shared">
+          <comp lib="0" loc="(100,100)" name="Pin"/>
+          <comp lib="0" loc="(300,100)" name="Pin">
+            <a name="facing" val="west"/>
+            <a name="output" val="true"/>
+          </comp>
+          <comp lib="1" loc="(200,100)" name="NOT Gate"/>
+          <wire from="(100,100)" to="(170,100)"/>
+          <wire from="(200,100)" to="(300,100)"/>
+        </circuit>
+      </project>
+      """;
+
+  @TempDir Path dir;
+
+  /**
+   * Circuits built in parallel that use the same subcircuit of a library must all be registered
+   * with it.
+   */
+  @Test
+  public final void testParallelBuildWithLibrarySubcircuits() throws Exception {
+    final var circuits = 16;
+    final var instances = 100;
+    final var xml = new StringBuilder();
+    xml.append(
+        """
+        <?xml version="1.0" encoding="UTF-8" standalone="no"?>
+        <project source="3.8.0" version="1.0">
+          <lib desc="#Wiring" name="0"/>
+          <lib desc="file#lib.circ" name="3"/>
+          <main name="c0"/>
+        """);
+    for (var i = 0; i < circuits; i++) {
+      xml.append("  <circuit name=\"c").append(i).append("\">\n");
+      for (var j = 0; j < instances; j++) {
+        xml.append("    <comp lib=\"3\" loc=\"(")
+            .append(100 + 200 * (j % 10))
+            .append(',')
+            .append(100 + 100 * (j / 10))
+            .append(")\" name=\"shared\"/>\n");
+      }
+      xml.append("  </circuit>\n");
+    }
+    xml.append("</project>\n");
+    Files.writeString(dir.resolve("lib.circ"), LIBRARY);
+    final var main = dir.resolve("main.circ");
+    Files.writeString(main, xml);
+
+    final var threads = XmlReader.buildThreads;
+    XmlReader.buildThreads = 4;
+    final LogisimFile file;
+    try {
+      file = createLoader().openLogisimFile(main.toFile());
+    } finally {
+      XmlReader.buildThreads = threads;
+    }
+
+    final var first = file.getCircuit("c0").getNonWires().iterator().next();
+    final var shared = ((SubcircuitFactory) first.getFactory()).getSubcircuit();
+    assertFalse(file.getCircuits().contains(shared));
+    final var uses = new HashMap<Circuit, Integer>();
+    for (final var circuit : shared.getCircuitsUsingThis()) uses.merge(circuit, 1, Integer::sum);
+    assertEquals(circuits, uses.size());
+    for (var i = 0; i < circuits; i++) {
+      final var circuit = file.getCircuit("c" + i);
+      assertEquals(instances, uses.get(circuit), circuit.getName());
+      assertEquals(instances, circuit.getNonWires().size());
+      for (final var comp : circuit.getNonWires()) {
+        assertSame(shared, ((SubcircuitFactory) comp.getFactory()).getSubcircuit());
+      }
+    }
+  }
 
   /**
    * Test method for {@link
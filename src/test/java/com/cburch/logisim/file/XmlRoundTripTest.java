@@ -0,0 +1,204 @@
+/*
+ * Logisim-evolution - digital logic design tool and simulator
+ * Copyright by the Logisim-evolution developers
+ *
+ * https://github.com/logisim-evolution/
+ *
+ * This is free software released under GNU GPLv3 license
+ */
+
+package com.cburch.logisim.file;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.cburch.logisim.TestBase;
+import com.cburch.logisim.circuit.Circuit;
+import com.cburch.logisim.circuit.CircuitMutation;
+import com.cburch.logisim.circuit.Wire;
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.data.Location;
+import com.cburch.logisim.instance.StdAttr;
+import com.cburch.logisim.std.base.Text;
+import com.cburch.logisim.std.memory.Rom;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Loads, saves and loads again, so that the reader and the writer are checked against each other,
+ * including the text the writer caches between saves of the same file.
+ */
+public class XmlRoundTripTest extends TestBase {
+
+  private static final String PROJECT =
+      """
+      <?xml version="1.0" encoding="UTF-8" standalone="no"?>
+      <!-- a comment before the root -->
+      <project source="3.8.0" version="1.0">
+        This file is intended to be loaded by Logisim-evolution.
+
+        <lib desc="#Wiring" name="0">
+          <tool name="Pin">
+            <a name="appearance" val="classic"/>
+          </tool>
+        </lib>
+        <lib desc="#Gates" name="1"/>
+        <lib desc="#Plexers" name="2"/>
+        <lib desc="#Memory" name="4"/>
+        <lib desc="#Base" name="8"/>
+        <main name="top"/>
+        <options>
+          <a name="gateUndefined" val="ignore"/>
+          <a name="simlimit" val="1000"/>
+        </options>
+        <mappings>
+          <tool lib="8" map="Button2" name="Menu Tool"/>
+        </mappings>
+        <toolbar>
+          <tool lib="8" name="Poke Tool"/>
+          <sep/>
+          <tool lib="0" name="Pin">
+            <a name="label" val="tb"/>
+          </tool>
+        </toolbar>
+        <circuit name="top">
+          <a name="appearance" val="logisim_evolution"/>
+          <a name="circuit" val="top"/>
+          <comp loc="(300,200)" name="inner"/>
+          <comp lib="0" loc="(100,200)" name="Pin">
+            <a name="label" val="in a"/>
+          </comp>
+          <comp lib="0" loc="(100,240)" name="Pin">
+            <a name="label" val="inB"/>
+            <a name="width" val="4"/>
+          </comp>
+          <comp lib="0" loc="(500,200)" name="Pin">
+            <a name="facing" val="west"/>
+            <a name="output" val="true"/>
+            <a name="label" val="out_"/>
+          </comp>
+          <comp lib="4" loc="(200,500)" name="ROM">
+            <a name="contents">addr/data: 8 8
+      1 2 3 4 5 6 7 8
+      9 a b c d e f 10
+      4*0 ff
+      </a>
+          </comp>
+          <comp lib="1" loc="(400,300)" name="AND Gate">
+            <a name="size" val="30"/>
+            <a name="inputs" val="3"/>
+          </comp>
+          <comp lib="2" loc="(700,300)" name="Multiplexer">
+            <a name="select" val="2"/>
+            <a name="width" val="8"/>
+          </comp>
+          <comp lib="8" loc="(150,100)" name="Text">
+            <a name="text" val="a line &amp; &lt;x&gt; &quot;q&quot; é€"/>
+          </comp>
+          <wire from="(100,200)" to="(300,200)"/>
+          <wire from="(100,240)" to="(120,240)"/>
+          <wire from="(330,200)" to="(500,200)"/>
+        </circuit>
+        <circuit name="inner">
+          <a name="appearance" val="custom"/>
+          <a name="circuit" val="inner"/>
+          <appear>
+            <text x="60" y="40" font-family="SansSerif" font-size="12" text-anchor="middle" dominant-baseline="central">a &lt;b&gt; &amp; "c"</text>
+            <rect fill="none" height="40" stroke="#000000" stroke-width="2" width="60" x="50" y="50"/>
+            <circ-port dir="in" pin="100,100" x="50" y="60"/>
+            <circ-port dir="out" pin="300,100" x="110" y="60"/>
+            <circ-anchor facing="east" x="110" y="60"/>
+          </appear>
+          <comp lib="0" loc="(100,100)" name="Pin"/>
+          <comp lib="0" loc="(300,100)" name="Pin">
+            <a name="facing" val="west"/>
+            <a name="output" val="true"/>
+          </comp>
+          <comp lib="1" loc="(200,100)" name="NOT Gate"/>
+          <wire from="(100,100)" to="(170,100)"/>
+          <wire from="(200,100)" to="(300,100)"/>
+        </circuit>
+        <circuit name="empty"/>
+      </project>
+      """;
+
+  // the loader knows the descriptors of the libraries it loaded
+  private final Loader loader = createLoader();
+
+  private LogisimFile load(String xml) throws IOException {
+    return loadProject(xml, loader);
+  }
+
+  private String save(LogisimFile file) {
+    final var out = new ByteArrayOutputStream();
+    file.write(out, loader);
+    return out.toString(StandardCharsets.UTF_8);
+  }
+
+  private static Component find(Circuit circuit, String name, int x, int y) {
+    final var loc = Location.create(x, y, false);
+    for (final var comp : circuit.getNonWires()) {
+      if (comp.getFactory().getName().equals(name) && comp.getLocation().equals(loc)) return comp;
+    }
+    return null;
+  }
+
+  @Test
+  public void testSaveLoadSave() throws IOException {
+    final var original = load(PROJECT);
+    final var first = save(original);
+    final var reloaded = load(first);
+    assertEquals(first, save(reloaded));
+
+    assertEquals("top", reloaded.getMainCircuit().getName());
+    assertEquals(3, reloaded.getCircuits().size());
+    final var top = reloaded.getCircuit("top");
+    assertEquals(8, top.getNonWires().size());
+    for (final var circuit : original.getCircuits()) {
+      final var copy = reloaded.getCircuit(circuit.getName());
+      assertEquals(circuit.getNonWires().size(), copy.getNonWires().size());
+      assertEquals(circuit.getWires(), copy.getWires());
+    }
+    final var text = find(top, "Text", 150, 100);
+    assertNotNull(text);
+    assertEquals("a line & <x> \"q\" é€", text.getAttributeSet().getValue(Text.ATTR_TEXT));
+    final var rom = find(top, "ROM", 200, 500);
+    assertNotNull(rom);
+    final var contents = rom.getAttributeSet().getValue(Rom.CONTENTS_ATTR);
+    assertEquals(0x10, contents.get(15));
+    assertEquals(0xff, contents.get(20));
+    assertEquals(0, contents.get(255));
+    final var pin = find(top, "Pin", 100, 240);
+    assertEquals("inB", pin.getAttributeSet().getValue(StdAttr.LABEL));
+    assertEquals(4, pin.getAttributeSet().getValue(StdAttr.WIDTH).getWidth());
+  }
+
+  @Test
+  public void testSaveAfterEditReusesCache() throws IOException {
+    final var file = load(PROJECT);
+    final var first = save(file);
+    assertEquals(first, save(file)); // entirely from the cache
+
+    // change a component in each circuit, and add a wire to the subcircuit
+    final var top = file.getCircuit("top");
+    find(top, "Pin", 100, 240).getAttributeSet().setValue(StdAttr.LABEL, "renamed");
+    final var sub = file.getCircuit("inner");
+    final var mutation = new CircuitMutation(sub);
+    mutation.set(find(sub, "NOT Gate", 200, 100), StdAttr.LABEL, "inv");
+    mutation.add(Wire.create(Location.create(100, 100, false), Location.create(100, 150, false)));
+    mutation.execute();
+
+    final var second = save(file);
+    assertNotEquals(first, second);
+    assertTrue(second.contains("val=\"renamed\""));
+    assertTrue(second.contains("val=\"inv\""));
+    assertTrue(second.contains("<wire from=\"(100,100)\" to=\"(100,150)\"/>"));
+    // the same as if written without a cache
+    assertEquals(save(load(second)), second);
+    assertEquals(second, save(file));
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * Logisim-evolution - digital logic design tool and simulator
+ * Copyright by the Logisim-evolution developers
+ *
+ * https://github.com/logisim-evolution/
+ *
+ * This is free software released under GNU GPLv3 license
+ */
+
+package com.cburch.logisim.gui.log;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+public class SampleQueueTest {
+
+  private static void publish(SampleQueue queue, long duration) {
+    final var sample = queue.claim(0);
+    sample.kind = SampleQueue.EXTEND_OLD;
+    sample.duration = duration;
+    queue.publish();
+  }
+
+  @Test
+  public void testAppliesInOrder() {
+    final var applied = Collections.synchronizedList(new ArrayList<Long>());
+    final var batches = new AtomicInteger();
+    final var queue =
+        new SampleQueue(
+            new SampleQueue.Consumer() {
+              @Override
+              public void apply(SampleQueue.Sample sample) {
+                applied.add(sample.duration);
+              }
+
+              @Override
+              public void batchApplied() {
+                batches.incrementAndGet();
+              }
+            });
+    // more than fit in the ring, so that the producer has to wait for the capture thread
+    final var expected = new ArrayList<Long>();
+    for (var i = 0L; i < 5000; i++) {
+      publish(queue, i);
+      expected.add(i);
+    }
+    queue.flush();
+    assertEquals(expected, applied);
+    assertTrue(batches.get() > 0);
+  }
+
+  @Test
+  public void testFailingSampleDoesNotDropOthers() {
+    final var applied = Collections.synchronizedList(new ArrayList<Long>());
+    final var queue =
+        new SampleQueue(
+            new SampleQueue.Consumer() {
+              @Override
+              public void apply(SampleQueue.Sample sample) {
+                if (sample.duration == 2) throw new IllegalStateException("broken sample");
+                applied.add(sample.duration);
+              }
+
+              @Override
+              public void batchApplied() {
+                throw new IllegalStateException("broken listener");
+              }
+            });
+    for (var i = 1L; i <= 4; i++) publish(queue, i);
+    queue.flush();
+    publish(queue, 5);
+    queue.flush();
+    assertEquals(List.of(1L, 3L, 4L, 5L), applied);
+  }
+}
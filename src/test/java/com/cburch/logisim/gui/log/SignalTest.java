@@ -0,0 +1,193 @@
+/*
+ * Logisim-evolution - digital logic design tool and simulator
+ * Copyright by the Logisim-evolution developers
+ *
+ * https://github.com/logisim-evolution/
+ *
+ * This is free software released under GNU GPLv3 license
+ */
+
+package com.cburch.logisim.gui.log;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import com.cburch.logisim.TestBase;
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.data.Value;
+import java.util.ArrayList;
+import java.util.Random;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+public class SignalTest extends TestBase {
+  private static final int WIDTH = 16;
+
+  private static SignalInfo info;
+
+  @BeforeAll
+  public static void loadPin() throws Exception {
+    final var file =
+        loadProject(
+            """
+            <?xml version="1.0" encoding="UTF-8" standalone="no"?>
+            <project source="3.9.0" version="1.0">
+              <lib desc="#Wiring" name="0"/>
+              <main name="main"/>
+              <circuit name="main">
+                <comp lib="0" loc="(100,100)" name="Pin">
+                  <a name="label" val="A"/>
+                  <a name="width" val="16"/>
+                </comp>
+              </circuit>
+            </project>
+            """);
+    final var circuit = file.getMainCircuit();
+    final var pin = circuit.getNonWires().iterator().next();
+    info = new SignalInfo(circuit, new Component[] {pin}, null);
+  }
+
+  /** The straightforward list of samples that a Signal is expected to behave like. */
+  private static class Reference {
+    final ArrayList<Long> starts = new ArrayList<>();
+    final ArrayList<Value> values = new ArrayList<>();
+    long timeEnd;
+    int maxSize;
+    Value last;
+
+    Reference(Value v, long duration, int maxSize) {
+      this.maxSize = maxSize;
+      extend(v, duration);
+    }
+
+    void extend(Value v, long duration) {
+      if (!v.equals(last)) {
+        last = v;
+        starts.add(timeEnd);
+        values.add(v);
+        trim();
+      }
+      timeEnd += duration;
+    }
+
+    void replaceRecent(Value v, long duration) {
+      final var n = values.size();
+      if (timeEnd - starts.get(n - 1) > duration) {
+        timeEnd -= duration;
+        extend(v, duration);
+      } else {
+        values.set(n - 1, v);
+        last = v;
+        if (n > 1 && values.get(n - 2).equals(v)) {
+          starts.remove(n - 1);
+          values.remove(n - 1);
+        }
+      }
+    }
+
+    void resize(int newMaxSize) {
+      maxSize = newMaxSize;
+      trim();
+    }
+
+    private void trim() {
+      while (maxSize > 0 && values.size() > maxSize) {
+        starts.remove(0);
+        values.remove(0);
+      }
+    }
+
+    Value getValue(long t) {
+      if (t < starts.get(0) || t >= timeEnd) return null;
+      var k = 0;
+      while (k + 1 < starts.size() && starts.get(k + 1) <= t) k++;
+      return values.get(k);
+    }
+  }
+
+  private static void assertSameHistory(Reference expected, Signal actual) {
+    assertEquals(expected.timeEnd, actual.getEndTime());
+    final var first = expected.starts.get(0);
+    assertEquals(
+        expected.maxSize > 0 && expected.values.size() == expected.maxSize ? first : 0,
+        actual.omittedDataTime());
+    for (var t = first - 1; t <= expected.timeEnd; t++) {
+      assertEquals(expected.getValue(t), actual.getValue(t), "value at " + t);
+    }
+    final var it = actual.new Iterator(first);
+    for (var k = 0; k < expected.values.size(); k++) {
+      assertEquals(expected.starts.get(k), it.time);
+      assertEquals(expected.values.get(k), it.value);
+      it.advance();
+    }
+    assertNull(it.value);
+  }
+
+  // Mostly a few recurring values; sometimes a fresh one, possibly with unknown or error bits.
+  private static Value randomValue(Random random) {
+    if (random.nextInt(4) != 0) return Value.createKnown(WIDTH, random.nextInt(6));
+    final var unknown = random.nextInt(3) == 0 ? random.nextLong() : 0;
+    final var error = random.nextInt(5) == 0 ? random.nextLong() & ~unknown : 0;
+    return Value.createFromMasks(WIDTH, error, unknown, random.nextLong());
+  }
+
+  private static void runRandomEdits(int maxSize, long seed) {
+    final var random = new Random(seed);
+    final var v0 = randomValue(random);
+    final var signal = new Signal(0, info, v0, 3, 0, maxSize);
+    final var reference = new Reference(v0, 3, maxSize);
+    for (var step = 0; step < 3000; step++) {
+      final var v = randomValue(random);
+      final var duration = 1 + random.nextInt(4);
+      final var choice = random.nextInt(20);
+      if (choice == 0) {
+        final var lastStart = reference.starts.get(reference.starts.size() - 1);
+        final var recent = 1 + random.nextInt((int) (reference.timeEnd - lastStart));
+        signal.replaceRecent(v, recent);
+        reference.replaceRecent(v, recent);
+      } else if (choice == 1 && maxSize > 0) {
+        final var newMaxSize = 1 + random.nextInt(2 * maxSize);
+        signal.resize(newMaxSize);
+        reference.resize(newMaxSize);
+      } else {
+        signal.extend(v, duration);
+        reference.extend(v, duration);
+      }
+      if (step % 100 == 0) assertSameHistory(reference, signal);
+    }
+    assertSameHistory(reference, signal);
+  }
+
+  /** The history grows beyond the first block of samples when it is not limited. */
+  @Test
+  public void testUnlimitedHistory() {
+    runRandomEdits(0, 1);
+  }
+
+  /** The oldest samples are dropped once a limited history is full, also after resizing. */
+  @Test
+  public void testLimitedHistory() {
+    runRandomEdits(100, 2);
+    runRandomEdits(700, 3);
+  }
+
+  @Test
+  public void testManyDistinctValues() {
+    final var signal = new Signal(0, info, Value.createKnown(WIDTH, 0), 1, 0, 0);
+    final var reference = new Reference(Value.createKnown(WIDTH, 0), 1, 0);
+    for (var i = 1; i < 2000; i++) {
+      final var v = Value.createKnown(WIDTH, i % 1000);
+      signal.extend(v, 2);
+      reference.extend(v, 2);
+    }
+    assertSameHistory(reference, signal);
+  }
+
+  @Test
+  public void testReset() {
+    final var signal = new Signal(0, info, Value.createKnown(WIDTH, 1), 5, 0, 10);
+    for (var i = 0; i < 50; i++) signal.extend(Value.createKnown(WIDTH, i), 5);
+    signal.reset(Value.createKnown(WIDTH, 7), 4);
+    assertSameHistory(new Reference(Value.createKnown(WIDTH, 7), 4, 10), signal);
+  }
+}
@@ -0,0 +1,191 @@
+/*
+ * Logisim-evolution - digital logic design tool and simulator
+ * Copyright by the Logisim-evolution developers
+ *
+ * https://github.com/logisim-evolution/
+ *
+ * This is free software released under GNU GPLv3 license
+ */
+
+package com.cburch.logisim.gui.log;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.cburch.logisim.TestBase;
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.data.BitWidth;
+import com.cburch.logisim.data.Value;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class VcdWriterTest extends TestBase {
+  private static final String HEADER =
+      """
+      $version Logisim-evolution $end
+      $timescale 1ns $end
+      $scope module top_level $end
+      $var wire 1 ! A $end
+      $var wire 4 " B[3..0] $end
+      $upscope $end
+      $enddefinitions $end
+      """;
+
+  private static SignalInfo infoA;
+  private static SignalInfo infoB;
+
+  @TempDir Path dir;
+
+  private Signal a;
+  private Signal b;
+
+  @BeforeAll
+  public static void loadPins() throws Exception {
+    final var file =
+        loadProject(
+            """
+            <?xml version="1.0" encoding="UTF-8" standalone="no"?>
+            <project source="3.9.0" version="1.0">
+              <lib desc="#Wiring" name="0"/>
+              <main name="main"/>
+              <circuit name="main">
+                <comp lib="0" loc="(100,100)" name="Pin">
+                  <a name="label" val="A"/>
+                </comp>
+                <comp lib="0" loc="(100,200)" name="Pin">
+                  <a name="label" val="B"/>
+                  <a name="width" val="4"/>
+                </comp>
+              </circuit>
+            </project>
+            """);
+    final var circuit = file.getMainCircuit();
+    for (final var comp : circuit.getNonWires()) {
+      final var info = new SignalInfo(circuit, new Component[] {comp}, null);
+      if (comp.getLocation().getY() == 100) infoA = info;
+      else infoB = info;
+    }
+  }
+
+  // Signals of A and B that are 0 from time 0 up to the given time.
+  private void createSignals(long duration) {
+    a = new Signal(0, infoA, Value.FALSE, duration, 0, 0);
+    b = new Signal(1, infoB, Value.createKnown(4, 0), duration, 0, 0);
+  }
+
+  private VcdWriter writer(String name, long time) throws IOException {
+    return new VcdWriter(dir.resolve(name).toFile(), "top level", List.of(a, b), time);
+  }
+
+  private String read(String name) throws IOException {
+    return Files.readString(dir.resolve(name), StandardCharsets.US_ASCII);
+  }
+
+  // The body of a file that starts with both signals at 0.
+  private static String dumped(String changes) {
+    return HEADER + "#0\n$dumpvars\n0!\nb0000 \"\n$end\n" + changes;
+  }
+
+  @Test
+  public void testHeaderAndIdCodes() throws IOException {
+    createSignals(1);
+    writer("out.vcd", 0).close(0);
+    assertEquals(dumped("#0\n"), read("out.vcd"));
+
+    // identifier codes run through the printable characters, then take a second character
+    final var signals = new ArrayList<Signal>();
+    for (var i = 0; i < 96; i++) signals.add(new Signal(i, infoA, Value.TRUE, 1, 0, 0));
+    new VcdWriter(dir.resolve("many.vcd").toFile(), "", signals, 0).close(0);
+    final var codes = new ArrayList<String>();
+    for (final var line : read("many.vcd").split("\n")) {
+      if (line.startsWith("$scope")) assertEquals("$scope module _ $end", line);
+      if (line.startsWith("$var")) codes.add(line.split(" ")[3]);
+    }
+    assertEquals(96, codes.size());
+    assertEquals("!", codes.get(0));
+    assertEquals("~", codes.get(93));
+    assertEquals("!!", codes.get(94));
+    assertEquals("\"!", codes.get(95));
+    assertEquals(96, codes.stream().distinct().count());
+  }
+
+  @Test
+  public void testOnlyChangesWritten() throws IOException {
+    createSignals(1);
+    final var out = writer("out.vcd", 0);
+    out.beginSample(1);
+    out.setValue(a, Value.TRUE);
+    out.setValue(b, Value.createKnown(4, 0));
+    out.beginSample(2);
+    out.setValue(b, Value.createKnown(4, 3));
+    out.beginSample(3);
+    out.setValue(a, Value.TRUE); // unchanged, so time 3 is not written
+    out.beginSample(4);
+    out.setValue(a, Value.UNKNOWN);
+    out.setValue(b, Value.createUnknown(BitWidth.create(4)));
+    out.close(6);
+    assertEquals(dumped("#1\n1!\n#2\nb0011 \"\n#4\nz!\nbzzzz \"\n#6\n"), read("out.vcd"));
+  }
+
+  @Test
+  public void testPendingSampleRevised() throws IOException {
+    createSignals(1);
+    final var out = writer("out.vcd", 0);
+    out.beginSample(2);
+    out.setValue(a, Value.TRUE);
+    out.beginSample(2);
+    out.setValue(a, Value.FALSE); // revises the sample back to what was written
+    out.beginSample(1); // an earlier time also revises the pending sample
+    out.setValue(b, Value.createKnown(4, 5));
+    out.beginSample(3);
+    out.close(3);
+    assertEquals(dumped("#2\nb0101 \"\n#3\n"), read("out.vcd"));
+  }
+
+  @Test
+  public void testTimeOffsets() throws IOException {
+    // the file starts at time 0 even when the model time does not
+    createSignals(20);
+    final var out = writer("out.vcd", 10);
+    out.beginSample(14);
+    out.setValue(a, Value.TRUE);
+    out.reset(16);
+    // the model restarts at 0, the file continues from 6
+    out.setValue(a, Value.FALSE);
+    out.beginSample(2);
+    out.setValue(b, Value.createKnown(4, 1));
+    out.reset(3);
+    out.beginSample(1);
+    out.setValue(b, Value.createKnown(4, 2));
+    out.close(1);
+    assertEquals(
+        dumped(
+            "#4\n1!\n$comment reset $end\n#6\n0!\n#8\nb0001 \"\n$comment reset $end\n"
+                + "#10\nb0010 \"\n#10\n"),
+        read("out.vcd"));
+  }
+
+  @Test
+  public void testCompressed() throws IOException {
+    createSignals(1);
+    for (final var name : List.of("out.vcd", "out.vcd.gz")) {
+      final var out = writer(name, 0);
+      for (var t = 1; t < 1000; t++) {
+        out.beginSample(t);
+        out.setValue(a, t % 3 == 0 ? Value.TRUE : Value.FALSE);
+        out.setValue(b, Value.createKnown(4, t % 16));
+      }
+      out.close(1000);
+    }
+    try (final var in = new GZIPInputStream(Files.newInputStream(dir.resolve("out.vcd.gz")))) {
+      assertEquals(read("out.vcd"), new String(in.readAllBytes(), StandardCharsets.US_ASCII));
+    }
+  }
+}
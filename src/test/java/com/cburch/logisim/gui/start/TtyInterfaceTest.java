@@ -0,0 +1,66 @@
+/*
+ * Logisim-evolution - digital logic design tool and simulator
+ * Copyright by the Logisim-evolution developers
+ *
+ * https://github.com/logisim-evolution/
+ *
+ * This is free software released under GNU GPLv3 license
+ */
+
+package com.cburch.logisim.gui.start;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.cburch.logisim.TestBase;
+import com.cburch.logisim.circuit.CircuitState;
+import java.util.ArrayList;
+import org.junit.jupiter.api.Test;
+
+public class TtyInterfaceTest extends TestBase {
+
+  // A clock that drives a counter, and no halt pin, so only the limits end the simulation.
+  private static final String COUNTER =
+      """
+      <?xml version="1.0" encoding="UTF-8" standalone="no"?>
+      <project source="3.9.0" version="1.0">
+        <lib desc="#Wiring" name="0"/>
+        <lib desc="#Memory" name="4"/>
+        <main name="main"/>
+        <circuit name="main">
+          <comp lib="0" loc="(200,220)" name="Clock"/>
+          <comp lib="4" loc="(300,200)" name="Counter">
+            <a name="appearance" val="classic"/>
+          </comp>
+          <wire from="(200,220)" to="(280,220)"/>
+        </circuit>
+      </project>
+      """;
+
+  private static CircuitState load() throws Exception {
+    final var file = loadProject(COUNTER);
+    final var state = new CircuitState(file.getOptions(), file.getMainCircuit());
+    state.getPropagator().propagate();
+    return state;
+  }
+
+  @Test
+  public void testMaxTicks() throws Exception {
+    final var state = load();
+    assertEquals(2, TtyInterface.runSimulation(state, new ArrayList<>(), null, 0, 25, 0, null));
+    assertEquals(25, state.getPropagator().getTickCount());
+  }
+
+  @Test
+  public void testMaxSeconds() throws Exception {
+    final var state = load();
+    final var start = System.nanoTime();
+    assertEquals(3, TtyInterface.runSimulation(state, new ArrayList<>(), null, 0, 0, 1, null));
+    final var elapsed = System.nanoTime() - start;
+    assertTrue(elapsed >= 1_000_000_000L, "stopped after " + elapsed + " ns");
+    assertTrue(state.getPropagator().getTickCount() > 0);
+
+    // whichever limit is reached first ends the simulation
+    assertEquals(2, TtyInterface.runSimulation(load(), new ArrayList<>(), null, 0, 10, 60, null));
+  }
+}
@@ -0,0 +1,218 @@
+/*
+ * Logisim-evolution - digital logic design tool and simulator
+ * Copyright by the Logisim-evolution developers
+ *
+ * https://github.com/logisim-evolution/
+ *
+ * This is free software released under GNU GPLv3 license
+ */
+
+package com.cburch.logisim.gui.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.cburch.logisim.TestBase;
+import com.cburch.logisim.data.FailException;
+import com.cburch.logisim.data.TestVector;
+import com.cburch.logisim.proj.Project;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TestThreadTest extends TestBase {
+
+  // An 8-bit adder, which is simulated rather than evaluated bit-sliced.
+  private static final String ADDER =
+      """
+      <?xml version="1.0" encoding="UTF-8" standalone="no"?>
+      <project source="3.8.0" version="1.0">
+        <lib desc="#Wiring" name="0"/>
+        <lib desc="#Arithmetic" name="3"/>
+        <main name="main"/>
+        <circuit name="main">
+          <comp lib="0" loc="(100,190)" name="Pin">
+            <a name="label" val="A"/>
+            <a name="width" val="8"/>
+          </comp>
+          <comp lib="0" loc="(100,210)" name="Pin">
+            <a name="label" val="B"/>
+            <a name="width" val="8"/>
+          </comp>
+          <comp lib="0" loc="(400,200)" name="Pin">
+            <a name="facing" val="west"/>
+            <a name="label" val="S"/>
+            <a name="output" val="true"/>
+            <a name="width" val="8"/>
+          </comp>
+          <comp lib="3" loc="(300,200)" name="Adder">
+            <a name="width" val="8"/>
+          </comp>
+          <wire from="(100,190)" to="(260,190)"/>
+          <wire from="(100,210)" to="(260,210)"/>
+          <wire from="(300,200)" to="(400,200)"/>
+        </circuit>
+      </project>
+      """;
+
+  // A NOT gate, which is evaluated bit-sliced.
+  private static final String INVERTER =
+      """
+      <?xml version="1.0" encoding="UTF-8" standalone="no"?>
+      <project source="3.8.0" version="1.0">
+        <lib desc="#Wiring" name="0"/>
+        <lib desc="#Gates" name="1"/>
+        <main name="main"/>
+        <circuit name="main">
+          <comp lib="0" loc="(100,100)" name="Pin">
+            <a name="label" val="A"/>
+          </comp>
+          <comp lib="0" loc="(300,100)" name="Pin">
+            <a name="facing" val="west"/>
+            <a name="label" val="Y"/>
+            <a name="output" val="true"/>
+          </comp>
+          <comp lib="1" loc="(200,100)" name="NOT Gate"/>
+          <wire from="(100,100)" to="(170,100)"/>
+          <wire from="(200,100)" to="(300,100)"/>
+        </circuit>
+      </project>
+      """;
+
+  // A 4-bit counter driven by a clock.
+  private static final String COUNTER =
+      """
+      <?xml version="1.0" encoding="UTF-8" standalone="no"?>
+      <project source="3.8.0" version="1.0">
+        <lib desc="#Wiring" name="0"/>
+        <lib desc="#Memory" name="4"/>
+        <main name="main"/>
+        <circuit name="main">
+          <comp lib="0" loc="(200,220)" name="Clock"/>
+          <comp lib="0" loc="(400,200)" name="Pin">
+            <a name="facing" val="west"/>
+            <a name="label" val="Q"/>
+            <a name="output" val="true"/>
+            <a name="width" val="4"/>
+          </comp>
+          <comp lib="4" loc="(300,200)" name="Counter">
+            <a name="appearance" val="classic"/>
+            <a name="max" val="0xf"/>
+            <a name="width" val="4"/>
+          </comp>
+          <wire from="(200,220)" to="(280,220)"/>
+          <wire from="(300,200)" to="(400,200)"/>
+        </circuit>
+      </project>
+      """;
+
+  // Rows of a vector for the counter, as {ticks, noreset, expected count, whether it fails}.
+  // Two ticks make one clock cycle. After a reset the counter shows 15, and its first rising edge
+  // wraps it to 0.
+  private static final int[][] COUNTER_ROWS = {
+    {0, 0, 15, 0},
+    {2, 0, 0, 0}, // reset, then one cycle
+    {6, 0, 2, 0},
+    {2, 1, 3, 0}, // continues from 2
+    {0, 1, 3, 0},
+    {4, 1, 5, 0},
+    {2, 0, 0, 0},
+    {2, 1, 2, 1}, // should be 1
+    {2, 1, 2, 0}, // the failure above does not change the state
+  };
+
+  @TempDir Path dir;
+
+  // Runs the vector with at most the given number of workers and describes the rows in the order
+  // they are reported.
+  private TestThread tester(String xml, String vector) throws Exception {
+    final var vectorFile = dir.resolve("vector.txt");
+    Files.writeString(vectorFile, vector);
+    final var file = loadProject(xml);
+    return new TestThread(
+        new Project(file), file.getCircuit("main"), new TestVector(vectorFile.toFile()));
+  }
+
+  private static List<String> run(TestThread tester, int threads) {
+    tester.maxThreads = threads;
+    final var rows = new ArrayList<String>();
+    tester.runVector(
+        (row, err, nanos) -> {
+          if (err == null) {
+            rows.add(row + " passed");
+          } else if (err instanceof FailException fail) {
+            final var msg = new StringBuilder(row + " failed:");
+            for (final var e : fail.getAll()) msg.append(' ').append(e.getMessage());
+            rows.add(msg.toString());
+          } else {
+            rows.add(row + " error: " + err.getMessage());
+          }
+          return true;
+        });
+    return rows;
+  }
+
+  @Test
+  public void testParallelMatchesSequential() throws Exception {
+    final var wrong = Set.of(7, 100, 299);
+    final var text = new StringBuilder("A[8] B[8] S[8]\n");
+    for (var row = 0; row < 300; row++) {
+      final var a = (row * 37) & 0xff;
+      final var b = (row * 11 + 5) & 0xff;
+      final var sum = (a + b + (wrong.contains(row) ? 1 : 0)) & 0xff;
+      if (row % 50 == 3) {
+        text.append(String.format("0x%02x 0x%02x xxxxxxxx%n", a, b));
+      } else {
+        text.append(String.format("0x%02x 0x%02x 0x%02x%n", a, b, sum));
+      }
+    }
+    final var tester = tester(ADDER, text.toString());
+
+    final var sequential = run(tester, 1);
+    assertEquals(300, sequential.size());
+    for (var row = 0; row < 300; row++) {
+      final var result = sequential.get(row);
+      if (wrong.contains(row)) {
+        assertEquals(row + " failed:", result.substring(0, result.indexOf(':') + 1));
+      } else {
+        assertEquals(row + " passed", result);
+      }
+    }
+    assertEquals(sequential, run(tester, 4));
+  }
+
+  @Test
+  public void testSequentialRows() throws Exception {
+    final var repeats = 20;
+    final var text = new StringBuilder("<ticks> <noreset> Q[4]\n");
+    for (var i = 0; i < repeats; i++) {
+      for (final var row : COUNTER_ROWS) {
+        final var count = String.format("%4s", Integer.toBinaryString(row[2])).replace(' ', '0');
+        text.append(row[0]).append(' ').append(row[1]).append(' ').append(count).append('\n');
+      }
+    }
+    final var tester = tester(COUNTER, text.toString());
+
+    final var sequential = run(tester, 1);
+    assertEquals(repeats * COUNTER_ROWS.length, sequential.size());
+    for (var i = 0; i < sequential.size(); i++) {
+      final var result = sequential.get(i);
+      if (COUNTER_ROWS[i % COUNTER_ROWS.length][3] != 0) {
+        assertEquals(i + " failed:", result.substring(0, result.indexOf(':') + 1));
+      } else {
+        assertEquals(i + " passed", result);
+      }
+    }
+    assertEquals(sequential, run(tester, 4));
+  }
+
+  @Test
+  public void testTicksWithoutClock() throws Exception {
+    // there is no clock, so a row that asks for ticks cannot pass, even when evaluated bit-sliced
+    final var tester = tester(INVERTER, "<ticks> A Y\n0 0 1\n2 0 1\n");
+    assertEquals(List.of("0 passed", "1 error: no clock to tick"), run(tester, 1));
+  }
+}
@@ -0,0 +1,137 @@
+/*
+ * Logisim-evolution - digital logic design tool and simulator
+ * Copyright by the Logisim-evolution developers
+ *
+ * https://github.com/logisim-evolution/
+ *
+ * This is free software released under GNU GPLv3 license
+ */
+
+package com.cburch.logisim.std.memory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class MemContentsImageTest {
+  @TempDir Path dir;
+
+  private static MemContents randomContents(int addrBits, int width, long seed) {
+    final var ret = MemContents.create(addrBits, width, false);
+    final var random = new Random(seed);
+    final var mask = width == 64 ? -1L : (1L << width) - 1;
+    // leave the second page empty, so that it is not stored
+    for (var addr = 0L; addr < (1L << addrBits); addr++) {
+      if (addr / ret.getPageLength() != 1) ret.set(addr, random.nextLong() & mask);
+    }
+    return ret;
+  }
+
+  // Reads the contents back the way a project that refers to them does.
+  private MemContents read(String contents) throws IOException {
+    final var resolved = MemContentsImage.resolve(contents, dir);
+    final var lineBreak = resolved.indexOf('\n');
+    final var header = resolved.substring(0, lineBreak).split(" ");
+    return MemContentsImage.map(
+        resolved.substring(lineBreak + 1),
+        Integer.parseInt(header[1]),
+        Integer.parseInt(header[2]));
+  }
+
+  private static void assertSameContents(MemContents expected, MemContents actual) {
+    assertEquals(expected.getLogLength(), actual.getLogLength());
+    assertEquals(expected.getWidth(), actual.getWidth());
+    for (var addr = 0L; addr <= expected.getLastOffset(); addr++) {
+      assertEquals(expected.get(addr), actual.get(addr), "at " + addr);
+    }
+  }
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    final var project = dir.resolve("project.circ").toFile();
+    final var narrow = randomContents(14, 5, 1);
+    final var wide = randomContents(13, 64, 2);
+    final var half = randomContents(14, 16, 3);
+    assertTrue(MemContentsImage.isLarge(narrow));
+    final var image = MemContentsImage.write(project, List.of(narrow, wide, half, narrow));
+    assertTrue(image.getName().matches("project\\.circ\\.[0-9a-f]{8}\\.mem"));
+    assertTrue(Files.isRegularFile(dir.resolve(image.getName())));
+    assertEquals(3, image.getReferences().size());
+
+    final var copy = read(image.getReferences().get(narrow));
+    assertSameContents(narrow, copy);
+    assertSameContents(wide, read(image.getReferences().get(wide)));
+    assertSameContents(half, read(image.getReferences().get(half)));
+
+    // written values stay in the copy, the image is not changed
+    copy.set(3, copy.get(3) ^ 1);
+    assertNotEquals(narrow.get(3), copy.get(3));
+    assertSameContents(narrow, read(image.getReferences().get(narrow)));
+  }
+
+  @Test
+  public void testSameContentsKeepImage() throws IOException {
+    final var project = dir.resolve("project.circ").toFile();
+    final var mem = randomContents(14, 8, 4);
+    final var first = MemContentsImage.write(project, List.of(mem));
+    final var path = dir.resolve(first.getName());
+    final var key = Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+    final var mapped = read(first.getReferences().get(mem));
+
+    // the image is mapped, but is not replaced, as it could not be on Windows
+    final var second = MemContentsImage.write(project, List.of(mem));
+    assertEquals(first.getName(), second.getName());
+    assertEquals(first.getReferences().get(mem), second.getReferences().get(mem));
+    if (key != null) {
+      assertEquals(key, Files.readAttributes(path, BasicFileAttributes.class).fileKey());
+    }
+    assertSameContents(mem, mapped);
+
+    // other contents go to another image, which leaves the first one for a backup of the project
+    mem.set(0, mem.get(0) ^ 1);
+    final var third = MemContentsImage.write(project, List.of(mem));
+    assertNotEquals(first.getName(), third.getName());
+    assertTrue(Files.isRegularFile(path));
+    assertSameContents(mem, read(third.getReferences().get(mem)));
+
+    final var unrelated = Files.createFile(dir.resolve("other.circ.0000abcd.mem"));
+    MemContentsImage.deleteOthers(project, third.getName());
+    assertFalse(Files.exists(path));
+    assertTrue(Files.exists(dir.resolve(third.getName())));
+    assertTrue(Files.exists(unrelated));
+    MemContentsImage.deleteOthers(project, null);
+    assertFalse(Files.exists(dir.resolve(third.getName())));
+  }
+
+  @Test
+  public void testChecksumMismatch() throws IOException {
+    final var project = dir.resolve("project.circ").toFile();
+    final var mem = randomContents(14, 8, 5);
+    final var image = MemContentsImage.write(project, List.of(mem));
+    final var other =
+        MemContentsImage.write(new File(dir.toFile(), "x.circ"), List.of(randomContents(14, 8, 6)));
+
+    // an image replaced by one saved with other contents is refused, rather than read as is
+    final var path = dir.resolve(image.getName());
+    Files.copy(dir.resolve(other.getName()), path, StandardCopyOption.REPLACE_EXISTING);
+    final var reference = image.getReferences().get(mem);
+    final var e = assertThrows(IOException.class, () -> read(reference));
+    assertTrue(e.getMessage().contains("another version"), e.getMessage());
+
+    Files.delete(path);
+    assertThrows(IOException.class, () -> read(reference));
+  }
+}
@@ -0,0 +1,161 @@
+/*
+ * Logisim-evolution - digital logic design tool and simulator
+ * Copyright by the Logisim-evolution developers
+ *
+ * https://github.com/logisim-evolution/
+ *
+ * This is free software released under GNU GPLv3 license
+ */
+
+package com.cburch.logisim.std.memory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class MemContentsTest {
+
+  private static MemContentsSub.BufferPage bufferPage(MemContents contents, long addr) {
+    return assertInstanceOf(
+        MemContentsSub.BufferPage.class,
+        contents.getPage((int) (addr / contents.getPageLength())));
+  }
+
+  // Installs pages of random values the way condFillRandom does when unknown startup values are
+  // enabled, without depending on that preference.
+  private static void fillRandom(MemContents contents, boolean offHeap) {
+    for (var i = 0; i < contents.getPageCount(); i++) {
+      contents.setPage(
+          i,
+          MemContentsSub.createRandomPage(contents.getPageLength(), contents.getWidth(), offHeap));
+    }
+  }
+
+  @Test
+  public void testCloneIsolation() {
+    for (final var offHeap : new boolean[] {false, true}) {
+      final var contents = MemContents.create(14, 16, false);
+      contents.setOffHeap(offHeap);
+      contents.set(5, 0x1234);
+      contents.set(10000, 0xbeef);
+
+      final var copy = contents.clone();
+      assertEquals(0x1234, copy.get(5));
+      assertEquals(0xbeef, copy.get(10000));
+      if (offHeap) {
+        // both share the buffer until either is written to
+        assertTrue(bufferPage(contents, 5).getBuffer().isReadOnly());
+        assertTrue(bufferPage(copy, 5).getBuffer().isReadOnly());
+      }
+
+      copy.set(5, 0x4321);
+      assertEquals(0x1234, contents.get(5));
+      assertEquals(0x4321, copy.get(5));
+      contents.set(6, 0x77);
+      assertEquals(0, copy.get(6));
+      contents.set(10000, 1);
+      assertEquals(0xbeef, copy.get(10000));
+      copy.set(10001, 2);
+      assertEquals(0, contents.get(10001));
+      if (offHeap) {
+        assertFalse(bufferPage(contents, 5).getBuffer().isReadOnly());
+        assertFalse(bufferPage(copy, 5).getBuffer().isReadOnly());
+      }
+    }
+  }
+
+  @Test
+  public void testLazyRandomPages() {
+    for (final var offHeap : new boolean[] {false, true}) {
+      final var contents = MemContents.create(16, 12, true);
+      contents.setOffHeap(offHeap);
+      fillRandom(contents, offHeap);
+      for (var i = 0; i < contents.getPageCount(); i++) {
+        assertNull(((MemContentsSub.BufferPage) contents.getPage(i)).getBuffer());
+      }
+      assertFalse(contents.isClear());
+
+      final var values = new long[1 << 16];
+      var nonZero = 0;
+      for (var addr = 0; addr < values.length; addr++) {
+        values[addr] = contents.get(addr);
+        assertEquals(values[addr], contents.get(addr));
+        assertEquals(0, values[addr] & ~0xfffL, "value wider than the memory");
+        if (values[addr] != 0) nonZero++;
+      }
+      assertTrue(nonZero > values.length / 2);
+      // reading does not store a page
+      assertNull(bufferPage(contents, 0).getBuffer());
+
+      final var copy = contents.clone();
+      final var written = values[4097] ^ 1;
+      contents.set(4097, written);
+      final var page = bufferPage(contents, 4097).getBuffer();
+      assertNotNull(page);
+      assertEquals(offHeap, page.isDirect());
+      assertNull(bufferPage(contents, 0).getBuffer());
+      assertNull(bufferPage(copy, 4097).getBuffer());
+      for (var addr = 0; addr < values.length; addr++) {
+        assertEquals(addr == 4097 ? written : values[addr], contents.get(addr), "at " + addr);
+        assertEquals(values[addr], copy.get(addr), "at " + addr);
+      }
+
+      // without randomizing, the pages are cleared whatever the preference
+      final var plain = MemContents.create(16, 12, false);
+      plain.setOffHeap(offHeap);
+      fillRandom(plain, offHeap);
+      assertFalse(plain.isClear());
+      plain.condClear();
+      assertTrue(plain.isClear());
+      for (var i = 0; i < plain.getPageCount(); i++) assertNull(plain.getPage(i));
+    }
+  }
+
+  @Test
+  public void testSetOffHeap() {
+    final var contents = MemContents.create(14, 32, false);
+    assertFalse(contents.isOffHeap());
+    contents.set(3, 0xdeadbeefL);
+    contents.set(12000, 42);
+    assertNull(contents.getPage(1));
+
+    contents.setOffHeap(true);
+    assertTrue(contents.isOffHeap());
+    assertTrue(bufferPage(contents, 3).getBuffer().isDirect());
+    assertTrue(bufferPage(contents, 12000).getBuffer().isDirect());
+    assertNull(contents.getPage(1), "unwritten pages are not stored");
+    assertEquals(0xdeadbeefL, contents.get(3));
+    assertEquals(42, contents.get(12000));
+    assertEquals(0, contents.get(4));
+
+    contents.set(5000, 7);
+    assertTrue(bufferPage(contents, 5000).getBuffer().isDirect());
+
+    // a page shared with a clone stays shared, and is copied to the heap once written
+    final var copy = contents.clone();
+    contents.setOffHeap(false);
+    assertFalse(contents.isOffHeap());
+    assertTrue(bufferPage(contents, 3).getBuffer().isReadOnly());
+    contents.set(3, 1);
+    assertFalse(bufferPage(contents, 3).getBuffer().isDirect());
+    assertEquals(0xdeadbeefL, copy.get(3));
+    assertTrue(bufferPage(copy, 3).getBuffer().isDirect());
+    assertEquals(1, contents.get(3));
+    assertEquals(42, contents.get(12000));
+    assertEquals(7, contents.get(5000));
+
+    // switching back and forth keeps the values
+    contents.setOffHeap(true);
+    contents.setOffHeap(false);
+    assertNotEquals(0, contents.get(12000));
+    assertEquals(1, contents.get(3));
+    assertEquals(7, contents.get(5000));
+    assertEquals(0, contents.get(5001));
+  }
+}